@@ -0,0 +1,121 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Random;
+
+/**
+ * Agregados por período: lo que cuesta mantenerlos en cada conversión
+ * agregada (también con varios hilos sumando en la misma cubeta) y lo que
+ * cuesta un reporte diario de un mes con {@link AgregadosHistorial} frente a
+ * recalcularlo recorriendo las conversiones (las columnas, sin crear objetos). También mide guardarlos y
+ * leerlos del archivo que se escribe junto al historial.
+ *
+ * El historial tiene bench.filas conversiones (por defecto 1.000.000) de
+ * 9 monedas repartidas en un año, en orden de fecha.
+ *
+ * Ejecutar: mvn -Pbenchmark compile exec:exec -Dbench.clase=AgregadosBenchmark
+ */
+public class AgregadosBenchmark {
+    private static final String[] MONEDAS = {"USD", "ARS", "BRL", "PEN", "EUR", "JPY", "MXN", "KWD", "CLP"};
+
+    public static void main(String[] args) throws Exception {
+        int filas = Integer.getInteger("bench.filas", 1_000_000);
+        long desdeMilis = IndiceHistorial.aMilis(LocalDateTime.of(2024, 1, 1, 0, 0));
+        long pasoMilis = 365L * 86_400_000L / filas;
+
+        long[] milis = new long[filas];
+        int[] origen = new int[filas];
+        int[] destino = new int[filas];
+        double[] montoOrigen = new double[filas];
+        double[] montoDestino = new double[filas];
+        Random aleatorio = new Random(42);
+        for (int i = 0; i < filas; i++) {
+            int o = aleatorio.nextInt(MONEDAS.length);
+            int d = (o + 1 + aleatorio.nextInt(MONEDAS.length - 1)) % MONEDAS.length;
+            milis[i] = desdeMilis + i * pasoMilis;
+            origen[i] = RegistroMonedas.clave(MONEDAS[o]);
+            destino[i] = RegistroMonedas.clave(MONEDAS[d]);
+            montoOrigen[i] = 1 + aleatorio.nextInt(100_000) * 0.01;
+            montoDestino[i] = montoOrigen[i] * (1 + aleatorio.nextDouble());
+        }
+
+        AgregadosHistorial agregados = new AgregadosHistorial();
+        long inicio = System.nanoTime();
+        for (int i = 0; i < filas; i++) {
+            agregados.agregar(origen[i], destino[i], milis[i], montoOrigen[i], montoDestino[i]);
+        }
+        ArnesBenchmark.imprimir(String.format("📈 %,d conversiones agregadas en %.0f ms",
+            filas, (System.nanoTime() - inicio) / 1e6));
+
+        LocalDateTime mesDesde = LocalDateTime.of(2024, 6, 1, 0, 0);
+        LocalDateTime mesHasta = mesDesde.plusMonths(1);
+        long mesDesdeMilis = IndiceHistorial.aMilis(mesDesde);
+        long mesHastaMilis = IndiceHistorial.aMilis(mesHasta);
+        int usd = RegistroMonedas.clave("USD");
+        int ars = RegistroMonedas.clave("ARS");
+        ArnesBenchmark.imprimir("   USD→ARS 1/6: " + agregados.consultar("USD", "ARS",
+            AgregadosHistorial.Granularidad.DIA, mesDesde, mesDesde.plusDays(1)));
+
+        Path archivo = Files.createTempFile("bench-agregados", ".dat");
+        AgregadosHistorial sumados = new AgregadosHistorial();
+        long[] siguiente = {0};
+        ArnesBenchmark arnes = new ArnesBenchmark("Agregados por período");
+        arnes.medir("agregar una conversión (hora y día)", n -> {
+            for (int i = 0; i < n; i++) {
+                int fila = (int) (siguiente[0]++ % filas);
+                sumados.agregar(origen[fila], destino[fila], milis[fila], montoOrigen[fila], montoDestino[fila]);
+            }
+            return sumados.getConversiones();
+        });
+        // Todos los hilos suman en la misma hora del mismo par: la peor contención
+        arnes.medirConcurrente("agregar una conversión, mismo par y hora", 4, n -> {
+            for (int i = 0; i < n; i++) {
+                sumados.agregar(usd, ars, mesDesdeMilis, 10, 9000);
+            }
+            return n;
+        });
+        arnes.medir("recorrido lineal: totales diarios USD→ARS de un mes", n -> {
+            long total = 0;
+            for (int repeticion = 0; repeticion < n; repeticion++) {
+                long[] cantidad = new long[31];
+                double[] suma = new double[31];
+                for (int i = 0; i < filas; i++) {
+                    if (origen[i] == usd && destino[i] == ars && milis[i] >= mesDesdeMilis && milis[i] < mesHastaMilis) {
+                        int dia = (int) ((milis[i] - mesDesdeMilis) / 86_400_000L);
+                        cantidad[dia]++;
+                        suma[dia] += montoDestino[i];
+                    }
+                }
+                total += cantidad[0] + (long) suma[0];
+            }
+            return total;
+        });
+        arnes.medir("agregados: totales diarios USD→ARS de un mes", n -> {
+            long total = 0;
+            for (int i = 0; i < n; i++) {
+                total += agregados.consultar("USD", "ARS", AgregadosHistorial.Granularidad.DIA,
+                    mesDesde, mesHasta).size();
+            }
+            return total;
+        });
+        arnes.medir("agregados: totales por hora de todos los pares, un día", n -> {
+            long total = 0;
+            for (int i = 0; i < n; i++) {
+                total += agregados.consultar(null, null, AgregadosHistorial.Granularidad.HORA,
+                    mesDesde, mesDesde.plusDays(1)).size();
+            }
+            return total;
+        });
+        arnes.medir("guardar y leer el archivo de agregados", n -> {
+            long total = 0;
+            for (int i = 0; i < n; i++) {
+                agregados.guardar(archivo, null);
+                total += AgregadosHistorial.leer(archivo).getConversiones();
+            }
+            return total;
+        });
+        arnes.imprimirResumen();
+        ArnesBenchmark.imprimir(String.format("   Archivo de agregados: %,d bytes", Files.size(archivo)));
+        Files.deleteIfExists(archivo);
+    }
+}
@@ -0,0 +1,355 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Arnés mínimo de micro-benchmarks: calentamiento, iteraciones medidas por
+ * tiempo y reporte de ns/op, ops/s y bytes asignados por operación.
+ * Se usa en lugar de JMH porque JMH no admite benchmarks en el paquete por
+ * defecto, que es donde vive todo el código del conversor.
+ *
+ * Parámetros (propiedades del sistema):
+ *   bench.calentamiento  iteraciones de calentamiento (5)
+ *   bench.iteraciones    iteraciones medidas (5)
+ *   bench.tiempo.ms      duración de cada iteración (1000)
+ *   bench.reporte        archivo donde se agregan los resultados en formato
+ *                        de reporte (ver {@link CompararReportes}); sin valor no se escribe
+ *
+ * El reporte es texto separado por tabuladores, una línea por benchmark
+ * (suite, benchmark, ns/op, error, bytes/op) en el orden en que se midieron,
+ * precedido por líneas de comentario (#) con la JVM y los parámetros: dos
+ * reportes de la misma suite se pueden comparar con diff o con CompararReportes.
+ */
+public final class ArnesBenchmark {
+    private static final Path DIRECTORIO_RECURSOS = Paths.get("benchmarks", "recursos");
+
+    /**
+     * Ejecuta n operaciones y devuelve un valor derivado de los resultados,
+     * que el arnés consume para evitar la eliminación de código muerto.
+     */
+    @FunctionalInterface
+    public interface Operacion {
+        long ejecutar(int n) throws Exception;
+    }
+
+    /**
+     * Resultado de medir una operación
+     */
+    public static final class Resultado {
+        final String nombre;
+        final double nsPorOp;
+        final double desviacion;
+        final double bytesPorOp;
+
+        Resultado(String nombre, double nsPorOp, double desviacion, double bytesPorOp) {
+            this.nombre = nombre;
+            this.nsPorOp = nsPorOp;
+            this.desviacion = desviacion;
+            this.bytesPorOp = bytesPorOp;
+        }
+
+        public double getNsPorOp() { return nsPorOp; }
+
+        @Override
+        public String toString() {
+            return String.format("%-55s %14.2f ± %-10.2f %16.0f %12.1f",
+                nombre, nsPorOp, desviacion, 1e9 / nsPorOp, bytesPorOp);
+        }
+    }
+
+    // Salida del reporte, capturada antes de que un benchmark silencie System.out
+    private static final PrintStream SALIDA = System.out;
+    private static volatile long sumidero;
+    static final int VERSION_REPORTE = 1;
+    // El primer reporte de la ejecución reemplaza el archivo; los siguientes se agregan
+    private static boolean reporteIniciado;
+
+    private final String titulo;
+    private final int iteracionesCalentamiento = Integer.getInteger("bench.calentamiento", 5);
+    private final int iteracionesMedidas = Integer.getInteger("bench.iteraciones", 5);
+    private final long duracionIteracionNanos = Long.getLong("bench.tiempo.ms", 1000) * 1_000_000L;
+    private final List<Resultado> resultados = new ArrayList<>();
+    private int escritosEnReporte;
+
+    public ArnesBenchmark(String titulo) {
+        this.titulo = titulo;
+        SALIDA.println("\n⏱️  " + titulo);
+        SALIDA.printf("%-55s %14s   %-10s %16s %12s%n", "Benchmark", "ns/op", "error", "ops/s", "bytes/op");
+        SALIDA.println("─".repeat(115));
+    }
+
+    /**
+     * Mide una operación e imprime su resultado
+     * @param nombre Nombre del benchmark
+     * @param operacion Operación a medir
+     * @return El resultado de la medición
+     */
+    public Resultado medir(String nombre, Operacion operacion) throws Exception {
+        int lote = calibrar(operacion);
+        for (int i = 0; i < iteracionesCalentamiento; i++) {
+            correrIteracion(operacion, lote, null);
+        }
+
+        double[] muestras = new double[iteracionesMedidas];
+        long[] asignado = new long[1];
+        long operacionesTotales = 0;
+        for (int i = 0; i < iteracionesMedidas; i++) {
+            long[] ops = new long[1];
+            muestras[i] = correrIteracion(operacion, lote, ops, asignado);
+            operacionesTotales += ops[0];
+        }
+
+        double media = 0;
+        for (double m : muestras) {
+            media += m;
+        }
+        media /= muestras.length;
+        double varianza = 0;
+        for (double m : muestras) {
+            varianza += (m - media) * (m - media);
+        }
+        double desviacion = muestras.length > 1 ? Math.sqrt(varianza / (muestras.length - 1)) : 0;
+        double bytesPorOp = asignado[0] < 0 ? Double.NaN : (double) asignado[0] / operacionesTotales;
+
+        Resultado resultado = new Resultado(nombre, media, desviacion, bytesPorOp);
+        resultados.add(resultado);
+        SALIDA.println(resultado);
+        return resultado;
+    }
+
+    /**
+     * Mide una operación ejecutada en paralelo por varios hilos. El resultado
+     * es el tiempo medio por operación del conjunto (1 / throughput total).
+     * @param nombre Nombre del benchmark
+     * @param hilos Cantidad de hilos concurrentes
+     * @param operacion Operación a medir (debe ser segura entre hilos)
+     * @return El resultado de la medición
+     */
+    public Resultado medirConcurrente(String nombre, int hilos, Operacion operacion) throws Exception {
+        int lote = calibrar(operacion);
+        for (int i = 0; i < iteracionesCalentamiento; i++) {
+            correrIteracionConcurrente(operacion, hilos, lote);
+        }
+
+        double[] muestras = new double[iteracionesMedidas];
+        for (int i = 0; i < iteracionesMedidas; i++) {
+            muestras[i] = correrIteracionConcurrente(operacion, hilos, lote);
+        }
+
+        double media = 0;
+        for (double m : muestras) {
+            media += m;
+        }
+        media /= muestras.length;
+        double varianza = 0;
+        for (double m : muestras) {
+            varianza += (m - media) * (m - media);
+        }
+        double desviacion = muestras.length > 1 ? Math.sqrt(varianza / (muestras.length - 1)) : 0;
+
+        Resultado resultado = new Resultado(nombre + " [" + hilos + " hilos]", media, desviacion, Double.NaN);
+        resultados.add(resultado);
+        SALIDA.println(resultado);
+        return resultado;
+    }
+
+    /**
+     * Imprime el pie del reporte
+     */
+    public void imprimirResumen() throws IOException {
+        SALIDA.println("─".repeat(115));
+        SALIDA.println(resultados.size() + " benchmarks en '" + titulo + "' (consumido: " + sumidero + ")");
+        String reporte = System.getProperty("bench.reporte");
+        if (reporte != null && !reporte.isBlank()) {
+            escribirReporte(Paths.get(reporte));
+        }
+    }
+
+    /**
+     * Agrega al archivo de reporte los resultados de este arnés que todavía no se escribieron
+     * @param ruta Archivo del reporte (se crea con su encabezado la primera vez en la ejecución)
+     */
+    public synchronized void escribirReporte(Path ruta) throws IOException {
+        StringBuilder texto = new StringBuilder();
+        synchronized (ArnesBenchmark.class) {
+            if (!reporteIniciado) {
+                texto.append("# Reporte de benchmarks, formato ").append(VERSION_REPORTE).append('\n');
+                texto.append("# java=").append(System.getProperty("java.vm.name")).append(' ')
+                    .append(System.getProperty("java.version"))
+                    .append(" so=").append(System.getProperty("os.name")).append(' ').append(System.getProperty("os.arch"))
+                    .append(" cpus=").append(Runtime.getRuntime().availableProcessors())
+                    .append(" heap.max.mb=").append(Runtime.getRuntime().maxMemory() >> 20).append('\n');
+                texto.append("# calentamiento=").append(iteracionesCalentamiento)
+                    .append(" iteraciones=").append(iteracionesMedidas)
+                    .append(" tiempo.ms=").append(duracionIteracionNanos / 1_000_000L).append('\n');
+                texto.append("suite\tbenchmark\tns/op\terror\tbytes/op\n");
+            }
+            for (Resultado resultado : resultados.subList(escritosEnReporte, resultados.size())) {
+                texto.append(String.format(Locale.ROOT, "%s\t%s\t%.2f\t%.2f\t%.1f%n",
+                    sinTabuladores(titulo), sinTabuladores(resultado.nombre),
+                    resultado.nsPorOp, resultado.desviacion, resultado.bytesPorOp));
+            }
+            if (ruta.toAbsolutePath().getParent() != null) {
+                Files.createDirectories(ruta.toAbsolutePath().getParent());
+            }
+            if (reporteIniciado) {
+                Files.write(ruta, texto.toString().getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } else {
+                Files.write(ruta, texto.toString().getBytes(StandardCharsets.UTF_8));
+                reporteIniciado = true;
+            }
+        }
+        escritosEnReporte = resultados.size();
+    }
+
+    /**
+     * Lee un parámetro entero múltiple (p. ej. -Dbench.historial=1000,100000)
+     * @param propiedad Propiedad del sistema
+     * @param porDefecto Valores separados por coma si la propiedad no está definida
+     * @return Los valores, en el orden dado
+     */
+    public static int[] parametroEnteros(String propiedad, String porDefecto) {
+        String[] partes = System.getProperty(propiedad, porDefecto).split(",");
+        int[] valores = new int[partes.length];
+        for (int i = 0; i < partes.length; i++) {
+            valores[i] = Integer.parseInt(partes[i].trim().replace("_", ""));
+        }
+        return valores;
+    }
+
+    private static String sinTabuladores(String texto) {
+        return texto.replace('\t', ' ').replace('\n', ' ');
+    }
+
+    /**
+     * Imprime una línea en la salida del reporte
+     */
+    public static void imprimir(String linea) {
+        SALIDA.println(linea);
+    }
+
+    /**
+     * Descarta lo que el código medido escriba en System.out (mensajes de
+     * progreso de la aplicación), sin afectar al reporte
+     */
+    public static void silenciarSalidaDeAplicacion() {
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    public List<Resultado> getResultados() {
+        return resultados;
+    }
+
+    /**
+     * Lee un archivo de benchmarks/recursos como texto
+     * @param nombre Nombre del archivo
+     * @return El contenido del archivo
+     */
+    public static String leerRecurso(String nombre) throws IOException {
+        return new String(Files.readAllBytes(DIRECTORIO_RECURSOS.resolve(nombre)), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Busca un tamaño de lote que tarde al menos ~1 ms, para que el costo de
+     * leer el reloj no distorsione la medición de operaciones muy rápidas
+     */
+    private static int calibrar(Operacion operacion) throws Exception {
+        int lote = 1;
+        while (lote < (1 << 24)) {
+            long inicio = System.nanoTime();
+            sumidero += operacion.ejecutar(lote);
+            if (System.nanoTime() - inicio >= 1_000_000L) {
+                break;
+            }
+            lote <<= 1;
+        }
+        return lote;
+    }
+
+    private double correrIteracion(Operacion operacion, int lote, long[] asignado) throws Exception {
+        return correrIteracion(operacion, lote, new long[1], asignado);
+    }
+
+    private double correrIteracion(Operacion operacion, int lote, long[] ops, long[] asignado) throws Exception {
+        long bytesInicio = bytesAsignados();
+        long inicio = System.nanoTime();
+        long fin = inicio + duracionIteracionNanos;
+        long ahora;
+        long operaciones = 0;
+        do {
+            sumidero += operacion.ejecutar(lote);
+            operaciones += lote;
+            ahora = System.nanoTime();
+        } while (ahora < fin);
+
+        if (asignado != null) {
+            long bytesFin = bytesAsignados();
+            asignado[0] = bytesInicio < 0 || asignado[0] < 0 ? -1 : asignado[0] + (bytesFin - bytesInicio);
+        }
+        ops[0] = operaciones;
+        return (double) (ahora - inicio) / operaciones;
+    }
+
+    private double correrIteracionConcurrente(Operacion operacion, int hilos, int lote) throws Exception {
+        AtomicBoolean detener = new AtomicBoolean();
+        LongAdder operaciones = new LongAdder();
+        CountDownLatch listos = new CountDownLatch(hilos);
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Future<?>> tareas = new ArrayList<>();
+        ExecutorService ejecutor = Executors.newFixedThreadPool(hilos);
+        try {
+            for (int h = 0; h < hilos; h++) {
+                tareas.add(ejecutor.submit(() -> {
+                    listos.countDown();
+                    largada.await();
+                    long consumido = 0;
+                    while (!detener.get()) {
+                        consumido += operacion.ejecutar(lote);
+                        operaciones.add(lote);
+                    }
+                    sumidero += consumido;
+                    return null;
+                }));
+            }
+            listos.await();
+            long inicio = System.nanoTime();
+            largada.countDown();
+            Thread.sleep(duracionIteracionNanos / 1_000_000L);
+            detener.set(true);
+            for (Future<?> tarea : tareas) {
+                tarea.get();
+            }
+            long transcurrido = System.nanoTime() - inicio;
+            return (double) transcurrido / operaciones.sum();
+        } finally {
+            ejecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Bytes asignados por el hilo actual, o -1 si la JVM no lo soporta
+     */
+    private static long bytesAsignados() {
+        java.lang.management.ThreadMXBean mxBean = ManagementFactory.getThreadMXBean();
+        if (mxBean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) mxBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
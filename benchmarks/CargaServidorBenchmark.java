@@ -0,0 +1,167 @@
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Prueba de carga de ServidorConversion: clientes concurrentes en lazo
+ * cerrado (cada uno envía la petición siguiente en cuanto recibe la
+ * respuesta) contra el servidor embebido, que obtiene las tasas de
+ * ServidorTasasSimulado. Informa peticiones por segundo y percentiles de
+ * latencia (p50, p99, p99.9) por escenario y cantidad de clientes.
+ *
+ * Escenarios: GET /convertir con pares variados, POST /convertir/lote de
+ * 100 conversiones y GET /historial (últimas 50).
+ *
+ * Parámetros (propiedades del sistema):
+ *   bench.clientes         Clientes concurrentes, separados por coma (100,1000,2000)
+ *   bench.carga.segundos   Duración de la medición de cada escenario (5)
+ *   bench.carga.calentamiento.segundos  Carga previa sin medir (2)
+ *   bench.servidor.hilos   Pool del servidor; 0 = hilos virtuales si los hay (0)
+ *
+ * Clientes y servidor comparten la JVM y las CPU: los números sirven para
+ * comparar versiones en una misma máquina, no como capacidad absoluta.
+ *
+ * Ejecutar: mvn -Pbenchmark compile exec:exec -Dbench.clase=CargaServidorBenchmark
+ */
+public class CargaServidorBenchmark {
+    private static final String[] MONEDAS = {"USD", "ARS", "BRL", "PEN", "EUR", "JPY", "MXN"};
+    private static final int TAMAÑO_LOTE = 100;
+
+    public static void main(String[] args) throws Exception {
+        int[] clientes = ArnesBenchmark.parametroEnteros("bench.clientes", "100,1000,2000");
+        int segundos = Integer.getInteger("bench.carga.segundos", 5);
+        int calentamiento = Integer.getInteger("bench.carga.calentamiento.segundos", 2);
+        int hilos = Integer.getInteger("bench.servidor.hilos", 0);
+        ArnesBenchmark.silenciarSalidaDeAplicacion();
+        // Igual que ServidorConversion, pero antes de que ServidorTasasSimulado cree el primer HttpServer
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+
+        try (ServidorTasasSimulado tasas = new ServidorTasasSimulado()) {
+            ConsultaTasaDeCambio consulta = new ConsultaTasaDeCambio("benchmark", tasas.getUrlBase(),
+                new ConsultaTasaDeCambio.Opciones().expiracionCache(Duration.ofHours(1)));
+            String ruta = Files.createTempDirectory("bench-servidor").resolve("historial.json").toString();
+            ConversorDeMoneda conversor = new ConversorDeMoneda(consulta, new HistorialConversiones(ruta, false));
+
+            try (ServidorConversion servidor = new ServidorConversion(
+                    conversor, new InetSocketAddress("127.0.0.1", 0), hilos, 4096)) {
+                servidor.iniciar();
+                String base = servidor.getUrlBase();
+                ExecutorService ejecutorCliente = Executors.newFixedThreadPool(
+                    Math.max(2, Runtime.getRuntime().availableProcessors()));
+                HttpClient cliente = HttpClient.newBuilder()
+                    .executor(ejecutorCliente)
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .build();
+
+                HttpRequest[] conversiones = new HttpRequest[MONEDAS.length * MONEDAS.length];
+                for (int i = 0; i < conversiones.length; i++) {
+                    conversiones[i] = HttpRequest.newBuilder(URI.create(base + "/convertir?de="
+                        + MONEDAS[i % MONEDAS.length] + "&a=" + MONEDAS[i / MONEDAS.length]
+                        + "&monto=" + (1 + i * 12.5))).build();
+                }
+                HttpRequest[] lote = {HttpRequest.newBuilder(URI.create(base + "/convertir/lote"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(cuerpoLote())).build()};
+                HttpRequest[] historial = {HttpRequest.newBuilder(URI.create(base + "/historial")).build()};
+
+                ArnesBenchmark.imprimir(String.format(
+                    "%n🌐 Carga del servidor HTTP (%s, %d s por escenario, %d CPU)",
+                    servidor.usaHilosVirtuales() ? "hilos virtuales" : "pool fijo",
+                    segundos, Runtime.getRuntime().availableProcessors()));
+                ArnesBenchmark.imprimir(String.format("%-28s %8s %12s %10s %10s %10s %8s",
+                    "Escenario", "clientes", "peticiones/s", "p50", "p99", "p99.9", "errores"));
+                ArnesBenchmark.imprimir("─".repeat(92));
+                for (int cantidad : clientes) {
+                    medir(cliente, "GET /convertir", conversiones, cantidad, calentamiento, segundos);
+                    medir(cliente, "POST /convertir/lote " + TAMAÑO_LOTE, lote, cantidad, calentamiento, segundos);
+                    medir(cliente, "GET /historial", historial, cantidad, calentamiento, segundos);
+                }
+                ArnesBenchmark.imprimir("─".repeat(92));
+                ejecutorCliente.shutdownNow();
+            }
+        }
+    }
+
+    private static void medir(HttpClient cliente, String escenario, HttpRequest[] peticiones, int clientes,
+                              int calentamiento, int segundos) throws InterruptedException {
+        if (calentamiento > 0) {
+            ejecutar(cliente, peticiones, clientes, calentamiento, new HistogramaLatencia("calentamiento"));
+        }
+        HistogramaLatencia latencias = new HistogramaLatencia(escenario);
+        long inicio = System.nanoTime();
+        long errores = ejecutar(cliente, peticiones, clientes, segundos, latencias);
+        double transcurrido = (System.nanoTime() - inicio) / 1e9;
+
+        HistogramaLatencia.Instantanea resultado = latencias.instantanea();
+        ArnesBenchmark.imprimir(String.format(Locale.ROOT, "%-28s %8d %12.0f %10s %10s %10s %8d",
+            escenario, clientes, resultado.getCantidad() / transcurrido,
+            milisegundos(resultado.percentil(50)), milisegundos(resultado.percentil(99)),
+            milisegundos(resultado.percentil(99.9)), errores));
+    }
+
+    /**
+     * Lanza los clientes en lazo cerrado hasta que vence el plazo y espera las últimas respuestas
+     * @return Cantidad de errores (fallos de conexión o código distinto de 200)
+     */
+    private static long ejecutar(HttpClient cliente, HttpRequest[] peticiones, int clientes, int segundos,
+                                 HistogramaLatencia latencias) throws InterruptedException {
+        long fin = System.nanoTime() + TimeUnit.SECONDS.toNanos(segundos);
+        CountDownLatch terminados = new CountDownLatch(clientes);
+        LongAdder errores = new LongAdder();
+        AtomicInteger siguiente = new AtomicInteger();
+        for (int i = 0; i < clientes; i++) {
+            enviar(cliente, peticiones, siguiente, fin, latencias, errores, terminados);
+        }
+        if (!terminados.await(segundos + 60L, TimeUnit.SECONDS)) {
+            ArnesBenchmark.imprimir("⚠️  Quedaron " + terminados.getCount() + " clientes sin terminar");
+        }
+        return errores.sum();
+    }
+
+    private static void enviar(HttpClient cliente, HttpRequest[] peticiones, AtomicInteger siguiente, long fin,
+                               HistogramaLatencia latencias, LongAdder errores, CountDownLatch terminados) {
+        long inicio = System.nanoTime();
+        if (inicio - fin >= 0) {
+            terminados.countDown();
+            return;
+        }
+        HttpRequest peticion = peticiones[(siguiente.getAndIncrement() & Integer.MAX_VALUE) % peticiones.length];
+        cliente.sendAsync(peticion, HttpResponse.BodyHandlers.discarding()).whenComplete((respuesta, error) -> {
+            latencias.registrar(System.nanoTime() - inicio);
+            if (error != null || respuesta.statusCode() != 200) {
+                errores.increment();
+            }
+            enviar(cliente, peticiones, siguiente, fin, latencias, errores, terminados);
+        });
+    }
+
+    private static String cuerpoLote() {
+        StringBuilder cuerpo = new StringBuilder("[");
+        for (int i = 0; i < TAMAÑO_LOTE; i++) {
+            if (i > 0) {
+                cuerpo.append(',');
+            }
+            cuerpo.append("{\"de\":\"").append(MONEDAS[i % MONEDAS.length])
+                .append("\",\"a\":\"").append(MONEDAS[(i + 3) % MONEDAS.length])
+                .append("\",\"monto\":").append(1 + i * 2.5).append('}');
+        }
+        return cuerpo.append(']').toString();
+    }
+
+    private static String milisegundos(long nanos) {
+        return String.format(Locale.ROOT, "%.2f ms", nanos / 1e6);
+    }
+}
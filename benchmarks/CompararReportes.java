@@ -0,0 +1,101 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compara dos reportes de benchmarks (ver ArnesBenchmark, bench.reporte),
+ * por ejemplo el de la versión publicada contra el de la rama actual.
+ * Para cada benchmark presente en ambos muestra ns/op antes y después y la
+ * variación; es regresión si empeora más que el umbral y más que la suma de
+ * los errores de ambas mediciones.
+ *
+ * Uso: java CompararReportes base.tsv nuevo.tsv [umbral %, por defecto 10]
+ * Termina con código 1 si hay alguna regresión.
+ */
+public class CompararReportes {
+    /**
+     * Una línea del reporte
+     */
+    private static final class Fila {
+        final double nsPorOp;
+        final double error;
+        final double bytesPorOp;
+
+        Fila(double nsPorOp, double error, double bytesPorOp) {
+            this.nsPorOp = nsPorOp;
+            this.error = error;
+            this.bytesPorOp = bytesPorOp;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Uso: java CompararReportes <base.tsv> <nuevo.tsv> [umbral %]");
+            System.exit(2);
+        }
+        Map<String, Fila> base = leer(Paths.get(args[0]));
+        Map<String, Fila> nuevo = leer(Paths.get(args[1]));
+        double umbral = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+
+        System.out.printf("%-80s %14s %14s %9s %12s%n", "Benchmark", "base ns/op", "nuevo ns/op", "Δ", "Δ bytes/op");
+        System.out.println("─".repeat(133));
+        int regresiones = 0;
+        for (Map.Entry<String, Fila> entrada : nuevo.entrySet()) {
+            Fila antes = base.get(entrada.getKey());
+            Fila despues = entrada.getValue();
+            String nombre = entrada.getKey().replace('\t', ' ');
+            if (antes == null) {
+                System.out.printf("%-80s %14s %14.2f %9s%n", nombre, "-", despues.nsPorOp, "nuevo");
+                continue;
+            }
+            double variacion = 100 * (despues.nsPorOp - antes.nsPorOp) / antes.nsPorOp;
+            boolean significativa = Math.abs(despues.nsPorOp - antes.nsPorOp) > antes.error + despues.error;
+            String marca = "";
+            if (significativa && variacion > umbral) {
+                marca = "  ⚠️  regresión";
+                regresiones++;
+            } else if (significativa && variacion < -umbral) {
+                marca = "  ✅ mejora";
+            }
+            System.out.printf("%-80s %14.2f %14.2f %+8.1f%% %+12.1f%s%n", nombre, antes.nsPorOp, despues.nsPorOp,
+                variacion, despues.bytesPorOp - antes.bytesPorOp, marca);
+        }
+        for (String clave : base.keySet()) {
+            if (!nuevo.containsKey(clave)) {
+                System.out.printf("%-80s %14.2f %14s %9s%n", clave.replace('\t', ' '), base.get(clave).nsPorOp, "-", "eliminado");
+            }
+        }
+        System.out.println("─".repeat(133));
+        System.out.println(regresiones == 0
+            ? "✅ Sin regresiones (umbral " + umbral + "%)"
+            : "⚠️  " + regresiones + " regresiones (umbral " + umbral + "%)");
+        if (regresiones > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Lee un reporte: clave "suite\tbenchmark" -> fila, en el orden del archivo
+     */
+    private static Map<String, Fila> leer(Path ruta) throws IOException {
+        List<String> lineas = Files.readAllLines(ruta, StandardCharsets.UTF_8);
+        Map<String, Fila> filas = new LinkedHashMap<>();
+        for (String linea : lineas) {
+            if (linea.isBlank() || linea.startsWith("#") || linea.startsWith("suite\t")) {
+                continue;
+            }
+            String[] columnas = linea.split("\t");
+            if (columnas.length != 5) {
+                throw new IOException("Línea de reporte inválida en " + ruta + ": " + linea);
+            }
+            filas.put(columnas[0] + "\t" + columnas[1], new Fila(
+                Double.parseDouble(columnas[2]), Double.parseDouble(columnas[3]), Double.parseDouble(columnas[4])));
+        }
+        return filas;
+    }
+}
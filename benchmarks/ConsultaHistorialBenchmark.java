@@ -0,0 +1,110 @@
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Random;
+
+/**
+ * Consultas indexadas del historial: agregados y páginas de un par en un
+ * rango de fechas con {@link IndiceHistorial} frente al recorrido lineal de
+ * las columnas (lo mínimo que cuesta responder sin índice).
+ *
+ * El historial tiene bench.filas conversiones (por defecto 10.000.000) de
+ * 9 monedas repartidas en un año, en orden de fecha.
+ *
+ * Ejecutar: mvn -Pbenchmark compile exec:exec -Dbench.clase=ConsultaHistorialBenchmark
+ *           (con 10 millones de filas conviene -Xmx2g)
+ */
+public class ConsultaHistorialBenchmark {
+    private static final String[] MONEDAS = {"USD", "ARS", "BRL", "PEN", "EUR", "JPY", "MXN", "KWD", "CLP"};
+
+    public static void main(String[] args) throws Exception {
+        int filas = Integer.getInteger("bench.filas", 10_000_000);
+        LocalDateTime inicioAño = LocalDateTime.of(2024, 1, 1, 0, 0);
+        long desdeMilis = IndiceHistorial.aMilis(inicioAño);
+        long pasoMilis = 365L * 86_400_000L / filas;
+
+        // Las mismas filas en columnas, para el recorrido lineal
+        long[] milis = new long[filas];
+        int[] origen = new int[filas];
+        int[] destino = new int[filas];
+        double[] montoOrigen = new double[filas];
+        double[] montoDestino = new double[filas];
+        IndiceHistorial indice = new IndiceHistorial();
+        Random aleatorio = new Random(42);
+        long inicio = System.nanoTime();
+        for (int i = 0; i < filas; i++) {
+            int o = aleatorio.nextInt(MONEDAS.length);
+            int d = (o + 1 + aleatorio.nextInt(MONEDAS.length - 1)) % MONEDAS.length;
+            milis[i] = desdeMilis + i * pasoMilis;
+            origen[i] = RegistroMonedas.clave(MONEDAS[o]);
+            destino[i] = RegistroMonedas.clave(MONEDAS[d]);
+            montoOrigen[i] = 1 + aleatorio.nextInt(100_000) * 0.01;
+            montoDestino[i] = montoOrigen[i] * (1 + aleatorio.nextDouble());
+            indice.agregar(origen[i], destino[i], milis[i], montoOrigen[i], montoDestino[i], i);
+        }
+        ArnesBenchmark.imprimir(String.format("🗂️  %,d conversiones indexadas en %.1f s",
+            filas, (System.nanoTime() - inicio) / 1e9));
+
+        LocalDateTime semanaDesde = LocalDateTime.of(2024, 6, 3, 0, 0);
+        LocalDateTime semanaHasta = semanaDesde.plusWeeks(1);
+        long semanaDesdeMilis = IndiceHistorial.aMilis(semanaDesde);
+        long semanaHastaMilis = IndiceHistorial.aMilis(semanaHasta);
+        int usd = RegistroMonedas.clave("USD");
+        int ars = RegistroMonedas.clave("ARS");
+        ArnesBenchmark.imprimir("   USD→ARS semana del 3/6: " + indice.resumir("USD", "ARS", semanaDesde, semanaHasta));
+
+        ArnesBenchmark arnes = new ArnesBenchmark("Consultas del historial");
+        arnes.medir("recorrido lineal: resumen USD→ARS de una semana", n -> {
+            long total = 0;
+            for (int repeticion = 0; repeticion < n; repeticion++) {
+                double suma = 0;
+                for (int i = 0; i < filas; i++) {
+                    if (origen[i] == usd && destino[i] == ars && milis[i] >= semanaDesdeMilis
+                            && milis[i] < semanaHastaMilis) {
+                        suma += montoOrigen[i];
+                        total++;
+                    }
+                }
+                total += (long) suma;
+            }
+            return total;
+        });
+        arnes.medir("índice: resumen USD→ARS de una semana", n -> {
+            long total = 0;
+            for (int i = 0; i < n; i++) {
+                total += indice.resumir("USD", "ARS", semanaDesde, semanaHasta).getCantidad();
+            }
+            return total;
+        });
+        arnes.medir("índice: resumen USD→ARS del año completo", n -> {
+            long total = 0;
+            for (int i = 0; i < n; i++) {
+                total += indice.resumir("USD", "ARS", null, null).getCantidad();
+            }
+            return total;
+        });
+        arnes.medir("índice: resumen de USD a cualquier moneda, un mes", n -> {
+            long total = 0;
+            for (int i = 0; i < n; i++) {
+                total += indice.resumir("USD", null, semanaDesde, semanaDesde.plusMonths(1)).getCantidad();
+            }
+            return total;
+        });
+        arnes.medir("índice: página 10 (50 filas) USD→ARS de una semana", n -> {
+            long total = 0;
+            for (int i = 0; i < n; i++) {
+                total += indice.buscar("USD", "ARS", semanaDesde, semanaHasta, 500, 50).length;
+            }
+            return total;
+        });
+        arnes.medir("índice: página 10 (50 filas) de todos los pares, una semana", n -> {
+            long total = 0;
+            for (int i = 0; i < n; i++) {
+                total += indice.buscar(null, null, semanaDesde, semanaHasta, 500, 50).length;
+            }
+            return total;
+        });
+        arnes.imprimirResumen();
+        ArnesBenchmark.imprimir(String.format("   (%s — %s)", inicioAño.toLocalDate(),
+            LocalDateTime.ofEpochSecond((desdeMilis + filas * pasoMilis) / 1000, 0, ZoneOffset.UTC).toLocalDate()));
+    }
+}
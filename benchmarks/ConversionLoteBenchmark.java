@@ -0,0 +1,73 @@
+import java.nio.file.Files;
+import java.time.Duration;
+
+/**
+ * Compara convertir() en un bucle contra convertirLote() sobre el mismo
+ * conjunto de pares, usando el servidor de tasas simulado y sin guardado
+ * automático del historial (se mide conversión + registro en memoria).
+ *
+ * Ejecutar: mvn -Pbenchmark compile exec:exec -Dbench.clase=ConversionLoteBenchmark
+ */
+public class ConversionLoteBenchmark {
+    private static final String[] MONEDAS = {"USD", "ARS", "BRL", "PEN", "EUR", "JPY", "MXN"};
+    private static final int TAMAÑO_LOTE = 1000;
+
+    public static void main(String[] args) throws Exception {
+        try (ServidorTasasSimulado servidor = new ServidorTasasSimulado()) {
+            ConsultaTasaDeCambio consulta = new ConsultaTasaDeCambio("benchmark", servidor.getUrlBase(),
+                new ConsultaTasaDeCambio.Opciones().expiracionCache(Duration.ofHours(1)));
+            HistorialConversiones historial = new HistorialConversiones(
+                Files.createTempDirectory("bench-lote").resolve("historial.json").toString(), false) {
+                @Override
+                public void guardar() {
+                    // El benchmark no mide escritura a disco
+                }
+            };
+            ConversorDeMoneda conversor = new ConversorDeMoneda(consulta, historial);
+
+            String[] origenes = new String[TAMAÑO_LOTE];
+            String[] destinos = new String[TAMAÑO_LOTE];
+            double[] montos = new double[TAMAÑO_LOTE];
+            for (int i = 0; i < TAMAÑO_LOTE; i++) {
+                origenes[i] = MONEDAS[i % MONEDAS.length];
+                destinos[i] = MONEDAS[(i + 3) % MONEDAS.length];
+                montos[i] = 1 + (i % 500) * 1.25;
+            }
+
+            ArnesBenchmark.silenciarSalidaDeAplicacion();
+            ArnesBenchmark arnes = new ArnesBenchmark("Conversión: bucle de convertir() vs convertirLote() (" + TAMAÑO_LOTE + " por lote)");
+
+            arnes.medir("convertir x " + TAMAÑO_LOTE + " (por lote)", n -> {
+                double total = 0;
+                for (int j = 0; j < n; j++) {
+                    for (int i = 0; i < TAMAÑO_LOTE; i++) {
+                        total += conversor.convertir(origenes[i], destinos[i], montos[i]);
+                    }
+                    historial.limpiar();
+                }
+                return (long) total;
+            });
+
+            arnes.medir("convertirLote (por lote)", n -> {
+                double total = 0;
+                for (int j = 0; j < n; j++) {
+                    total += conversor.convertirLote(origenes, destinos, montos)[0];
+                    historial.limpiar();
+                }
+                return (long) total;
+            });
+
+            arnes.medir("convertirLote mismo par (por lote)", n -> {
+                double total = 0;
+                for (int j = 0; j < n; j++) {
+                    total += conversor.convertirLote("USD", "ARS", montos)[0];
+                    historial.limpiar();
+                }
+                return (long) total;
+            });
+
+            arnes.imprimirResumen();
+            ArnesBenchmark.imprimir(consulta.getCache().obtenerEstadisticas());
+        }
+    }
+}
@@ -0,0 +1,93 @@
+import java.io.BufferedWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * Conversión masiva de archivo a archivo: validación de códigos con
+ * expresión regular frente a RegistroMonedas (validar, empaquetar y obtener
+ * el código canónico), y el proceso completo de un CSV de bench.filas filas
+ * (por defecto 1.000.000) con 1 hilo y con uno por procesador.
+ *
+ * Ejecutar: mvn -Pbenchmark compile exec:exec -Dbench.clase=ConversionMasivaBenchmark
+ */
+public class ConversionMasivaBenchmark {
+    private static final String[] MONEDAS = {"USD", "ARS", "BRL", "PEN", "EUR", "JPY", "MXN", "KWD", "CLP"};
+
+    public static void main(String[] args) throws Exception {
+        int filas = Integer.getInteger("bench.filas", 1_000_000);
+        Path directorio = Files.createTempDirectory("bench-masiva");
+        Path entrada = directorio.resolve("entrada.csv");
+        Path salida = directorio.resolve("salida.csv");
+        generarEntrada(entrada, filas);
+        ArnesBenchmark.silenciarSalidaDeAplicacion();
+
+        String[] lineas = new String[1024];
+        for (int i = 0; i < lineas.length; i++) {
+            lineas[i] = linea(i);
+        }
+        ArnesBenchmark arnes = new ArnesBenchmark("Conversión masiva");
+        arnes.medir("validar código con matches(\"[A-Z]{3}\")", n -> {
+            long validos = 0;
+            for (int i = 0; i < n; i++) {
+                String linea = lineas[i & 1023];
+                if (linea.substring(0, 3).trim().toUpperCase().matches("[A-Z]{3}")) {
+                    validos++;
+                }
+            }
+            return validos;
+        });
+        arnes.medir("validar e internar con RegistroMonedas", n -> {
+            long validos = 0;
+            for (int i = 0; i < n; i++) {
+                int clave = RegistroMonedas.claveFlexible(lineas[i & 1023], 0, 3);
+                if (clave >= 0) {
+                    validos += RegistroMonedas.codigo(clave).length();
+                }
+            }
+            return validos;
+        });
+
+        try (ServidorTasasSimulado servidor = new ServidorTasasSimulado()) {
+            ConsultaTasaDeCambio consulta = new ConsultaTasaDeCambio("benchmark", servidor.getUrlBase(),
+                new ConsultaTasaDeCambio.Opciones().expiracionCache(Duration.ofHours(1)));
+            ConversorDeMoneda conversor = new ConversorDeMoneda(
+                consulta, new HistorialConversiones(directorio.resolve("historial.json").toString(), false));
+            int procesadores = Runtime.getRuntime().availableProcessors();
+            for (int hilos : procesadores > 1 ? new int[] {1, procesadores} : new int[] {1}) {
+                ConversionMasiva masiva = new ConversionMasiva(conversor, hilos);
+                arnes.medir(String.format("procesar %,d filas [%d hilos]", filas, hilos), n -> {
+                    long total = 0;
+                    for (int i = 0; i < n; i++) {
+                        ConversionMasiva.Resultado resultado = masiva.procesar(entrada, salida);
+                        ArnesBenchmark.imprimir(String.format(Locale.ROOT, "   %,.0f filas/s [%d hilos]",
+                            resultado.getFilasPorSegundo(), hilos));
+                        total += resultado.getFilas();
+                    }
+                    return total;
+                });
+            }
+        }
+        arnes.imprimirResumen();
+
+        Files.deleteIfExists(entrada);
+        Files.deleteIfExists(salida);
+    }
+
+    private static void generarEntrada(Path entrada, int filas) throws Exception {
+        try (BufferedWriter escritor = Files.newBufferedWriter(entrada, StandardCharsets.UTF_8)) {
+            escritor.write("origen,destino,monto\n");
+            for (int i = 0; i < filas; i++) {
+                escritor.write(linea(i));
+                escritor.write('\n');
+            }
+        }
+    }
+
+    private static String linea(int i) {
+        return MONEDAS[i % MONEDAS.length] + "," + MONEDAS[(i / MONEDAS.length + 1) % MONEDAS.length]
+            + "," + (1 + (i % 100_000) * 0.01);
+    }
+}
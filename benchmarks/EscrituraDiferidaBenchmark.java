@@ -0,0 +1,59 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Costo de agregarConversion con guardado automático para el hilo que
+ * convierte: escribiendo el diario en ese hilo (fsync en cada conversión o
+ * periódico) frente a la escritura diferida ({@link EscritorDiferido}) con
+ * fsync por lote o sin fsync, con 1 y 4 hilos.
+ *
+ * Se deshabilitan índice y agregados y se evita la compactación para medir
+ * solo la escritura del diario.
+ *
+ * Ejecutar: mvn -Pbenchmark compile exec:exec -Dbench.clase=EscrituraDiferidaBenchmark
+ */
+public class EscrituraDiferidaBenchmark {
+    private static final int[] HILOS = {1, 4};
+
+    public static void main(String[] args) throws Exception {
+        ArnesBenchmark.silenciarSalidaDeAplicacion();
+        Path directorio = Files.createTempDirectory("bench-escritura");
+        ArnesBenchmark arnes = new ArnesBenchmark("Escritura del historial");
+
+        medir(arnes, directorio, "sincrónica, fsync por conversión",
+            DiarioHistorial.PoliticaSincronizacion.SIEMPRE, null);
+        medir(arnes, directorio, "sincrónica, fsync periódico (1 s)",
+            DiarioHistorial.PoliticaSincronizacion.PERIODICA, null);
+        medir(arnes, directorio, "diferida, fsync por lote",
+            DiarioHistorial.PoliticaSincronizacion.NUNCA,
+            new EscritorDiferido.Opciones(10_000, 256, 20, EscritorDiferido.Durabilidad.LOTE));
+        medir(arnes, directorio, "diferida, sin fsync",
+            DiarioHistorial.PoliticaSincronizacion.NUNCA,
+            new EscritorDiferido.Opciones(10_000, 256, 20, EscritorDiferido.Durabilidad.NINGUNA));
+        arnes.imprimirResumen();
+
+        try (Stream<Path> archivos = Files.walk(directorio)) {
+            archivos.sorted(Comparator.reverseOrder()).forEach(archivo -> archivo.toFile().delete());
+        }
+    }
+
+    private static void medir(ArnesBenchmark arnes, Path directorio, String nombre,
+                              DiarioHistorial.PoliticaSincronizacion politica,
+                              EscritorDiferido.Opciones diferida) throws Exception {
+        for (int hilos : HILOS) {
+            String ruta = directorio.resolve(nombre.replaceAll("[^a-z]", "") + hilos + ".json").toString();
+            DiarioHistorial diario = new DiarioHistorial(ruta, politica, 1000, Integer.MAX_VALUE);
+            HistorialConversiones historial = new HistorialConversiones(diario, new HistorialConversiones.Opciones()
+                .autoGuardar(true).columnar(true).indexado(false).conAgregados(false).escrituraDiferida(diferida));
+            arnes.medirConcurrente("agregarConversion " + nombre, hilos, n -> {
+                for (int i = 0; i < n; i++) {
+                    historial.agregarConversion("USD", "ARS", 100 + (i & 1023), 97025);
+                }
+                return n;
+            });
+            historial.cerrar();
+        }
+    }
+}
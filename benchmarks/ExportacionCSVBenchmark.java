@@ -0,0 +1,130 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Costo por fila de exportar el historial a CSV: la implementación anterior
+ * (PrintWriter.printf sobre FileWriter) contra ExportadorCSV, sin comprimir,
+ * con gzip y con un filtro por par. Las filas salen de un conjunto fijo de
+ * conversiones ya creadas, así que se mide solo el formateo y la escritura.
+ *
+ * Las mediciones por fila descartan la salida (solo formateo y compresión);
+ * al final se exportan bench.registros filas (10M por defecto) a un archivo
+ * con cada implementación para reportar el tiempo total.
+ *
+ * Ejecutar: mvn -Pbenchmark compile exec:exec -Dbench.clase=ExportacionCSVBenchmark
+ */
+public class ExportacionCSVBenchmark {
+    private static final String[] MONEDAS = {"USD", "EUR", "ARS", "BRL", "MXN", "JPY", "GBP", "CLP"};
+    private static final int DISTINTAS = 100_000;
+
+    public static void main(String[] args) throws Exception {
+        ArnesBenchmark.silenciarSalidaDeAplicacion();
+        List<Conversion> base = new ArrayList<>(DISTINTAS);
+        LocalDateTime inicio = LocalDateTime.of(2024, 1, 1, 0, 0);
+        for (int i = 0; i < DISTINTAS; i++) {
+            base.add(new Conversion(MONEDAS[i % MONEDAS.length], MONEDAS[(i / MONEDAS.length) % MONEDAS.length],
+                1 + (i % 5000) * 1.37, 0.93 + (i % 5000) * 1.2741, inicio.plusNanos(i * 1_234_567_891L)));
+        }
+
+        ArnesBenchmark arnes = new ArnesBenchmark("Exportación CSV (ns por fila, salida descartada)");
+        arnes.medir("PrintWriter.printf (anterior)", n -> {
+            exportarConPrintf(filas(base, n), new OutputStreamWriter(OutputStream.nullOutputStream()));
+            return n;
+        });
+        arnes.medir("ExportadorCSV", n -> new ExportadorCSV().exportar(filas(base, n), OutputStream.nullOutputStream()));
+        arnes.medir("ExportadorCSV gzip", n -> {
+            try (GZIPOutputStream zip = new GZIPOutputStream(OutputStream.nullOutputStream(), 1 << 16) {
+                {
+                    def.setLevel(Deflater.BEST_SPEED);
+                }
+            }) {
+                return new ExportadorCSV().exportar(filas(base, n), zip);
+            }
+        });
+        arnes.medir("ExportadorCSV filtro USD->EUR", n -> {
+            new ExportadorCSV().filtrarPorPar("USD", "EUR").exportar(filas(base, n), OutputStream.nullOutputStream());
+            return n;
+        });
+        arnes.imprimirResumen();
+
+        int registros = Integer.getInteger("bench.registros", 10_000_000);
+        Path directorio = Files.createTempDirectory("exportacion-bench");
+        Path csv = directorio.resolve("historial.csv");
+        Path gz = directorio.resolve("historial.csv.gz");
+        archivoCompleto("PrintWriter.printf (anterior)", csv, () -> {
+            try (Writer writer = new FileWriter(csv.toFile())) {
+                exportarConPrintf(filas(base, registros), writer);
+            }
+        });
+        archivoCompleto("ExportadorCSV", csv, () -> new ExportadorCSV().exportar(filas(base, registros), csv.toString()));
+        archivoCompleto("ExportadorCSV gzip", gz, () -> new ExportadorCSV().exportar(filas(base, registros), gz.toString()));
+
+        Files.deleteIfExists(csv);
+        Files.deleteIfExists(gz);
+        Files.deleteIfExists(directorio);
+    }
+
+    private interface Exportacion {
+        void ejecutar() throws IOException;
+    }
+
+    private static void archivoCompleto(String nombre, Path ruta, Exportacion exportacion) throws IOException {
+        Files.deleteIfExists(ruta);
+        long comienzo = System.nanoTime();
+        exportacion.ejecutar();
+        ArnesBenchmark.imprimir(String.format("%-32s %,d filas a archivo en %6.2f s (%,d bytes)",
+            nombre, Integer.getInteger("bench.registros", 10_000_000), (System.nanoTime() - comienzo) / 1e9, Files.size(ruta)));
+    }
+
+    /**
+     * Recorre n filas ciclando sobre las conversiones base
+     */
+    private static Iterable<Conversion> filas(List<Conversion> base, long n) {
+        return () -> new Iterator<Conversion>() {
+            private long i;
+
+            @Override
+            public boolean hasNext() {
+                return i < n;
+            }
+
+            @Override
+            public Conversion next() {
+                return base.get((int) (i++ % base.size()));
+            }
+        };
+    }
+
+    /**
+     * Copia de la exportación anterior de GestorArchivos, como referencia
+     */
+    private static void exportarConPrintf(Iterable<Conversion> conversiones, Writer destino) {
+        try (PrintWriter writer = new PrintWriter(destino)) {
+            writer.println("ID,Fecha,Hora,Moneda Origen,Monto Origen,Moneda Destino,Monto Destino,Tasa de Cambio");
+            for (Conversion c : conversiones) {
+                writer.printf("%s,%s,%s,%s,%.2f,%s,%.2f,%.6f%n",
+                    c.getId(),
+                    c.getTimestamp().toLocalDate(),
+                    c.getTimestamp().toLocalTime(),
+                    c.getMonedaOrigen(),
+                    c.getMontoOrigen(),
+                    c.getMonedaDestino(),
+                    c.getMontoDestino(),
+                    c.getTasaCambio()
+                );
+            }
+        }
+    }
+}
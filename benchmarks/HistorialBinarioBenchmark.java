@@ -0,0 +1,95 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * Tiempo de carga del historial en JSON (streaming) contra el formato
+ * binario mapeado en memoria, para 1M y 10M registros. Para el binario se
+ * mide solo el mapeo, la carga completa (reconstruir todas las Conversion)
+ * y una búsqueda por rango de una hora sobre el buffer mapeado.
+ * Cada medición es el mínimo de varias repeticiones (la primera con caché
+ * de disco fría solo si el sistema no tiene el archivo en memoria).
+ *
+ * Ejecutar: mvn -Pbenchmark compile exec:exec -Dbench.clase=HistorialBinarioBenchmark -Dbench.registros=1000000,10000000
+ * (la carga JSON de 10M necesita un heap de varios GB; con -Dbench.soloBinario=true se omite)
+ */
+public class HistorialBinarioBenchmark {
+    private static final String[] MONEDAS = {"USD", "EUR", "ARS", "BRL", "MXN", "JPY", "GBP", "CLP"};
+    private static final int REPETICIONES = Integer.getInteger("bench.repeticiones", 3);
+
+    public static void main(String[] args) throws Exception {
+        ArnesBenchmark.silenciarSalidaDeAplicacion();
+        boolean soloBinario = Boolean.getBoolean("bench.soloBinario");
+        Path directorio = Files.createTempDirectory("historial-bench");
+
+        for (String valor : System.getProperty("bench.registros", "1000000").split(",")) {
+            int registros = Integer.parseInt(valor.trim());
+            List<Conversion> generadas = generar(registros);
+            String json = directorio.resolve("historial-" + registros + ".json").toString();
+            String binario = directorio.resolve("historial-" + registros + ".bin").toString();
+
+            ArnesBenchmark.imprimir(String.format("⏱️  Historial de %,d conversiones", registros));
+            if (!soloBinario) {
+                GestorArchivos.escribirHistorialJSON(generadas, json);
+            }
+            HistorialBinario.escribir(Path.of(binario), generadas);
+            if (!soloBinario) {
+                ArnesBenchmark.imprimir(String.format("  tamaño JSON %,d bytes, binario %,d bytes",
+                    Files.size(Path.of(json)), Files.size(Path.of(binario))));
+                medir("JSON carga completa (streaming)", () -> GestorArchivos.cargarHistorialJSON(json, 0).getTotal());
+            }
+            medir("Binario mapeo (abrir)", () -> HistorialBinario.abrir(Path.of(binario)).tamaño());
+            medir("Binario carga completa", () -> GestorArchivos.cargarHistorialBinario(binario, 0).getTotal());
+            LocalDateTime medio = generadas.get(registros / 2).getTimestamp();
+            medir("Binario rango de 1 hora", () -> {
+                HistorialBinario historial = HistorialBinario.abrir(Path.of(binario));
+                double suma = 0;
+                for (Conversion c : historial.rango(medio, medio.plusHours(1))) {
+                    suma += c.getMontoDestino();
+                }
+                return (long) suma;
+            });
+
+            Files.deleteIfExists(Path.of(json));
+            Files.deleteIfExists(Path.of(binario));
+        }
+        Files.deleteIfExists(directorio);
+    }
+
+    private interface Carga {
+        long ejecutar() throws Exception;
+    }
+
+    private static void medir(String nombre, Carga carga) throws Exception {
+        long mejor = Long.MAX_VALUE;
+        long resultado = 0;
+        for (int i = 0; i < REPETICIONES; i++) {
+            System.gc();
+            long inicio = System.nanoTime();
+            resultado = carga.ejecutar();
+            mejor = Math.min(mejor, System.nanoTime() - inicio);
+        }
+        ArnesBenchmark.imprimir(String.format("  %-34s %12.2f ms   (resultado %d)", nombre, mejor / 1e6, resultado));
+    }
+
+    /**
+     * Historial sintético generado al recorrerlo (no ocupa memoria): una conversión por segundo
+     */
+    private static List<Conversion> generar(int registros) {
+        LocalDateTime inicio = LocalDateTime.of(2024, 1, 1, 0, 0);
+        return new AbstractList<Conversion>() {
+            @Override
+            public Conversion get(int i) {
+                return new Conversion(MONEDAS[i % MONEDAS.length], MONEDAS[(i / MONEDAS.length) % MONEDAS.length],
+                    100 + i % 1000, 97.5 + i % 1000, inicio.plusSeconds(i));
+            }
+
+            @Override
+            public int size() {
+                return registros;
+            }
+        };
+    }
+}
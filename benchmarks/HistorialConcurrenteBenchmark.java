@@ -0,0 +1,53 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Throughput de anexado al historial con 1, 4 y 16 hilos: una lista
+ * sincronizada (lo mínimo para que el ArrayList anterior fuera correcto)
+ * contra AlmacenConversiones sin bloqueos. Se reutiliza una misma conversión
+ * para medir solo el costo del anexado, y cada almacén se reemplaza al
+ * llegar a LIMITE elementos para acotar la memoria.
+ *
+ * Ejecutar: mvn -Pbenchmark compile exec:exec -Dbench.clase=HistorialConcurrenteBenchmark
+ */
+public class HistorialConcurrenteBenchmark {
+    private static final int LIMITE = 4_000_000;
+    private static final int[] HILOS = {1, 4, 16};
+
+    public static void main(String[] args) throws Exception {
+        Conversion conversion = new Conversion("USD", "ARS", 100, 97025);
+        ArnesBenchmark arnes = new ArnesBenchmark("Anexado concurrente al historial");
+
+        AtomicReference<List<Conversion>> listas = new AtomicReference<>(Collections.synchronizedList(new ArrayList<>()));
+        for (int hilos : HILOS) {
+            arnes.medirConcurrente("synchronizedList(ArrayList).add", hilos, n -> {
+                List<Conversion> lista = listas.get();
+                for (int i = 0; i < n; i++) {
+                    lista.add(conversion);
+                }
+                if (lista.size() > LIMITE) {
+                    listas.compareAndSet(lista, Collections.synchronizedList(new ArrayList<>()));
+                }
+                return n;
+            });
+        }
+
+        AtomicReference<AlmacenConversiones> almacenes = new AtomicReference<>(new AlmacenConversiones());
+        for (int hilos : HILOS) {
+            arnes.medirConcurrente("AlmacenConversiones.agregar", hilos, n -> {
+                AlmacenConversiones almacen = almacenes.get();
+                for (int i = 0; i < n; i++) {
+                    almacen.agregar(conversion);
+                }
+                if (almacen.tamaño() > LIMITE) {
+                    almacenes.compareAndSet(almacen, new AlmacenConversiones());
+                }
+                return n;
+            });
+        }
+
+        arnes.imprimirResumen();
+    }
+}
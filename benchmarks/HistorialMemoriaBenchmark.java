@@ -0,0 +1,83 @@
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Memoria retenida por conversión en AlmacenConversiones (un objeto
+ * Conversion por registro) contra AlmacenColumnar, más el costo de recorrer
+ * el historial en cada uno. La memoria se mide como diferencia de heap usado
+ * tras forzar recolecciones, así que es aproximada.
+ *
+ * Ejecutar: mvn -Pbenchmark compile exec:exec -Dbench.clase=HistorialMemoriaBenchmark -Dbench.registros=10000000
+ * (con 10M registros el almacén de objetos necesita un heap de varios GB: -Xmx)
+ */
+public class HistorialMemoriaBenchmark {
+    private static final String[] MONEDAS = {"USD", "EUR", "ARS", "BRL", "MXN", "JPY", "GBP", "CLP"};
+
+    public static void main(String[] args) throws Exception {
+        int registros = Integer.getInteger("bench.registros", 1_000_000);
+        ArnesBenchmark arnes = new ArnesBenchmark("Historial en memoria (" + registros + " conversiones)");
+
+        AlmacenConversiones objetos = new AlmacenConversiones();
+        medirMemoria("AlmacenConversiones", registros, objetos);
+        medirRecorrido(arnes, "AlmacenConversiones", objetos);
+        objetos = null;
+
+        AlmacenColumnar columnar = new AlmacenColumnar();
+        medirMemoria("AlmacenColumnar", registros, columnar);
+        medirRecorrido(arnes, "AlmacenColumnar", columnar);
+        arnes.medir("AlmacenColumnar por columna (suma montos)", n -> {
+            double suma = 0;
+            for (int i = 0; i < n; i++) {
+                suma += columnar.getMontoDestino(i % registros);
+            }
+            return (long) suma;
+        });
+
+        arnes.imprimirResumen();
+    }
+
+    /**
+     * Llena el almacén y reporta los bytes retenidos por conversión
+     */
+    private static void medirMemoria(String nombre, int registros, AlmacenHistorial almacen) {
+        long antes = heapUsado();
+        LocalDateTime inicio = LocalDateTime.now();
+        List<Conversion> lote = new ArrayList<>(10_000);
+        for (int i = 0; i < registros; i++) {
+            String origen = MONEDAS[i % MONEDAS.length];
+            String destino = MONEDAS[(i / MONEDAS.length) % MONEDAS.length];
+            lote.add(new Conversion(origen, destino, 100 + i % 1000, 97.5 + i % 1000, inicio.plusNanos(i * 1_000_000L)));
+            if (lote.size() == 10_000) {
+                almacen.agregarTodas(lote);
+                lote.clear();
+            }
+        }
+        almacen.agregarTodas(lote);
+        lote = null;
+
+        long retenidos = heapUsado() - antes;
+        ArnesBenchmark.imprimir(String.format("%-24s %,14d bytes retenidos  %8.1f bytes/conversión",
+            nombre, retenidos, (double) retenidos / registros));
+    }
+
+    private static void medirRecorrido(ArnesBenchmark arnes, String nombre, AlmacenHistorial almacen) throws Exception {
+        List<Conversion> instantanea = almacen.instantanea();
+        int tamaño = instantanea.size();
+        arnes.medir(nombre + " instantanea().get", n -> {
+            double suma = 0;
+            for (int i = 0; i < n; i++) {
+                suma += instantanea.get(i % tamaño).getMontoDestino();
+            }
+            return (long) suma;
+        });
+    }
+
+    private static long heapUsado() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,57 @@
+import java.nio.file.Files;
+import java.time.Duration;
+
+/**
+ * Costo de la instrumentación: registrar en un histograma (uno y varios
+ * hilos), y convertir() con las métricas deshabilitadas y habilitadas.
+ *
+ * Ejecutar: mvn -Pbenchmark compile exec:exec -Dbench.clase=MetricasBenchmark
+ */
+public class MetricasBenchmark {
+    private static final int MASCARA_LIMPIEZA = (1 << 16) - 1;
+
+    public static void main(String[] args) throws Exception {
+        ArnesBenchmark.silenciarSalidaDeAplicacion();
+        HistogramaLatencia histograma = new HistogramaLatencia("benchmark.latencia");
+
+        ArnesBenchmark arnes = new ArnesBenchmark("Métricas");
+        arnes.medir("HistogramaLatencia.registrar", n -> {
+            for (int i = 0; i < n; i++) {
+                histograma.registrar(100 + (i & 0xFFFF));
+            }
+            return n;
+        });
+        arnes.medirConcurrente("HistogramaLatencia.registrar", 4, n -> {
+            for (int i = 0; i < n; i++) {
+                histograma.registrar(100 + (i & 0xFFFF));
+            }
+            return n;
+        });
+
+        try (ServidorTasasSimulado servidor = new ServidorTasasSimulado()) {
+            ConsultaTasaDeCambio consulta = new ConsultaTasaDeCambio("benchmark", servidor.getUrlBase(),
+                new ConsultaTasaDeCambio.Opciones().expiracionCache(Duration.ofHours(1)));
+            consulta.registrarMedidores();
+            String ruta = Files.createTempDirectory("bench-metricas").resolve("historial.json").toString();
+            ConversorDeMoneda[] conversor = {new ConversorDeMoneda(consulta, new HistorialConversiones(ruta, false))};
+            long[] registradas = {0};
+            ArnesBenchmark.Operacion convertir = n -> {
+                double total = 0;
+                for (int i = 0; i < n; i++) {
+                    total += conversor[0].convertir("USD", "ARS", 1 + (i & 1023) * 0.25);
+                    if ((++registradas[0] & MASCARA_LIMPIEZA) == 0) {
+                        conversor[0] = new ConversorDeMoneda(consulta, new HistorialConversiones(ruta, false));
+                    }
+                }
+                return (long) total;
+            };
+
+            arnes.medir("convertir con métricas deshabilitadas", convertir);
+            Metricas.habilitar(false, Duration.ZERO, null);
+            arnes.medir("convertir con métricas habilitadas", convertir);
+            Metricas.deshabilitar();
+        }
+        arnes.imprimirResumen();
+        ArnesBenchmark.imprimir("\n" + Metricas.volcarTexto());
+    }
+}
@@ -0,0 +1,94 @@
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Random;
+
+/**
+ * Conversión de montos con double, con BigDecimal y con el motor de punto
+ * fijo (MotorDinero), más una verificación de exactitud: sobre un millón de
+ * montos por modo de redondeo, el motor debe dar el mismo resultado en
+ * unidades mínimas que el cálculo con BigDecimal.
+ *
+ * Ejecutar: mvn -Pbenchmark compile exec:exec -Dbench.clase=MotorDineroBenchmark
+ */
+public class MotorDineroBenchmark {
+    private static final int MONTOS = 1 << 12;
+    private static final int MUESTRAS_EXACTITUD = 1_000_000;
+
+    public static void main(String[] args) throws Exception {
+        TablaTasas tabla = TablaTasas.desdeJson(ArnesBenchmark.leerRecurso("latest_USD.json"));
+        int usd = tabla.indice("USD");
+        int ars = tabla.indice("ARS");
+        double factor = tabla.factor(usd, ars);
+        BigDecimal tasaOrigen = BigDecimal.valueOf(tabla.tasa(usd));
+        BigDecimal tasaDestino = BigDecimal.valueOf(tabla.tasa(ars));
+        MotorDinero motor = new MotorDinero(RoundingMode.HALF_UP);
+
+        double[] montos = new double[MONTOS];
+        Random aleatorio = new Random(42);
+        for (int i = 0; i < MONTOS; i++) {
+            montos[i] = (1 + aleatorio.nextInt(10_000_000)) / 100.0;
+        }
+
+        ArnesBenchmark arnes = new ArnesBenchmark("Conversión USD->ARS al centavo");
+        arnes.medir("double (sin redondeo)", n -> {
+            double suma = 0;
+            for (int i = 0; i < n; i++) {
+                suma += montos[i & (MONTOS - 1)] * factor;
+            }
+            return (long) suma;
+        });
+        arnes.medir("BigDecimal (valueOf, divide DECIMAL64, setScale 2)", n -> {
+            long suma = 0;
+            for (int i = 0; i < n; i++) {
+                BigDecimal resultado = BigDecimal.valueOf(montos[i & (MONTOS - 1)])
+                    .divide(tasaOrigen, MathContext.DECIMAL64)
+                    .multiply(tasaDestino)
+                    .setScale(2, RoundingMode.HALF_UP);
+                suma += resultado.unscaledValue().longValue();
+            }
+            return suma;
+        });
+        arnes.medir("MotorDinero (long en unidades mínimas)", n -> {
+            long suma = 0;
+            for (int i = 0; i < n; i++) {
+                long centavos = motor.aMinimas(montos[i & (MONTOS - 1)], 2);
+                suma += motor.convertir(centavos, 2, 2, factor);
+            }
+            return suma;
+        });
+        arnes.medir("MotorDinero con decimales por moneda y double", n -> {
+            double suma = 0;
+            for (int i = 0; i < n; i++) {
+                int decimalesOrigen = MotorDinero.decimales("USD");
+                int decimalesDestino = MotorDinero.decimales("ARS");
+                long minimas = motor.aMinimas(montos[i & (MONTOS - 1)], decimalesOrigen);
+                suma += MotorDinero.aDouble(motor.convertir(minimas, decimalesOrigen, decimalesDestino, factor),
+                    decimalesDestino);
+            }
+            return (long) suma;
+        });
+        arnes.imprimirResumen();
+
+        ArnesBenchmark.imprimir("\nExactitud frente a BigDecimal (" + MUESTRAS_EXACTITUD + " montos por modo, decimales 0-3):");
+        for (RoundingMode modo : RoundingMode.values()) {
+            if (modo == RoundingMode.UNNECESSARY) {
+                continue;
+            }
+            MotorDinero motorModo = new MotorDinero(modo);
+            long distintos = 0;
+            for (int i = 0; i < MUESTRAS_EXACTITUD; i++) {
+                int decimalesOrigen = aleatorio.nextInt(4);
+                int decimalesDestino = aleatorio.nextInt(4);
+                long minimas = 1 + aleatorio.nextInt(1_000_000_000);
+                double factorPrueba = tabla.factor(aleatorio.nextInt(tabla.tamaño()), aleatorio.nextInt(tabla.tamaño()));
+                long esperado = new BigDecimal(minimas).multiply(new BigDecimal(factorPrueba))
+                    .movePointRight(decimalesDestino - decimalesOrigen).setScale(0, modo).longValueExact();
+                if (motorModo.convertir(minimas, decimalesOrigen, decimalesDestino, factorPrueba) != esperado) {
+                    distintos++;
+                }
+            }
+            ArnesBenchmark.imprimir(String.format("  %-10s distintos: %d", modo, distintos));
+        }
+    }
+}
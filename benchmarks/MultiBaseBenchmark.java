@@ -0,0 +1,97 @@
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Tablas de varias bases: cuántas descargas generan muchas lecturas
+ * simultáneas de una base que no está en caché (deben compartir una sola),
+ * cuántas peticiones llegan a la vez a la API al pedir muchas bases con el
+ * límite de api.max.concurrent.requests, y el costo de convertir EUR→JPY con
+ * la tabla de EUR frente a triangular por USD.
+ *
+ * La API simulada demora bench.demora.ms (por defecto 20) cada respuesta.
+ *
+ * Ejecutar: mvn -Pbenchmark compile exec:exec -Dbench.clase=MultiBaseBenchmark
+ */
+public class MultiBaseBenchmark {
+    private static final String[] BASES = {"EUR", "GBP", "JPY", "BRL", "ARS", "MXN", "CLP", "PEN", "COP", "UYU",
+        "CAD", "AUD", "CHF", "CNY", "INR", "KRW", "SEK", "NOK", "DKK", "PLN", "CZK", "HUF", "TRY", "ZAR"};
+
+    public static void main(String[] args) throws Exception {
+        long demoraMs = Long.getLong("bench.demora.ms", 20);
+        int lectores = Integer.getInteger("bench.lectores", 1000);
+        ArnesBenchmark.silenciarSalidaDeAplicacion();
+
+        try (ServidorTasasSimulado servidor = new ServidorTasasSimulado(demoraMs)) {
+            ConsultaTasaDeCambio consulta = new ConsultaTasaDeCambio("benchmark", servidor.getUrlBase(),
+                new ConsultaTasaDeCambio.Opciones().expiracionCache(Duration.ofHours(1)).monedasFrecuentes()
+                    .maxBases(BASES.length).basesDirectas("EUR"));
+
+            // Lecturas simultáneas de una base fría: una sola descarga
+            List<CompletableFuture<TablaTasas>> futuros = new ArrayList<>();
+            for (int i = 0; i < lectores; i++) {
+                futuros.add(consulta.obtenerTablaTasasAsync("EUR"));
+            }
+            CompletableFuture.allOf(futuros.toArray(new CompletableFuture<?>[0])).join();
+            ArnesBenchmark.imprimir(String.format(Locale.ROOT,
+                "🔀 %,d lecturas simultáneas de EUR sin caché: %d descarga(s)", lectores, servidor.getPeticiones()));
+
+            // Muchas bases a la vez: como máximo 4 peticiones en vuelo
+            long peticionesAntes = servidor.getPeticiones();
+            long inicio = System.nanoTime();
+            futuros.clear();
+            for (String base : BASES) {
+                futuros.add(consulta.obtenerTablaTasasAsync(base));
+            }
+            CompletableFuture.allOf(futuros.toArray(new CompletableFuture<?>[0])).join();
+            ArnesBenchmark.imprimir(String.format(Locale.ROOT,
+                "🚦 %d bases pedidas a la vez: %d descargas en %.0f ms, máximo %d en vuelo (límite 4, demora %d ms)",
+                BASES.length, servidor.getPeticiones() - peticionesAntes, (System.nanoTime() - inicio) / 1e6,
+                servidor.getMaximoEnCurso(), demoraMs));
+
+            ConversorDeMoneda directo = new ConversorDeMoneda(consulta,
+                new HistorialConversiones(System.getProperty("java.io.tmpdir") + "/bench-multibase.json", false));
+            ConsultaTasaDeCambio soloUsd = new ConsultaTasaDeCambio("benchmark", servidor.getUrlBase(),
+                new ConsultaTasaDeCambio.Opciones().expiracionCache(Duration.ofHours(1)));
+            ConversorDeMoneda triangulado = new ConversorDeMoneda(soloUsd,
+                new HistorialConversiones(System.getProperty("java.io.tmpdir") + "/bench-multibase-usd.json", false));
+            double eurJpyDirecta = consulta.obtenerTablaTasas("EUR").factor(
+                consulta.obtenerTablaTasas("EUR").indice("EUR"), consulta.obtenerTablaTasas("EUR").indice("JPY"));
+            ArnesBenchmark.imprimir(String.format(Locale.ROOT, "   1000 EUR → JPY: %.0f directa, %.0f triangulada por USD (factor %.6f)",
+                directo.convertir("EUR", "JPY", 1000), triangulado.convertir("EUR", "JPY", 1000), eurJpyDirecta));
+
+            ArnesBenchmark arnes = new ArnesBenchmark("Tablas de varias bases");
+            arnes.medir("obtenerTablaTasas() (USD, en caché)", n -> {
+                long suma = 0;
+                for (int i = 0; i < n; i++) {
+                    suma += consulta.obtenerTablaTasas().tamaño();
+                }
+                return suma;
+            });
+            arnes.medir("obtenerTablaTasas(base) (24 bases en caché)", n -> {
+                long suma = 0;
+                for (int i = 0; i < n; i++) {
+                    suma += consulta.obtenerTablaTasas(BASES[i % BASES.length]).tamaño();
+                }
+                return suma;
+            });
+            arnes.medir("convertir EUR→JPY con la tabla de EUR", n -> {
+                double suma = 0;
+                for (int i = 0; i < n; i++) {
+                    suma += directo.convertir("EUR", "JPY", 100 + (i & 1023));
+                }
+                return (long) suma;
+            });
+            arnes.medir("convertir EUR→JPY triangulando por USD", n -> {
+                double suma = 0;
+                for (int i = 0; i < n; i++) {
+                    suma += triangulado.convertir("EUR", "JPY", 100 + (i & 1023));
+                }
+                return (long) suma;
+            });
+            arnes.imprimirResumen();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Compara el camino anterior de ConversorDeMoneda (parsear el JSON a un árbol
+ * de Gson en cada conversión) con TablaTasas (parseo streaming una vez por
+ * descarga y conversión por índices).
+ *
+ * Ejecutar: mvn -Pbenchmark compile exec:exec -Dbench.clase=ParseoTasasBenchmark
+ */
+public class ParseoTasasBenchmark {
+    private static final String[] MONEDAS = {"USD", "ARS", "BRL", "PEN", "EUR", "JPY", "MXN"};
+
+    public static void main(String[] args) throws Exception {
+        String json = ArnesBenchmark.leerRecurso("latest_USD.json");
+        JsonObject arbol = JsonParser.parseString(json).getAsJsonObject().getAsJsonObject("conversion_rates");
+        TablaTasas tabla = TablaTasas.desdeJson(json);
+
+        ArnesBenchmark arnes = new ArnesBenchmark("Parseo de tasas: árbol Gson vs TablaTasas");
+
+        arnes.medir("arbol.conversion (parseString + has/get por llamada)", n -> {
+            double total = 0;
+            for (int i = 0; i < n; i++) {
+                String origen = MONEDAS[i % MONEDAS.length];
+                String destino = MONEDAS[(i + 1) % MONEDAS.length];
+                JsonObject tasas = JsonParser.parseString(json).getAsJsonObject().getAsJsonObject("conversion_rates");
+                if (tasas.has(origen) && tasas.has(destino)) {
+                    total += (100.0 / tasas.get(origen).getAsDouble()) * tasas.get(destino).getAsDouble();
+                }
+            }
+            return (long) total;
+        });
+
+        arnes.medir("arbol.busqueda (árbol ya parseado, has/get)", n -> {
+            double total = 0;
+            for (int i = 0; i < n; i++) {
+                String origen = MONEDAS[i % MONEDAS.length];
+                String destino = MONEDAS[(i + 1) % MONEDAS.length];
+                if (arbol.has(origen) && arbol.has(destino)) {
+                    total += (100.0 / arbol.get(origen).getAsDouble()) * arbol.get(destino).getAsDouble();
+                }
+            }
+            return (long) total;
+        });
+
+        arnes.medir("tabla.parseo (JsonReader, una vez por descarga)", n -> {
+            long total = 0;
+            for (int i = 0; i < n; i++) {
+                total += TablaTasas.desdeJson(json).tamaño();
+            }
+            return total;
+        });
+
+        arnes.medir("tabla.conversion (indice + aritmética)", n -> {
+            double total = 0;
+            for (int i = 0; i < n; i++) {
+                int origen = tabla.indice(MONEDAS[i % MONEDAS.length]);
+                int destino = tabla.indice(MONEDAS[(i + 1) % MONEDAS.length]);
+                total += 100.0 * tabla.factor(origen, destino);
+            }
+            return (long) total;
+        });
+
+        arnes.imprimirResumen();
+    }
+}
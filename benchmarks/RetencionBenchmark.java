@@ -0,0 +1,111 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+/**
+ * Retención del historial: tiempo de carga y memoria de un historial de
+ * bench.filas conversiones (por defecto 500.000, repartidas en un año) sin
+ * retención y con bench.retencion conversiones vivas (por defecto 50.000),
+ * una vez archivado el resto; y el costo de consultar lo archivado de un
+ * mes frente a recorrer todo el archivo.
+ *
+ * Ejecutar: mvn -Pbenchmark compile exec:exec -Dbench.clase=RetencionBenchmark
+ */
+public class RetencionBenchmark {
+    private static final String[] MONEDAS = {"USD", "ARS", "BRL", "EUR", "JPY"};
+
+    // Mantiene vivo el último historial cargado para medir su memoria
+    private static HistorialConversiones retenido;
+
+    public static void main(String[] args) throws Exception {
+        int filas = Integer.getInteger("bench.filas", 500_000);
+        int retenidas = Integer.getInteger("bench.retencion", 50_000);
+        ArnesBenchmark.silenciarSalidaDeAplicacion();
+
+        Path directorio = Files.createTempDirectory("bench-retencion");
+        String ruta = directorio.resolve("historial.json").toString();
+        LocalDateTime inicioAño = LocalDateTime.of(2024, 1, 1, 0, 0);
+        long pasoSegundos = 365L * 86_400L / filas;
+        List<Conversion> conversiones = new ArrayList<>(filas);
+        for (int i = 0; i < filas; i++) {
+            conversiones.add(new Conversion(MONEDAS[i % MONEDAS.length], MONEDAS[(i + 1) % MONEDAS.length],
+                1 + i % 1000, (1 + i % 1000) * 1.5, inicioAño.plusSeconds(i * pasoSegundos)));
+        }
+        GestorArchivos.escribirHistorialJSON(conversiones, ruta);
+        conversiones = null;
+
+        double sinRetencionMs = cargar(ruta, RetencionHistorial.SIN_LIMITE);
+        long sinRetencionHeap = heapUsado();
+        ArnesBenchmark.imprimir(String.format(Locale.ROOT,
+            "📂 Sin retención: %,d conversiones vivas, carga %.0f ms, heap ~%.1f MB",
+            filas, sinRetencionMs, sinRetencionHeap / 1e6));
+
+        RetencionHistorial retencion = new RetencionHistorial(retenidas, Duration.ZERO);
+        double archivadoMs = cargar(ruta, retencion);
+        double conRetencionMs = cargar(ruta, retencion);
+        long conRetencionHeap = heapUsado();
+        HistorialConversiones historial = new HistorialConversiones(new DiarioHistorial(ruta),
+            new HistorialConversiones.Opciones().autoGuardar(true).retencion(retencion));
+        ArnesBenchmark.imprimir(String.format(Locale.ROOT,
+            "🗄️  Con retención de %,d: primer arranque (archiva %,d) %.0f ms; siguientes %.0f ms, heap ~%.1f MB",
+            retenidas, filas - retenidas, archivadoMs, conRetencionMs, conRetencionHeap / 1e6));
+        ArnesBenchmark.imprimir(String.format(Locale.ROOT, "   Archivo: %,d bytes en %d meses (historial.json vivo: %,d bytes)",
+            tamañoDirectorio(directorio.resolve("historial.archivo")),
+            new ArchivoHistorial(directorio.resolve("historial.archivo")).getSegmentos().size(),
+            Files.size(directorio.resolve("historial.json"))));
+
+        LocalDateTime junio = LocalDateTime.of(2024, 6, 1, 0, 0);
+        ArnesBenchmark arnes = new ArnesBenchmark("Historial archivado");
+        arnes.medir("consultarArchivo USD→ARS de un mes (50 filas)", n -> {
+            long total = 0;
+            for (int i = 0; i < n; i++) {
+                total += historial.consultarArchivo("USD", "ARS", junio, junio.plusMonths(1), 1000, 50).size();
+            }
+            return total;
+        });
+        arnes.medir("recorrer todo el archivo", n -> {
+            long total = 0;
+            for (int i = 0; i < n; i++) {
+                total += historial.consultarArchivo(null, null, null, null, 0, Integer.MAX_VALUE).size();
+            }
+            return total;
+        });
+        arnes.imprimirResumen();
+
+        try (Stream<Path> archivos = Files.walk(directorio)) {
+            archivos.sorted(Comparator.reverseOrder()).forEach(archivo -> archivo.toFile().delete());
+        }
+    }
+
+    /**
+     * Tiempo de construir el historial (carga, índice y agregados)
+     */
+    private static double cargar(String ruta, RetencionHistorial retencion) {
+        long inicio = System.nanoTime();
+        HistorialConversiones historial = new HistorialConversiones(new DiarioHistorial(ruta),
+            new HistorialConversiones.Opciones().autoGuardar(true).retencion(retencion));
+        double ms = (System.nanoTime() - inicio) / 1e6;
+        retenido = historial;
+        return ms;
+    }
+
+    private static long heapUsado() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long tamañoDirectorio(Path directorio) throws Exception {
+        try (Stream<Path> archivos = Files.list(directorio)) {
+            return archivos.mapToLong(archivo -> archivo.toFile().length()).sum();
+        }
+    }
+}
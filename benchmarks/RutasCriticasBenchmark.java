@@ -0,0 +1,173 @@
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Suite de regresión de las rutas críticas: conversión, parseo de las tasas,
+ * guardado y carga del historial en JSON y exportación a CSV. Las tasas salen
+ * de la respuesta grabada de la API (benchmarks/recursos/latest_USD.json),
+ * servida por ServidorTasasSimulado, y la persistencia se mide para cada
+ * tamaño de historial de bench.historial (por defecto 1000, 10000 y 100000).
+ *
+ * Con -Dbench.reporte=ruta los resultados quedan en formato de reporte para
+ * compararlos entre versiones con CompararReportes.
+ *
+ * Ejecutar: mvn -Pbenchmark compile exec:exec
+ * (el perfil deja el reporte en target/benchmarks/reporte.tsv)
+ */
+public class RutasCriticasBenchmark {
+    private static final String[] MONEDAS = {"USD", "ARS", "BRL", "PEN", "EUR", "JPY", "MXN"};
+    private static final int TAMAÑO_LOTE = 1000;
+    // Cada cuántas conversiones se vacía el historial en memoria para que no crezca sin límite
+    private static final int MASCARA_LIMPIEZA = (1 << 16) - 1;
+
+    public static void main(String[] args) throws Exception {
+        int[] tamaños = ArnesBenchmark.parametroEnteros("bench.historial", "1000,10000,100000");
+        String json = ArnesBenchmark.leerRecurso("latest_USD.json");
+        Path directorio = Files.createTempDirectory("bench-rutas");
+        ArnesBenchmark.silenciarSalidaDeAplicacion();
+
+        try (ServidorTasasSimulado servidor = new ServidorTasasSimulado()) {
+            medirConversion(servidor);
+        }
+        medirParseo(json);
+        for (int tamaño : tamaños) {
+            medirPersistencia(directorio, tamaño);
+        }
+    }
+
+    private static void medirConversion(ServidorTasasSimulado servidor) throws Exception {
+        ConsultaTasaDeCambio consulta = new ConsultaTasaDeCambio("benchmark", servidor.getUrlBase(),
+            new ConsultaTasaDeCambio.Opciones().expiracionCache(Duration.ofHours(1)));
+        String rutaHistorial = Files.createTempDirectory("bench-conversion").resolve("historial.json").toString();
+
+        String[] origenes = new String[TAMAÑO_LOTE];
+        String[] destinos = new String[TAMAÑO_LOTE];
+        double[] montos = new double[TAMAÑO_LOTE];
+        for (int i = 0; i < TAMAÑO_LOTE; i++) {
+            origenes[i] = MONEDAS[i % MONEDAS.length];
+            destinos[i] = MONEDAS[(i + 3) % MONEDAS.length];
+            montos[i] = 1 + (i % 500) * 1.25;
+        }
+
+        // El historial se vacía reemplazando el conversor (ver nuevoConversor) cada MASCARA_LIMPIEZA + 1 conversiones
+        ConversorDeMoneda[] conversor = {nuevoConversor(consulta, rutaHistorial)};
+        long[] registradas = {0};
+
+        ArnesBenchmark arnes = new ArnesBenchmark("Conversión");
+        arnes.medir("convertir USD->ARS", n -> {
+            double total = 0;
+            for (int i = 0; i < n; i++) {
+                total += conversor[0].convertir("USD", "ARS", montos[i % TAMAÑO_LOTE]);
+                if ((++registradas[0] & MASCARA_LIMPIEZA) == 0) {
+                    conversor[0] = nuevoConversor(consulta, rutaHistorial);
+                }
+            }
+            return (long) total;
+        });
+        arnes.medir("convertir pares variados", n -> {
+            double total = 0;
+            for (int i = 0; i < n; i++) {
+                int j = i % TAMAÑO_LOTE;
+                total += conversor[0].convertir(origenes[j], destinos[j], montos[j]);
+                if ((++registradas[0] & MASCARA_LIMPIEZA) == 0) {
+                    conversor[0] = nuevoConversor(consulta, rutaHistorial);
+                }
+            }
+            return (long) total;
+        });
+        arnes.medir("convertirLote " + TAMAÑO_LOTE + " pares variados (por lote)", n -> {
+            double total = 0;
+            for (int i = 0; i < n; i++) {
+                total += conversor[0].convertirLote(origenes, destinos, montos)[0];
+                registradas[0] += TAMAÑO_LOTE;
+                if (registradas[0] > MASCARA_LIMPIEZA) {
+                    registradas[0] = 0;
+                    conversor[0] = nuevoConversor(consulta, rutaHistorial);
+                }
+            }
+            return (long) total;
+        });
+        arnes.imprimirResumen();
+    }
+
+    /**
+     * Conversor con un historial nuevo en memoria (sin guardado): reemplazarlo
+     * es la forma de vaciar el historial sin escribir a disco
+     */
+    private static ConversorDeMoneda nuevoConversor(ConsultaTasaDeCambio consulta, String rutaHistorial) {
+        return new ConversorDeMoneda(consulta, new HistorialConversiones(rutaHistorial, false));
+    }
+
+    private static void medirParseo(String json) throws Exception {
+        ArnesBenchmark arnes = new ArnesBenchmark("Parseo de tasas");
+        arnes.medir("Gson JsonParser conversion_rates (árbol)", n -> {
+            long total = 0;
+            for (int i = 0; i < n; i++) {
+                JsonObject tasas = JsonParser.parseString(json).getAsJsonObject().getAsJsonObject("conversion_rates");
+                total += tasas.size();
+            }
+            return total;
+        });
+        arnes.medir("TablaTasas.desdeJson (streaming)", n -> {
+            long total = 0;
+            for (int i = 0; i < n; i++) {
+                total += TablaTasas.desdeJson(json).tamaño();
+            }
+            return total;
+        });
+        arnes.imprimirResumen();
+    }
+
+    private static void medirPersistencia(Path directorio, int tamaño) throws Exception {
+        List<Conversion> conversiones = historialDePrueba(tamaño);
+        String rutaJSON = directorio.resolve("historial-" + tamaño + ".json").toString();
+        String rutaCSV = directorio.resolve("historial-" + tamaño + ".csv").toString();
+        GestorArchivos.guardarHistorialJSON(conversiones, rutaJSON);
+        String parametro = " [historial=" + tamaño + "]";
+
+        ArnesBenchmark arnes = new ArnesBenchmark("Persistencia del historial");
+        arnes.medir("guardarHistorialJSON" + parametro, n -> {
+            for (int i = 0; i < n; i++) {
+                GestorArchivos.guardarHistorialJSON(conversiones, rutaJSON);
+            }
+            return Files.size(Path.of(rutaJSON));
+        });
+        arnes.medir("cargarHistorialJSON" + parametro, n -> {
+            long total = 0;
+            for (int i = 0; i < n; i++) {
+                total += GestorArchivos.cargarHistorialJSON(rutaJSON).size();
+            }
+            return total;
+        });
+        arnes.medir("exportarCSV" + parametro, n -> {
+            for (int i = 0; i < n; i++) {
+                GestorArchivos.exportarCSV(conversiones, rutaCSV);
+            }
+            return Files.size(Path.of(rutaCSV));
+        });
+        arnes.imprimirResumen();
+
+        Files.deleteIfExists(Path.of(rutaJSON));
+        Files.deleteIfExists(Path.of(rutaCSV));
+    }
+
+    /**
+     * Historial determinista (salvo los ids aleatorios, de largo fijo)
+     */
+    private static List<Conversion> historialDePrueba(int tamaño) {
+        LocalDateTime inicio = LocalDateTime.of(2024, 1, 1, 0, 0);
+        List<Conversion> conversiones = new ArrayList<>(tamaño);
+        for (int i = 0; i < tamaño; i++) {
+            double monto = 1 + (i % 10_000) * 0.25;
+            conversiones.add(new Conversion(MONEDAS[i % MONEDAS.length], MONEDAS[(i + 3) % MONEDAS.length],
+                monto, Math.round(monto * 1234.5678) / 100.0, inicio.plusSeconds(i)));
+        }
+        return conversiones;
+    }
+}
@@ -0,0 +1,146 @@
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Locale;
+
+/**
+ * Serialización JSON de Conversion: Gson por reflexión con LocalDateTimeAdapter
+ * (historial.json.serializer=reflexivo) contra {@link ConversionAdapter}
+ * (rapido). Se mide por conversión, recorriendo bench.registros conversiones
+ * (por defecto 1.000.000): escritura en un JsonWriter como la del historial y
+ * lectura de líneas del diario; y el historial completo de bench.registros
+ * conversiones escrito y leído en streaming (mínimo de bench.repeticiones),
+ * con sangría en el modo reflexivo y compacto en el rápido, como lo escribe
+ * GestorArchivos.
+ *
+ * Ejecutar: mvn -Pbenchmark compile exec:exec -Dbench.clase=SerializacionConversionBenchmark
+ */
+public class SerializacionConversionBenchmark {
+    private static final String[] MONEDAS = {"USD", "EUR", "ARS", "BRL", "MXN", "JPY", "GBP", "CLP"};
+    private static final int REPETICIONES = Integer.getInteger("bench.repeticiones", 3);
+
+    public static void main(String[] args) throws Exception {
+        int registros = Integer.getInteger("bench.registros", 1_000_000);
+        ArnesBenchmark.silenciarSalidaDeAplicacion();
+
+        Gson reflexivo = new GsonBuilder()
+            .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
+            .create();
+        Gson rapido = new GsonBuilder()
+            .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
+            .registerTypeAdapter(Conversion.class, new ConversionAdapter())
+            .create();
+
+        Conversion[] conversiones = new Conversion[registros];
+        String[] lineas = new String[registros];
+        LocalDateTime inicio = LocalDateTime.of(2024, 1, 1, 0, 0);
+        for (int i = 0; i < registros; i++) {
+            double monto = 1 + i % 10_000 / 100.0;
+            conversiones[i] = new Conversion(MONEDAS[i % MONEDAS.length], MONEDAS[(i + 3) % MONEDAS.length],
+                monto, Math.round(monto * 97025.0) / 100.0, inicio.plusNanos(i * 31_415_926_535L));
+            lineas[i] = reflexivo.toJson(conversiones[i]);
+        }
+
+        ArnesBenchmark arnes = new ArnesBenchmark("Serialización de Conversion (por conversión)");
+        medirEscritura(arnes, "escribir (reflexivo)", reflexivo, conversiones);
+        medirEscritura(arnes, "escribir (ConversionAdapter)", rapido, conversiones);
+        medirLectura(arnes, "leer línea del diario (reflexivo)", reflexivo, lineas);
+        medirLectura(arnes, "leer línea del diario (ConversionAdapter)", rapido, lineas);
+        arnes.imprimirResumen();
+
+        Path directorio = Files.createTempDirectory("bench-serializacion");
+        Path conSangria = directorio.resolve("reflexivo.json");
+        Path compacto = directorio.resolve("rapido.json");
+        ArnesBenchmark.imprimir(String.format(Locale.ROOT, "%n📄 Historial de %,d conversiones", registros));
+        medirArchivo("escribir, reflexivo con sangría", () -> escribir(reflexivo, true, conversiones, conSangria));
+        medirArchivo("escribir, ConversionAdapter compacto", () -> escribir(rapido, false, conversiones, compacto));
+        medirArchivo("leer con sangría, reflexivo", () -> leer(reflexivo, conSangria));
+        medirArchivo("leer con sangría, ConversionAdapter", () -> leer(rapido, conSangria));
+        medirArchivo("leer compacto, ConversionAdapter", () -> leer(rapido, compacto));
+        ArnesBenchmark.imprimir(String.format(Locale.ROOT, "  tamaño con sangría %,d bytes, compacto %,d bytes",
+            Files.size(conSangria), Files.size(compacto)));
+
+        Files.delete(conSangria);
+        Files.delete(compacto);
+        Files.delete(directorio);
+    }
+
+    private static void medirEscritura(ArnesBenchmark arnes, String nombre, Gson gson,
+                                       Conversion[] conversiones) throws Exception {
+        JsonWriter writer = gson.newJsonWriter(Writer.nullWriter());
+        writer.beginArray();
+        long[] siguiente = new long[1];
+        arnes.medir(nombre, n -> {
+            for (int i = 0; i < n; i++) {
+                gson.toJson(conversiones[(int) (siguiente[0]++ % conversiones.length)], Conversion.class, writer);
+            }
+            return n;
+        });
+    }
+
+    private static void medirLectura(ArnesBenchmark arnes, String nombre, Gson gson,
+                                     String[] lineas) throws Exception {
+        long[] siguiente = new long[1];
+        arnes.medir(nombre, n -> {
+            double total = 0;
+            for (int i = 0; i < n; i++) {
+                total += gson.fromJson(lineas[(int) (siguiente[0]++ % lineas.length)], Conversion.class).getMontoOrigen();
+            }
+            return (long) total;
+        });
+    }
+
+    private static long escribir(Gson gson, boolean conSangria, Conversion[] conversiones, Path ruta) throws IOException {
+        try (Writer salida = new BufferedWriter(Files.newBufferedWriter(ruta, StandardCharsets.UTF_8), 1 << 16)) {
+            JsonWriter writer = gson.newJsonWriter(salida);
+            if (conSangria) {
+                writer.setIndent("  ");
+            }
+            writer.beginArray();
+            for (Conversion conversion : conversiones) {
+                gson.toJson(conversion, Conversion.class, writer);
+            }
+            writer.endArray();
+        }
+        return Files.size(ruta);
+    }
+
+    private static long leer(Gson gson, Path ruta) throws IOException {
+        long leidas = 0;
+        try (BufferedReader entrada = Files.newBufferedReader(ruta, StandardCharsets.UTF_8);
+             JsonReader reader = new JsonReader(entrada)) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                Conversion conversion = gson.fromJson(reader, Conversion.class);
+                leidas += conversion.getTimestamp().getSecond() >= 0 ? 1 : 0;
+            }
+            reader.endArray();
+        }
+        return leidas;
+    }
+
+    private interface Carga {
+        long ejecutar() throws Exception;
+    }
+
+    private static void medirArchivo(String nombre, Carga carga) throws Exception {
+        long mejor = Long.MAX_VALUE;
+        long resultado = 0;
+        for (int i = 0; i < REPETICIONES; i++) {
+            System.gc();
+            long inicio = System.nanoTime();
+            resultado = carga.ejecutar();
+            mejor = Math.min(mejor, System.nanoTime() - inicio);
+        }
+        ArnesBenchmark.imprimir(String.format(Locale.ROOT, "  %-40s %10.1f ms   (resultado %d)", nombre, mejor / 1e6, resultado));
+    }
+}
@@ -0,0 +1,110 @@
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Serie histórica de tasas: bytes por tabla en disco frente al formato de
+ * tasas.dat, y latencia de la búsqueda por fecha (tabla en caché y tabla
+ * que hay que descomprimir) y de la conversión con tasas pasadas.
+ *
+ * La serie tiene bench.tablas tablas (por defecto 10.000, una por hora)
+ * generadas con un paseo aleatorio a partir de latest_USD.json, con los
+ * mismos decimales que informa la API.
+ *
+ * Ejecutar: mvn -Pbenchmark compile exec:exec -Dbench.clase=SerieTasasBenchmark
+ */
+public class SerieTasasBenchmark {
+    public static void main(String[] args) throws Exception {
+        int cantidad = Integer.getInteger("bench.tablas", 10_000);
+        TablaTasas inicial = TablaTasas.desdeJson(ArnesBenchmark.leerRecurso("latest_USD.json"));
+        Path directorio = Files.createTempDirectory("bench-serie");
+        ArnesBenchmark.silenciarSalidaDeAplicacion();
+
+        long primera = inicial.getActualizacionUnix();
+        Random aleatorio = new Random(42);
+        double[] tasas = new double[inicial.tamaño()];
+        int[] escalas = new int[inicial.tamaño()];
+        for (int i = 0; i < tasas.length; i++) {
+            tasas[i] = inicial.tasa(i);
+            escalas[i] = Math.max(4, BigDecimal.valueOf(tasas[i]).scale());
+        }
+
+        SerieTasas serie = SerieTasas.abrir(directorio);
+        long inicio = System.nanoTime();
+        for (int t = 0; t < cantidad; t++) {
+            String[] codigos = new String[tasas.length];
+            double[] paso = new double[tasas.length];
+            for (int i = 0; i < tasas.length; i++) {
+                codigos[i] = inicial.codigo(i);
+                if (i > 0) {
+                    tasas[i] *= 1 + aleatorio.nextGaussian() * 0.001;
+                }
+                paso[i] = BigDecimal.valueOf(tasas[i]).setScale(escalas[i], RoundingMode.HALF_EVEN).doubleValue();
+            }
+            serie.agregar(TablaTasas.crear(inicial.getMonedaBase(), primera + t * 3600L,
+                (primera + t * 3600L) * 1000, codigos, paso));
+        }
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        serie.close();
+
+        Path tasasDat = directorio.resolve("tasas.dat");
+        inicial.guardar(tasasDat);
+        long bytesSerie = Files.size(directorio.resolve("serie-tasas.bin"));
+        ArnesBenchmark.imprimir(String.format(Locale.ROOT,
+            "📦 %,d tablas de %d monedas: %,.0f bytes por tabla en la serie, %,d en tasas.dat (%.1fx); %,.0f tablas/s al agregar",
+            cantidad, tasas.length, (double) bytesSerie / cantidad, Files.size(tasasDat),
+            Files.size(tasasDat) * (double) cantidad / bytesSerie, cantidad / segundos));
+
+        try (SerieTasas abierta = SerieTasas.abrir(directorio);
+             ServidorTasasSimulado servidor = new ServidorTasasSimulado()) {
+            long desde = primera * 1000;
+            long hasta = (primera + cantidad * 3600L) * 1000;
+            Instant reciente = Instant.ofEpochMilli(hasta - 1800_000);
+
+            ArnesBenchmark arnes = new ArnesBenchmark("Serie histórica de tasas");
+            arnes.medir("buscar posición por fecha (binaria sobre el índice)", n -> {
+                long suma = 0;
+                for (int i = 0; i < n; i++) {
+                    suma += abierta.buscar(desde + (i * 7_919L * 3600_000L) % (hasta - desde));
+                }
+                return suma;
+            });
+            arnes.medir("tablaEn (tabla en caché)", n -> {
+                long suma = 0;
+                for (int i = 0; i < n; i++) {
+                    suma += abierta.tablaEn(reciente).tamaño();
+                }
+                return suma;
+            });
+            long[] siguiente = {0};
+            arnes.medir("tablaEn (momentos dispersos, descomprime)", n -> {
+                long suma = 0;
+                for (int i = 0; i < n; i++) {
+                    // Saltos de 7.919 horas: nunca cae en una tabla del caché
+                    long momento = desde + ((siguiente[0]++ * 7_919L) % cantidad) * 3600_000L + 60_000;
+                    suma += abierta.tablaEn(Instant.ofEpochMilli(momento)).tamaño();
+                }
+                return suma;
+            });
+
+            ConsultaTasaDeCambio consulta = new ConsultaTasaDeCambio("benchmark", servidor.getUrlBase(),
+                new ConsultaTasaDeCambio.Opciones().expiracionCache(Duration.ofHours(1)));
+            consulta.setSerieTasas(abierta);
+            ConversorDeMoneda conversor = new ConversorDeMoneda(
+                consulta, new HistorialConversiones(directorio.resolve("historial.json").toString(), false));
+            arnes.medir("convertir(USD, ARS, monto, momento) en caché", n -> {
+                double suma = 0;
+                for (int i = 0; i < n; i++) {
+                    suma += conversor.convertir("USD", "ARS", 100 + (i & 1023), reciente);
+                }
+                return (long) suma;
+            });
+            arnes.imprimirResumen();
+        }
+    }
+}
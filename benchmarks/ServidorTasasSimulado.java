@@ -0,0 +1,130 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Servidor HTTP local que imita /v6/{apiKey}/latest/{base} de ExchangeRate-API
+ * sirviendo la respuesta grabada en benchmarks/recursos/latest_USD.json (las
+ * demás bases se derivan de ella). Permite ejercitar ConsultaTasaDeCambio
+ * sin red ni consumir cuota de la API; opcionalmente demora cada respuesta
+ * para simular la latencia de la API.
+ */
+public class ServidorTasasSimulado implements AutoCloseable {
+    private final HttpServer servidor;
+    private final String json;
+    private final byte[] respuesta;
+    private final long demoraMs;
+    private final AtomicLong peticiones = new AtomicLong();
+    private final AtomicInteger enCurso = new AtomicInteger();
+    private final AtomicInteger maximoEnCurso = new AtomicInteger();
+    private final Map<String, byte[]> respuestasPorBase = new ConcurrentHashMap<>();
+
+    /**
+     * Inicia el servidor en un puerto libre de localhost
+     */
+    public ServidorTasasSimulado() throws IOException {
+        this(0);
+    }
+
+    /**
+     * Inicia el servidor en un puerto libre de localhost
+     * @param demoraMs Demora de cada respuesta en milisegundos
+     */
+    public ServidorTasasSimulado(long demoraMs) throws IOException {
+        this.json = ArnesBenchmark.leerRecurso("latest_USD.json");
+        this.respuesta = json.getBytes(StandardCharsets.UTF_8);
+        this.demoraMs = demoraMs;
+        this.servidor = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.servidor.createContext("/v6/", this::responder);
+        this.servidor.setExecutor(Executors.newCachedThreadPool(tarea -> {
+            Thread hilo = new Thread(tarea, "servidor-tasas-simulado");
+            hilo.setDaemon(true);
+            return hilo;
+        }));
+        this.servidor.start();
+    }
+
+    /**
+     * URL base para pasar a ConsultaTasaDeCambio (equivalente a api.url)
+     */
+    public String getUrlBase() {
+        return "http://127.0.0.1:" + servidor.getAddress().getPort() + "/v6/";
+    }
+
+    /**
+     * Cantidad de peticiones atendidas
+     */
+    public long getPeticiones() {
+        return peticiones.get();
+    }
+
+    /**
+     * Máximo de peticiones atendidas a la vez desde que se inició el servidor
+     */
+    public int getMaximoEnCurso() {
+        return maximoEnCurso.get();
+    }
+
+    private void responder(HttpExchange intercambio) throws IOException {
+        peticiones.incrementAndGet();
+        maximoEnCurso.accumulateAndGet(enCurso.incrementAndGet(), Math::max);
+        try {
+            if (demoraMs > 0) {
+                Thread.sleep(demoraMs);
+            }
+            String ruta = intercambio.getRequestURI().getPath();
+            byte[] cuerpoRespuesta = respuestaDeBase(ruta.substring(ruta.lastIndexOf('/') + 1));
+            intercambio.getResponseHeaders().set("Content-Type", "application/json");
+            intercambio.sendResponseHeaders(200, cuerpoRespuesta.length);
+            try (OutputStream cuerpo = intercambio.getResponseBody()) {
+                cuerpo.write(cuerpoRespuesta);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            enCurso.decrementAndGet();
+        }
+    }
+
+    /**
+     * La respuesta grabada para USD; para otra base, las mismas tasas divididas por la de esa base
+     */
+    private byte[] respuestaDeBase(String base) {
+        if (base.equals("USD") || !RegistroMonedas.esValido(base)) {
+            return respuesta;
+        }
+        return respuestasPorBase.computeIfAbsent(base, nueva -> {
+            try {
+                TablaTasas usd = TablaTasas.desdeJson(json);
+                int indiceBase = usd.indice(nueva);
+                if (indiceBase < 0) {
+                    return respuesta;
+                }
+                StringBuilder tasas = new StringBuilder();
+                for (int i = 0; i < usd.tamaño(); i++) {
+                    tasas.append(i == 0 ? "" : ",").append('"').append(usd.codigo(i)).append("\":")
+                        .append(usd.tasa(i) / usd.tasa(indiceBase));
+                }
+                return ("{\"result\":\"success\",\"time_last_update_unix\":" + usd.getActualizacionUnix()
+                    + ",\"base_code\":\"" + nueva + "\",\"conversion_rates\":{" + tasas + "}}")
+                    .getBytes(StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        servidor.stop(0);
+    }
+}
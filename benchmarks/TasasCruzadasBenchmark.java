@@ -0,0 +1,60 @@
+import java.math.RoundingMode;
+import java.util.Random;
+
+/**
+ * Conversión con MotorDinero tomando el factor de la división
+ * tasaDestino / tasaOrigen contra el factor precalculado de
+ * MatrizTasasCruzadas, más una verificación: para todos los pares de la
+ * matriz el factor precalculado es bit a bit el de la división, así que las
+ * conversiones dan el mismo resultado con o sin matriz.
+ *
+ * Ejecutar: mvn -Pbenchmark compile exec:exec -Dbench.clase=TasasCruzadasBenchmark
+ */
+public class TasasCruzadasBenchmark {
+    private static final String[] FRECUENTES = {"USD", "ARS", "BRL", "PEN", "EUR", "CLP", "MXN", "COP", "UYU", "GBP"};
+    private static final int MONTOS = 1 << 12;
+
+    public static void main(String[] args) throws Exception {
+        TablaTasas sinMatriz = TablaTasas.desdeJson(ArnesBenchmark.leerRecurso("latest_USD.json"));
+        TablaTasas conMatriz = sinMatriz.conMatrizCruzada(FRECUENTES);
+        MotorDinero motor = new MotorDinero(RoundingMode.HALF_UP);
+        int ars = sinMatriz.indice("ARS");
+        int brl = sinMatriz.indice("BRL");
+
+        long[] montos = new long[MONTOS];
+        Random aleatorio = new Random(42);
+        for (int i = 0; i < MONTOS; i++) {
+            montos[i] = 1 + aleatorio.nextInt(10_000_000);
+        }
+
+        ArnesBenchmark arnes = new ArnesBenchmark("Tasas cruzadas ARS->BRL (MotorDinero, centavos)");
+        arnes.medir("factor por división (tasaDestino / tasaOrigen)", n -> {
+            long suma = 0;
+            for (int i = 0; i < n; i++) {
+                suma += motor.convertir(montos[i & (MONTOS - 1)], 2, 2, sinMatriz.factor(ars, brl));
+            }
+            return suma;
+        });
+        arnes.medir("matriz cruzada (factor precalculado)", n -> {
+            long suma = 0;
+            for (int i = 0; i < n; i++) {
+                suma += motor.convertir(montos[i & (MONTOS - 1)], 2, 2, conMatriz.factor(ars, brl));
+            }
+            return suma;
+        });
+        arnes.imprimirResumen();
+
+        int distintos = 0;
+        for (String origen : FRECUENTES) {
+            for (String destino : FRECUENTES) {
+                int o = sinMatriz.indice(origen);
+                int d = sinMatriz.indice(destino);
+                if (Double.doubleToRawLongBits(sinMatriz.factor(o, d)) != Double.doubleToRawLongBits(conMatriz.factor(o, d))) {
+                    distintos++;
+                }
+            }
+        }
+        ArnesBenchmark.imprimir("\nFactores distintos de la división entre " + FRECUENTES.length * FRECUENTES.length
+            + " pares: " + distintos);
+    }
+}
@@ -0,0 +1,383 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Agregados del historial por par de monedas y por hora y por día:
+ * cantidad de conversiones, total de origen, total de destino y tasa
+ * ponderada por monto (VWAP = total de destino / total de origen).
+ *
+ * Se actualizan con cada conversión agregada, con contadores repartidos
+ * (LongAdder / DoubleAdder) para que los hilos que convierten el mismo par
+ * en la misma hora no compitan por una sola variable; la cubeta del período
+ * en curso de cada par se recuerda para no buscarla en el mapa cada vez.
+ * Los reportes se responden sin leer las conversiones.
+ *
+ * Se guardan junto al historial (data/historial.agregados.dat) con la
+ * cantidad de conversiones que cubren y el id de la última de ellas: al
+ * cargar, si esa posición del historial tiene el mismo id, solo se suman las
+ * conversiones posteriores (las del diario), sin recalcular todo; si no (la
+ * instantánea cambió después de guardarlos), se recalculan.
+ *
+ * Las conversiones que la retención pasa al {@link ArchivoHistorial} siguen
+ * sumadas; se descuentan de las que cubren el historial vivo
+ * ({@link #registrarArchivadas(long)}).
+ */
+public class AgregadosHistorial {
+    private static final int MAGIA_ARCHIVO = 0x41475245; // "AGRE"
+    // 1: sin conversiones archivadas; 2: sin id de la última cubierta
+    private static final short VERSION_ARCHIVO = 3;
+
+    /**
+     * Tamaño de los períodos de un agregado
+     */
+    public enum Granularidad {
+        HORA(3_600_000L),
+        DIA(86_400_000L);
+
+        private final long milis;
+
+        Granularidad(long milis) {
+            this.milis = milis;
+        }
+
+        long periodo(long epochMilis) {
+            return Math.floorDiv(epochMilis, milis);
+        }
+
+        LocalDateTime inicio(long periodo) {
+            return LocalDateTime.ofEpochSecond(periodo * (milis / 1000), 0, ZoneOffset.UTC);
+        }
+    }
+
+    /**
+     * Agregado de un período (inmutable)
+     */
+    public static final class Periodo {
+        private final LocalDateTime inicio;
+        private final long cantidad;
+        private final double totalOrigen;
+        private final double totalDestino;
+
+        Periodo(LocalDateTime inicio, long cantidad, double totalOrigen, double totalDestino) {
+            this.inicio = inicio;
+            this.cantidad = cantidad;
+            this.totalOrigen = totalOrigen;
+            this.totalDestino = totalDestino;
+        }
+
+        public LocalDateTime getInicio() { return inicio; }
+        public long getCantidad() { return cantidad; }
+        public double getTotalOrigen() { return totalOrigen; }
+        public double getTotalDestino() { return totalDestino; }
+
+        /**
+         * Tasa ponderada por monto del período (total de destino / total de origen)
+         */
+        public double getVwap() {
+            return totalDestino / totalOrigen;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s: %d conversiones, origen %.2f, destino %.2f, VWAP %.6f",
+                inicio.toString().replace("T", " "), cantidad, totalOrigen, totalDestino, getVwap());
+        }
+    }
+
+    /**
+     * Contadores de un período
+     */
+    private static final class Cubeta {
+        final long periodo;
+        final LongAdder cantidad = new LongAdder();
+        final DoubleAdder totalOrigen = new DoubleAdder();
+        final DoubleAdder totalDestino = new DoubleAdder();
+
+        Cubeta(long periodo) {
+            this.periodo = periodo;
+        }
+
+        void sumar(double origen, double destino) {
+            totalOrigen.add(origen);
+            totalDestino.add(destino);
+            cantidad.increment();
+        }
+    }
+
+    /**
+     * Cubetas de un par por granularidad
+     */
+    private static final class Par {
+        final int claveOrigen;
+        final int claveDestino;
+        final ConcurrentSkipListMap<Long, Cubeta> horas = new ConcurrentSkipListMap<>();
+        final ConcurrentSkipListMap<Long, Cubeta> dias = new ConcurrentSkipListMap<>();
+        // Cubetas del período en curso (casi todas las conversiones caen ahí)
+        volatile Cubeta horaActual;
+        volatile Cubeta diaActual;
+
+        Par(int claveOrigen, int claveDestino) {
+            this.claveOrigen = claveOrigen;
+            this.claveDestino = claveDestino;
+        }
+
+        ConcurrentSkipListMap<Long, Cubeta> cubetas(Granularidad granularidad) {
+            return granularidad == Granularidad.HORA ? horas : dias;
+        }
+
+        void sumar(long epochMilis, double origen, double destino) {
+            long hora = Granularidad.HORA.periodo(epochMilis);
+            Cubeta cubetaHora = horaActual;
+            if (cubetaHora == null || cubetaHora.periodo != hora) {
+                cubetaHora = horas.computeIfAbsent(hora, Cubeta::new);
+                horaActual = cubetaHora;
+            }
+            cubetaHora.sumar(origen, destino);
+
+            long dia = Granularidad.DIA.periodo(epochMilis);
+            Cubeta cubetaDia = diaActual;
+            if (cubetaDia == null || cubetaDia.periodo != dia) {
+                cubetaDia = dias.computeIfAbsent(dia, Cubeta::new);
+                diaActual = cubetaDia;
+            }
+            cubetaDia.sumar(origen, destino);
+        }
+    }
+
+    private final ConcurrentHashMap<Integer, Par> pares = new ConcurrentHashMap<>();
+    private final LongAdder conversiones = new LongAdder();
+    // Conversiones sumadas que ya no están en el historial vivo (se modifica con la persistencia bloqueada)
+    private volatile long archivadas;
+    // Id de la última conversión cubierta según el archivo leído (null = desconocido)
+    private String ultimaCubierta;
+
+    /**
+     * Suma una conversión a los agregados de su par
+     * @param conversion Conversión agregada al historial
+     */
+    public void agregar(Conversion conversion) {
+        agregar(RegistroMonedas.clave(conversion.getMonedaOrigen()),
+            RegistroMonedas.clave(conversion.getMonedaDestino()),
+            IndiceHistorial.aMilis(conversion.getTimestamp()),
+            conversion.getMontoOrigen(), conversion.getMontoDestino());
+    }
+
+    /**
+     * Suma una conversión a partir de sus columnas. Las monedas que no son
+     * códigos de 3 letras solo cuentan en {@link #getConversiones()}.
+     */
+    public void agregar(int claveOrigen, int claveDestino, long epochMilis, double montoOrigen, double montoDestino) {
+        if (claveOrigen >= 0 && claveDestino >= 0) {
+            Par par = pares.get(claveOrigen * RegistroMonedas.CLAVES + claveDestino);
+            if (par == null) {
+                par = pares.computeIfAbsent(claveOrigen * RegistroMonedas.CLAVES + claveDestino,
+                    clave -> new Par(claveOrigen, claveDestino));
+            }
+            par.sumar(epochMilis, montoOrigen, montoDestino);
+        }
+        conversiones.increment();
+    }
+
+    /**
+     * Agregados por período de las conversiones que cumplen los filtros
+     * @param monedaOrigen Moneda de origen, o null para cualquiera
+     * @param monedaDestino Moneda de destino, o null para cualquiera
+     * @param granularidad Hora o día
+     * @param desde Inicio (inclusive; se toma el período que lo contiene), o null para no acotar
+     * @param hasta Fin (exclusive), o null para no acotar
+     * @return Un agregado por período con conversiones, en orden
+     */
+    public List<Periodo> consultar(String monedaOrigen, String monedaDestino, Granularidad granularidad,
+                                   LocalDateTime desde, LocalDateTime hasta) {
+        int origen = monedaOrigen == null ? -1 : RegistroMonedas.clave(monedaOrigen);
+        int destino = monedaDestino == null ? -1 : RegistroMonedas.clave(monedaDestino);
+        List<Periodo> periodos = new ArrayList<>();
+        if ((monedaOrigen != null && origen < 0) || (monedaDestino != null && destino < 0)) {
+            return periodos;
+        }
+        long primero = desde == null ? Long.MIN_VALUE : granularidad.periodo(IndiceHistorial.aMilis(desde));
+        long ultimo = hasta == null ? Long.MAX_VALUE : granularidad.periodo(IndiceHistorial.aMilis(hasta) - 1);
+
+        // Varios pares se suman por período: {cantidad, total origen, total destino}
+        TreeMap<Long, double[]> acumulados = new TreeMap<>();
+        for (Par par : pares.values()) {
+            if ((origen >= 0 && par.claveOrigen != origen) || (destino >= 0 && par.claveDestino != destino)) {
+                continue;
+            }
+            for (Cubeta cubeta : par.cubetas(granularidad).subMap(primero, true, ultimo, true).values()) {
+                double[] acumulado = acumulados.computeIfAbsent(cubeta.periodo, periodo -> new double[3]);
+                acumulado[0] += cubeta.cantidad.sum();
+                acumulado[1] += cubeta.totalOrigen.sum();
+                acumulado[2] += cubeta.totalDestino.sum();
+            }
+        }
+        for (Map.Entry<Long, double[]> entrada : acumulados.entrySet()) {
+            double[] acumulado = entrada.getValue();
+            periodos.add(new Periodo(granularidad.inicio(entrada.getKey()), (long) acumulado[0],
+                acumulado[1], acumulado[2]));
+        }
+        return periodos;
+    }
+
+    /**
+     * Cantidad de conversiones sumadas
+     */
+    public long getConversiones() {
+        return conversiones.sum();
+    }
+
+    /**
+     * Conversiones sumadas que se pasaron al archivo
+     */
+    public long getArchivadas() {
+        return archivadas;
+    }
+
+    /**
+     * Conversiones del historial vivo (las primeras) que ya están sumadas
+     */
+    public long getCubiertas() {
+        return conversiones.sum() - archivadas;
+    }
+
+    /**
+     * Id de la conversión en la posición {@link #getCubiertas()} - 1 del
+     * historial vivo cuando se guardaron estos agregados
+     * @return El id, o null si no cubren ninguna o el archivo es de una versión anterior
+     */
+    public String getUltimaCubierta() {
+        return ultimaCubierta;
+    }
+
+    /**
+     * Registra que las primeras conversiones del historial vivo se pasaron al
+     * archivo: siguen sumadas, pero ya no cuentan como parte del historial vivo
+     * @param cantidad Conversiones archivadas
+     */
+    public void registrarArchivadas(long cantidad) {
+        archivadas += cantidad;
+    }
+
+    /**
+     * Descarta todos los agregados
+     */
+    public void limpiar() {
+        pares.clear();
+        conversiones.reset();
+        archivadas = 0;
+    }
+
+    /**
+     * Guarda los agregados de forma atómica (archivo temporal + reemplazo)
+     * @param ruta Ruta del archivo
+     * @param ultimaCubierta Id de la conversión en la posición {@link #getCubiertas()} - 1
+     *                       del historial vivo, o null si no cubren ninguna
+     * @throws IOException si no se pudo escribir
+     */
+    public void guardar(Path ruta, String ultimaCubierta) throws IOException {
+        Path destino = ruta.toAbsolutePath();
+        Files.createDirectories(destino.getParent());
+        Path temporal = destino.resolveSibling(destino.getFileName() + ".tmp");
+
+        try (FileOutputStream archivo = new FileOutputStream(temporal.toFile());
+             DataOutputStream salida = new DataOutputStream(new BufferedOutputStream(archivo))) {
+            salida.writeInt(MAGIA_ARCHIVO);
+            salida.writeShort(VERSION_ARCHIVO);
+            salida.writeLong(conversiones.sum());
+            salida.writeLong(archivadas);
+            salida.writeBoolean(ultimaCubierta != null);
+            if (ultimaCubierta != null) {
+                salida.writeUTF(ultimaCubierta);
+            }
+            salida.writeInt(pares.size());
+            for (Par par : pares.values()) {
+                salida.writeShort(par.claveOrigen);
+                salida.writeShort(par.claveDestino);
+                for (Granularidad granularidad : Granularidad.values()) {
+                    // Copia: el mapa puede crecer mientras se escribe
+                    List<Cubeta> cubetas = new ArrayList<>(par.cubetas(granularidad).values());
+                    salida.writeInt(cubetas.size());
+                    for (Cubeta cubeta : cubetas) {
+                        salida.writeLong(cubeta.periodo);
+                        salida.writeLong(cubeta.cantidad.sum());
+                        salida.writeDouble(cubeta.totalOrigen.sum());
+                        salida.writeDouble(cubeta.totalDestino.sum());
+                    }
+                }
+            }
+            salida.flush();
+            archivo.getFD().sync();
+        }
+
+        try {
+            Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Lee agregados guardados con {@link #guardar(Path)}
+     * @param ruta Ruta del archivo
+     * @return Los agregados, con la cantidad de conversiones que cubren, cuántas se
+     *         archivaron y el id de la última cubierta
+     * @throws IOException si el archivo no existe o no tiene el formato esperado
+     */
+    public static AgregadosHistorial leer(Path ruta) throws IOException {
+        try (DataInputStream entrada = new DataInputStream(new BufferedInputStream(Files.newInputStream(ruta)))) {
+            if (entrada.readInt() != MAGIA_ARCHIVO) {
+                throw new IOException("No es un archivo de agregados válido: " + ruta);
+            }
+            short version = entrada.readShort();
+            if (version < 1 || version > VERSION_ARCHIVO) {
+                throw new IOException("Versión de agregados no soportada: " + version);
+            }
+            AgregadosHistorial agregados = new AgregadosHistorial();
+            agregados.conversiones.add(entrada.readLong());
+            agregados.archivadas = version >= 2 ? entrada.readLong() : 0;
+            if (version >= 3 && entrada.readBoolean()) {
+                agregados.ultimaCubierta = entrada.readUTF();
+            }
+            int cantidadPares = entrada.readInt();
+            for (int i = 0; i < cantidadPares; i++) {
+                int claveOrigen = entrada.readUnsignedShort();
+                int claveDestino = entrada.readUnsignedShort();
+                if (claveOrigen >= RegistroMonedas.CLAVES || claveDestino >= RegistroMonedas.CLAVES) {
+                    throw new IOException("Par de monedas inválido en " + ruta);
+                }
+                Par par = new Par(claveOrigen, claveDestino);
+                for (Granularidad granularidad : Granularidad.values()) {
+                    int cubetas = entrada.readInt();
+                    for (int j = 0; j < cubetas; j++) {
+                        Cubeta cubeta = new Cubeta(entrada.readLong());
+                        cubeta.cantidad.add(entrada.readLong());
+                        cubeta.totalOrigen.add(entrada.readDouble());
+                        cubeta.totalDestino.add(entrada.readDouble());
+                        par.cubetas(granularidad).put(cubeta.periodo, cubeta);
+                    }
+                }
+                agregados.pares.put(claveOrigen * RegistroMonedas.CLAVES + claveDestino, par);
+            }
+            return agregados;
+        }
+    }
+}
@@ -0,0 +1,284 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Almacén columnar del historial: en lugar de un objeto Conversion por
+ * registro (UUID como String, LocalDateTime y dos String de moneda, más de
+ * 200 bytes) guarda cada campo en su propio arreglo primitivo, unos 44
+ * bytes por conversión:
+ * <ul>
+ *   <li>marca de tiempo en milisegundos (long, hora local codificada como UTC)</li>
+ *   <li>monedas como código de 3 letras empaquetado (short)</li>
+ *   <li>montos de origen y destino (double)</li>
+ *   <li>id como los dos long del UUID</li>
+ * </ul>
+ * La tasa no se guarda: se deriva de los montos igual que en Conversion.
+ * La marca de tiempo se trunca a milisegundos.
+ *
+ * Igual que {@link AlmacenConversiones}, es de solo-anexado y sin bloqueos:
+ * cada anexado reserva una posición con un incremento atómico, escribe las
+ * columnas y publica la fila escribiendo la marca de tiempo al final.
+ * Las filas se entregan como objetos Conversion (inmutables) creados al
+ * leerlas; para recorridos sin asignaciones están los accesos por columna.
+ */
+public class AlmacenColumnar implements AlmacenHistorial {
+    private static final int BITS_SEGMENTO = 14;
+    private static final int TAMAÑO_SEGMENTO = 1 << BITS_SEGMENTO;
+    private static final int MASCARA_SEGMENTO = TAMAÑO_SEGMENTO - 1;
+    private static final int MAX_SEGMENTOS = 1 << 16;
+
+    // Marca de tiempo de una fila reservada que todavía no se terminó de escribir
+    private static final long SIN_ESCRIBIR = Long.MIN_VALUE;
+    private static final VarHandle MILIS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    /**
+     * Columnas de un bloque de TAMAÑO_SEGMENTO filas consecutivas
+     */
+    private static final class Segmento {
+        final long[] milis = new long[TAMAÑO_SEGMENTO];
+        final short[] monedaOrigen = new short[TAMAÑO_SEGMENTO];
+        final short[] monedaDestino = new short[TAMAÑO_SEGMENTO];
+        final double[] montoOrigen = new double[TAMAÑO_SEGMENTO];
+        final double[] montoDestino = new double[TAMAÑO_SEGMENTO];
+        final long[] idAlto = new long[TAMAÑO_SEGMENTO];
+        final long[] idBajo = new long[TAMAÑO_SEGMENTO];
+
+        Segmento() {
+            Arrays.fill(milis, SIN_ESCRIBIR);
+        }
+    }
+
+    private final AtomicReferenceArray<Segmento> segmentos = new AtomicReferenceArray<>(MAX_SEGMENTOS);
+    private final AtomicLong siguiente = new AtomicLong();
+
+    public AlmacenColumnar() {
+    }
+
+    /**
+     * Crea el almacén con un contenido inicial (por ejemplo, el historial cargado de disco)
+     * @param iniciales Conversiones iniciales, en orden
+     */
+    public AlmacenColumnar(Collection<Conversion> iniciales) {
+        agregarTodas(iniciales);
+    }
+
+    /**
+     * @throws IllegalArgumentException si alguna moneda no es un código de 3 letras A-Z
+     */
+    @Override
+    public int agregar(Conversion conversion) {
+        validar(conversion);
+        long posicion = siguiente.getAndIncrement();
+        escribir(posicion, conversion);
+        return (int) posicion;
+    }
+
+    /**
+     * @throws IllegalArgumentException si alguna moneda no es un código de 3 letras A-Z
+     */
+    @Override
+    public int agregarTodas(Collection<Conversion> lote) {
+        // Se valida antes de reservar: una fila reservada y nunca escrita bloquearía a los lectores
+        for (Conversion conversion : lote) {
+            validar(conversion);
+        }
+        long posicion = siguiente.getAndAdd(lote.size());
+        int primera = (int) posicion;
+        for (Conversion conversion : lote) {
+            escribir(posicion++, conversion);
+        }
+        return primera;
+    }
+
+    @Override
+    public int tamaño() {
+        return (int) Math.min(siguiente.get(), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Vista de solo lectura sobre las columnas; cada get() reconstruye la Conversion
+     */
+    @Override
+    public List<Conversion> instantanea() {
+        return new Instantanea(tamaño());
+    }
+
+    // Accesos por columna (sin crear objetos)
+    public long getEpochMilis(int indice) {
+        return leerMilis(indice);
+    }
+
+    public double getMontoOrigen(int indice) {
+        return fila(indice).montoOrigen[desplazamiento(indice)];
+    }
+
+    public double getMontoDestino(int indice) {
+        return fila(indice).montoDestino[desplazamiento(indice)];
+    }
+
+    public String getMonedaOrigen(int indice) {
+        return codigo(fila(indice).monedaOrigen[desplazamiento(indice)]);
+    }
+
+    public String getMonedaDestino(int indice) {
+        return codigo(fila(indice).monedaDestino[desplazamiento(indice)]);
+    }
+
+    /**
+     * Reconstruye la conversión de una posición
+     * @param indice Posición (0 = la más antigua)
+     * @return Una Conversion nueva con los datos de la fila
+     */
+    public Conversion getConversion(int indice) {
+        long milis = leerMilis(indice);
+        Segmento segmento = segmento(indice);
+        int i = desplazamiento(indice);
+        return new Conversion(
+            new UUID(segmento.idAlto[i], segmento.idBajo[i]).toString(),
+            desdeEpochMilis(milis),
+            codigo(segmento.monedaOrigen[i]),
+            codigo(segmento.monedaDestino[i]),
+            segmento.montoOrigen[i],
+            segmento.montoDestino[i]
+        );
+    }
+
+    private static void validar(Conversion conversion) {
+        clave(conversion.getMonedaOrigen());
+        clave(conversion.getMonedaDestino());
+    }
+
+    private void escribir(long posicion, Conversion conversion) {
+        Segmento segmento = segmento(posicion);
+        int i = desplazamiento(posicion);
+        UUID id = idComoUUID(conversion.getId());
+        segmento.monedaOrigen[i] = clave(conversion.getMonedaOrigen());
+        segmento.monedaDestino[i] = clave(conversion.getMonedaDestino());
+        segmento.montoOrigen[i] = conversion.getMontoOrigen();
+        segmento.montoDestino[i] = conversion.getMontoDestino();
+        segmento.idAlto[i] = id.getMostSignificantBits();
+        segmento.idBajo[i] = id.getLeastSignificantBits();
+
+        // Publica la fila: quien lea esta marca con acquire ve el resto de las columnas
+        MILIS.setRelease(segmento.milis, i, aEpochMilis(conversion.getTimestamp()));
+    }
+
+    /**
+     * Lee la marca de tiempo de una posición ya reservada; si el hilo que la
+     * reservó todavía no terminó de escribirla, espera activamente
+     */
+    private long leerMilis(long posicion) {
+        if (posicion < 0 || posicion >= siguiente.get()) {
+            throw new IndexOutOfBoundsException("Índice " + posicion + " fuera de rango (tamaño " + tamaño() + ")");
+        }
+        long[] milis = segmento(posicion).milis;
+        int i = desplazamiento(posicion);
+        long valor;
+        while ((valor = (long) MILIS.getAcquire(milis, i)) == SIN_ESCRIBIR) {
+            Thread.onSpinWait();
+        }
+        return valor;
+    }
+
+    /**
+     * Segmento de una fila ya publicada (espera a que se termine de escribir)
+     */
+    private Segmento fila(long posicion) {
+        leerMilis(posicion);
+        return segmento(posicion);
+    }
+
+    /**
+     * Obtiene (creándolo si hace falta) el segmento que contiene una posición
+     */
+    private Segmento segmento(long posicion) {
+        int indice = (int) (posicion >>> BITS_SEGMENTO);
+        if (indice >= MAX_SEGMENTOS) {
+            throw new IllegalStateException("Capacidad del historial excedida: " + posicion);
+        }
+        Segmento actual = segmentos.get(indice);
+        if (actual == null) {
+            Segmento nuevo = new Segmento();
+            actual = segmentos.compareAndSet(indice, null, nuevo) ? nuevo : segmentos.get(indice);
+        }
+        return actual;
+    }
+
+    private static int desplazamiento(long posicion) {
+        return (int) (posicion & MASCARA_SEGMENTO);
+    }
+
+    /**
+     * Código de 3 letras A-Z empaquetado en un short (también se usa en HistorialBinario)
+     * @throws IllegalArgumentException si el código no tiene ese formato
+     */
+    static short clave(String moneda) {
+        int clave = RegistroMonedas.clave(moneda);
+        if (clave < 0) {
+            throw new IllegalArgumentException("Código de moneda no admitido en formato compacto: " + moneda);
+        }
+        return (short) clave;
+    }
+
+    static String codigo(short clave) {
+        return RegistroMonedas.codigo(clave);
+    }
+
+    /**
+     * Hora local como milisegundos, codificada como si fuera UTC (sin zona horaria)
+     */
+    static long aEpochMilis(LocalDateTime timestamp) {
+        return timestamp.toEpochSecond(ZoneOffset.UTC) * 1000L + timestamp.getNano() / 1_000_000;
+    }
+
+    static LocalDateTime desdeEpochMilis(long milis) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(milis, 1000L), (int) Math.floorMod(milis, 1000L) * 1_000_000, ZoneOffset.UTC);
+    }
+
+    /**
+     * Los ids se generan con UUID.randomUUID(); un id con otro formato
+     * (historial editado a mano) se sustituye por un UUID derivado de su texto
+     */
+    static UUID idComoUUID(String id) {
+        try {
+            return UUID.fromString(id);
+        } catch (IllegalArgumentException | NullPointerException e) {
+            return UUID.nameUUIDFromBytes(String.valueOf(id).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Vista de tamaño fijo sobre las columnas
+     */
+    private final class Instantanea extends AbstractList<Conversion> implements RandomAccess {
+        private final int tamaño;
+
+        Instantanea(int tamaño) {
+            this.tamaño = tamaño;
+        }
+
+        @Override
+        public Conversion get(int indice) {
+            if (indice < 0 || indice >= tamaño) {
+                throw new IndexOutOfBoundsException("Índice " + indice + " fuera de rango (tamaño " + tamaño + ")");
+            }
+            return getConversion(indice);
+        }
+
+        @Override
+        public int size() {
+            return tamaño;
+        }
+    }
+}
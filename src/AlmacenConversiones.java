@@ -0,0 +1,208 @@
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Almacén de conversiones de solo-anexado, seguro para varios hilos y sin
+ * bloqueos. Cada anexado reserva una posición con un único incremento
+ * atómico y escribe en un segmento de tamaño fijo, así que los hilos nunca
+ * se esperan entre sí ni se copian arreglos al crecer.
+ *
+ * Las lecturas trabajan sobre instantáneas: {@link #instantanea()} fija el
+ * tamaño en el momento de la llamada y ve exactamente esos elementos aunque
+ * se sigan agregando conversiones en paralelo.
+ *
+ * Una posición reservada cuyo escritor todavía no terminó se espera al
+ * leerla, pero con un límite: si nunca se escribe (el hilo murió entre la
+ * reserva y la escritura) la lectura falla en lugar de colgarse.
+ */
+public class AlmacenConversiones implements AlmacenHistorial {
+    private static final int BITS_SEGMENTO = 14;
+    private static final int TAMAÑO_SEGMENTO = 1 << BITS_SEGMENTO;
+    private static final int MASCARA_SEGMENTO = TAMAÑO_SEGMENTO - 1;
+    private static final int MAX_SEGMENTOS = 1 << 16;
+    private static final long CAPACIDAD = (long) MAX_SEGMENTOS << BITS_SEGMENTO;
+    private static final int GIROS_ANTES_DE_CEDER = 1 << 10;
+    private static final long ESPERA_MAXIMA_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    // Directorio fijo de segmentos: capacidad de 2^30 conversiones sin redimensionar
+    private final AtomicReferenceArray<AtomicReferenceArray<Conversion>> segmentos =
+        new AtomicReferenceArray<>(MAX_SEGMENTOS);
+    private final AtomicLong siguiente = new AtomicLong();
+    // Cuánto se espera a que se escriba una posición reservada antes de fallar
+    private final long esperaMaximaNanos;
+
+    public AlmacenConversiones() {
+        this(ESPERA_MAXIMA_NANOS);
+    }
+
+    /**
+     * Crea el almacén con otra espera máxima para las posiciones sin escribir
+     * @param esperaMaximaNanos Espera antes de dar por perdida una posición reservada
+     */
+    AlmacenConversiones(long esperaMaximaNanos) {
+        this.esperaMaximaNanos = esperaMaximaNanos;
+    }
+
+    /**
+     * Crea el almacén con un contenido inicial (por ejemplo, el historial cargado de disco)
+     * @param iniciales Conversiones iniciales, en orden
+     */
+    public AlmacenConversiones(Collection<Conversion> iniciales) {
+        this(ESPERA_MAXIMA_NANOS);
+        agregarTodas(iniciales);
+    }
+
+    /**
+     * Agrega una conversión al final
+     * @param conversion Conversión a agregar
+     * @return Posición donde quedó
+     * @throws IllegalArgumentException si la conversión es null
+     */
+    @Override
+    public int agregar(Conversion conversion) {
+        if (conversion == null) {
+            throw new IllegalArgumentException("No se puede agregar una conversión null");
+        }
+        long posicion = reservar(1);
+        escribir(posicion, conversion);
+        return (int) posicion;
+    }
+
+    /**
+     * Agrega varias conversiones en posiciones consecutivas
+     * @param lote Conversiones a agregar, en orden
+     * @return Posición de la primera del lote
+     * @throws IllegalArgumentException si alguna conversión es null (no se agrega ninguna)
+     */
+    @Override
+    public int agregarTodas(Collection<Conversion> lote) {
+        // Se copia antes de reservar: el lote puede cambiar de tamaño mientras se recorre
+        Conversion[] copia = lote.toArray(new Conversion[0]);
+        for (Conversion conversion : copia) {
+            if (conversion == null) {
+                throw new IllegalArgumentException("No se puede agregar una conversión null");
+            }
+        }
+        long primera = reservar(copia.length);
+        for (int i = 0; i < copia.length; i++) {
+            escribir(primera + i, copia[i]);
+        }
+        return (int) primera;
+    }
+
+    /**
+     * Cantidad de conversiones agregadas (incluye las que se están escribiendo)
+     */
+    @Override
+    public int tamaño() {
+        return (int) Math.min(siguiente.get(), CAPACIDAD);
+    }
+
+    /**
+     * Vista de solo lectura de las conversiones existentes en este momento.
+     * No copia los datos: lee directamente de los segmentos.
+     * @return Lista inmutable con las conversiones en orden de inserción
+     */
+    @Override
+    public List<Conversion> instantanea() {
+        return new Instantanea(tamaño());
+    }
+
+    /**
+     * Reserva posiciones consecutivas al final, que quedan visibles para las
+     * lecturas desde ya y se deben escribir con {@link #escribir(long, Conversion)}
+     * @param cantidad Posiciones a reservar
+     * @return La primera posición reservada
+     * @throws IllegalStateException si no entran en la capacidad del almacén
+     */
+    long reservar(int cantidad) {
+        long primera = siguiente.getAndAdd(cantidad);
+        if (primera + cantidad > CAPACIDAD) {
+            // tamaño() no pasa de la capacidad: las posiciones sobrantes nunca se leen
+            throw new IllegalStateException("Capacidad del historial excedida: " + (primera + cantidad));
+        }
+        return primera;
+    }
+
+    /**
+     * Escribe una posición reservada
+     */
+    void escribir(long posicion, Conversion conversion) {
+        segmento(posicion).set((int) (posicion & MASCARA_SEGMENTO), conversion);
+    }
+
+    /**
+     * Obtiene (creándolo si hace falta) el segmento que contiene una posición
+     */
+    private AtomicReferenceArray<Conversion> segmento(long posicion) {
+        int indice = (int) (posicion >>> BITS_SEGMENTO);
+        if (indice >= MAX_SEGMENTOS) {
+            throw new IllegalStateException("Capacidad del historial excedida: " + posicion);
+        }
+        AtomicReferenceArray<Conversion> actual = segmentos.get(indice);
+        if (actual == null) {
+            AtomicReferenceArray<Conversion> nuevo = new AtomicReferenceArray<>(TAMAÑO_SEGMENTO);
+            actual = segmentos.compareAndSet(indice, null, nuevo) ? nuevo : segmentos.get(indice);
+        }
+        return actual;
+    }
+
+    /**
+     * Lee una posición ya reservada; si el hilo que la reservó todavía no
+     * terminó de escribirla, espera (normalmente es cuestión de nanosegundos):
+     * primero activamente, después cediendo el procesador y durmiendo, hasta
+     * la espera máxima
+     * @throws IllegalStateException si la posición no se escribe a tiempo
+     */
+    private Conversion leer(long posicion) {
+        AtomicReferenceArray<Conversion> segmento = segmento(posicion);
+        int desplazamiento = (int) (posicion & MASCARA_SEGMENTO);
+        Conversion conversion = segmento.get(desplazamiento);
+        long limite = 0;
+        for (int giros = 0; conversion == null; giros++) {
+            if (giros < GIROS_ANTES_DE_CEDER) {
+                Thread.onSpinWait();
+            } else if (giros == GIROS_ANTES_DE_CEDER) {
+                limite = System.nanoTime() + esperaMaximaNanos;
+                Thread.yield();
+            } else if (System.nanoTime() - limite < 0) {
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+            } else {
+                throw new IllegalStateException(
+                    "La posición " + posicion + " del historial fue reservada pero nunca escrita");
+            }
+            conversion = segmento.get(desplazamiento);
+        }
+        return conversion;
+    }
+
+    /**
+     * Vista de tamaño fijo sobre los segmentos
+     */
+    private final class Instantanea extends AbstractList<Conversion> implements RandomAccess {
+        private final int tamaño;
+
+        Instantanea(int tamaño) {
+            this.tamaño = tamaño;
+        }
+
+        @Override
+        public Conversion get(int indice) {
+            if (indice < 0 || indice >= tamaño) {
+                throw new IndexOutOfBoundsException("Índice " + indice + " fuera de rango (tamaño " + tamaño + ")");
+            }
+            return leer(indice);
+        }
+
+        @Override
+        public int size() {
+            return tamaño;
+        }
+    }
+}
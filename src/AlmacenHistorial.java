@@ -0,0 +1,35 @@
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Almacén en memoria de solo-anexado para el historial de conversiones.
+ * Las implementaciones deben admitir anexados concurrentes y ofrecer
+ * instantáneas de tamaño fijo para las lecturas.
+ */
+public interface AlmacenHistorial {
+
+    /**
+     * Agrega una conversión al final
+     * @param conversion Conversión a agregar
+     * @return Posición donde quedó (0 = la primera del almacén)
+     */
+    int agregar(Conversion conversion);
+
+    /**
+     * Agrega varias conversiones en posiciones consecutivas
+     * @param lote Conversiones a agregar, en orden
+     * @return Posición de la primera del lote
+     */
+    int agregarTodas(Collection<Conversion> lote);
+
+    /**
+     * Cantidad de conversiones agregadas (incluye las que se están escribiendo)
+     */
+    int tamaño();
+
+    /**
+     * Vista de solo lectura de las conversiones existentes en este momento
+     * @return Lista inmutable con las conversiones en orden de inserción
+     */
+    List<Conversion> instantanea();
+}
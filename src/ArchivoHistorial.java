@@ -0,0 +1,368 @@
+import com.google.gson.JsonParseException;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.TreeSet;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Archivo de las conversiones que salieron del historial vivo por la
+ * política de retención ({@link RetencionHistorial}).
+ *
+ * Se guarda en un directorio junto al historial (data/historial.archivo/)
+ * segmentado por mes según la fecha de la conversión: cada archivado
+ * escribe, por cada mes que toca, un archivo nuevo de JSON Lines comprimido
+ * con gzip (conversiones-2024-06.000001.jsonl.gz). Lo ya archivado nunca se
+ * reescribe, y cada archivo aparece completo o no aparece (se escribe con
+ * otro nombre y se renombra).
+ *
+ * Las consultas por rango de fechas solo abren los archivos de los meses
+ * del rango.
+ */
+public class ArchivoHistorial {
+    private static final String PREFIJO_SEGMENTO = "conversiones-";
+    private static final String EXTENSION_SEGMENTO = ".jsonl.gz";
+    // conversiones-AAAA-MM.NNNNNN.jsonl.gz
+    private static final int LARGO_NOMBRE_SEGMENTO = PREFIJO_SEGMENTO.length() + 7 + 1 + 6 + EXTENSION_SEGMENTO.length();
+    private static final int TAMAÑO_BUFFER = 1 << 16;
+
+    private final Path directorio;
+
+    /**
+     * Constructor del archivo (el directorio se crea al archivar por primera vez)
+     * @param directorio Directorio de los segmentos
+     */
+    public ArchivoHistorial(Path directorio) {
+        this.directorio = directorio;
+    }
+
+    /**
+     * Escribe conversiones en archivos nuevos de los segmentos de sus meses y las fuerza al disco
+     * @param conversiones Conversiones a archivar, en orden
+     * @param cantidad Cantidad a tomar del iterador
+     * @return Cantidad archivada
+     * @throws IOException si no se pudo escribir algún segmento
+     */
+    public int archivar(Iterator<Conversion> conversiones, int cantidad) throws IOException {
+        Files.createDirectories(directorio);
+        int archivadas = 0;
+        // Si algo falla se borra todo lo escrito: el archivado se reintenta completo
+        List<Path> escritos = new ArrayList<>();
+        Segmento segmento = null;
+        boolean completo = false;
+        try {
+            for (; archivadas < cantidad && conversiones.hasNext(); archivadas++) {
+                Conversion conversion = conversiones.next();
+                YearMonth mes = YearMonth.from(conversion.getTimestamp());
+                if (segmento == null || !segmento.mes.equals(mes)) {
+                    if (segmento != null) {
+                        segmento.terminar();
+                        escritos.add(segmento.ruta);
+                    }
+                    segmento = new Segmento(mes, rutaNueva(mes));
+                }
+                segmento.escritor.write(GestorArchivos.aLineaJSON(conversion));
+                segmento.escritor.write('\n');
+            }
+            if (segmento != null) {
+                segmento.terminar();
+                escritos.add(segmento.ruta);
+            }
+            completo = true;
+        } finally {
+            if (!completo) {
+                if (segmento != null) {
+                    segmento.descartar();
+                }
+                for (Path escrito : escritos) {
+                    Files.deleteIfExists(escrito);
+                }
+            }
+        }
+        return archivadas;
+    }
+
+    /**
+     * Meses que tienen conversiones archivadas, en orden
+     */
+    public List<YearMonth> getSegmentos() {
+        TreeSet<YearMonth> meses = new TreeSet<>();
+        for (Path archivo : listarArchivos()) {
+            meses.add(mesDe(archivo));
+        }
+        return new ArrayList<>(meses);
+    }
+
+    /**
+     * Archivos de los segmentos, ordenados por mes y, dentro del mes, por orden de archivado
+     */
+    private List<Path> listarArchivos() {
+        List<Path> encontrados = new ArrayList<>();
+        if (!Files.isDirectory(directorio)) {
+            return encontrados;
+        }
+        try (DirectoryStream<Path> archivos = Files.newDirectoryStream(directorio,
+                PREFIJO_SEGMENTO + "*" + EXTENSION_SEGMENTO)) {
+            for (Path archivo : archivos) {
+                String nombre = archivo.getFileName().toString();
+                if (nombre.length() != LARGO_NOMBRE_SEGMENTO) {
+                    continue;
+                }
+                try {
+                    mesDe(archivo);
+                    Integer.parseInt(nombre.substring(PREFIJO_SEGMENTO.length() + 8, PREFIJO_SEGMENTO.length() + 14));
+                    encontrados.add(archivo);
+                } catch (DateTimeParseException | NumberFormatException e) {
+                    // No es un segmento: se ignora
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        // Mismo largo: el orden alfabético es el de mes y número
+        Collections.sort(encontrados);
+        return encontrados;
+    }
+
+    private static YearMonth mesDe(Path archivo) {
+        String nombre = archivo.getFileName().toString();
+        return YearMonth.parse(nombre.substring(PREFIJO_SEGMENTO.length(), PREFIJO_SEGMENTO.length() + 7));
+    }
+
+    /**
+     * Recorre en streaming las conversiones archivadas de un rango de fechas,
+     * mes por mes (dentro de cada mes, en el orden en que se archivaron).
+     * Hay que cerrar el iterador si no se recorre hasta el final.
+     * @param desde Inicio (inclusive), o null para no acotar
+     * @param hasta Fin (exclusive), o null para no acotar
+     * @return Iterador cerrable de las conversiones
+     */
+    public LectorArchivo recorrer(LocalDateTime desde, LocalDateTime hasta) {
+        List<Path> segmentos = new ArrayList<>();
+        for (Path archivo : listarArchivos()) {
+            YearMonth mes = mesDe(archivo);
+            if ((desde == null || !mes.isBefore(YearMonth.from(desde)))
+                    && (hasta == null || mes.atDay(1).atStartOfDay().isBefore(hasta))) {
+                segmentos.add(archivo);
+            }
+        }
+        return new LectorArchivo(segmentos, desde, hasta);
+    }
+
+    /**
+     * Consulta las conversiones archivadas de un par y un rango de fechas, de a páginas
+     * @param monedaOrigen Moneda de origen, o null para cualquiera
+     * @param monedaDestino Moneda de destino, o null para cualquiera
+     * @param desde Inicio (inclusive), o null para no acotar
+     * @param hasta Fin (exclusive), o null para no acotar
+     * @param saltar Cantidad de resultados a saltear (inicio de la página)
+     * @param cantidad Cantidad máxima de resultados
+     * @return Las conversiones de la página
+     */
+    public List<Conversion> consultar(String monedaOrigen, String monedaDestino,
+                                      LocalDateTime desde, LocalDateTime hasta, int saltar, int cantidad) {
+        List<Conversion> pagina = new ArrayList<>();
+        try (LectorArchivo lector = recorrer(desde, hasta)) {
+            while (pagina.size() < cantidad && lector.hasNext()) {
+                Conversion conversion = lector.next();
+                if ((monedaOrigen == null || monedaOrigen.equals(conversion.getMonedaOrigen()))
+                        && (monedaDestino == null || monedaDestino.equals(conversion.getMonedaDestino()))) {
+                    if (saltar > 0) {
+                        saltar--;
+                    } else {
+                        pagina.add(conversion);
+                    }
+                }
+            }
+        }
+        return pagina;
+    }
+
+    /**
+     * Borra todos los segmentos
+     * @throws IOException si no se pudo borrar alguno
+     */
+    public void limpiar() throws IOException {
+        for (Path archivo : listarArchivos()) {
+            Files.deleteIfExists(archivo);
+        }
+    }
+
+    public Path getDirectorio() { return directorio; }
+
+    /**
+     * Ruta del siguiente archivo del segmento de un mes
+     */
+    private Path rutaNueva(YearMonth mes) {
+        int numero = 0;
+        for (Path archivo : listarArchivos()) {
+            if (mesDe(archivo).equals(mes)) {
+                String nombre = archivo.getFileName().toString();
+                numero = Math.max(numero, Integer.parseInt(
+                    nombre.substring(PREFIJO_SEGMENTO.length() + 8, PREFIJO_SEGMENTO.length() + 14)));
+            }
+        }
+        return directorio.resolve(String.format("%s%s.%06d%s", PREFIJO_SEGMENTO, mes, numero + 1, EXTENSION_SEGMENTO));
+    }
+
+    /**
+     * Archivo de un segmento que se está escribiendo (con nombre temporal hasta terminarlo)
+     */
+    private static final class Segmento {
+        final YearMonth mes;
+        final Path ruta;
+        final Path temporal;
+        final FileOutputStream archivo;
+        final GZIPOutputStream gzip;
+        final Writer escritor;
+
+        Segmento(YearMonth mes, Path ruta) throws IOException {
+            this.mes = mes;
+            this.ruta = ruta;
+            this.temporal = ruta.resolveSibling(ruta.getFileName() + ".tmp");
+            this.archivo = new FileOutputStream(temporal.toFile());
+            this.gzip = new GZIPOutputStream(archivo, TAMAÑO_BUFFER);
+            this.escritor = new BufferedWriter(new OutputStreamWriter(gzip, StandardCharsets.UTF_8), TAMAÑO_BUFFER);
+        }
+
+        void terminar() throws IOException {
+            try {
+                escritor.flush();
+                gzip.finish();
+                archivo.getFD().sync();
+            } finally {
+                escritor.close();
+            }
+            try {
+                Files.move(temporal, ruta, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporal, ruta);
+            }
+        }
+
+        void descartar() throws IOException {
+            escritor.close();
+            Files.deleteIfExists(temporal);
+        }
+    }
+
+    /**
+     * Recorre los archivos de los segmentos de a uno, filtrando por fecha.
+     * Un archivo dañado se lee hasta donde está completo.
+     */
+    public static final class LectorArchivo implements Iterator<Conversion>, Closeable {
+        private final Iterator<Path> segmentos;
+        private final LocalDateTime desde;
+        private final LocalDateTime hasta;
+        private Path segmentoActual;
+        private BufferedReader lector;
+        private Conversion siguiente;
+
+        LectorArchivo(List<Path> segmentos, LocalDateTime desde, LocalDateTime hasta) {
+            this.segmentos = segmentos.iterator();
+            this.desde = desde;
+            this.hasta = hasta;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (siguiente == null) {
+                String linea = leerLinea();
+                if (linea == null) {
+                    return false;
+                }
+                if (linea.isEmpty()) {
+                    continue;
+                }
+                Conversion conversion;
+                try {
+                    conversion = GestorArchivos.desdeLineaJSON(linea);
+                } catch (JsonParseException e) {
+                    System.err.println("⚠️  Línea inválida en " + segmentoActual + ": " + e.getMessage());
+                    continue;
+                }
+                if ((desde == null || !conversion.getTimestamp().isBefore(desde))
+                        && (hasta == null || conversion.getTimestamp().isBefore(hasta))) {
+                    siguiente = conversion;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Conversion next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Conversion conversion = siguiente;
+            siguiente = null;
+            return conversion;
+        }
+
+        /**
+         * Siguiente línea del segmento actual o de los siguientes (null al terminar)
+         */
+        private String leerLinea() {
+            while (true) {
+                if (lector == null) {
+                    if (!segmentos.hasNext()) {
+                        return null;
+                    }
+                    segmentoActual = segmentos.next();
+                    try {
+                        lector = new BufferedReader(new InputStreamReader(new GZIPInputStream(
+                            Files.newInputStream(segmentoActual), TAMAÑO_BUFFER), StandardCharsets.UTF_8), TAMAÑO_BUFFER);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                try {
+                    String linea = lector.readLine();
+                    if (linea != null) {
+                        return linea;
+                    }
+                } catch (EOFException | ZipException e) {
+                    System.err.println("⚠️  Archivo dañado, se lee hasta donde está completo: " + segmentoActual);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                close();
+            }
+        }
+
+        @Override
+        public void close() {
+            if (lector != null) {
+                try {
+                    lector.close();
+                } catch (IOException e) {
+                    // Solo se leía
+                }
+                lector = null;
+            }
+        }
+    }
+}
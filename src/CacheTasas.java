@@ -0,0 +1,319 @@
+import excepciones.ApiException;
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caché de tasas de cambio con expiración por tiempo (TTL).
+ * Mientras exista una instantánea, los lectores nunca se bloquean: si está
+ * vencida se devuelve igualmente y se dispara un único refresco en segundo
+ * plano (stale-while-revalidate). Solo la primera carga hace esperar.
+ *
+ * Las cargas se coalescen: mientras hay una en curso, todos los que la
+ * necesitan (lectores síncronos, asíncronos o el refresco) comparten el
+ * mismo CompletableFuture en lugar de lanzar otra consulta a la API.
+ *
+ * Opcionalmente se fija una antigüedad máxima: una instantánea más vieja ya
+ * no se sirve y la lectura espera una carga nueva (si falla, la lectura
+ * falla). El caché puede sembrarse con una instantánea previa (por ejemplo,
+ * guardada en disco) para no esperar a la primera carga.
+ *
+ * @param <T> Tipo de la instantánea de tasas almacenada
+ */
+public class CacheTasas<T> {
+
+    /**
+     * Función que obtiene una instantánea nueva desde el origen de forma bloqueante
+     */
+    @FunctionalInterface
+    public interface Cargador<T> {
+        T cargar() throws ApiException;
+    }
+
+    /**
+     * Función que inicia la obtención de una instantánea nueva sin bloquear
+     */
+    @FunctionalInterface
+    public interface CargadorAsincrono<T> {
+        CompletableFuture<T> cargar();
+    }
+
+    /**
+     * Instantánea inmutable junto con el instante en que fue obtenida
+     */
+    private static final class Entrada<T> {
+        final T valor;
+        final long creadaNanos;
+
+        Entrada(T valor, long creadaNanos) {
+            this.valor = valor;
+            this.creadaNanos = creadaNanos;
+        }
+    }
+
+    private final CargadorAsincrono<T> cargador;
+    private final boolean habilitado;
+    private final long ttlNanos;
+    // 0 = sin límite
+    private final long maxObsolescenciaNanos;
+    private final AtomicReference<CompletableFuture<T>> cargaEnCurso = new AtomicReference<>();
+    private volatile Entrada<T> entrada;
+
+    private final LongAdder aciertos = new LongAdder();
+    private final LongAdder aciertosObsoletos = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+    private final LongAdder refrescos = new LongAdder();
+    private final LongAdder erroresRefresco = new LongAdder();
+
+    /**
+     * Constructor del caché con un cargador bloqueante, que se ejecuta en un
+     * hilo propio del caché
+     * @param cargador Función que obtiene una instantánea nueva
+     * @param habilitado Si es false, cada lectura delega directamente en el cargador
+     * @param expiracion Tiempo durante el cual una instantánea se considera vigente
+     */
+    public CacheTasas(Cargador<T> cargador, boolean habilitado, Duration expiracion) {
+        this(adaptar(cargador), habilitado, expiracion);
+    }
+
+    /**
+     * Constructor del caché con un cargador asíncrono
+     * @param cargador Función que inicia la obtención de una instantánea nueva
+     * @param habilitado Si es false, cada lectura delega directamente en el cargador
+     * @param expiracion Tiempo durante el cual una instantánea se considera vigente
+     */
+    public CacheTasas(CargadorAsincrono<T> cargador, boolean habilitado, Duration expiracion) {
+        this(cargador, habilitado, expiracion, Duration.ZERO);
+    }
+
+    /**
+     * Constructor del caché con un cargador asíncrono y antigüedad máxima
+     * @param cargador Función que inicia la obtención de una instantánea nueva
+     * @param habilitado Si es false, cada lectura delega directamente en el cargador
+     * @param expiracion Tiempo durante el cual una instantánea se considera vigente
+     * @param maxObsolescencia Antigüedad a partir de la cual una instantánea ya no
+     *                         se sirve ni siquiera vencida (Duration.ZERO = sin límite)
+     */
+    public CacheTasas(CargadorAsincrono<T> cargador, boolean habilitado, Duration expiracion,
+                      Duration maxObsolescencia) {
+        this.cargador = cargador;
+        this.habilitado = habilitado;
+        this.ttlNanos = expiracion.toNanos();
+        this.maxObsolescenciaNanos = maxObsolescencia.toNanos();
+    }
+
+    /**
+     * Obtiene la instantánea actual. Solo bloquea si todavía no existe ninguna.
+     * @return La instantánea vigente, o la última conocida si está vencida
+     * @throws ApiException si no hay instantánea utilizable y la carga falla
+     */
+    public T obtener() throws ApiException {
+        Entrada<T> actual = habilitado ? leerEntrada() : null;
+        if (actual != null) {
+            return actual.valor;
+        }
+        try {
+            return esperar(cargar());
+        } catch (ApiException e) {
+            if (habilitado && entrada != null) {
+                throw new ApiException("❌ Las tasas disponibles superan la antigüedad máxima y no se pudieron actualizar: "
+                    + e.getMessage(), e);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Obtiene la instantánea actual sin bloquear
+     * @return Un futuro ya completado si hay instantánea (vigente o vencida);
+     *         si no, el futuro de la carga en curso
+     */
+    public CompletableFuture<T> obtenerAsync() {
+        Entrada<T> actual = habilitado ? leerEntrada() : null;
+        return actual != null ? CompletableFuture.completedFuture(actual.valor) : cargar();
+    }
+
+    /**
+     * Fuerza una carga y reemplaza la instantánea actual. Si ya hay una carga
+     * en curso, espera esa misma en lugar de iniciar otra.
+     * @return La nueva instantánea
+     * @throws ApiException si la carga falla (la instantánea anterior se conserva)
+     */
+    public T refrescar() throws ApiException {
+        T valor = esperar(iniciarCarga());
+        refrescos.increment();
+        return valor;
+    }
+
+    /**
+     * Siembra el caché con una instantánea obtenida antes (p. ej. leída de
+     * disco). No reemplaza una instantánea ya cargada.
+     * @param valor Instantánea previa
+     * @param antiguedad Tiempo transcurrido desde que se obtuvo
+     * @return true si se usó la instantánea
+     */
+    public boolean sembrar(T valor, Duration antiguedad) {
+        if (entrada != null) {
+            return false;
+        }
+        entrada = new Entrada<>(valor, System.nanoTime() - antiguedad.toNanos());
+        return true;
+    }
+
+    /**
+     * Descarta la instantánea actual; la siguiente lectura volverá a cargar
+     */
+    public void invalidar() {
+        entrada = null;
+    }
+
+    /**
+     * Lee la entrada actual contabilizando el acierto; si está vencida dispara el refresco
+     * @return La entrada, o null si no hay ninguna (o supera la antigüedad máxima)
+     */
+    private Entrada<T> leerEntrada() {
+        Entrada<T> actual = entrada;
+        if (actual == null) {
+            return null;
+        }
+        long edad = System.nanoTime() - actual.creadaNanos;
+        if (maxObsolescenciaNanos > 0 && edad >= maxObsolescenciaNanos) {
+            // Demasiado vieja para servirla: se trata como ausente y se espera una carga
+            return null;
+        }
+        if (edad < ttlNanos) {
+            aciertos.increment();
+        } else {
+            aciertosObsoletos.increment();
+            programarRefresco();
+        }
+        return actual;
+    }
+
+    /**
+     * Carga por ausencia de instantánea (o con el caché deshabilitado)
+     */
+    private CompletableFuture<T> cargar() {
+        fallos.increment();
+        return habilitado ? iniciarCarga() : cargador.cargar();
+    }
+
+    /**
+     * Lanza un refresco en segundo plano si no hay otro en curso
+     */
+    private void programarRefresco() {
+        if (cargaEnCurso.get() != null) {
+            return;
+        }
+        iniciarCarga().whenComplete((valor, error) -> {
+            if (error == null) {
+                refrescos.increment();
+            } else {
+                erroresRefresco.increment();
+                System.err.println("⚠️  No se pudo refrescar el caché de tasas: " + causa(error).getMessage());
+            }
+        });
+    }
+
+    /**
+     * Devuelve la carga en curso o inicia una nueva (una sola a la vez)
+     */
+    private CompletableFuture<T> iniciarCarga() {
+        while (true) {
+            CompletableFuture<T> enCurso = cargaEnCurso.get();
+            if (enCurso != null) {
+                return enCurso;
+            }
+            CompletableFuture<T> nueva = new CompletableFuture<>();
+            if (!cargaEnCurso.compareAndSet(null, nueva)) {
+                continue;
+            }
+
+            CompletableFuture<T> origen;
+            try {
+                origen = cargador.cargar();
+            } catch (RuntimeException e) {
+                origen = CompletableFuture.failedFuture(e);
+            }
+            origen.whenComplete((valor, error) -> {
+                if (error == null) {
+                    entrada = new Entrada<>(valor, System.nanoTime());
+                }
+                cargaEnCurso.set(null);
+                if (error == null) {
+                    nueva.complete(valor);
+                } else {
+                    nueva.completeExceptionally(causa(error));
+                }
+            });
+            return nueva;
+        }
+    }
+
+    /**
+     * Espera un futuro de carga traduciendo su error a ApiException
+     */
+    private static <T> T esperar(CompletableFuture<T> futuro) throws ApiException {
+        try {
+            return futuro.join();
+        } catch (CompletionException | CancellationException e) {
+            Throwable causa = causa(e);
+            if (causa instanceof ApiException) {
+                throw (ApiException) causa;
+            }
+            if (causa instanceof RuntimeException) {
+                throw (RuntimeException) causa;
+            }
+            throw new ApiException("❌ Error al cargar las tasas: " + causa.getMessage(), causa);
+        }
+    }
+
+    /**
+     * Quita los envoltorios CompletionException de un error asíncrono
+     */
+    static Throwable causa(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+
+    /**
+     * Ejecuta un cargador bloqueante en un hilo daemon propio
+     */
+    private static <T> CargadorAsincrono<T> adaptar(Cargador<T> cargador) {
+        ExecutorService ejecutor = Executors.newSingleThreadExecutor(tarea -> {
+            Thread hilo = new Thread(tarea, "refresco-tasas");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        return () -> CompletableFuture.supplyAsync(() -> {
+            try {
+                return cargador.cargar();
+            } catch (ApiException e) {
+                throw new CompletionException(e);
+            }
+        }, ejecutor);
+    }
+
+    // Contadores
+    public long getAciertos() { return aciertos.sum(); }
+    public long getAciertosObsoletos() { return aciertosObsoletos.sum(); }
+    public long getFallos() { return fallos.sum(); }
+    public long getRefrescos() { return refrescos.sum(); }
+    public long getErroresRefresco() { return erroresRefresco.sum(); }
+
+    /**
+     * Resumen legible de los contadores del caché
+     * @return Texto con aciertos, fallos y refrescos
+     */
+    public String obtenerEstadisticas() {
+        return String.format("Caché de tasas: %d aciertos, %d aciertos obsoletos, %d fallos, %d refrescos (%d con error)",
+            getAciertos(), getAciertosObsoletos(), getFallos(), getRefrescos(), getErroresRefresco());
+    }
+}
@@ -0,0 +1,38 @@
+import java.util.List;
+
+/**
+ * Resultado de cargar historial.json: las conversiones que quedaron en
+ * memoria, cuántas más antiguas quedaron solo en disco y el costo de la carga.
+ */
+public class CargaHistorial {
+    private final List<Conversion> enMemoria;
+    private final int enDisco;
+    private final long duracionNanos;
+    private final long memoriaPicoBytes;
+
+    public CargaHistorial(List<Conversion> enMemoria, int enDisco, long duracionNanos, long memoriaPicoBytes) {
+        this.enMemoria = enMemoria;
+        this.enDisco = enDisco;
+        this.duracionNanos = duracionNanos;
+        this.memoriaPicoBytes = memoriaPicoBytes;
+    }
+
+    // Getters
+    public List<Conversion> getEnMemoria() { return enMemoria; }
+    public int getEnDisco() { return enDisco; }
+    public long getDuracionNanos() { return duracionNanos; }
+    public long getMemoriaPicoBytes() { return memoriaPicoBytes; }
+
+    /**
+     * Cantidad total de conversiones (en memoria + solo en disco)
+     */
+    public int getTotal() {
+        return enDisco + enMemoria.size();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d conversiones (%d en memoria) en %.1f ms, heap pico ~%.1f MB",
+            getTotal(), enMemoria.size(), duracionNanos / 1e6, memoriaPicoBytes / (1024.0 * 1024.0));
+    }
+}
@@ -4,71 +4,680 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.Duration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Clase para consultar tasas de cambio desde la API de ExchangeRate.
  * Utiliza configuración externa para mayor seguridad.
- * Implementa reintentos automáticos con backoff exponencial.
+ * Implementa reintentos automáticos con backoff exponencial y un caché
+ * con expiración configurable (cache.enabled / cache.expiration.minutes).
+ * Las descargas que hace el caché son asíncronas (HttpClient.sendAsync) y
+ * el backoff entre reintentos se programa sin bloquear ningún hilo.
+ *
+ * La última tabla descargada se guarda en disco (junto al historial) y se
+ * carga al iniciar: la primera conversión no espera a la API y funciona sin
+ * conexión, mientras la tabla no supere cache.max.staleness.minutes. Si está
+ * vencida se refresca en segundo plano.
+ *
+ * Cada tabla entra al caché con su {@link MatrizTasasCruzadas} para las
+ * monedas de cache.cross.currencies.
+ *
+ * Cada tabla descargada se agrega además a la {@link SerieTasas} (si está
+ * habilitada con rates.history.enabled), que permite convertir con las
+ * tasas vigentes en un momento pasado.
+ *
+ * Además de la tabla de USD se pueden pedir tablas de otras bases
+ * ({@link #obtenerTablaTasas(String)}), cada una con su propio caché: se
+ * conservan las rates.bases.cache.size bases usadas más recientemente, las
+ * descargas simultáneas de una misma base se comparten y las peticiones a la
+ * API en vuelo se limitan a api.max.concurrent.requests (las demás esperan
+ * en cola sin ocupar hilos). Las monedas de rates.direct.bases se convierten
+ * con la tabla de su propia base en lugar de triangular por USD.
+ *
+ * Con las {@link Metricas} habilitadas registra la latencia de cada intento
+ * de descarga y los errores y reintentos por código de estado;
+ * {@link #registrarMedidores()} publica los contadores del caché (con la
+ * proporción de aciertos) como medidores.
  */
 public class ConsultaTasaDeCambio {
+    // Monedas de los pares del menú de Principal
+    private static final String[] MONEDAS_FRECUENTES = {"USD", "ARS", "BRL", "PEN"};
+    // Base de la tabla principal (la que se persiste y se registra en la serie histórica)
+    private static final String BASE_PRINCIPAL = "USD";
+    private static final int TIMEOUT_PREDETERMINADO_MS = 5000;
+    private static final int MAX_REINTENTOS_PREDETERMINADO = 3;
+    private static final Duration EXPIRACION_PREDETERMINADA = Duration.ofMinutes(60);
+    private static final int MAX_BASES_PREDETERMINADO = 8;
+    private static final int MAX_PETICIONES_PREDETERMINADO = 4;
+    private static final Duration ESPERA_INICIAL_REINTENTO = Duration.ofSeconds(1);
+
     private final String apiKey;
     private final String urlBase;
     private final int timeout;
     private final int maxReintentos;
     private final HttpClient client;
+    private final CacheTasas<TablaTasas> cache;
+    // Cachés de las demás bases, por orden de uso (el menos usado se descarta)
+    private final Map<String, CacheTasas<TablaTasas>> cachesPorBase;
+    private final boolean cacheHabilitado;
+    private final Duration expiracionCache;
+    private final Duration maxObsolescencia;
+    // Monedas de origen que se convierten con la tabla de su propia base
+    private final Set<String> basesDirectas;
+    private final LimitePeticiones limitePeticiones;
+    private final Path rutaInstantanea;
+    // Monedas de la matriz de tasas cruzadas (vacío = sin matriz)
+    private final String[] monedasFrecuentes;
+    // Serie histórica de tablas (null = no se registran)
+    private volatile SerieTasas serieTasas;
+    // Espera antes del primer reintento; se duplica en cada intento
+    private volatile long esperaInicialMs = ESPERA_INICIAL_REINTENTO.toMillis();
+
+    /**
+     * Opciones de la consulta; los valores por defecto son los de
+     * config.properties.example, sin tabla persistida ni límite de
+     * obsolescencia, con matriz cruzada para las monedas del menú y sin
+     * bases directas
+     */
+    public static final class Opciones {
+        private int timeout = TIMEOUT_PREDETERMINADO_MS;
+        private int maxReintentos = MAX_REINTENTOS_PREDETERMINADO;
+        private boolean cacheHabilitado = true;
+        private Duration expiracionCache = EXPIRACION_PREDETERMINADA;
+        private Path rutaInstantanea;
+        private Duration maxObsolescencia = Duration.ZERO;
+        private String[] monedasFrecuentes = MONEDAS_FRECUENTES;
+        private int maxBases = MAX_BASES_PREDETERMINADO;
+        private int maxPeticiones = MAX_PETICIONES_PREDETERMINADO;
+        private String[] basesDirectas = new String[0];
+
+        /**
+         * Lee api.*, cache.* y rates.* de GestorConfiguracion
+         * @return Las opciones configuradas
+         */
+        public static Opciones desdeConfiguracion() {
+            return new Opciones()
+                .timeout(GestorConfiguracion.obtenerInt("api.timeout"))
+                .maxReintentos(GestorConfiguracion.obtenerInt("api.max.retries"))
+                .cacheHabilitado(GestorConfiguracion.obtenerBoolean("cache.enabled", true))
+                .expiracionCache(Duration.ofMinutes(GestorConfiguracion.obtenerInt("cache.expiration.minutes", 60)))
+                .rutaInstantanea(GestorConfiguracion.obtenerBoolean("cache.snapshot.enabled", true)
+                    ? rutaInstantaneaJuntoA(GestorConfiguracion.obtener("historial.file.path"))
+                    : null)
+                .maxObsolescencia(Duration.ofMinutes(GestorConfiguracion.obtenerInt("cache.max.staleness.minutes", 0)))
+                .monedasFrecuentes(monedasFrecuentesConfiguradas())
+                .maxBases(GestorConfiguracion.obtenerInt("rates.bases.cache.size", MAX_BASES_PREDETERMINADO))
+                .maxPeticiones(GestorConfiguracion.obtenerInt("api.max.concurrent.requests", MAX_PETICIONES_PREDETERMINADO))
+                .basesDirectas(basesDirectasConfiguradas());
+        }
+
+        /** @param timeout Timeout de conexión y de petición en milisegundos */
+        public Opciones timeout(int timeout) {
+            this.timeout = timeout;
+            return this;
+        }
+
+        /** @param maxReintentos Cantidad máxima de intentos por consulta */
+        public Opciones maxReintentos(int maxReintentos) {
+            this.maxReintentos = maxReintentos;
+            return this;
+        }
+
+        /** @param cacheHabilitado Si las tasas se cachean entre consultas */
+        public Opciones cacheHabilitado(boolean cacheHabilitado) {
+            this.cacheHabilitado = cacheHabilitado;
+            return this;
+        }
+
+        /** @param expiracionCache Tiempo de vigencia de las tasas cacheadas */
+        public Opciones expiracionCache(Duration expiracionCache) {
+            this.expiracionCache = expiracionCache;
+            return this;
+        }
+
+        /** @param rutaInstantanea Archivo donde se guarda la última tabla descargada (null = no se persiste) */
+        public Opciones rutaInstantanea(Path rutaInstantanea) {
+            this.rutaInstantanea = rutaInstantanea;
+            return this;
+        }
+
+        /**
+         * @param maxObsolescencia Antigüedad máxima de una tabla para usarla en conversiones
+         *                         (Duration.ZERO = sin límite)
+         */
+        public Opciones maxObsolescencia(Duration maxObsolescencia) {
+            this.maxObsolescencia = maxObsolescencia;
+            return this;
+        }
+
+        /** @param monedasFrecuentes Monedas con tasas cruzadas precalculadas (vacío = ninguna) */
+        public Opciones monedasFrecuentes(String... monedasFrecuentes) {
+            this.monedasFrecuentes = monedasFrecuentes.clone();
+            return this;
+        }
+
+        /** @param maxBases Cantidad de bases distintas de USD que se mantienen en caché */
+        public Opciones maxBases(int maxBases) {
+            this.maxBases = maxBases;
+            return this;
+        }
+
+        /** @param maxPeticiones Peticiones simultáneas a la API como máximo */
+        public Opciones maxPeticiones(int maxPeticiones) {
+            this.maxPeticiones = maxPeticiones;
+            return this;
+        }
+
+        /** @param basesDirectas Monedas de origen que se convierten con la tabla de su base */
+        public Opciones basesDirectas(String... basesDirectas) {
+            this.basesDirectas = basesDirectas.clone();
+            return this;
+        }
+    }
 
     /**
      * Constructor que inicializa la configuración desde GestorConfiguracion
      */
     public ConsultaTasaDeCambio() {
-        this.apiKey = GestorConfiguracion.obtenerApiKey();
-        this.urlBase = GestorConfiguracion.obtenerUrlApi();
-        this.timeout = GestorConfiguracion.obtenerInt("api.timeout");
-        this.maxReintentos = GestorConfiguracion.obtenerInt("api.max.retries");
+        this(GestorConfiguracion.obtenerApiKey(), GestorConfiguracion.obtenerUrlApi(), Opciones.desdeConfiguracion());
+        if (GestorConfiguracion.obtenerBoolean("rates.history.enabled", true)) {
+            abrirSerieTasas(rutaSerieConfigurada());
+        }
+    }
+
+    /**
+     * Constructor con configuración explícita (no lee config.properties)
+     * @param apiKey API key de ExchangeRate-API
+     * @param urlBase URL base de la API, terminada en '/'
+     * @param opciones Opciones de la consulta; se copian, cambiarlas después no tiene efecto
+     */
+    public ConsultaTasaDeCambio(String apiKey, String urlBase, Opciones opciones) {
+        if (opciones.maxBases < 1 || opciones.maxPeticiones < 1) {
+            throw new IllegalArgumentException("maxBases y maxPeticiones deben ser positivos");
+        }
+        int maxBases = opciones.maxBases;
+        this.apiKey = apiKey;
+        this.urlBase = urlBase;
+        this.timeout = opciones.timeout;
+        this.maxReintentos = opciones.maxReintentos;
         this.client = HttpClient.newBuilder()
                 .connectTimeout(Duration.ofMillis(timeout))
                 .build();
+        this.cache = new CacheTasas<>(() -> descargarTablaTasasAsync(BASE_PRINCIPAL),
+            opciones.cacheHabilitado, opciones.expiracionCache, opciones.maxObsolescencia);
+        this.cachesPorBase = new LinkedHashMap<String, CacheTasas<TablaTasas>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheTasas<TablaTasas>> menosUsada) {
+                return size() > maxBases;
+            }
+        };
+        this.cacheHabilitado = opciones.cacheHabilitado;
+        this.expiracionCache = opciones.expiracionCache;
+        this.maxObsolescencia = opciones.maxObsolescencia;
+        this.basesDirectas = new HashSet<>();
+        for (String base : opciones.basesDirectas) {
+            int clave = RegistroMonedas.claveFlexible(base, 0, base.length());
+            if (clave >= 0 && !BASE_PRINCIPAL.equals(RegistroMonedas.codigo(clave))) {
+                this.basesDirectas.add(RegistroMonedas.codigo(clave));
+            }
+        }
+        this.limitePeticiones = new LimitePeticiones(opciones.maxPeticiones);
+        this.rutaInstantanea = opciones.rutaInstantanea;
+        this.monedasFrecuentes = opciones.monedasFrecuentes;
+        if (cacheHabilitado && rutaInstantanea != null) {
+            cargarInstantanea();
+        }
     }
 
     /**
-     * Obtiene las tasas de cambio desde la API con reintentos automáticos
-     * @return JSON con las tasas de cambio
-     * @throws ApiException si hay error en la consulta después de todos los reintentos
+     * Publica los contadores del caché y las peticiones en cola como
+     * medidores de {@link Metricas}. Los medidores son globales y retienen
+     * esta consulta: lo llama una sola vez quien crea la consulta de la
+     * aplicación ({@link ConversorDeMoneda#ConversorDeMoneda()} o el modo por
+     * lotes de Principal).
      */
-    public String obtenerTasaDeCambio() throws ApiException {
-        String urlCompleta = urlBase + apiKey + "/latest/USD";
-        
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(urlCompleta))
+    public void registrarMedidores() {
+        Metricas.registrarMedidor("api.peticiones.en.cola", limitePeticiones::enCola);
+        Metricas.registrarMedidor("cache.tasas.aciertos", cache::getAciertos);
+        Metricas.registrarMedidor("cache.tasas.aciertos.obsoletos", cache::getAciertosObsoletos);
+        Metricas.registrarMedidor("cache.tasas.fallos", cache::getFallos);
+        Metricas.registrarMedidor("cache.tasas.errores.refresco", cache::getErroresRefresco);
+        Metricas.registrarMedidor("cache.tasas.proporcion.aciertos", () -> {
+            double aciertos = cache.getAciertos() + cache.getAciertosObsoletos();
+            double total = aciertos + cache.getFallos();
+            return total == 0 ? 0 : aciertos / total;
+        });
+    }
+
+    /**
+     * data/historial.json -> data/tasas.dat
+     */
+    private static Path rutaInstantaneaJuntoA(String rutaHistorial) {
+        return Paths.get(rutaHistorial == null ? "data/historial.json" : rutaHistorial)
+            .toAbsolutePath().resolveSibling("tasas.dat");
+    }
+
+    /**
+     * rates.history.path, o data/serie-tasas junto al historial
+     */
+    private static Path rutaSerieConfigurada() {
+        String ruta = GestorConfiguracion.obtener("rates.history.path");
+        if (ruta != null && !ruta.isBlank()) {
+            return Paths.get(ruta);
+        }
+        String rutaHistorial = GestorConfiguracion.obtener("historial.file.path");
+        return Paths.get(rutaHistorial == null ? "data/historial.json" : rutaHistorial)
+            .toAbsolutePath().resolveSibling("serie-tasas");
+    }
+
+    /**
+     * Abre la serie histórica; un error solo se informa
+     */
+    private void abrirSerieTasas(Path directorio) {
+        try {
+            setSerieTasas(SerieTasas.abrir(directorio));
+        } catch (IOException e) {
+            System.err.println("⚠️  No se pudo abrir la serie histórica de tasas: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Asigna la serie histórica donde se registran las tablas descargadas
+     * @param serieTasas Serie abierta (null = no se registran)
+     */
+    public void setSerieTasas(SerieTasas serieTasas) {
+        this.serieTasas = serieTasas;
+    }
+
+    /**
+     * Obtiene la serie histórica de tasas
+     * @return La serie, o null si no está habilitada
+     */
+    public SerieTasas getSerieTasas() {
+        return serieTasas;
+    }
+
+    /**
+     * Agrega la tabla a la serie histórica; un error solo se informa
+     */
+    private void registrarEnSerie(TablaTasas tabla) {
+        SerieTasas serie = serieTasas;
+        if (serie == null) {
+            return;
+        }
+        try {
+            serie.agregar(tabla);
+        } catch (IOException e) {
+            System.err.println("⚠️  No se pudo agregar la tabla a la serie histórica: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Siembra el caché con la última tabla guardada en disco, si existe
+     */
+    private void cargarInstantanea() {
+        if (!Files.exists(rutaInstantanea)) {
+            return;
+        }
+        try {
+            TablaTasas tabla = conMatriz(TablaTasas.leer(rutaInstantanea));
+            long antiguedadMs = Math.max(0, System.currentTimeMillis() - tabla.getObtenidaMillis());
+            cache.sembrar(tabla, Duration.ofMillis(antiguedadMs));
+            System.out.println("💾 Tasas cargadas de disco (antigüedad: " + antiguedadMs / 60_000 + " min)");
+        } catch (IOException e) {
+            System.err.println("⚠️  No se pudieron leer las tasas guardadas: " + e.getMessage());
+        }
+    }
+
+    /**
+     * rates.direct.bases (vacío = todas las conversiones usan la tabla de USD)
+     */
+    private static String[] basesDirectasConfiguradas() {
+        String valor = GestorConfiguracion.obtener("rates.direct.bases");
+        return valor == null || valor.isBlank() ? new String[0] : valor.split(",");
+    }
+
+    /**
+     * cache.cross.currencies, o las monedas del menú de Principal si no está configurada
+     */
+    private static String[] monedasFrecuentesConfiguradas() {
+        String valor = GestorConfiguracion.obtener("cache.cross.currencies");
+        if (valor == null) {
+            return MONEDAS_FRECUENTES;
+        }
+        return valor.isBlank() ? new String[0] : valor.split(",");
+    }
+
+    /**
+     * Agrega a la tabla la matriz de tasas cruzadas; se hace antes de que la
+     * tabla entre al caché, así la matriz se reemplaza junto con las tasas
+     */
+    private TablaTasas conMatriz(TablaTasas tabla) {
+        if (monedasFrecuentes.length == 0) {
+            return tabla;
+        }
+        return tabla.conMatrizCruzada(monedasFrecuentes);
+    }
+
+    /**
+     * Guarda la tabla recién descargada; un error solo se informa
+     */
+    private void guardarInstantanea(TablaTasas tabla) {
+        try {
+            tabla.guardar(rutaInstantanea);
+        } catch (IOException e) {
+            System.err.println("⚠️  No se pudieron guardar las tasas en disco: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Obtiene la tabla de tasas, usando el caché si está habilitado
+     * @return Instantánea inmutable de tasas
+     * @throws ApiException si no hay tasas en caché y la consulta falla
+     */
+    public TablaTasas obtenerTablaTasas() throws ApiException {
+        return cache.obtener();
+    }
+
+    /**
+     * Obtiene la tabla de tasas sin bloquear. Si hay tasas en caché el futuro
+     * ya está completado; si no, se comparte la descarga en curso con los
+     * demás consumidores.
+     * @return Futuro con la instantánea de tasas; falla con ApiException
+     */
+    public CompletableFuture<TablaTasas> obtenerTablaTasasAsync() {
+        return cache.obtenerAsync();
+    }
+
+    /**
+     * Obtiene la tabla de tasas de una base cualquiera, con su propio caché.
+     * Las lecturas simultáneas de una base que no está en caché comparten
+     * una sola descarga.
+     * @param base Código de la moneda base (USD usa la tabla principal)
+     * @return Instantánea inmutable de tasas con esa base
+     * @throws ApiException si no hay tasas en caché para la base y la consulta falla
+     */
+    public TablaTasas obtenerTablaTasas(String base) throws ApiException {
+        return cacheDeBase(base).obtener();
+    }
+
+    /**
+     * Obtiene la tabla de tasas de una base cualquiera sin bloquear
+     * @param base Código de la moneda base (USD usa la tabla principal)
+     * @return Futuro con la instantánea de tasas; falla con ApiException
+     */
+    public CompletableFuture<TablaTasas> obtenerTablaTasasAsync(String base) {
+        CacheTasas<TablaTasas> cacheBase;
+        try {
+            cacheBase = cacheDeBase(base);
+        } catch (ApiException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return cacheBase.obtenerAsync();
+    }
+
+    /**
+     * Tabla con la que conviene convertir desde una moneda: la de su propia
+     * base si está en rates.direct.bases (tasa directa, sin triangular por
+     * USD) o la tabla principal
+     * @param monedaOrigen Código de la moneda origen
+     * @return Instantánea de tasas
+     * @throws ApiException si no hay tasas en caché y la consulta falla
+     */
+    public TablaTasas obtenerTablaTasasPara(String monedaOrigen) throws ApiException {
+        return basesDirectas.contains(monedaOrigen) ? obtenerTablaTasas(monedaOrigen) : cache.obtener();
+    }
+
+    /**
+     * Versión asíncrona de {@link #obtenerTablaTasasPara(String)}
+     * @param monedaOrigen Código de la moneda origen
+     * @return Futuro con la instantánea de tasas; falla con ApiException
+     */
+    public CompletableFuture<TablaTasas> obtenerTablaTasasParaAsync(String monedaOrigen) {
+        return basesDirectas.contains(monedaOrigen) ? obtenerTablaTasasAsync(monedaOrigen) : cache.obtenerAsync();
+    }
+
+    /**
+     * Caché de una base, creado la primera vez que se pide
+     * @throws ApiException si la base no es un código de moneda
+     */
+    private CacheTasas<TablaTasas> cacheDeBase(String base) throws ApiException {
+        int clave = RegistroMonedas.clave(base);
+        if (clave < 0) {
+            throw new ApiException("❌ Moneda base inválida: " + base, 400);
+        }
+        String codigo = RegistroMonedas.codigo(clave);
+        if (BASE_PRINCIPAL.equals(codigo)) {
+            return cache;
+        }
+        synchronized (cachesPorBase) {
+            CacheTasas<TablaTasas> cacheBase = cachesPorBase.get(codigo);
+            if (cacheBase == null) {
+                cacheBase = new CacheTasas<>(() -> descargarTablaTasasAsync(codigo),
+                    cacheHabilitado, expiracionCache, maxObsolescencia);
+                cachesPorBase.put(codigo, cacheBase);
+            }
+            return cacheBase;
+        }
+    }
+
+    /**
+     * Cantidad de bases distintas de USD que están en caché
+     */
+    public int getBasesEnCache() {
+        synchronized (cachesPorBase) {
+            return cachesPorBase.size();
+        }
+    }
+
+    /**
+     * Obtiene el caché de tasas (para consultar sus contadores o invalidarlo)
+     * @return El caché de tasas
+     */
+    public CacheTasas<TablaTasas> getCache() {
+        return cache;
+    }
+
+    /**
+     * Descarga las tasas y las convierte en una tabla; el JSON se parsea una
+     * sola vez por descarga. Solo la tabla principal se guarda en disco y en
+     * la serie histórica.
+     */
+    private CompletableFuture<TablaTasas> descargarTablaTasasAsync(String base) {
+        return obtenerTasaDeCambioAsync(base).thenApply(json -> {
+            TablaTasas tabla;
+            try {
+                tabla = TablaTasas.desdeJson(json);
+            } catch (IOException e) {
+                throw new CompletionException(
+                    new ApiException("❌ Respuesta de la API inválida: " + e.getMessage(), e));
+            }
+            if (!BASE_PRINCIPAL.equals(base)) {
+                return conMatriz(tabla);
+            }
+            if (rutaInstantanea != null) {
+                guardarInstantanea(tabla);
+            }
+            registrarEnSerie(tabla);
+            return conMatriz(tabla);
+        });
+    }
+
+    /**
+     * Descarga las tasas de cambio desde la API sin bloquear (sin caché).
+     * Aplica los mismos reintentos y backoff exponencial que
+     * {@link #obtenerTasaDeCambio()}, pero la espera se programa con un
+     * ejecutor diferido en lugar de dormir el hilo.
+     * @return Futuro con el JSON de las tasas; falla con ApiException
+     */
+    public CompletableFuture<String> obtenerTasaDeCambioAsync() {
+        return obtenerTasaDeCambioAsync(BASE_PRINCIPAL);
+    }
+
+    /**
+     * Descarga sin bloquear las tasas de una base (sin caché)
+     * @param base Código de la moneda base
+     * @return Futuro con el JSON de las tasas; falla con ApiException
+     */
+    public CompletableFuture<String> obtenerTasaDeCambioAsync(String base) {
+        CompletableFuture<String> resultado = new CompletableFuture<>();
+        intentarAsync(construirPeticion(base), 1, resultado);
+        return resultado;
+    }
+
+    /**
+     * Realiza un intento de descarga y, si falla de forma recuperable, programa el siguiente
+     */
+    private void intentarAsync(HttpRequest request, int intento, CompletableFuture<String> resultado) {
+        limitePeticiones.ejecutar(() -> {
+            long inicio = Metricas.inicio();
+            client.sendAsync(request, HttpResponse.BodyHandlers.ofString()).whenComplete((response, error) -> {
+                Metricas.registrarDesde(Metricas.LATENCIA_DESCARGA, inicio);
+                limitePeticiones.liberar();
+                procesarRespuestaAsync(request, intento, resultado, response, error);
+            });
+        });
+    }
+
+    /**
+     * Completa el resultado con la respuesta de un intento, o programa el siguiente
+     */
+    private void procesarRespuestaAsync(HttpRequest request, int intento, CompletableFuture<String> resultado,
+                                        HttpResponse<String> response, Throwable error) {
+        if (error != null) {
+            Metricas.incrementar("api.errores.conexion");
+            Throwable causa = CacheTasas.causa(error);
+            // Igual que en la versión síncrona, los errores de conexión no se reintentan
+            resultado.completeExceptionally(new ApiException("⚠️  Error de conexión: " + causa.getMessage(), causa));
+            return;
+        }
+        if (response.statusCode() == 200) {
+            resultado.complete(response.body());
+            return;
+        }
+
+        ApiException fallo = errorPorEstado(response.statusCode());
+        Metricas.incrementar("api.errores.estado", response.statusCode());
+        if (!fallo.esRecuperable()) {
+            resultado.completeExceptionally(fallo);
+        } else if (intento >= maxReintentos) {
+            resultado.completeExceptionally(new ApiException(
+                "❌ No se pudo conectar a la API después de " + maxReintentos + " intentos",
+                fallo
+            ));
+        } else {
+            Metricas.incrementar("api.reintentos.estado", response.statusCode());
+            long tiempoEspera = tiempoEspera(intento);
+            System.out.println("🔄 Reintentando en " + tiempoEspera + "ms... (intento " + intento + "/" + maxReintentos + ")");
+            CompletableFuture.delayedExecutor(tiempoEspera, TimeUnit.MILLISECONDS)
+                .execute(() -> intentarAsync(request, intento + 1, resultado));
+        }
+    }
+
+    /**
+     * Backoff exponencial: espera inicial * 2^(intento - 1)
+     * @param intento Número del intento que falló (1 = el primero)
+     * @return Milisegundos a esperar antes del siguiente
+     */
+    private long tiempoEspera(int intento) {
+        return (long) (esperaInicialMs * Math.pow(2, intento - 1));
+    }
+
+    /**
+     * Cambia la espera antes del primer reintento (por defecto 1 s), para
+     * pruebas contra un servidor local
+     * @param espera Espera inicial; los siguientes reintentos la duplican
+     */
+    void setEsperaInicialReintento(Duration espera) {
+        this.esperaInicialMs = espera.toMillis();
+    }
+
+    /**
+     * Construye la petición GET a /latest/{base}
+     */
+    private HttpRequest construirPeticion(String base) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create(getUrlApi(base)))
                 .timeout(Duration.ofMillis(timeout))
                 .GET()
                 .build();
+    }
+
+    /**
+     * Traduce un código de estado HTTP distinto de 200 a la excepción correspondiente
+     * @param codigoEstado Código de estado de la respuesta
+     * @return La excepción (recuperable solo para 429 y errores 5xx)
+     */
+    private static ApiException errorPorEstado(int codigoEstado) {
+        if (codigoEstado == 401) {
+            return new ApiException("❌ API key inválida. Verifica tu configuración.", 401);
+        } else if (codigoEstado == 429) {
+            return new ApiException("⚠️  Límite de peticiones de la API excedido (código 429)", 429);
+        } else if (codigoEstado >= 500) {
+            return new ApiException("⚠️  Servidor no disponible (código " + codigoEstado + ")", codigoEstado);
+        }
+        return new ApiException("❌ Error en la API (código " + codigoEstado + ")", codigoEstado);
+    }
+
+    /**
+     * Descarga las tasas de cambio desde la API con reintentos automáticos (sin caché)
+     * @return JSON con las tasas de cambio
+     * @throws ApiException si hay error en la consulta después de todos los reintentos
+     */
+    public String obtenerTasaDeCambio() throws ApiException {
+        return obtenerTasaDeCambio(BASE_PRINCIPAL);
+    }
+
+    /**
+     * Descarga las tasas de una base con reintentos automáticos (sin caché)
+     * @param base Código de la moneda base
+     * @return JSON con las tasas de cambio
+     * @throws ApiException si hay error en la consulta después de todos los reintentos
+     */
+    public String obtenerTasaDeCambio(String base) throws ApiException {
+        HttpRequest request = construirPeticion(base);
 
         int intentos = 0;
         ApiException ultimaExcepcion = null;
 
         while (intentos < maxReintentos) {
+            long inicio = Metricas.inicio();
             try {
-                HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                HttpResponse<String> response;
+                limitePeticiones.adquirir();
+                try {
+                    response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                } finally {
+                    limitePeticiones.liberar();
+                }
+                Metricas.registrarDesde(Metricas.LATENCIA_DESCARGA, inicio);
 
                 if (response.statusCode() == 200) {
                     return response.body();
-                } else if (response.statusCode() == 401) {
-                    throw new ApiException("❌ API key inválida. Verifica tu configuración.", 401);
-                } else if (response.statusCode() >= 500) {
-                    ultimaExcepcion = new ApiException(
-                        "⚠️  Servidor no disponible (código " + response.statusCode() + ")", 
-                        response.statusCode()
-                    );
-                } else {
-                    throw new ApiException(
-                        "❌ Error en la API (código " + response.statusCode() + ")", 
-                        response.statusCode()
-                    );
+                }
+
+                Metricas.incrementar("api.errores.estado", response.statusCode());
+                ultimaExcepcion = errorPorEstado(response.statusCode());
+                if (!ultimaExcepcion.esRecuperable()) {
+                    throw ultimaExcepcion;
                 }
 
             } catch (IOException | InterruptedException e) {
+                Metricas.registrarDesde(Metricas.LATENCIA_DESCARGA, inicio);
+                Metricas.incrementar("api.errores.conexion");
                 ultimaExcepcion = new ApiException(
                     "⚠️  Error de conexión: " + e.getMessage(), 
                     e
@@ -80,7 +689,9 @@ public class ConsultaTasaDeCambio {
             // Si no es el último intento y el error es recuperable, esperar antes de reintentar
             if (intentos < maxReintentos && (ultimaExcepcion == null || ultimaExcepcion.esRecuperable())) {
                 try {
-                    long tiempoEspera = (long) (1000 * Math.pow(2, intentos - 1)); // Backoff exponencial
+                    Metricas.incrementar("api.reintentos.estado",
+                        ultimaExcepcion == null ? 0 : ultimaExcepcion.getCodigoEstado());
+                    long tiempoEspera = tiempoEspera(intentos);
                     System.out.println("🔄 Reintentando en " + tiempoEspera + "ms... (intento " + intentos + "/" + maxReintentos + ")");
                     Thread.sleep(tiempoEspera);
                 } catch (InterruptedException ie) {
@@ -105,6 +716,66 @@ public class ConsultaTasaDeCambio {
      * @return URL de la API
      */
     public String getUrlApi() {
-        return urlBase + apiKey + "/latest/USD";
+        return getUrlApi(BASE_PRINCIPAL);
+    }
+
+    /**
+     * Obtiene la URL de la API para una base
+     * @param base Código de la moneda base
+     * @return URL de la API
+     */
+    public String getUrlApi(String base) {
+        return urlBase + apiKey + "/latest/" + base;
+    }
+
+    /**
+     * Límite de peticiones simultáneas a la API. Las descargas asíncronas que
+     * no tienen lugar quedan en una cola y se lanzan cuando termina otra, sin
+     * bloquear ningún hilo; las síncronas esperan un permiso.
+     */
+    private static final class LimitePeticiones {
+        private final Semaphore permisos;
+        private final Queue<Runnable> enEspera = new ConcurrentLinkedQueue<>();
+
+        LimitePeticiones(int maximo) {
+            this.permisos = new Semaphore(maximo);
+        }
+
+        /**
+         * Ejecuta la tarea ahora si hay lugar; si no, cuando se libere uno.
+         * La tarea debe llamar a {@link #liberar()} al terminar su petición.
+         */
+        void ejecutar(Runnable tarea) {
+            enEspera.add(tarea);
+            despachar();
+        }
+
+        void adquirir() throws InterruptedException {
+            permisos.acquire();
+        }
+
+        void liberar() {
+            permisos.release();
+            despachar();
+        }
+
+        long enCola() {
+            return enEspera.size();
+        }
+
+        /**
+         * Lanza las tareas en cola mientras haya permisos. Quien encola vuelve a
+         * despachar, así ninguna tarea queda esperando un permiso ya liberado.
+         */
+        private void despachar() {
+            while (!enEspera.isEmpty() && permisos.tryAcquire()) {
+                Runnable tarea = enEspera.poll();
+                if (tarea == null) {
+                    permisos.release();
+                } else {
+                    tarea.run();
+                }
+            }
+        }
     }
 }
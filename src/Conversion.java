@@ -4,6 +4,12 @@ import java.util.UUID;
 /**
  * Modelo de datos para una conversión de moneda.
  * Representa una conversión individual con todos sus detalles.
+ * Las conversiones hechas por {@link ConversorDeMoneda} tienen los montos
+ * redondeados a la unidad mínima de cada moneda: el double guardado es el
+ * más cercano a ese valor decimal, así que se recupera sin pérdida como
+ * entero con {@link #getMontoOrigenMinimas()} y {@link #getMontoDestinoMinimas()}.
+ * Los códigos de moneda son los String canónicos de {@link RegistroMonedas},
+ * compartidos por todas las conversiones en lugar de una copia por registro.
  */
 public class Conversion {
     private String id;
@@ -19,15 +25,62 @@ public class Conversion {
      */
     public Conversion(String monedaOrigen, String monedaDestino, 
                      double montoOrigen, double montoDestino) {
+        this(monedaOrigen, monedaDestino, montoOrigen, montoDestino, LocalDateTime.now());
+    }
+
+    /**
+     * Constructor con marca de tiempo explícita (p. ej. una misma marca para todo un lote)
+     */
+    public Conversion(String monedaOrigen, String monedaDestino,
+                     double montoOrigen, double montoDestino, LocalDateTime timestamp) {
         this.id = UUID.randomUUID().toString();
-        this.timestamp = LocalDateTime.now();
-        this.monedaOrigen = monedaOrigen;
-        this.monedaDestino = monedaDestino;
+        this.timestamp = timestamp;
+        this.monedaOrigen = RegistroMonedas.internar(monedaOrigen);
+        this.monedaDestino = RegistroMonedas.internar(monedaDestino);
         this.montoOrigen = montoOrigen;
         this.montoDestino = montoDestino;
         this.tasaCambio = montoDestino / montoOrigen;
     }
 
+    /**
+     * Constructor para reconstruir una conversión ya registrada (p. ej. desde el almacén columnar)
+     */
+    Conversion(String id, LocalDateTime timestamp, String monedaOrigen, String monedaDestino,
+               double montoOrigen, double montoDestino) {
+        this.id = id;
+        this.timestamp = timestamp;
+        this.monedaOrigen = RegistroMonedas.internar(monedaOrigen);
+        this.monedaDestino = RegistroMonedas.internar(monedaDestino);
+        this.montoOrigen = montoOrigen;
+        this.montoDestino = montoDestino;
+        this.tasaCambio = montoDestino / montoOrigen;
+    }
+
+    /**
+     * Constructor para reconstruir una conversión leída de JSON con la tasa guardada
+     */
+    Conversion(String id, LocalDateTime timestamp, String monedaOrigen, String monedaDestino,
+               double montoOrigen, double montoDestino, double tasaCambio) {
+        this.id = id;
+        this.timestamp = timestamp;
+        this.monedaOrigen = RegistroMonedas.internar(monedaOrigen);
+        this.monedaDestino = RegistroMonedas.internar(monedaDestino);
+        this.montoOrigen = montoOrigen;
+        this.montoDestino = montoDestino;
+        this.tasaCambio = tasaCambio;
+    }
+
+    /**
+     * Reemplaza los códigos por sus instancias canónicas; para conversiones
+     * creadas sin pasar por los constructores (Gson)
+     * @return Esta conversión
+     */
+    Conversion internarMonedas() {
+        monedaOrigen = RegistroMonedas.internar(monedaOrigen);
+        monedaDestino = RegistroMonedas.internar(monedaDestino);
+        return this;
+    }
+
     // Getters
     public String getId() { return id; }
     public LocalDateTime getTimestamp() { return timestamp; }
@@ -37,6 +90,20 @@ public class Conversion {
     public double getMontoDestino() { return montoDestino; }
     public double getTasaCambio() { return tasaCambio; }
 
+    /**
+     * Monto de origen en unidades mínimas de su moneda (ver {@link MotorDinero})
+     */
+    public long getMontoOrigenMinimas() {
+        return MotorDinero.desdeDouble(montoOrigen, MotorDinero.decimales(monedaOrigen));
+    }
+
+    /**
+     * Monto de destino en unidades mínimas de su moneda (ver {@link MotorDinero})
+     */
+    public long getMontoDestinoMinimas() {
+        return MotorDinero.desdeDouble(montoDestino, MotorDinero.decimales(monedaDestino));
+    }
+
     @Override
     public String toString() {
         return String.format("%s: %.2f %s => %.2f %s (tasa: %.6f)",
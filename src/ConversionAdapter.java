@@ -0,0 +1,188 @@
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Adaptador de Gson para Conversion escrito a mano: lee y escribe los campos
+ * directamente sobre el stream, sin reflexión, con el mismo JSON que genera
+ * Gson por reflexión (mismos nombres y orden, nulos omitidos, marcas de tiempo
+ * ISO_LOCAL_DATE_TIME), así que los archivos existentes se leen igual.
+ *
+ * Las marcas de tiempo se formatean y se interpretan a mano; los casos que el
+ * camino rápido no cubre (años fuera de 0000-9999, textos mal formados) pasan
+ * por DateTimeFormatter, con sus mismos resultados y excepciones.
+ */
+class ConversionAdapter extends TypeAdapter<Conversion> {
+    private static final DateTimeFormatter formatter = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+
+    @Override
+    public void write(JsonWriter out, Conversion conversion) throws IOException {
+        if (conversion == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        if (conversion.getId() != null) {
+            out.name("id").value(conversion.getId());
+        }
+        if (conversion.getTimestamp() != null) {
+            out.name("timestamp").value(formatearFecha(conversion.getTimestamp()));
+        }
+        if (conversion.getMonedaOrigen() != null) {
+            out.name("monedaOrigen").value(conversion.getMonedaOrigen());
+        }
+        if (conversion.getMonedaDestino() != null) {
+            out.name("monedaDestino").value(conversion.getMonedaDestino());
+        }
+        out.name("montoOrigen").value(conversion.getMontoOrigen());
+        out.name("montoDestino").value(conversion.getMontoDestino());
+        out.name("tasaCambio").value(conversion.getTasaCambio());
+        out.endObject();
+    }
+
+    @Override
+    public Conversion read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        String id = null;
+        LocalDateTime timestamp = null;
+        String monedaOrigen = null;
+        String monedaDestino = null;
+        double montoOrigen = 0;
+        double montoDestino = 0;
+        double tasaCambio = 0;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String nombre = in.nextName();
+            // Como Gson por reflexión: un null deja el campo en su valor por defecto
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (nombre) {
+                case "id":
+                    id = in.nextString();
+                    break;
+                case "timestamp":
+                    timestamp = parsearFecha(in.nextString());
+                    break;
+                case "monedaOrigen":
+                    monedaOrigen = in.nextString();
+                    break;
+                case "monedaDestino":
+                    monedaDestino = in.nextString();
+                    break;
+                case "montoOrigen":
+                    montoOrigen = in.nextDouble();
+                    break;
+                case "montoDestino":
+                    montoDestino = in.nextDouble();
+                    break;
+                case "tasaCambio":
+                    tasaCambio = in.nextDouble();
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return new Conversion(id, timestamp, monedaOrigen, monedaDestino, montoOrigen, montoDestino, tasaCambio);
+    }
+
+    /**
+     * Formatea igual que DateTimeFormatter.ISO_LOCAL_DATE_TIME: segundos
+     * siempre y fracción sin ceros finales
+     */
+    static String formatearFecha(LocalDateTime fecha) {
+        int año = fecha.getYear();
+        if (año < 0 || año > 9999) {
+            return fecha.format(formatter);
+        }
+        char[] texto = new char[29];
+        escribirDigitos(texto, 0, año, 4);
+        texto[4] = '-';
+        escribirDigitos(texto, 5, fecha.getMonthValue(), 2);
+        texto[7] = '-';
+        escribirDigitos(texto, 8, fecha.getDayOfMonth(), 2);
+        texto[10] = 'T';
+        escribirDigitos(texto, 11, fecha.getHour(), 2);
+        texto[13] = ':';
+        escribirDigitos(texto, 14, fecha.getMinute(), 2);
+        texto[16] = ':';
+        escribirDigitos(texto, 17, fecha.getSecond(), 2);
+        int largo = 19;
+        if (fecha.getNano() != 0) {
+            texto[19] = '.';
+            escribirDigitos(texto, 20, fecha.getNano(), 9);
+            largo = 29;
+            while (texto[largo - 1] == '0') {
+                largo--;
+            }
+        }
+        return new String(texto, 0, largo);
+    }
+
+    /**
+     * Interpreta una fecha ISO_LOCAL_DATE_TIME (aaaa-MM-ddTHH:mm[:ss[.fffffffff]])
+     * @throws java.time.format.DateTimeParseException si el texto no es válido
+     */
+    static LocalDateTime parsearFecha(String texto) {
+        int largo = texto.length();
+        if (largo >= 16 && largo != 17 && largo != 18 && largo != 20 && largo <= 29
+                && texto.charAt(4) == '-' && texto.charAt(7) == '-' && texto.charAt(10) == 'T'
+                && texto.charAt(13) == ':' && (largo == 16 || texto.charAt(16) == ':')
+                && (largo <= 19 || texto.charAt(19) == '.')) {
+            int año = leerDigitos(texto, 0, 4);
+            int mes = leerDigitos(texto, 5, 2);
+            int dia = leerDigitos(texto, 8, 2);
+            int hora = leerDigitos(texto, 11, 2);
+            int minuto = leerDigitos(texto, 14, 2);
+            int segundo = largo > 16 ? leerDigitos(texto, 17, 2) : 0;
+            int nano = 0;
+            if (largo > 20) {
+                nano = leerDigitos(texto, 20, largo - 20);
+                for (int i = largo; i < 29 && nano >= 0; i++) {
+                    nano *= 10;
+                }
+            }
+            if ((año | mes | dia | hora | minuto | segundo | nano) >= 0) {
+                try {
+                    return LocalDateTime.of(año, mes, dia, hora, minuto, segundo, nano);
+                } catch (DateTimeException e) {
+                    // Fuera de rango: el formatter informa el error
+                }
+            }
+        }
+        return LocalDateTime.parse(texto, formatter);
+    }
+
+    private static void escribirDigitos(char[] destino, int desde, int valor, int digitos) {
+        for (int i = desde + digitos - 1; i >= desde; i--) {
+            destino[i] = (char) ('0' + valor % 10);
+            valor /= 10;
+        }
+    }
+
+    /**
+     * @return El número, o -1 si hay un carácter que no es dígito
+     */
+    private static int leerDigitos(String texto, int desde, int digitos) {
+        int valor = 0;
+        for (int i = desde; i < desde + digitos; i++) {
+            int digito = texto.charAt(i) - '0';
+            if (digito < 0 || digito > 9) {
+                return -1;
+            }
+            valor = valor * 10 + digito;
+        }
+        return valor;
+    }
+}
@@ -0,0 +1,365 @@
+import excepciones.ConversionException;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Conversión de archivo a archivo, sin interacción (java Principal --input
+ * entrada.csv --output salida.csv).
+ *
+ * Entrada: una fila por conversión con moneda origen, moneda destino y monto
+ * separados por coma (USD,ARS,100.50); la primera línea se toma como
+ * encabezado si su monto no es un número, y las líneas vacías se ignoran.
+ * Salida: origen,destino,monto,resultado,error en el mismo orden que la
+ * entrada; las filas inválidas llevan el motivo en la última columna y no
+ * detienen el proceso.
+ *
+ * El archivo se procesa en streaming por bloques de {@value #FILAS_POR_BLOQUE}
+ * filas: un hilo lee y reparte los bloques entre los hilos de conversión, y
+ * el hilo que llama escribe los resultados en orden. La cola entre ambos
+ * extremos es acotada (dos bloques por hilo), así que la memoria no depende
+ * del tamaño del archivo: si la escritura se atrasa, la lectura espera.
+ *
+ * Los códigos de moneda se validan con las reglas de ValidadorEntrada sin
+ * crear Strings por fila: cada fila usa el código canónico de
+ * {@link RegistroMonedas}.
+ */
+public class ConversionMasiva {
+    static final int FILAS_POR_BLOQUE = 4096;
+    static final String ENCABEZADO = "origen,destino,monto,resultado,error\n";
+
+    private static final Future<Bloque> FIN = CompletableFuture.completedFuture(null);
+
+    private final ConversorDeMoneda conversor;
+    private final int hilos;
+
+    /**
+     * @param conversor Conversor que provee las tasas (las filas no se registran en su historial)
+     * @param hilos Hilos de conversión (0 = uno por procesador)
+     */
+    public ConversionMasiva(ConversorDeMoneda conversor, int hilos) {
+        this.conversor = conversor;
+        this.hilos = hilos > 0 ? hilos : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Convierte todas las filas de la entrada y escribe la salida de forma
+     * atómica (archivo temporal y luego reemplazo)
+     * @param entrada Archivo CSV de entrada
+     * @param salida Archivo CSV de salida (se reemplaza si existe)
+     * @return Totales del proceso
+     * @throws IOException si falla la lectura o la escritura
+     * @throws ConversionException si no se pudieron obtener las tasas
+     */
+    public Resultado procesar(Path entrada, Path salida) throws IOException, ConversionException {
+        long inicio = System.nanoTime();
+        Path absoluta = salida.toAbsolutePath();
+        if (absoluta.getParent() != null) {
+            Files.createDirectories(absoluta.getParent());
+        }
+        Path temporal = absoluta.resolveSibling(absoluta.getFileName() + ".tmp");
+
+        BlockingQueue<Future<Bloque>> pendientes = new ArrayBlockingQueue<>(2 * hilos);
+        ExecutorService conversores = Executors.newFixedThreadPool(hilos, fabricaDeHilos("conversion-masiva-"));
+        Thread lector = new Thread(() -> leer(entrada, conversores, pendientes), "conversion-masiva-lector");
+        lector.setDaemon(true);
+        lector.start();
+
+        long filas = 0;
+        long errores = 0;
+        try {
+            try (Writer escritor = Files.newBufferedWriter(temporal, StandardCharsets.UTF_8)) {
+                escritor.write(ENCABEZADO);
+                for (Future<Bloque> pendiente = pendientes.take(); pendiente != FIN; pendiente = pendientes.take()) {
+                    Bloque bloque = pendiente.get();
+                    escritor.write(bloque.texto);
+                    filas += bloque.filas;
+                    errores += bloque.errores;
+                }
+            }
+            try {
+                Files.move(temporal, absoluta, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporal, absoluta, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Conversión masiva interrumpida", e);
+        } catch (ExecutionException e) {
+            Throwable causa = e.getCause();
+            if (causa instanceof ConversionException) {
+                throw (ConversionException) causa;
+            }
+            if (causa instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) causa).getCause();
+            }
+            throw new IOException("Error en la conversión masiva: " + causa.getMessage(), causa);
+        } finally {
+            // Si la escritura falló, el lector puede estar esperando lugar en la cola
+            lector.interrupt();
+            conversores.shutdownNow();
+            Files.deleteIfExists(temporal);
+        }
+        return new Resultado(filas, errores, System.nanoTime() - inicio);
+    }
+
+    /**
+     * Hilo lector: arma bloques de líneas, los envía a convertir y encola su
+     * resultado futuro en orden; la cola llena lo detiene
+     */
+    private void leer(Path entrada, ExecutorService conversores, BlockingQueue<Future<Bloque>> pendientes) {
+        boolean interrumpido = false;
+        try {
+            try (BufferedReader lector = Files.newBufferedReader(entrada, StandardCharsets.UTF_8)) {
+                String[] lineas = new String[FILAS_POR_BLOQUE];
+                long[] numeros = new long[FILAS_POR_BLOQUE];
+                int cantidad = 0;
+                long numeroLinea = 0;
+                String linea;
+                while ((linea = lector.readLine()) != null) {
+                    numeroLinea++;
+                    if (linea.isBlank() || (numeroLinea == 1 && esEncabezado(linea))) {
+                        continue;
+                    }
+                    numeros[cantidad] = numeroLinea;
+                    lineas[cantidad++] = linea;
+                    if (cantidad == FILAS_POR_BLOQUE) {
+                        enviar(lineas, numeros, cantidad, conversores, pendientes);
+                        lineas = new String[FILAS_POR_BLOQUE];
+                        numeros = new long[FILAS_POR_BLOQUE];
+                        cantidad = 0;
+                    }
+                }
+                if (cantidad > 0) {
+                    enviar(lineas, numeros, cantidad, conversores, pendientes);
+                }
+            } catch (IOException e) {
+                pendientes.put(fallido(new UncheckedIOException(e)));
+            } catch (RuntimeException | Error e) {
+                // P. ej. RejectedExecutionException de submit: la escritura termina con este error
+                pendientes.put(fallido(e));
+            }
+        } catch (InterruptedException e) {
+            // La escritura terminó con error: nadie espera más bloques
+            interrumpido = true;
+        } finally {
+            // Sin FIN la escritura esperaría otro bloque para siempre
+            if (!interrumpido) {
+                try {
+                    pendientes.put(FIN);
+                } catch (InterruptedException e) {
+                    // La escritura terminó con error mientras se esperaba lugar
+                }
+            }
+        }
+    }
+
+    private static Future<Bloque> fallido(Throwable error) {
+        CompletableFuture<Bloque> fallo = new CompletableFuture<>();
+        fallo.completeExceptionally(error);
+        return fallo;
+    }
+
+    private void enviar(String[] lineas, long[] numeros, int cantidad, ExecutorService conversores,
+                        BlockingQueue<Future<Bloque>> pendientes) throws InterruptedException {
+        pendientes.put(conversores.submit(() -> convertir(lineas, numeros, cantidad)));
+    }
+
+    /**
+     * Convierte un bloque y formatea sus filas de salida (se ejecuta en paralelo)
+     */
+    private Bloque convertir(String[] lineas, long[] numeros, int cantidad) throws ConversionException {
+        String[] origenes = new String[cantidad];
+        String[] destinos = new String[cantidad];
+        double[] montos = new double[cantidad];
+        String[] montosTexto = new String[cantidad];
+        double[] resultados = new double[cantidad];
+        String[] errores = new String[cantidad];
+        for (int i = 0; i < cantidad; i++) {
+            analizar(lineas[i], i, origenes, destinos, montos, montosTexto, errores);
+        }
+
+        int conError = conversor.convertirFilas(origenes, destinos, montos, cantidad, resultados, errores);
+
+        StringBuilder texto = new StringBuilder(cantidad * 48);
+        for (int i = 0; i < cantidad; i++) {
+            if (errores[i] == null) {
+                texto.append(origenes[i]).append(',').append(destinos[i]).append(',').append(montosTexto[i]).append(',');
+                int decimales = MotorDinero.decimales(destinos[i]);
+                agregarMonto(texto, MotorDinero.desdeDouble(resultados[i], decimales), decimales);
+                texto.append(",\n");
+            } else {
+                agregarCampo(texto, origenes[i] != null ? origenes[i] : campo(lineas[i], 0)).append(',');
+                agregarCampo(texto, destinos[i] != null ? destinos[i] : campo(lineas[i], 1)).append(',');
+                agregarCampo(texto, montosTexto[i] != null ? montosTexto[i] : campo(lineas[i], 2)).append(",,");
+                agregarCampo(texto, "línea " + numeros[i] + ": " + errores[i]).append('\n');
+            }
+        }
+        return new Bloque(texto.toString(), cantidad, conError);
+    }
+
+    /**
+     * Separa una línea en origen, destino y monto; los errores de formato
+     * quedan en errores[i] y la fila no se convierte
+     */
+    private void analizar(String linea, int i, String[] origenes, String[] destinos, double[] montos,
+                          String[] montosTexto, String[] errores) {
+        int coma1 = linea.indexOf(',');
+        int coma2 = coma1 < 0 ? -1 : linea.indexOf(',', coma1 + 1);
+        if (coma2 < 0 || linea.indexOf(',', coma2 + 1) >= 0) {
+            errores[i] = "se esperaban 3 columnas (origen,destino,monto)";
+            return;
+        }
+        int claveOrigen = RegistroMonedas.claveFlexible(linea, 0, coma1);
+        int claveDestino = RegistroMonedas.claveFlexible(linea, coma1 + 1, coma2);
+        if (claveOrigen < 0 || claveDestino < 0) {
+            errores[i] = "código de moneda inválido (debe ser de 3 letras, ej: USD, EUR, ARS)";
+            return;
+        }
+        origenes[i] = RegistroMonedas.codigo(claveOrigen);
+        destinos[i] = RegistroMonedas.codigo(claveDestino);
+
+        String monto = linea.substring(coma2 + 1).trim();
+        montosTexto[i] = monto;
+        try {
+            montos[i] = Double.parseDouble(monto);
+        } catch (NumberFormatException e) {
+            errores[i] = "monto inválido";
+            return;
+        }
+        if (!(montos[i] > 0) || Double.isInfinite(montos[i])) {
+            errores[i] = "el monto debe ser mayor a cero";
+        }
+    }
+
+    /**
+     * Encabezado: la primera línea cuando su tercera columna no es un número
+     */
+    private static boolean esEncabezado(String linea) {
+        try {
+            Double.parseDouble(campo(linea, 2));
+            return false;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Columna n de una línea separada por comas, recortada ("" si no existe)
+     */
+    private static String campo(String linea, int n) {
+        int inicio = 0;
+        for (int i = 0; i < n; i++) {
+            int coma = linea.indexOf(',', inicio);
+            if (coma < 0) {
+                return "";
+            }
+            inicio = coma + 1;
+        }
+        int fin = linea.indexOf(',', inicio);
+        return linea.substring(inicio, fin < 0 ? linea.length() : fin).trim();
+    }
+
+    /**
+     * Monto en unidades mínimas con punto decimal y todos sus decimales (1234.50)
+     */
+    static void agregarMonto(StringBuilder texto, long minimas, int decimales) {
+        if (minimas < 0) {
+            texto.append('-');
+            minimas = -minimas;
+        }
+        if (decimales == 0) {
+            texto.append(minimas);
+            return;
+        }
+        long escala = 1;
+        for (int i = 0; i < decimales; i++) {
+            escala *= 10;
+        }
+        texto.append(minimas / escala).append('.');
+        long fraccion = minimas % escala;
+        for (long digito = escala / 10; digito > 1 && fraccion < digito; digito /= 10) {
+            texto.append('0');
+        }
+        texto.append(fraccion);
+    }
+
+    /**
+     * Campo CSV entre comillas si contiene comas, comillas o saltos de línea
+     */
+    private static StringBuilder agregarCampo(StringBuilder texto, String valor) {
+        if (valor.indexOf(',') < 0 && valor.indexOf('"') < 0 && valor.indexOf('\n') < 0) {
+            return texto.append(valor);
+        }
+        return texto.append('"').append(valor.replace("\"", "\"\"")).append('"');
+    }
+
+    private static ThreadFactory fabricaDeHilos(String prefijo) {
+        AtomicInteger contador = new AtomicInteger();
+        return tarea -> {
+            Thread hilo = new Thread(tarea, prefijo + contador.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        };
+    }
+
+    /**
+     * Filas de salida ya formateadas de un bloque
+     */
+    private static final class Bloque {
+        final String texto;
+        final int filas;
+        final int errores;
+
+        Bloque(String texto, int filas, int errores) {
+            this.texto = texto;
+            this.filas = filas;
+            this.errores = errores;
+        }
+    }
+
+    /**
+     * Totales de un proceso de conversión masiva
+     */
+    public static final class Resultado {
+        private final long filas;
+        private final long errores;
+        private final long nanos;
+
+        Resultado(long filas, long errores, long nanos) {
+            this.filas = filas;
+            this.errores = errores;
+            this.nanos = nanos;
+        }
+
+        public long getFilas() { return filas; }
+        public long getErrores() { return errores; }
+        public long getNanos() { return nanos; }
+
+        public double getFilasPorSegundo() {
+            return nanos == 0 ? 0 : filas * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%,d filas (%,d con error) en %.2f s: %,.0f filas/s",
+                filas, errores, nanos / 1e9, getFilasPorSegundo());
+        }
+    }
+}
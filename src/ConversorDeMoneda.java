@@ -1,15 +1,64 @@
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
 import excepciones.ApiException;
 import excepciones.ConversionException;
+import java.io.IOException;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
+/**
+ * Conversión de montos entre monedas.
+ * Los montos se calculan con {@link MotorDinero}: el monto de origen se
+ * redondea a la unidad mínima de su moneda y el resultado a la de la moneda
+ * destino (centavos, yenes, milésimos...) con el modo de redondeo de
+ * conversion.rounding.mode, sin asignar memoria por conversión.
+ */
 public class ConversorDeMoneda {
     private ConsultaTasaDeCambio consultaTasaDeCambio;
+    // null = las conversiones no se registran
     private HistorialConversiones historial;
+    private final MotorDinero motor;
 
+    /**
+     * Constructor con la configuración de config.properties; la consulta de
+     * tasas que crea es la que informa sus medidores en {@link Metricas}
+     */
     public ConversorDeMoneda() {
-        consultaTasaDeCambio = new ConsultaTasaDeCambio();
-        historial = new HistorialConversiones();
+        this(new ConsultaTasaDeCambio(), new HistorialConversiones(), MotorDinero.desdeConfiguracion());
+        consultaTasaDeCambio.registrarMedidores();
+    }
+
+    /**
+     * Constructor con dependencias explícitas (redondeo HALF_UP)
+     * @param consultaTasaDeCambio Cliente de la API de tasas
+     * @param historial Historial donde se registran las conversiones
+     */
+    public ConversorDeMoneda(ConsultaTasaDeCambio consultaTasaDeCambio, HistorialConversiones historial) {
+        this(consultaTasaDeCambio, historial, new MotorDinero(RoundingMode.HALF_UP));
+    }
+
+    /**
+     * Constructor sin historial: las conversiones no se registran (p. ej. la
+     * conversión masiva, cuyo archivo de salida es el registro)
+     * @param consultaTasaDeCambio Cliente de la API de tasas
+     * @param motor Motor de punto fijo (define el modo de redondeo)
+     */
+    public ConversorDeMoneda(ConsultaTasaDeCambio consultaTasaDeCambio, MotorDinero motor) {
+        this(consultaTasaDeCambio, null, motor);
+    }
+
+    /**
+     * Constructor con dependencias explícitas y motor de dinero propio
+     * @param consultaTasaDeCambio Cliente de la API de tasas
+     * @param historial Historial donde se registran las conversiones
+     * @param motor Motor de punto fijo (define el modo de redondeo)
+     */
+    public ConversorDeMoneda(ConsultaTasaDeCambio consultaTasaDeCambio, HistorialConversiones historial,
+                             MotorDinero motor) {
+        this.consultaTasaDeCambio = consultaTasaDeCambio;
+        this.historial = historial;
+        this.motor = motor;
     }
 
     /**
@@ -23,39 +72,13 @@ public class ConversorDeMoneda {
     public double convertir(String monedaOrigen, String monedaDestino, double monto) 
             throws ConversionException {
         try {
-            // Obtener la tasa de cambio en formato JSON
-            String respuestaJson = consultaTasaDeCambio.obtenerTasaDeCambio();
-
-            // Parsear la respuesta JSON para obtener la tasa de cambio
-            JsonObject jsonObject = JsonParser.parseString(respuestaJson).getAsJsonObject();
-            JsonObject tasasDeCambio = jsonObject.getAsJsonObject("conversion_rates");
-
-            // Validar que las monedas existan
-            if (!tasasDeCambio.has(monedaOrigen)) {
-                throw new ConversionException(
-                    "❌ Moneda de origen no soportada: " + monedaOrigen + 
-                    "\n   Verifica el código de la moneda (debe ser de 3 letras, ej: USD, EUR, ARS)"
-                );
-            }
-
-            if (!tasasDeCambio.has(monedaDestino)) {
-                throw new ConversionException(
-                    "❌ Moneda de destino no soportada: " + monedaDestino + 
-                    "\n   Verifica el código de la moneda (debe ser de 3 letras, ej: USD, EUR, ARS)"
-                );
-            }
-
-            // Obtener la tasa de cambio de las monedas de interés
-            double tasaOrigen = tasasDeCambio.get(monedaOrigen).getAsDouble();
-            double tasaDestino = tasasDeCambio.get(monedaDestino).getAsDouble();
-
-            // Calcular la cantidad en la moneda de destino
-            double montoEnDestino = (monto / tasaOrigen) * tasaDestino;
-
-            // Agregar la conversión al historial
-            historial.agregarConversion(monedaOrigen, monedaDestino, monto, montoEnDestino);
-            return montoEnDestino; // Retornar el monto convertido
+            // Obtener la instantánea de tasas (parseada una sola vez por descarga); las
+            // monedas de rates.direct.bases usan la tabla de su propia base
+            TablaTasas tabla = consultaTasaDeCambio.obtenerTablaTasasPara(monedaOrigen);
+            return convertirConTabla(tabla, monedaOrigen, monedaDestino, monto, true);
             
+        } catch (ConversionException e) {
+            throw e;
         } catch (ApiException e) {
             throw new ConversionException(
                 "❌ Error al obtener tasas de cambio: " + e.getMessage(), 
@@ -69,7 +92,302 @@ public class ConversorDeMoneda {
         }
     }
 
+    /**
+     * Convierte un monto con las tasas vigentes en un momento pasado, tomadas
+     * de la {@link SerieTasas} de la consulta. No se registra en el historial:
+     * sirve para revalorizar conversiones ya hechas.
+     * @param monedaOrigen Código de la moneda origen (ej: USD)
+     * @param monedaDestino Código de la moneda destino (ej: ARS)
+     * @param monto Monto a convertir
+     * @param momento Instante cuyas tasas se usan
+     * @return Monto convertido en la moneda destino
+     * @throws ConversionException si la serie no está habilitada, no tiene
+     *         tasas para ese momento o la conversión no es válida
+     */
+    public double convertir(String monedaOrigen, String monedaDestino, double monto, Instant momento)
+            throws ConversionException {
+        SerieTasas serie = consultaTasaDeCambio.getSerieTasas();
+        if (serie == null) {
+            throw new ConversionException("❌ La serie histórica de tasas no está habilitada (rates.history.enabled)");
+        }
+        TablaTasas tabla;
+        try {
+            tabla = serie.tablaEn(momento);
+        } catch (IOException e) {
+            throw new ConversionException("❌ No se pudo leer la serie histórica de tasas: " + e.getMessage(), e);
+        }
+        if (tabla == null) {
+            throw new ConversionException("❌ No hay tasas registradas para " + momento);
+        }
+        return convertirConTabla(tabla, monedaOrigen, monedaDestino, monto, false);
+    }
+
+    /**
+     * Convierte un monto sin bloquear el hilo que llama mientras se descargan las tasas.
+     * Si las tasas ya están en caché el resultado se calcula de inmediato.
+     * @param monedaOrigen Código de la moneda origen (ej: USD)
+     * @param monedaDestino Código de la moneda destino (ej: ARS)
+     * @param monto Monto a convertir
+     * @return Futuro con el monto convertido; falla con ConversionException
+     */
+    public CompletableFuture<Double> convertirAsync(String monedaOrigen, String monedaDestino, double monto) {
+        return consultaTasaDeCambio.obtenerTablaTasasParaAsync(monedaOrigen).handle((tabla, error) -> {
+            try {
+                if (error != null) {
+                    Throwable causa = CacheTasas.causa(error);
+                    throw new ConversionException("❌ Error al obtener tasas de cambio: " + causa.getMessage(), causa);
+                }
+                return convertirConTabla(tabla, monedaOrigen, monedaDestino, monto, true);
+            } catch (ConversionException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    /**
+     * Convierte un lote de montos usando una sola instantánea de tasas.
+     * Todas las monedas se validan antes de registrar nada en el historial,
+     * que recibe el lote completo en una sola operación.
+     * @param monedasOrigen Código de la moneda origen de cada monto
+     * @param monedasDestino Código de la moneda destino de cada monto
+     * @param montos Montos a convertir
+     * @return Montos convertidos, en el mismo orden que la entrada
+     * @throws ConversionException si los arreglos no coinciden, alguna moneda no está soportada o falla la API
+     */
+    public double[] convertirLote(String[] monedasOrigen, String[] monedasDestino, double[] montos)
+            throws ConversionException {
+        if (monedasOrigen.length != montos.length || monedasDestino.length != montos.length) {
+            throw new ConversionException(
+                "❌ El lote debe tener la misma cantidad de monedas de origen (" + monedasOrigen.length +
+                "), de destino (" + monedasDestino.length + ") y montos (" + montos.length + ")"
+            );
+        }
+
+        TablaTasas tabla = obtenerTablaTasas();
+        long inicio = Metricas.inicio();
+        double[] montosOrigen = new double[montos.length];
+        double[] resultados = new double[montos.length];
+        for (int i = 0; i < montos.length; i++) {
+            int claveOrigen = RegistroMonedas.clave(monedasOrigen[i]);
+            int claveDestino = RegistroMonedas.clave(monedasDestino[i]);
+            int origen = resolverMoneda(tabla, claveOrigen, monedasOrigen[i], "origen", i);
+            int destino = resolverMoneda(tabla, claveDestino, monedasDestino[i], "destino", i);
+            int decimalesOrigen = MotorDinero.decimalesDeClave(claveOrigen);
+            int decimalesDestino = MotorDinero.decimalesDeClave(claveDestino);
+            long minimasOrigen = aMinimas(montos[i], decimalesOrigen, monedasOrigen[i], i);
+            montosOrigen[i] = MotorDinero.aDouble(minimasOrigen, decimalesOrigen);
+            resultados[i] = MotorDinero.aDouble(
+                convertirMinimas(minimasOrigen, decimalesOrigen, decimalesDestino, tabla.factor(origen, destino)),
+                decimalesDestino);
+        }
+
+        if (historial != null) {
+            historial.agregarConversiones(monedasOrigen, monedasDestino, montosOrigen, resultados);
+        }
+        Metricas.registrarDesde(Metricas.LATENCIA_LOTE, inicio);
+        return resultados;
+    }
+
+    /**
+     * Convierte un lote de montos de un mismo par de monedas
+     * @param monedaOrigen Código de la moneda origen
+     * @param monedaDestino Código de la moneda destino
+     * @param montos Montos a convertir
+     * @return Montos convertidos, en el mismo orden que la entrada
+     * @throws ConversionException si alguna moneda no está soportada o falla la API
+     */
+    public double[] convertirLote(String monedaOrigen, String monedaDestino, double[] montos)
+            throws ConversionException {
+        TablaTasas tabla = obtenerTablaTasas();
+        long inicio = Metricas.inicio();
+        int claveOrigen = RegistroMonedas.clave(monedaOrigen);
+        int claveDestino = RegistroMonedas.clave(monedaDestino);
+        int origen = resolverMoneda(tabla, claveOrigen, monedaOrigen, "origen");
+        int destino = resolverMoneda(tabla, claveDestino, monedaDestino, "destino");
+        int decimalesOrigen = MotorDinero.decimalesDeClave(claveOrigen);
+        int decimalesDestino = MotorDinero.decimalesDeClave(claveDestino);
+        double factor = tabla.factor(origen, destino);
+
+        double[] montosOrigen = new double[montos.length];
+        double[] resultados = new double[montos.length];
+        for (int i = 0; i < montos.length; i++) {
+            long minimasOrigen = aMinimas(montos[i], decimalesOrigen, monedaOrigen, i);
+            montosOrigen[i] = MotorDinero.aDouble(minimasOrigen, decimalesOrigen);
+            resultados[i] = MotorDinero.aDouble(
+                convertirMinimas(minimasOrigen, decimalesOrigen, decimalesDestino, factor), decimalesDestino);
+        }
+
+        String[] monedasOrigen = new String[montos.length];
+        String[] monedasDestino = new String[montos.length];
+        Arrays.fill(monedasOrigen, RegistroMonedas.codigo(claveOrigen));
+        Arrays.fill(monedasDestino, RegistroMonedas.codigo(claveDestino));
+        if (historial != null) {
+            historial.agregarConversiones(monedasOrigen, monedasDestino, montosOrigen, resultados);
+        }
+        Metricas.registrarDesde(Metricas.LATENCIA_LOTE, inicio);
+        return resultados;
+    }
+
+    /**
+     * Convierte filas de un archivo con una sola instantánea de tasas. A
+     * diferencia de convertirLote, una fila inválida no detiene el resto:
+     * su error queda en errores[i]. Las filas no se registran en el
+     * historial (un archivo de millones de filas lo desbordaría; el archivo
+     * de salida es el registro).
+     * @param monedasOrigen Moneda de origen de cada fila (null si la fila ya tiene error)
+     * @param monedasDestino Moneda de destino de cada fila
+     * @param montos Montos a convertir
+     * @param cantidad Cantidad de filas a convertir (desde la 0)
+     * @param resultados Recibe el monto convertido de cada fila sin error
+     * @param errores Errores de cada fila: entran los de formato y salen además los de conversión
+     * @return Cantidad de filas con error
+     * @throws ConversionException si no se pudieron obtener las tasas
+     */
+    public int convertirFilas(String[] monedasOrigen, String[] monedasDestino, double[] montos, int cantidad,
+                              double[] resultados, String[] errores) throws ConversionException {
+        TablaTasas tabla = obtenerTablaTasas();
+        long inicio = Metricas.inicio();
+        int conError = 0;
+        for (int i = 0; i < cantidad; i++) {
+            if (errores[i] != null) {
+                conError++;
+                continue;
+            }
+            int claveOrigen = RegistroMonedas.clave(monedasOrigen[i]);
+            int claveDestino = RegistroMonedas.clave(monedasDestino[i]);
+            int origen = tabla.indiceDeClave(claveOrigen);
+            int destino = tabla.indiceDeClave(claveDestino);
+            if (origen < 0 || destino < 0) {
+                errores[i] = "Moneda de " + (origen < 0 ? "origen" : "destino") + " no soportada: "
+                    + (origen < 0 ? monedasOrigen[i] : monedasDestino[i]);
+                conError++;
+                continue;
+            }
+            try {
+                int decimalesOrigen = MotorDinero.decimalesDeClave(claveOrigen);
+                int decimalesDestino = MotorDinero.decimalesDeClave(claveDestino);
+                long minimasOrigen = aMinimas(montos[i], decimalesOrigen, monedasOrigen[i], -1);
+                resultados[i] = MotorDinero.aDouble(
+                    convertirMinimas(minimasOrigen, decimalesOrigen, decimalesDestino, tabla.factor(origen, destino)),
+                    decimalesDestino);
+            } catch (ConversionException e) {
+                errores[i] = e.getMessage().replace("❌ ", "");
+                conError++;
+            }
+        }
+        Metricas.registrarDesde(Metricas.LATENCIA_LOTE, inicio);
+        return conError;
+    }
+
+    /**
+     * @return El historial donde se registran las conversiones, o null si este conversor no registra
+     */
     public HistorialConversiones getHistorial() {
         return historial;
     }
+
+    /**
+     * Valida las monedas, convierte y (si se pide) registra la conversión en el historial
+     */
+    private double convertirConTabla(TablaTasas tabla, String monedaOrigen, String monedaDestino, double monto,
+                                     boolean registrar) throws ConversionException {
+        long inicio = Metricas.inicio();
+        // Validar que las monedas existan (cada código se empaqueta una sola vez)
+        int claveOrigen = RegistroMonedas.clave(monedaOrigen);
+        int claveDestino = RegistroMonedas.clave(monedaDestino);
+        int origen = resolverMoneda(tabla, claveOrigen, monedaOrigen, "origen");
+        int destino = resolverMoneda(tabla, claveDestino, monedaDestino, "destino");
+
+        // Calcular la cantidad en la moneda de destino, en unidades mínimas
+        int decimalesOrigen = MotorDinero.decimalesDeClave(claveOrigen);
+        int decimalesDestino = MotorDinero.decimalesDeClave(claveDestino);
+        long minimasOrigen = aMinimas(monto, decimalesOrigen, monedaOrigen, -1);
+        long minimasDestino = convertirMinimas(minimasOrigen, decimalesOrigen, decimalesDestino,
+            tabla.factor(origen, destino));
+        double montoEnDestino = MotorDinero.aDouble(minimasDestino, decimalesDestino);
+
+        // Agregar la conversión al historial
+        if (registrar && historial != null) {
+            historial.agregarConversion(monedaOrigen, monedaDestino,
+                MotorDinero.aDouble(minimasOrigen, decimalesOrigen), montoEnDestino);
+        }
+        Metricas.registrarDesde(Metricas.LATENCIA_CONVERSION, inicio);
+        return montoEnDestino;
+    }
+
+    /**
+     * Redondea el monto de origen a unidades mínimas; un monto que redondea a
+     * cero (menor que la unidad mínima) no se puede convertir
+     * @param fila Fila del lote para el mensaje de error, o -1 si no es un lote
+     */
+    private long aMinimas(double monto, int decimales, String moneda, int fila) throws ConversionException {
+        long minimas;
+        try {
+            minimas = motor.aMinimas(monto, decimales);
+        } catch (ArithmeticException e) {
+            throw new ConversionException("❌ Monto fuera de rango" + ubicacion(fila) + ": " + monto, e);
+        }
+        if (minimas <= 0) {
+            throw new ConversionException(
+                "❌ El monto" + ubicacion(fila) + " es menor que la unidad mínima de " + moneda + ": " + monto
+            );
+        }
+        return minimas;
+    }
+
+    private static String ubicacion(int fila) {
+        return fila < 0 ? "" : " en la fila " + fila + " del lote";
+    }
+
+    private long convertirMinimas(long minimasOrigen, int decimalesOrigen, int decimalesDestino, double factor)
+            throws ConversionException {
+        try {
+            return motor.convertir(minimasOrigen, decimalesOrigen, decimalesDestino, factor);
+        } catch (ArithmeticException e) {
+            throw new ConversionException("❌ El resultado de la conversión está fuera de rango: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Obtiene la instantánea de tasas traduciendo los errores de la API
+     */
+    private TablaTasas obtenerTablaTasas() throws ConversionException {
+        try {
+            return consultaTasaDeCambio.obtenerTablaTasas();
+        } catch (ApiException e) {
+            throw new ConversionException(
+                "❌ Error al obtener tasas de cambio: " + e.getMessage(), 
+                e
+            );
+        }
+    }
+
+    /**
+     * Resuelve el índice de una moneda en la tabla o lanza un error descriptivo
+     */
+    private static int resolverMoneda(TablaTasas tabla, int clave, String codigo, String rol)
+            throws ConversionException {
+        int indice = tabla.indiceDeClave(clave);
+        if (indice < 0) {
+            throw new ConversionException(
+                "❌ Moneda de " + rol + " no soportada: " + codigo + 
+                "\n   Verifica el código de la moneda (debe ser de 3 letras, ej: USD, EUR, ARS)"
+            );
+        }
+        return indice;
+    }
+
+    /**
+     * Igual que {@link #resolverMoneda(TablaTasas, int, String, String)} indicando la fila del lote
+     */
+    private static int resolverMoneda(TablaTasas tabla, int clave, String codigo, String rol, int fila)
+            throws ConversionException {
+        int indice = tabla.indiceDeClave(clave);
+        if (indice < 0) {
+            throw new ConversionException(
+                "❌ Moneda de " + rol + " no soportada en la fila " + fila + " del lote: " + codigo
+            );
+        }
+        return indice;
+    }
 }
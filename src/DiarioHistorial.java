@@ -0,0 +1,499 @@
+import com.google.gson.JsonParseException;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Diario de solo-anexado (JSON Lines) para la persistencia del historial.
+ * Cada conversión se agrega como una línea al diario en lugar de reescribir
+ * historial.json completo; periódicamente el diario se compacta en una nueva
+ * instantánea (historial.json) y se vacía. Al cargar se lee la instantánea y
+ * se reproducen las líneas del diario.
+ *
+ * La instantánea se escribe en JSON o, si la ruta termina en .bin, en el
+ * formato binario mapeado en memoria de {@link HistorialBinario}; el diario
+ * siempre es JSON Lines. Las conversiones se serializan con el
+ * {@link SerializadorHistorial} elegido al construir el diario.
+ *
+ * La compactación se dispara cuando el diario alcanza el tamaño de la
+ * instantánea (con un mínimo configurable), así el costo amortizado por
+ * conversión se mantiene constante aunque el historial crezca.
+ *
+ * La instantánea se reemplaza antes de vaciar el diario; si el proceso se
+ * corta entre ambos pasos (o no se puede vaciar), el diario queda con
+ * entradas que la instantánea ya incluye. La última conversión de la
+ * instantánea identifica hasta dónde llega: al reproducir el diario se
+ * omiten las entradas hasta esa conversión inclusive.
+ */
+public class DiarioHistorial {
+
+    /**
+     * Cuándo forzar los datos del diario al disco (fsync)
+     */
+    public enum PoliticaSincronizacion {
+        /** Nunca: los datos quedan en el caché del sistema operativo (sobreviven a un fallo del proceso) */
+        NUNCA,
+        /** Tras cada escritura: sobrevive a un corte de energía, es la opción más lenta */
+        SIEMPRE,
+        /** Como máximo una vez por intervalo (en la primera escritura tras cumplirse) */
+        PERIODICA;
+
+        /**
+         * Interpreta el valor de configuración (sin distinguir mayúsculas)
+         * @param valor Texto de configuración, o null para el valor por defecto
+         * @return La política correspondiente
+         */
+        public static PoliticaSincronizacion desde(String valor) {
+            if (valor == null || valor.isBlank()) {
+                return PERIODICA;
+            }
+            return valueOf(valor.trim().toUpperCase());
+        }
+    }
+
+    private static final byte SALTO_LINEA = '\n';
+    private static final DateTimeFormatter FORMATO_APARTADO = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final String rutaInstantanea;
+    private final Path rutaDiario;
+    private final PoliticaSincronizacion politica;
+    private final long intervaloSincronizacionNanos;
+    private final int minimoCompactacion;
+    private final SerializadorHistorial serializador;
+
+    private FileChannel canal;
+    private int entradasDiario;
+    private int entradasInstantanea;
+    private long ultimaSincronizacion = System.nanoTime();
+
+    /**
+     * Diario con la configuración por defecto (sincronización periódica cada segundo,
+     * compactación a partir de 10000 entradas)
+     * @param rutaInstantanea Ruta de historial.json
+     */
+    public DiarioHistorial(String rutaInstantanea) {
+        this(rutaInstantanea, PoliticaSincronizacion.PERIODICA, 1000, 10_000);
+    }
+
+    /**
+     * Constructor del diario
+     * @param rutaInstantanea Ruta de historial.json
+     * @param politica Política de sincronización con el disco
+     * @param intervaloSincronizacionMs Intervalo para la política PERIODICA
+     * @param minimoCompactacion Entradas mínimas en el diario antes de compactar
+     */
+    public DiarioHistorial(String rutaInstantanea, PoliticaSincronizacion politica,
+                           long intervaloSincronizacionMs, int minimoCompactacion) {
+        this(rutaInstantanea, politica, intervaloSincronizacionMs, minimoCompactacion, SerializadorHistorial.RAPIDO);
+    }
+
+    /**
+     * Constructor del diario con un serializador JSON dado
+     * @param rutaInstantanea Ruta de historial.json
+     * @param politica Política de sincronización con el disco
+     * @param intervaloSincronizacionMs Intervalo para la política PERIODICA
+     * @param minimoCompactacion Entradas mínimas en el diario antes de compactar
+     * @param serializador Cómo se escriben y se leen las conversiones (instantánea JSON y diario)
+     */
+    public DiarioHistorial(String rutaInstantanea, PoliticaSincronizacion politica,
+                           long intervaloSincronizacionMs, int minimoCompactacion,
+                           SerializadorHistorial serializador) {
+        this.rutaInstantanea = rutaInstantanea;
+        this.rutaDiario = rutaDiarioPara(rutaInstantanea);
+        this.politica = politica;
+        this.intervaloSincronizacionNanos = intervaloSincronizacionMs * 1_000_000L;
+        this.minimoCompactacion = minimoCompactacion;
+        this.serializador = serializador;
+    }
+
+    /**
+     * Construye el diario leyendo historial.journal.* e historial.json.serializer
+     * de GestorConfiguracion
+     * @param rutaInstantanea Ruta de historial.json
+     * @return El diario configurado
+     * @throws IllegalArgumentException si historial.json.serializer no es rapido ni reflexivo
+     */
+    public static DiarioHistorial desdeConfiguracion(String rutaInstantanea) {
+        return new DiarioHistorial(
+            rutaInstantanea,
+            PoliticaSincronizacion.desde(GestorConfiguracion.obtener("historial.journal.fsync")),
+            GestorConfiguracion.obtenerInt("historial.journal.fsync.interval.ms", 1000),
+            GestorConfiguracion.obtenerInt("historial.journal.compaction.min", 10_000),
+            SerializadorHistorial.desde(GestorConfiguracion.obtener("historial.json.serializer"))
+        );
+    }
+
+    /**
+     * Carga la instantánea y reproduce el diario sobre ella.
+     * Una última línea incompleta (sin salto de línea: escritura interrumpida)
+     * se descarta y se recorta del archivo para que las siguientes líneas
+     * queden bien formadas; una línea completa dañada se informa y se omite,
+     * sin tocar las demás.
+     * @return Lista con todas las conversiones persistidas
+     */
+    public List<Conversion> cargar() {
+        return cargar(0).getEnMemoria();
+    }
+
+    /**
+     * Carga la instantánea en modo streaming conservando en memoria solo las
+     * conversiones más recientes, y reproduce el diario sobre ellas.
+     * @param maxEnMemoria Conversiones de la instantánea a conservar en memoria (0 = todas);
+     *                     las del diario se cargan siempre
+     * Si la instantánea existe pero no se puede leer, se aparta como
+     * historial.json.corrupto-&lt;fecha&gt; y se continúa sin ella (solo con el
+     * diario), para que la próxima compactación no la reemplace por un archivo
+     * vacío; si ni siquiera se puede apartar, la carga falla.
+     * @return Conversiones en memoria, cantidad que quedó solo en disco y costo de la carga
+     * @throws UncheckedIOException si la instantánea está dañada y no se pudo apartar
+     */
+    public CargaHistorial cargar(int maxEnMemoria) {
+        long inicio = System.nanoTime();
+        CargaHistorial instantanea;
+        try {
+            instantanea = GestorArchivos.cargarHistorial(rutaInstantanea, maxEnMemoria, serializador);
+        } catch (UncheckedIOException e) {
+            apartarInstantaneaIlegible(e);
+            instantanea = new CargaHistorial(new ArrayList<>(), 0, System.nanoTime() - inicio, 0);
+        }
+        List<Conversion> conversiones = instantanea.getEnMemoria();
+        entradasInstantanea = instantanea.getTotal();
+        entradasDiario = 0;
+
+        if (Files.exists(rutaDiario)) {
+            // Con carga parcial se conservan las más recientes: la última sigue siendo la de la instantánea
+            String ultimaIncluida = conversiones.isEmpty() ? null : conversiones.get(conversiones.size() - 1).getId();
+            reproducirDiario(conversiones, ultimaIncluida);
+        }
+        return new CargaHistorial(conversiones, instantanea.getEnDisco(),
+            System.nanoTime() - inicio, instantanea.getMemoriaPicoBytes());
+    }
+
+    /**
+     * Mueve la instantánea ilegible a historial.json.corrupto-&lt;fecha&gt; para
+     * conservarla y que no se sobrescriba al compactar
+     * @param error Error de lectura, que se relanza si no se puede mover el archivo
+     */
+    private void apartarInstantaneaIlegible(UncheckedIOException error) {
+        Path origen = Paths.get(rutaInstantanea);
+        Path destino = Paths.get(rutaInstantanea + ".corrupto-" + LocalDateTime.now().format(FORMATO_APARTADO));
+        System.err.println("❌ " + error.getCause().getMessage());
+        try {
+            Files.move(origen, destino);
+        } catch (IOException e) {
+            System.err.println("❌ No se pudo apartar el historial dañado: " + e.getMessage());
+            error.addSuppressed(e);
+            throw error;
+        }
+        System.err.println("❌ Historial dañado apartado en " + destino
+            + "; se continúa solo con el diario. Revíselo y restáurelo a mano.");
+    }
+
+    /**
+     * Agrega a la lista las conversiones del diario posteriores a la última
+     * de la instantánea, reparando una última línea incompleta
+     * @param ultimaIncluida Id de la última conversión de la instantánea, o null si está vacía
+     */
+    private void reproducirDiario(List<Conversion> conversiones, String ultimaIncluida) {
+        List<Conversion> delDiario = new ArrayList<>();
+        int dañadas = 0;
+        long finUltimaLinea = 0;
+        boolean leidoCompleto = false;
+        try (InputStream entrada = new BufferedInputStream(Files.newInputStream(rutaDiario))) {
+            ByteArrayOutputStream linea = new ByteArrayOutputStream(256);
+            long posicion = 0;
+            int b;
+            while ((b = entrada.read()) != -1) {
+                posicion++;
+                if (b != SALTO_LINEA) {
+                    linea.write(b);
+                    continue;
+                }
+                if (linea.size() > 0) {
+                    Conversion conversion = leerLinea(linea.toString(StandardCharsets.UTF_8), finUltimaLinea);
+                    if (conversion != null) {
+                        delDiario.add(conversion);
+                    } else {
+                        dañadas++;
+                    }
+                }
+                linea.reset();
+                finUltimaLinea = posicion;
+            }
+            leidoCompleto = true;
+        } catch (IOException e) {
+            // No se sabe qué hay después: se conserva lo leído y el archivo no se toca
+            System.err.println("⚠️  No se pudo leer el diario del historial a partir del byte "
+                + finUltimaLinea + ": " + e.getMessage());
+        }
+
+        // Solo una última línea sin salto de línea es una escritura interrumpida: se recorta
+        try {
+            if (leidoCompleto && Files.size(rutaDiario) > finUltimaLinea) {
+                System.err.println("⚠️  Se descarta la última línea incompleta del diario del historial");
+                try (FileChannel recorte = FileChannel.open(rutaDiario, StandardOpenOption.WRITE)) {
+                    recorte.truncate(finUltimaLinea);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("⚠️  No se pudo reparar el diario del historial: " + e.getMessage());
+        }
+
+        int yaIncluidas = 0;
+        if (ultimaIncluida != null) {
+            for (int i = delDiario.size() - 1; i >= 0; i--) {
+                if (ultimaIncluida.equals(delDiario.get(i).getId())) {
+                    yaIncluidas = i + 1;
+                    break;
+                }
+            }
+        }
+        if (yaIncluidas > 0) {
+            System.err.println("⚠️  Se omiten " + yaIncluidas
+                + " entradas del diario que ya están en la instantánea (compactación sin terminar)");
+        }
+        conversiones.addAll(delDiario.subList(yaIncluidas, delDiario.size()));
+        // Cuentan todas las líneas del archivo: la próxima compactación también quita las repetidas y dañadas
+        entradasDiario = delDiario.size() + dañadas;
+    }
+
+    /**
+     * Interpreta una línea completa del diario
+     * @param inicio Posición de la línea en el archivo (para el mensaje de error)
+     * @return La conversión, o null si la línea está dañada (se informa y se omite)
+     */
+    private Conversion leerLinea(String linea, long inicio) {
+        try {
+            Conversion conversion = GestorArchivos.desdeLineaJSON(linea, serializador);
+            if (conversion != null) {
+                return conversion;
+            }
+        } catch (JsonParseException | DateTimeException e) {
+            System.err.println("⚠️  Se omite una línea dañada del diario del historial (byte " + inicio + "): "
+                + e.getMessage());
+            return null;
+        }
+        System.err.println("⚠️  Se omite una línea vacía del diario del historial (byte " + inicio + ")");
+        return null;
+    }
+
+    /**
+     * Agrega una conversión al diario
+     * @param conversion Conversión a registrar
+     * @return true si el diario alcanzó el umbral y conviene compactar
+     */
+    public boolean registrar(Conversion conversion) {
+        return registrar(List.of(conversion));
+    }
+
+    /**
+     * Agrega un lote de conversiones al diario con una sola escritura
+     * @param lote Conversiones a registrar
+     * @return true si el diario alcanzó el umbral y conviene compactar
+     */
+    public boolean registrar(List<Conversion> lote) {
+        return registrar(lote, false);
+    }
+
+    /**
+     * Agrega un lote de conversiones al diario con una sola escritura
+     * @param lote Conversiones a registrar
+     * @param forzar Si se fuerza al disco (fsync) aunque la política no lo pida
+     * @return true si el diario alcanzó el umbral y conviene compactar
+     */
+    public boolean registrar(List<Conversion> lote, boolean forzar) {
+        try {
+            return anexar(lote, forzar);
+        } catch (IOException e) {
+            System.err.println("⚠️  Error al escribir el diario del historial: " + e.getMessage());
+            return debeCompactar();
+        }
+    }
+
+    /**
+     * Como {@link #registrar(List, boolean)}, pero informando el error a quien
+     * llama. Si la escritura falla a medias se recorta lo escrito, así el
+     * lote se puede reintentar sin dejar una línea dañada en el diario.
+     * @throws IOException si no se pudo escribir o forzar el lote
+     */
+    boolean anexar(List<Conversion> lote, boolean forzar) throws IOException {
+        StringBuilder lineas = new StringBuilder(lote.size() * 220);
+        for (Conversion conversion : lote) {
+            lineas.append(GestorArchivos.aLineaJSON(conversion, serializador)).append((char) SALTO_LINEA);
+        }
+
+        FileChannel destino = abrirCanal();
+        long inicio = destino.size();
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(lineas.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                destino.write(buffer);
+            }
+            if (forzar) {
+                destino.force(false);
+                ultimaSincronizacion = System.nanoTime();
+            } else {
+                sincronizarSegunPolitica(destino);
+            }
+        } catch (IOException e) {
+            try {
+                destino.truncate(inicio);
+            } catch (IOException recorte) {
+                e.addSuppressed(recorte);
+            }
+            throw e;
+        }
+        entradasDiario += lote.size();
+        return debeCompactar();
+    }
+
+    /**
+     * Escribe una instantánea completa y vacía el diario.
+     * El diario solo se vacía si la instantánea se escribió correctamente
+     * (salvo que quede vacía, ver {@link #compactar(int, int, List)}).
+     * @param conversiones Estado completo del historial
+     */
+    public void compactar(List<Conversion> conversiones) {
+        compactar(0, conversiones);
+    }
+
+    /**
+     * Escribe una instantánea nueva formada por las primeras conversiones de
+     * la instantánea actual (las que no están en memoria) seguidas de las que
+     * están en memoria, y vacía el diario.
+     * @param enDisco Cantidad de conversiones iniciales de la instantánea actual a conservar
+     * @param enMemoria Conversiones posteriores, incluidas las registradas en el diario
+     */
+    public void compactar(int enDisco, List<Conversion> enMemoria) {
+        compactar(0, enDisco, enMemoria);
+    }
+
+    /**
+     * Como {@link #compactar(int, List)}, pero descartando las primeras
+     * conversiones de la instantánea actual (las que se pasaron al archivo)
+     * @param descartar Cantidad de conversiones iniciales de la instantánea actual a descartar
+     * @param enDisco Cantidad de conversiones iniciales de la instantánea actual (incluidas las descartadas)
+     * @param enMemoria Conversiones posteriores, incluidas las registradas en el diario
+     * @return true si se reemplazó la instantánea (si no, la anterior queda como estaba)
+     */
+    public boolean compactar(int descartar, int enDisco, List<Conversion> enMemoria) {
+        int total = enDisco - descartar + enMemoria.size();
+        try {
+            if (total == 0) {
+                // Una instantánea vacía no identifica qué entradas del diario incluye: se vacía
+                // antes (todo lo que tenía se descarta o ya está en el archivo)
+                vaciarDiario();
+            }
+            GestorArchivos.escribirHistorial(rutaInstantanea, descartar, enDisco, enMemoria, serializador);
+        } catch (IOException e) {
+            System.err.println("⚠️  Error al compactar el historial: " + e.getMessage());
+            return false;
+        }
+        entradasInstantanea = total;
+        entradasDiario = 0;
+        if (total > 0) {
+            try {
+                vaciarDiario();
+            } catch (IOException e) {
+                // La instantánea ya está escrita: al cargar se omiten las entradas que incluye
+                System.err.println("⚠️  No se pudo vaciar el diario del historial: " + e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    private void vaciarDiario() throws IOException {
+        FileChannel destino = abrirCanal();
+        destino.truncate(0);
+        destino.force(true);
+    }
+
+    /**
+     * Indica si el diario ya es tan grande como la instantánea (o supera el mínimo)
+     */
+    public boolean debeCompactar() {
+        return entradasDiario >= Math.max(minimoCompactacion, entradasInstantanea);
+    }
+
+    /**
+     * Fuerza los datos pendientes al disco y cierra el diario
+     */
+    public void cerrar() {
+        if (canal == null) {
+            return;
+        }
+        try {
+            canal.force(false);
+            canal.close();
+        } catch (IOException e) {
+            System.err.println("⚠️  Error al cerrar el diario del historial: " + e.getMessage());
+        }
+        canal = null;
+    }
+
+    public int getEntradasDiario() { return entradasDiario; }
+    public Path getRutaDiario() { return rutaDiario; }
+    public String getRutaInstantanea() { return rutaInstantanea; }
+    public SerializadorHistorial getSerializador() { return serializador; }
+
+    private FileChannel abrirCanal() throws IOException {
+        if (canal == null) {
+            Path directorio = rutaDiario.toAbsolutePath().getParent();
+            Files.createDirectories(directorio);
+            canal = FileChannel.open(rutaDiario,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        return canal;
+    }
+
+    private void sincronizarSegunPolitica(FileChannel destino) throws IOException {
+        switch (politica) {
+            case SIEMPRE:
+                destino.force(false);
+                break;
+            case PERIODICA:
+                long ahora = System.nanoTime();
+                if (ahora - ultimaSincronizacion >= intervaloSincronizacionNanos) {
+                    destino.force(false);
+                    ultimaSincronizacion = ahora;
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * data/historial.json (o .bin) -> data/historial.diario.jsonl
+     */
+    private static Path rutaDiarioPara(String rutaInstantanea) {
+        return rutaJuntoA(rutaInstantanea, ".diario.jsonl");
+    }
+
+    /**
+     * Ruta de un archivo que acompaña a la instantánea:
+     * data/historial.json (o .bin) + sufijo -> data/historial + sufijo
+     */
+    static Path rutaJuntoA(String rutaInstantanea, String sufijo) {
+        int punto = rutaInstantanea.lastIndexOf('.');
+        String extension = punto < 0 ? "" : rutaInstantanea.substring(punto);
+        String base = extension.equals(".json") || extension.equals(".bin")
+            ? rutaInstantanea.substring(0, punto)
+            : rutaInstantanea;
+        return Paths.get(base + sufijo);
+    }
+}
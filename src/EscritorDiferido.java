@@ -0,0 +1,405 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Escritura diferida (write-behind) del diario del historial: las
+ * conversiones se encolan y un único hilo las escribe de a lotes (group
+ * commit), así el hilo que convierte no espera al disco.
+ *
+ * Un lote se escribe cuando junta {@link Opciones#getTamañoLote()}
+ * conversiones o cuando pasan {@link Opciones#getEsperaMaximaMs()} desde la
+ * primera; con durabilidad LOTE cada lote se fuerza al disco (fsync). La
+ * cola está acotada: si se llena, {@link #reservar(int)} bloquea al que
+ * convierte hasta que el hilo escritor libere lugar.
+ *
+ * Si escribir un lote falla se reintenta unas pocas veces, con espera
+ * creciente, antes de darlo por perdido; un lote perdido se cuenta en la
+ * métrica historial.escritura.fallos y {@link #cerrar()} lo informa con una
+ * excepción.
+ *
+ * Las tareas ({@link #ejecutar(Runnable)}) se ejecutan en el mismo hilo,
+ * después de escribir todo lo encolado antes que ellas; así las operaciones
+ * sobre el diario (compactar, limpiar) nunca se mezclan con una escritura.
+ */
+public class EscritorDiferido {
+
+    /**
+     * Cuándo se fuerzan al disco las conversiones escritas
+     */
+    public enum Durabilidad {
+        /** No se fuerza (se aplica solo historial.journal.fsync): lo encolado se pierde si el proceso muere */
+        NINGUNA,
+        /** fsync tras cada lote */
+        LOTE;
+
+        /**
+         * Interpreta el valor de configuración (sin distinguir mayúsculas)
+         * @param valor Texto de configuración, o null para el valor por defecto (LOTE)
+         * @return La durabilidad correspondiente
+         */
+        public static Durabilidad desde(String valor) {
+            if (valor == null || valor.isBlank()) {
+                return LOTE;
+            }
+            return valueOf(valor.trim().toUpperCase());
+        }
+    }
+
+    /**
+     * Configuración de la escritura diferida (inmutable)
+     */
+    public static final class Opciones {
+        private final int capacidad;
+        private final int tamañoLote;
+        private final long esperaMaximaMs;
+        private final Durabilidad durabilidad;
+
+        /**
+         * @param capacidad Conversiones encoladas sin escribir a partir de las cuales se bloquea al que convierte
+         * @param tamañoLote Conversiones por escritura
+         * @param esperaMaximaMs Espera máxima desde la primera conversión de un lote hasta escribirlo
+         * @param durabilidad Si se fuerza cada lote al disco
+         */
+        public Opciones(int capacidad, int tamañoLote, long esperaMaximaMs, Durabilidad durabilidad) {
+            if (capacidad <= 0 || tamañoLote <= 0 || esperaMaximaMs < 0) {
+                throw new IllegalArgumentException("Opciones de escritura diferida inválidas");
+            }
+            this.capacidad = capacidad;
+            this.tamañoLote = tamañoLote;
+            this.esperaMaximaMs = esperaMaximaMs;
+            this.durabilidad = durabilidad;
+        }
+
+        /**
+         * Lee historial.write.behind.* de GestorConfiguracion
+         * @return Las opciones, o null si la escritura diferida está deshabilitada
+         */
+        public static Opciones desdeConfiguracion() {
+            if (!GestorConfiguracion.obtenerBoolean("historial.write.behind.enabled", false)) {
+                return null;
+            }
+            return new Opciones(
+                GestorConfiguracion.obtenerInt("historial.write.behind.queue.size", 10_000),
+                GestorConfiguracion.obtenerInt("historial.write.behind.batch.size", 256),
+                GestorConfiguracion.obtenerInt("historial.write.behind.batch.ms", 20),
+                Durabilidad.desde(GestorConfiguracion.obtener("historial.write.behind.durability"))
+            );
+        }
+
+        public int getCapacidad() { return capacidad; }
+        public int getTamañoLote() { return tamañoLote; }
+        public long getEsperaMaximaMs() { return esperaMaximaMs; }
+        public Durabilidad getDurabilidad() { return durabilidad; }
+    }
+
+    /**
+     * Dónde se escriben los lotes (se llama siempre desde el hilo escritor)
+     */
+    public interface Destino {
+        /**
+         * Escribe un lote en el orden en que se encoló
+         * @param lote Conversiones a escribir
+         * @param forzar Si hay que forzarlas al disco
+         * @return true si conviene compactar (se hace cuando el lote ya no cuenta como pendiente)
+         * @throws IOException si no se pudo escribir (sin dejar escrita una parte del lote: se reintenta)
+         */
+        boolean escribir(List<Conversion> lote, boolean forzar) throws IOException;
+
+        /**
+         * Compacta lo escrito hasta ahora
+         */
+        void compactar();
+    }
+
+    /**
+     * Conversiones encoladas juntas con los permisos de la cola que ocupan
+     */
+    private static final class Lote {
+        final List<Conversion> conversiones;
+        final int permisos;
+
+        Lote(List<Conversion> conversiones, int permisos) {
+            this.conversiones = conversiones;
+            this.permisos = permisos;
+        }
+    }
+
+    /**
+     * Tarea a ejecutar en el hilo escritor
+     */
+    private static final class Tarea {
+        final Runnable accion;
+        final CompletableFuture<Void> terminada = new CompletableFuture<>();
+
+        Tarea(Runnable accion) {
+            this.accion = accion;
+        }
+    }
+
+    private static final Tarea FIN = new Tarea(() -> { });
+    private static final int INTENTOS_ESCRITURA = 3;
+    private static final long ESPERA_REINTENTO_MS = 100;
+
+    private final Opciones opciones;
+    private final Destino destino;
+    // Conversion, Lote o Tarea, en orden de llegada
+    private final LinkedBlockingQueue<Object> cola = new LinkedBlockingQueue<>();
+    private final Semaphore lugar;
+    private final AtomicInteger pendientes = new AtomicInteger();
+    private final Thread hilo;
+    private volatile boolean cerrado;
+    // Conversiones de lotes que no se pudieron escribir, y el último error
+    private final AtomicLong perdidas = new AtomicLong();
+    private volatile Exception ultimoError;
+
+    /**
+     * Crea el escritor e inicia su hilo
+     * @param opciones Configuración
+     * @param destino Dónde se escriben los lotes
+     */
+    public EscritorDiferido(Opciones opciones, Destino destino) {
+        this.opciones = opciones;
+        this.destino = destino;
+        this.lugar = new Semaphore(opciones.getCapacidad());
+        this.hilo = new Thread(this::escribirMientrasHaya, "historial-escritor");
+        this.hilo.setDaemon(true);
+        this.hilo.start();
+    }
+
+    /**
+     * Espera hasta que haya lugar en la cola para las conversiones (llamar
+     * antes de {@link #encolar}, sin tener tomados bloqueos que use el destino)
+     * @param cantidad Conversiones a encolar
+     * @return Permisos reservados, a pasar a {@link #encolar(List, int)}
+     */
+    public int reservar(int cantidad) {
+        // Un lote más grande que la cola reserva la cola entera
+        int permisos = Math.min(cantidad, opciones.getCapacidad());
+        lugar.acquireUninterruptibly(permisos);
+        return permisos;
+    }
+
+    /**
+     * Encola una conversión (con un lugar ya reservado)
+     */
+    public void encolar(Conversion conversion) {
+        pendientes.incrementAndGet();
+        cola.add(conversion);
+    }
+
+    /**
+     * Encola un lote de conversiones (con los lugares ya reservados)
+     */
+    public void encolar(List<Conversion> conversiones, int permisos) {
+        pendientes.addAndGet(conversiones.size());
+        cola.add(new Lote(conversiones, permisos));
+    }
+
+    /**
+     * Ejecuta una tarea en el hilo escritor después de escribir todo lo
+     * encolado hasta ahora, y espera a que termine
+     * @param accion Tarea a ejecutar
+     */
+    public void ejecutar(Runnable accion) {
+        if (Thread.currentThread() == hilo) {
+            accion.run();
+            return;
+        }
+        Tarea tarea = new Tarea(accion);
+        cola.add(tarea);
+        while (true) {
+            try {
+                tarea.terminada.get(100, TimeUnit.MILLISECONDS);
+                return;
+            } catch (TimeoutException e) {
+                // Encolada después de que el hilo terminó (cerrar() concurrente): se ejecuta acá
+                if (!hilo.isAlive() && cola.remove(tarea)) {
+                    accion.run();
+                    return;
+                }
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw (Error) e.getCause();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                tarea.terminada.join();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Escribe todo lo encolado y detiene el hilo escritor. Se puede llamar
+     * más de una vez.
+     * @throws IllegalStateException si algún lote no se pudo escribir (con el último error como causa)
+     */
+    public void cerrar() {
+        if (!cerrado) {
+            cerrado = true;
+            cola.add(FIN);
+        }
+        // Todos los que cierran esperan a que termine de escribir
+        if (Thread.currentThread() != hilo) {
+            try {
+                hilo.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        long noEscritas = perdidas.get();
+        if (noEscritas > 0) {
+            throw new IllegalStateException(noEscritas + " conversiones del historial no se pudieron escribir",
+                ultimoError);
+        }
+    }
+
+    /**
+     * Conversiones encoladas que todavía no se escribieron
+     */
+    public int getPendientes() {
+        return pendientes.get();
+    }
+
+    /**
+     * Indica si ya se pidió cerrar (lo que se encole después puede no escribirse)
+     */
+    public boolean estaCerrado() {
+        return cerrado;
+    }
+
+    /**
+     * Conversiones de lotes que se dieron por perdidos tras agotar los reintentos
+     */
+    public long getPerdidas() {
+        return perdidas.get();
+    }
+
+    public Opciones getOpciones() { return opciones; }
+
+    private void escribirMientrasHaya() {
+        List<Conversion> lote = new ArrayList<>(opciones.getTamañoLote());
+        long esperaMaximaNanos = TimeUnit.MILLISECONDS.toNanos(opciones.getEsperaMaximaMs());
+        long inicioLote = 0;
+        int permisos = 0;
+        boolean terminar = false;
+        while (true) {
+            Object siguiente;
+            if (terminar) {
+                // Tras FIN se procesa lo que quedó en la cola sin esperar
+                siguiente = cola.poll();
+                if (siguiente == null && lote.isEmpty()) {
+                    return;
+                }
+            } else {
+                try {
+                    if (lote.isEmpty()) {
+                        siguiente = cola.take();
+                    } else {
+                        // Group commit: se espera a que el lote se llene, como mucho hasta el plazo
+                        long restante = inicioLote + esperaMaximaNanos - System.nanoTime();
+                        siguiente = restante > 0 ? cola.poll(restante, TimeUnit.NANOSECONDS) : cola.poll();
+                    }
+                } catch (InterruptedException e) {
+                    // El hilo es interno: solo se detiene con FIN
+                    continue;
+                }
+            }
+
+            if (lote.isEmpty()) {
+                inicioLote = System.nanoTime();
+            }
+            if (siguiente instanceof Conversion) {
+                lote.add((Conversion) siguiente);
+                permisos++;
+            } else if (siguiente instanceof Lote) {
+                lote.addAll(((Lote) siguiente).conversiones);
+                permisos += ((Lote) siguiente).permisos;
+            }
+            boolean vencido = System.nanoTime() - inicioLote >= esperaMaximaNanos;
+            if (!lote.isEmpty() && (siguiente == null || siguiente instanceof Tarea
+                    || lote.size() >= opciones.getTamañoLote() || vencido)) {
+                escribir(lote, permisos);
+                lote.clear();
+                permisos = 0;
+            }
+
+            if (siguiente == FIN) {
+                terminar = true;
+            } else if (siguiente instanceof Tarea) {
+                Tarea tarea = (Tarea) siguiente;
+                try {
+                    tarea.accion.run();
+                    tarea.terminada.complete(null);
+                } catch (RuntimeException | Error e) {
+                    tarea.terminada.completeExceptionally(e);
+                }
+            }
+        }
+    }
+
+    private void escribir(List<Conversion> lote, int permisos) {
+        boolean compactar;
+        try {
+            compactar = escribirConReintentos(lote);
+        } finally {
+            pendientes.addAndGet(-lote.size());
+            lugar.release(permisos);
+        }
+        if (compactar) {
+            try {
+                destino.compactar();
+            } catch (RuntimeException e) {
+                System.err.println("⚠️  Error al compactar el historial: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Escribe un lote; ante un error espera y lo reintenta. Mientras tanto la
+     * cola no avanza (los que convierten terminan esperando en reservar).
+     * @return true si conviene compactar; false también si el lote se perdió
+     */
+    private boolean escribirConReintentos(List<Conversion> lote) {
+        boolean forzar = opciones.getDurabilidad() == Durabilidad.LOTE;
+        for (int intento = 1; ; intento++) {
+            try {
+                return destino.escribir(lote, forzar);
+            } catch (IOException | RuntimeException e) {
+                if (intento < INTENTOS_ESCRITURA) {
+                    System.err.println("⚠️  Error al escribir un lote del historial (intento " + intento + " de "
+                        + INTENTOS_ESCRITURA + "): " + e.getMessage());
+                    esperar(ESPERA_REINTENTO_MS << (intento - 1));
+                    continue;
+                }
+                ultimoError = e;
+                perdidas.addAndGet(lote.size());
+                Metricas.incrementar("historial.escritura.fallos");
+                System.err.println("❌ No se pudo escribir un lote de " + lote.size()
+                    + " conversiones del historial: " + e.getMessage());
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Duerme el hilo escritor (que es interno: una interrupción solo acorta la espera)
+     */
+    private static void esperar(long milisegundos) {
+        try {
+            Thread.sleep(milisegundos);
+        } catch (InterruptedException e) {
+            // Se sigue con el reintento
+        }
+    }
+}
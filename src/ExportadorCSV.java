@@ -0,0 +1,308 @@
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exportación del historial a CSV en streaming.
+ * Cada fila se formatea a mano directamente como bytes ASCII en un buffer
+ * reutilizable (sin String.format, sin Strings intermedios), que se vuelca
+ * al archivo, opcionalmente comprimido con gzip, cuando se llena.
+ *
+ * El formato de las columnas es el de la exportación original (fecha y hora
+ * ISO, montos con 2 decimales y tasa con 6, redondeo HALF_UP) pero siempre
+ * con punto decimal: antes el separador dependía del Locale y con coma
+ * decimal rompía las columnas.
+ *
+ * Uso: new ExportadorCSV().filtrarPorPar("USD", "EUR").exportar(conversiones, "salida.csv.gz")
+ */
+public class ExportadorCSV {
+    static final String ENCABEZADO =
+        "ID,Fecha,Hora,Moneda Origen,Monto Origen,Moneda Destino,Monto Destino,Tasa de Cambio\n";
+
+    private static final int TAMAÑO_BUFFER = 1 << 16;
+    // Cota holgada del largo de una fila (el id puede ser de cualquier largo, se controla aparte)
+    private static final int MAX_FILA_SIN_ID = 160;
+    private static final long[] POTENCIAS_10 = {1, 10, 100, 1_000, 10_000, 100_000, 1_000_000};
+    // Por encima de esto el valor escalado ya no es exacto en un double: se usa la ruta lenta
+    private static final double MAX_RAPIDO = 1L << 52;
+
+    private boolean gzip;
+    private LocalDateTime desde;
+    private LocalDateTime hasta;
+    private String monedaOrigen;
+    private String monedaDestino;
+
+    private byte[] buffer;
+    private int posicion;
+    private OutputStream salida;
+    private long filas;
+
+    /**
+     * Exportador sin filtros; se comprime con gzip si la ruta termina en .gz
+     */
+    public ExportadorCSV() {
+    }
+
+    /**
+     * Fuerza (o desactiva) la compresión gzip sin importar la extensión
+     * @return Este exportador
+     */
+    public ExportadorCSV comprimir(boolean gzip) {
+        this.gzip = gzip;
+        return this;
+    }
+
+    /**
+     * Exporta solo las conversiones con marca de tiempo en [desde, hasta)
+     * @param desde Inicio (inclusive), o null para no acotar
+     * @param hasta Fin (exclusive), o null para no acotar
+     * @return Este exportador
+     */
+    public ExportadorCSV filtrarPorFecha(LocalDateTime desde, LocalDateTime hasta) {
+        this.desde = desde;
+        this.hasta = hasta;
+        return this;
+    }
+
+    /**
+     * Exporta solo las conversiones de un par de monedas
+     * @param monedaOrigen Moneda de origen, o null para cualquiera
+     * @param monedaDestino Moneda de destino, o null para cualquiera
+     * @return Este exportador
+     */
+    public ExportadorCSV filtrarPorPar(String monedaOrigen, String monedaDestino) {
+        this.monedaOrigen = monedaOrigen;
+        this.monedaDestino = monedaDestino;
+        return this;
+    }
+
+    /**
+     * Exporta las conversiones que pasan los filtros
+     * @param conversiones Conversiones a exportar (se recorren una sola vez)
+     * @param rutaArchivo Ruta del archivo CSV de salida
+     * @return Cantidad de filas exportadas
+     * @throws IOException si no se pudo escribir el archivo
+     */
+    public long exportar(Iterable<Conversion> conversiones, String rutaArchivo) throws IOException {
+        boolean comprimido = gzip || rutaArchivo.endsWith(".gz");
+        try (OutputStream archivo = new FileOutputStream(rutaArchivo)) {
+            if (comprimido) {
+                try (GZIPOutputStream zip = comprimidoRapido(archivo)) {
+                    return exportar(conversiones, zip);
+                }
+            }
+            return exportar(conversiones, archivo);
+        }
+    }
+
+    /**
+     * Exporta las conversiones que pasan los filtros a un flujo (que no se cierra)
+     * @param conversiones Conversiones a exportar (se recorren una sola vez)
+     * @param destino Flujo de salida
+     * @return Cantidad de filas exportadas
+     * @throws IOException si no se pudo escribir en el flujo
+     */
+    public long exportar(Iterable<Conversion> conversiones, OutputStream destino) throws IOException {
+        buffer = new byte[TAMAÑO_BUFFER];
+        posicion = 0;
+        salida = destino;
+        filas = 0;
+        try {
+            escribirAscii(ENCABEZADO);
+            for (Conversion c : conversiones) {
+                if (acepta(c)) {
+                    escribirFila(c);
+                    filas++;
+                }
+            }
+            volcar();
+            destino.flush();
+            return filas;
+        } finally {
+            buffer = null;
+            salida = null;
+        }
+    }
+
+    /**
+     * gzip con el nivel de compresión más rápido: con el nivel por defecto la
+     * compresión tarda diez veces más que generar el CSV
+     */
+    private static GZIPOutputStream comprimidoRapido(OutputStream destino) throws IOException {
+        return new GZIPOutputStream(destino, TAMAÑO_BUFFER) {
+            {
+                def.setLevel(Deflater.BEST_SPEED);
+            }
+        };
+    }
+
+    private boolean acepta(Conversion c) {
+        LocalDateTime timestamp = c.getTimestamp();
+        return (desde == null || !timestamp.isBefore(desde))
+            && (hasta == null || timestamp.isBefore(hasta))
+            && (monedaOrigen == null || monedaOrigen.equals(c.getMonedaOrigen()))
+            && (monedaDestino == null || monedaDestino.equals(c.getMonedaDestino()));
+    }
+
+    private void escribirFila(Conversion c) throws IOException {
+        if (posicion + MAX_FILA_SIN_ID + c.getId().length() > buffer.length) {
+            volcar();
+        }
+        escribirAscii(c.getId());
+        buffer[posicion++] = ',';
+        escribirFecha(c.getTimestamp().toLocalDate());
+        buffer[posicion++] = ',';
+        escribirHora(c.getTimestamp().toLocalTime());
+        buffer[posicion++] = ',';
+        escribirAscii(c.getMonedaOrigen());
+        buffer[posicion++] = ',';
+        escribirDecimal(c.getMontoOrigen(), 2);
+        buffer[posicion++] = ',';
+        escribirAscii(c.getMonedaDestino());
+        buffer[posicion++] = ',';
+        escribirDecimal(c.getMontoDestino(), 2);
+        buffer[posicion++] = ',';
+        escribirDecimal(c.getTasaCambio(), 6);
+        buffer[posicion++] = '\n';
+    }
+
+    /**
+     * Escribe texto ASCII (id, monedas); otro carácter se codifica en UTF-8
+     */
+    private void escribirAscii(String texto) throws IOException {
+        for (int i = 0; i < texto.length(); i++) {
+            char caracter = texto.charAt(i);
+            if (caracter >= 0x80) {
+                escribirBytes(texto.substring(i).getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            if (posicion == buffer.length) {
+                volcar();
+            }
+            buffer[posicion++] = (byte) caracter;
+        }
+    }
+
+    private void escribirBytes(byte[] bytes) throws IOException {
+        for (byte b : bytes) {
+            if (posicion == buffer.length) {
+                volcar();
+            }
+            buffer[posicion++] = b;
+        }
+    }
+
+    /**
+     * yyyy-MM-dd (años de 4 cifras, como LocalDate.toString en el rango habitual)
+     */
+    private void escribirFecha(LocalDate fecha) throws IOException {
+        int año = fecha.getYear();
+        if (año < 0 || año > 9999) {
+            escribirAscii(fecha.toString());
+            return;
+        }
+        escribirDigitos(año, 4);
+        buffer[posicion++] = '-';
+        escribirDigitos(fecha.getMonthValue(), 2);
+        buffer[posicion++] = '-';
+        escribirDigitos(fecha.getDayOfMonth(), 2);
+    }
+
+    /**
+     * Mismo formato que LocalTime.toString: HH:mm[:ss[.fracción de 3, 6 o 9 cifras]]
+     */
+    private void escribirHora(LocalTime hora) {
+        escribirDigitos(hora.getHour(), 2);
+        buffer[posicion++] = ':';
+        escribirDigitos(hora.getMinute(), 2);
+        int segundo = hora.getSecond();
+        int nano = hora.getNano();
+        if (segundo > 0 || nano > 0) {
+            buffer[posicion++] = ':';
+            escribirDigitos(segundo, 2);
+            if (nano > 0) {
+                buffer[posicion++] = '.';
+                if (nano % 1_000_000 == 0) {
+                    escribirDigitos(nano / 1_000_000, 3);
+                } else if (nano % 1000 == 0) {
+                    escribirDigitos(nano / 1000, 6);
+                } else {
+                    escribirDigitos(nano, 9);
+                }
+            }
+        }
+    }
+
+    /**
+     * Escribe un double con una cantidad fija de decimales, con el mismo
+     * resultado que String.format("%.Nf") (HALF_UP sobre la representación
+     * decimal más corta del double) pero sin asignar memoria en el caso común
+     */
+    private void escribirDecimal(double valor, int decimales) throws IOException {
+        if (Double.isNaN(valor) || Double.isInfinite(valor)) {
+            escribirAscii(String.format(Locale.ROOT, "%." + decimales + "f", valor));
+            return;
+        }
+        // Como Formatter, conserva el signo aunque el resultado redondee a cero (-0.00)
+        if (Double.doubleToRawLongBits(valor) < 0) {
+            buffer[posicion++] = '-';
+            valor = -valor;
+        }
+
+        double escalado = valor * POTENCIAS_10[decimales];
+        // Cerca de un empate (x.5, a unos pocos ulp) el producto en double puede redondear
+        // hacia el lado equivocado: esos casos y los valores enormes van por la ruta exacta
+        double tolerancia = Math.max(1e-6, 4 * Math.ulp(escalado));
+        if (escalado >= MAX_RAPIDO || Math.abs(escalado - Math.floor(escalado) - 0.5) < tolerancia) {
+            escribirAscii(new BigDecimal(Double.toString(valor)).setScale(decimales, RoundingMode.HALF_UP).toPlainString());
+            return;
+        }
+
+        long redondeado = Math.round(escalado);
+        escribirEntero(redondeado / POTENCIAS_10[decimales]);
+        buffer[posicion++] = '.';
+        escribirDigitos(redondeado % POTENCIAS_10[decimales], decimales);
+    }
+
+    private void escribirEntero(long valor) {
+        if (valor == 0) {
+            buffer[posicion++] = '0';
+            return;
+        }
+        int inicio = posicion;
+        while (valor > 0) {
+            buffer[posicion++] = (byte) ('0' + valor % 10);
+            valor /= 10;
+        }
+        for (int i = inicio, j = posicion - 1; i < j; i++, j--) {
+            byte temporal = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = temporal;
+        }
+    }
+
+    /**
+     * Escribe un número no negativo con exactamente `cifras` dígitos (con ceros a la izquierda)
+     */
+    private void escribirDigitos(long valor, int cifras) {
+        for (int i = posicion + cifras - 1; i >= posicion; i--) {
+            buffer[i] = (byte) ('0' + valor % 10);
+            valor /= 10;
+        }
+        posicion += cifras;
+    }
+
+    private void volcar() throws IOException {
+        salida.write(buffer, 0, posicion);
+        posicion = 0;
+    }
+}
@@ -1,16 +1,21 @@
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.TypeAdapter;
-import com.google.gson.reflect.TypeToken;
+import com.google.gson.JsonParseException;
 import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonWriter;
 import java.io.*;
-import java.lang.reflect.Type;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.nio.file.StandardCopyOption;
+import java.time.DateTimeException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -18,10 +23,9 @@ import java.util.List;
  * Maneja la serialización y deserialización de datos en formato JSON y CSV.
  */
 public class GestorArchivos {
-    private static final Gson gson = new GsonBuilder()
-            .setPrettyPrinting()
-            .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
-            .create();
+    // Serialización de las conversiones cuando no se indica otra (la que usa el diario
+    // por defecto); cualquiera de las dos lee los archivos escritos con la otra
+    private static final SerializadorHistorial SERIALIZADOR_POR_DEFECTO = SerializadorHistorial.RAPIDO;
 
     /**
      * Guarda el historial en formato JSON
@@ -30,98 +34,438 @@ public class GestorArchivos {
      */
     public static void guardarHistorialJSON(List<Conversion> conversiones, String rutaArchivo) {
         try {
-            // Crear directorio si no existe
-            Files.createDirectories(Paths.get(rutaArchivo).getParent());
-            
-            // Serializar a JSON
-            String json = gson.toJson(conversiones);
-            
-            // Escribir archivo
-            try (FileWriter writer = new FileWriter(rutaArchivo)) {
-                writer.write(json);
-            }
-            
+            escribirHistorialJSON(conversiones, rutaArchivo);
         } catch (IOException e) {
             System.err.println("⚠️  Error al guardar historial: " + e.getMessage());
         }
     }
 
+    /**
+     * Escribe el historial en formato JSON de forma atómica: se escribe un
+     * archivo temporal y luego se reemplaza el original, de modo que un corte
+     * a mitad de la escritura nunca deja un archivo a medias.
+     * @param conversiones Lista de conversiones a guardar
+     * @param rutaArchivo Ruta del archivo donde guardar
+     * @throws IOException si no se pudo escribir el archivo
+     */
+    public static void escribirHistorialJSON(List<Conversion> conversiones, String rutaArchivo) throws IOException {
+        escribirHistorialJSON(rutaArchivo, 0, conversiones);
+    }
+
+    /**
+     * Escribe el historial de forma atómica conservando los primeros
+     * registros del archivo actual, que se copian en modo streaming (se usa
+     * cuando las conversiones más antiguas no están cargadas en memoria).
+     * @param rutaArchivo Ruta del archivo donde guardar
+     * @param prefijoEnDisco Cantidad de registros iniciales del archivo actual a conservar
+     * @param conversiones Conversiones a escribir a continuación del prefijo
+     * @throws IOException si no se pudo escribir el archivo
+     */
+    public static void escribirHistorialJSON(String rutaArchivo, int prefijoEnDisco,
+                                             List<Conversion> conversiones) throws IOException {
+        escribirHistorialJSON(rutaArchivo, 0, prefijoEnDisco, conversiones);
+    }
+
+    /**
+     * Escribe el historial de forma atómica conservando un rango de registros
+     * del archivo actual, que se copian en modo streaming (los anteriores se
+     * descartan, por ejemplo porque ya se archivaron).
+     * @param rutaArchivo Ruta del archivo donde guardar
+     * @param desde Primer registro del archivo actual a conservar
+     * @param hasta Registro siguiente al último a conservar
+     * @param conversiones Conversiones a escribir a continuación del rango
+     * @throws IOException si no se pudo escribir el archivo
+     */
+    public static void escribirHistorialJSON(String rutaArchivo, int desde, int hasta,
+                                             List<Conversion> conversiones) throws IOException {
+        escribirHistorialJSON(rutaArchivo, desde, hasta, conversiones, SERIALIZADOR_POR_DEFECTO);
+    }
+
+    /**
+     * Escribe el historial JSON de forma atómica con un serializador dado
+     * @param serializador Serializador de las conversiones (define si hay sangría)
+     * @see #escribirHistorialJSON(String, int, int, List)
+     */
+    public static void escribirHistorialJSON(String rutaArchivo, int desde, int hasta, List<Conversion> conversiones,
+                                             SerializadorHistorial serializador) throws IOException {
+        Path destino = Paths.get(rutaArchivo).toAbsolutePath();
+        Files.createDirectories(destino.getParent());
+        Path temporal = destino.resolveSibling(destino.getFileName() + ".tmp");
+
+        try (FileOutputStream salida = new FileOutputStream(temporal.toFile());
+             Writer writer = new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8), 1 << 16)) {
+            Gson gsonArchivo = serializador.getGson();
+            JsonWriter jsonWriter = gsonArchivo.newJsonWriter(writer);
+            jsonWriter.beginArray();
+            if (hasta > desde) {
+                try (LectorHistorialJSON lector = new LectorHistorialJSON(destino, serializador)) {
+                    lector.saltar(desde);
+                    for (int i = desde; i < hasta && lector.hasNext(); i++) {
+                        gsonArchivo.toJson(lector.next(), Conversion.class, jsonWriter);
+                    }
+                }
+            }
+            for (Conversion conversion : conversiones) {
+                gsonArchivo.toJson(conversion, Conversion.class, jsonWriter);
+            }
+            jsonWriter.endArray();
+            jsonWriter.flush();
+            salida.getFD().sync();
+        }
+
+        try {
+            Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Escribe el historial de forma atómica en el formato que indica la ruta
+     * (.bin = {@link HistorialBinario}, cualquier otra = JSON)
+     * @param rutaArchivo Ruta del archivo donde guardar
+     * @param prefijoEnDisco Cantidad de registros iniciales del archivo actual a conservar
+     * @param conversiones Conversiones a escribir a continuación del prefijo
+     * @throws IOException si no se pudo escribir el archivo
+     */
+    public static void escribirHistorial(String rutaArchivo, int prefijoEnDisco,
+                                         List<Conversion> conversiones) throws IOException {
+        escribirHistorial(rutaArchivo, 0, prefijoEnDisco, conversiones);
+    }
+
+    /**
+     * Escribe el historial de forma atómica en el formato que indica la ruta,
+     * conservando un rango de registros del archivo actual
+     * @param rutaArchivo Ruta del archivo donde guardar
+     * @param desde Primer registro del archivo actual a conservar
+     * @param hasta Registro siguiente al último a conservar
+     * @param conversiones Conversiones a escribir a continuación del rango
+     * @throws IOException si no se pudo escribir el archivo
+     */
+    public static void escribirHistorial(String rutaArchivo, int desde, int hasta,
+                                         List<Conversion> conversiones) throws IOException {
+        escribirHistorial(rutaArchivo, desde, hasta, conversiones, SERIALIZADOR_POR_DEFECTO);
+    }
+
+    /**
+     * Escribe el historial de forma atómica en el formato que indica la ruta,
+     * con un serializador dado para JSON
+     * @param serializador Serializador de las conversiones (no se usa en formato binario)
+     * @see #escribirHistorial(String, int, int, List)
+     */
+    public static void escribirHistorial(String rutaArchivo, int desde, int hasta, List<Conversion> conversiones,
+                                         SerializadorHistorial serializador) throws IOException {
+        if (HistorialBinario.esBinario(rutaArchivo)) {
+            HistorialBinario.escribir(Paths.get(rutaArchivo), desde, hasta, conversiones);
+        } else {
+            escribirHistorialJSON(rutaArchivo, desde, hasta, conversiones, serializador);
+        }
+    }
+
+    /**
+     * Serializa una conversión en una sola línea JSON (sin salto de línea final)
+     * @param conversion Conversión a serializar
+     * @return La línea JSON
+     */
+    public static String aLineaJSON(Conversion conversion) {
+        return aLineaJSON(conversion, SERIALIZADOR_POR_DEFECTO);
+    }
+
+    /**
+     * Serializa una conversión en una sola línea JSON con un serializador dado
+     * @see #aLineaJSON(Conversion)
+     */
+    public static String aLineaJSON(Conversion conversion, SerializadorHistorial serializador) {
+        return serializador.getGsonCompacto().toJson(conversion);
+    }
+
+    /**
+     * Deserializa una conversión escrita con {@link #aLineaJSON(Conversion)}
+     * @param linea La línea JSON
+     * @return La conversión
+     * @throws com.google.gson.JsonParseException si la línea no es JSON válido
+     */
+    public static Conversion desdeLineaJSON(String linea) {
+        return desdeLineaJSON(linea, SERIALIZADOR_POR_DEFECTO);
+    }
+
+    /**
+     * Deserializa una línea JSON con un serializador dado
+     * @see #desdeLineaJSON(String)
+     */
+    public static Conversion desdeLineaJSON(String linea, SerializadorHistorial serializador) {
+        return conMonedasInternadas(serializador.getGsonCompacto().fromJson(linea, Conversion.class));
+    }
+
     /**
      * Carga el historial desde archivo JSON
      * @param rutaArchivo Ruta del archivo a cargar
-     * @return Lista de conversiones cargadas
+     * @return Lista de conversiones cargadas (vacía solo si el archivo no existe)
+     * @throws UncheckedIOException si el archivo existe pero no se puede leer o está dañado
      */
     public static List<Conversion> cargarHistorialJSON(String rutaArchivo) {
-        try {
-            if (!Files.exists(Paths.get(rutaArchivo))) {
-                return new ArrayList<>();
+        return cargarHistorialJSON(rutaArchivo, 0).getEnMemoria();
+    }
+
+    /**
+     * Carga el historial leyendo el archivo registro a registro (streaming),
+     * sin materializar el JSON completo en memoria.
+     * @param rutaArchivo Ruta del archivo a cargar
+     * @param maxEnMemoria Cantidad de conversiones más recientes a conservar en
+     *                     memoria; las anteriores solo se cuentan. 0 = todas
+     * @return Conversiones en memoria, cantidad que quedó en disco y costo de la carga
+     * @throws UncheckedIOException si el archivo existe pero no se puede leer o está dañado
+     *                              (nunca se devuelve vacío: se perdería al compactar)
+     */
+    public static CargaHistorial cargarHistorialJSON(String rutaArchivo, int maxEnMemoria) {
+        return cargarHistorialJSON(rutaArchivo, maxEnMemoria, SERIALIZADOR_POR_DEFECTO);
+    }
+
+    /**
+     * Carga el historial JSON en streaming con un serializador dado
+     * @param serializador Serializador de las conversiones
+     * @see #cargarHistorialJSON(String, int)
+     */
+    public static CargaHistorial cargarHistorialJSON(String rutaArchivo, int maxEnMemoria,
+                                                     SerializadorHistorial serializador) {
+        Path ruta = Paths.get(rutaArchivo);
+        if (!Files.exists(ruta)) {
+            return new CargaHistorial(new ArrayList<>(), 0, 0, 0);
+        }
+
+        reiniciarPicosHeap();
+        long inicio = System.nanoTime();
+        ArrayDeque<Conversion> recientes = new ArrayDeque<>();
+        int enDisco = 0;
+
+        try (LectorHistorialJSON lector = new LectorHistorialJSON(ruta, serializador)) {
+            while (lector.hasNext()) {
+                if (maxEnMemoria > 0 && recientes.size() == maxEnMemoria) {
+                    recientes.pollFirst();
+                    enDisco++;
+                }
+                recientes.addLast(lector.next());
             }
+        } catch (IOException | UncheckedIOException | JsonParseException | DateTimeException e) {
+            throw historialIlegible(rutaArchivo, enDisco + recientes.size(), e);
+        }
+
+        return new CargaHistorial(new ArrayList<>(recientes), enDisco, System.nanoTime() - inicio, picoHeap());
+    }
+
+    /**
+     * Error de lectura del historial con la posición donde se produjo
+     * @param leidos Registros leídos correctamente antes del error
+     */
+    private static UncheckedIOException historialIlegible(String rutaArchivo, int leidos, Exception causa) {
+        String mensaje = "No se pudo leer " + rutaArchivo + " después de " + leidos + " registros: "
+            + causa.getMessage();
+        IOException error = causa instanceof UncheckedIOException
+            ? new IOException(mensaje, causa.getCause())
+            : new IOException(mensaje, causa);
+        return new UncheckedIOException(error);
+    }
+
+    /**
+     * Carga el historial en el formato que indica la ruta
+     * (.bin = {@link HistorialBinario}, cualquier otra = JSON)
+     * @throws UncheckedIOException si el archivo existe pero no se puede leer o está dañado
+     * @see #cargarHistorialJSON(String, int)
+     */
+    public static CargaHistorial cargarHistorial(String rutaArchivo, int maxEnMemoria) {
+        return cargarHistorial(rutaArchivo, maxEnMemoria, SERIALIZADOR_POR_DEFECTO);
+    }
+
+    /**
+     * Carga el historial en el formato que indica la ruta, con un serializador dado para JSON
+     * @param serializador Serializador de las conversiones (no se usa en formato binario)
+     * @see #cargarHistorial(String, int)
+     */
+    public static CargaHistorial cargarHistorial(String rutaArchivo, int maxEnMemoria,
+                                                 SerializadorHistorial serializador) {
+        return HistorialBinario.esBinario(rutaArchivo)
+            ? cargarHistorialBinario(rutaArchivo, maxEnMemoria)
+            : cargarHistorialJSON(rutaArchivo, maxEnMemoria, serializador);
+    }
+
+    /**
+     * Carga un historial binario: se mapea el archivo y solo se reconstruyen
+     * las conversiones que quedan en memoria
+     * @param rutaArchivo Ruta del archivo a cargar
+     * @param maxEnMemoria Cantidad de conversiones más recientes a conservar en memoria (0 = todas)
+     * @return Conversiones en memoria, cantidad que quedó en disco y costo de la carga
+     * @throws UncheckedIOException si el archivo existe pero no se puede leer o está dañado
+     */
+    public static CargaHistorial cargarHistorialBinario(String rutaArchivo, int maxEnMemoria) {
+        Path ruta = Paths.get(rutaArchivo);
+        if (!Files.exists(ruta)) {
+            return new CargaHistorial(new ArrayList<>(), 0, 0, 0);
+        }
 
-            String json = new String(Files.readAllBytes(Paths.get(rutaArchivo)));
-            Type tipoLista = new TypeToken<ArrayList<Conversion>>(){}.getType();
-            List<Conversion> conversiones = gson.fromJson(json, tipoLista);
-            
-            return conversiones != null ? conversiones : new ArrayList<>();
-            
+        reiniciarPicosHeap();
+        long inicio = System.nanoTime();
+        try {
+            HistorialBinario historial = HistorialBinario.abrir(ruta);
+            int enDisco = maxEnMemoria > 0 ? Math.max(0, historial.tamaño() - maxEnMemoria) : 0;
+            List<Conversion> enMemoria = historial.leer(enDisco, historial.tamaño() - enDisco);
+            return new CargaHistorial(enMemoria, enDisco, System.nanoTime() - inicio, picoHeap());
         } catch (IOException e) {
-            System.err.println("⚠️  Error al cargar historial: " + e.getMessage());
+            throw historialIlegible(rutaArchivo, 0, e);
+        }
+    }
+
+    /**
+     * Lee un rango de registros del historial en el formato que indica la ruta
+     * @throws UncheckedIOException si el archivo existe pero no se puede leer o está dañado
+     * @see #leerPaginaHistorialJSON(String, int, int)
+     */
+    public static List<Conversion> leerPaginaHistorial(String rutaArchivo, int desde, int cantidad) {
+        return leerPaginaHistorial(rutaArchivo, desde, cantidad, SERIALIZADOR_POR_DEFECTO);
+    }
+
+    /**
+     * Lee un rango de registros del historial en el formato que indica la ruta,
+     * con un serializador dado para JSON
+     * @param serializador Serializador de las conversiones (no se usa en formato binario)
+     * @see #leerPaginaHistorial(String, int, int)
+     */
+    public static List<Conversion> leerPaginaHistorial(String rutaArchivo, int desde, int cantidad,
+                                                       SerializadorHistorial serializador) {
+        if (!HistorialBinario.esBinario(rutaArchivo)) {
+            return leerPaginaHistorialJSON(rutaArchivo, desde, cantidad, serializador);
+        }
+        Path ruta = Paths.get(rutaArchivo);
+        if (cantidad <= 0 || !Files.exists(ruta)) {
             return new ArrayList<>();
         }
+        try {
+            return HistorialBinario.abrir(ruta).leer(desde, cantidad);
+        } catch (IOException e) {
+            throw historialIlegible(rutaArchivo, 0, e);
+        }
     }
 
     /**
-     * Exporta el historial a formato CSV
-     * @param conversiones Lista de conversiones a exportar
-     * @param rutaArchivo Ruta del archivo CSV de salida
+     * Recorre el historial en el formato que indica la ruta sin cargarlo completo
+     * @param rutaArchivo Ruta del archivo (debe existir)
+     * @return Iterador sobre los registros; si es Closeable hay que cerrarlo al abandonarlo
+     * @throws IOException si el archivo no se puede abrir
+     */
+    static Iterator<Conversion> recorrerHistorial(String rutaArchivo) throws IOException {
+        return recorrerHistorial(rutaArchivo, SERIALIZADOR_POR_DEFECTO);
+    }
+
+    /**
+     * Recorre el historial con un serializador dado para JSON
+     * @param serializador Serializador de las conversiones (no se usa en formato binario)
+     * @see #recorrerHistorial(String)
+     */
+    static Iterator<Conversion> recorrerHistorial(String rutaArchivo, SerializadorHistorial serializador)
+            throws IOException {
+        Path ruta = Paths.get(rutaArchivo);
+        return HistorialBinario.esBinario(rutaArchivo)
+            ? HistorialBinario.abrir(ruta).comoLista().iterator()
+            : new LectorHistorialJSON(ruta, serializador);
+    }
+
+    /**
+     * Lee un rango de registros de historial.json sin cargar el resto
+     * @param rutaArchivo Ruta del archivo
+     * @param desde Índice del primer registro (0 = el más antiguo)
+     * @param cantidad Cantidad máxima de registros a leer
+     * @return Los registros leídos (puede haber menos si el archivo termina antes)
+     * @throws UncheckedIOException si el archivo no se puede leer o está dañado antes
+     *                              de completar la página (nunca se devuelve una página parcial)
      */
-    public static void exportarCSV(List<Conversion> conversiones, String rutaArchivo) {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(rutaArchivo))) {
-            // Encabezados
-            writer.println("ID,Fecha,Hora,Moneda Origen,Monto Origen,Moneda Destino,Monto Destino,Tasa de Cambio");
-            
-            // Datos
-            for (Conversion c : conversiones) {
-                writer.printf("%s,%s,%s,%s,%.2f,%s,%.2f,%.6f%n",
-                    c.getId(),
-                    c.getTimestamp().toLocalDate(),
-                    c.getTimestamp().toLocalTime(),
-                    c.getMonedaOrigen(),
-                    c.getMontoOrigen(),
-                    c.getMonedaDestino(),
-                    c.getMontoDestino(),
-                    c.getTasaCambio()
-                );
+    public static List<Conversion> leerPaginaHistorialJSON(String rutaArchivo, int desde, int cantidad) {
+        return leerPaginaHistorialJSON(rutaArchivo, desde, cantidad, SERIALIZADOR_POR_DEFECTO);
+    }
+
+    /**
+     * Lee un rango de registros de historial.json con un serializador dado
+     * @param serializador Serializador de las conversiones
+     * @see #leerPaginaHistorialJSON(String, int, int)
+     */
+    public static List<Conversion> leerPaginaHistorialJSON(String rutaArchivo, int desde, int cantidad,
+                                                           SerializadorHistorial serializador) {
+        List<Conversion> pagina = new ArrayList<>(Math.min(cantidad, 1024));
+        Path ruta = Paths.get(rutaArchivo);
+        if (cantidad <= 0 || !Files.exists(ruta)) {
+            return pagina;
+        }
+
+        try (LectorHistorialJSON lector = new LectorHistorialJSON(ruta, serializador)) {
+            lector.saltar(desde);
+            while (pagina.size() < cantidad && lector.hasNext()) {
+                pagina.add(lector.next());
             }
-            
-            System.out.println("✅ Historial exportado a: " + rutaArchivo);
-            
-        } catch (IOException e) {
-            System.err.println("❌ Error al exportar CSV: " + e.getMessage());
+        } catch (IOException | UncheckedIOException | JsonParseException | DateTimeException e) {
+            throw historialIlegible(rutaArchivo, desde + pagina.size(), e);
         }
+        return pagina;
     }
-}
 
-/**
- * Adaptador personalizado para serializar/deserializar LocalDateTime con Gson
- */
-class LocalDateTimeAdapter extends TypeAdapter<LocalDateTime> {
-    private static final DateTimeFormatter formatter = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+    /**
+     * Deserializa la siguiente conversión de un JsonReader posicionado sobre ella
+     */
+    static Conversion leerConversion(JsonReader reader, SerializadorHistorial serializador) {
+        return conMonedasInternadas(serializador.getGson().fromJson(reader, Conversion.class));
+    }
 
-    @Override
-    public void write(JsonWriter out, LocalDateTime value) throws IOException {
-        if (value == null) {
-            out.nullValue();
-        } else {
-            out.value(value.format(formatter));
+    /**
+     * Gson crea las conversiones sin pasar por sus constructores: los códigos
+     * se reemplazan por los canónicos para no retener una copia por registro
+     */
+    private static Conversion conMonedasInternadas(Conversion conversion) {
+        return conversion == null ? null : conversion.internarMonedas();
+    }
+
+    /**
+     * Reinicia el registro de uso máximo de los pools del heap
+     */
+    private static void reiniciarPicosHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /**
+     * Suma del uso máximo de los pools del heap desde el último reinicio
+     * (aproximación del heap pico, ya que cada pool alcanza su máximo en distinto momento)
+     */
+    private static long picoHeap() {
+        long pico = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                pico += pool.getPeakUsage().getUsed();
+            }
         }
+        return pico;
     }
 
-    @Override
-    public LocalDateTime read(JsonReader in) throws IOException {
-        if (in.peek() == com.google.gson.stream.JsonToken.NULL) {
-            in.nextNull();
-            return null;
+    /**
+     * Exporta el historial a formato CSV (gzip si la ruta termina en .gz)
+     * @param conversiones Conversiones a exportar (se recorren una sola vez)
+     * @param rutaArchivo Ruta del archivo CSV de salida
+     */
+    public static void exportarCSV(Iterable<Conversion> conversiones, String rutaArchivo) {
+        exportarCSV(conversiones, rutaArchivo, new ExportadorCSV());
+    }
+
+    /**
+     * Exporta el historial a formato CSV con filtros y opciones
+     * @param conversiones Conversiones a exportar (se recorren una sola vez)
+     * @param rutaArchivo Ruta del archivo CSV de salida
+     * @param exportador Exportador configurado (filtros por fecha o par, gzip)
+     */
+    public static void exportarCSV(Iterable<Conversion> conversiones, String rutaArchivo, ExportadorCSV exportador) {
+        try {
+            long filas = exportador.exportar(conversiones, rutaArchivo);
+            System.out.println("✅ Historial exportado a: " + rutaArchivo + " (" + filas + " filas)");
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("❌ Error al exportar CSV: " + e.getMessage());
         }
-        return LocalDateTime.parse(in.nextString(), formatter);
     }
 }
@@ -74,6 +74,17 @@ public class GestorConfiguracion {
         return Integer.parseInt(propiedades.getProperty(clave));
     }
 
+    /**
+     * Obtiene un valor de configuración como int, con valor por defecto
+     * @param clave La clave de configuración
+     * @param porDefecto Valor a usar si la clave no está definida
+     * @return El valor de configuración como entero
+     */
+    public static int obtenerInt(String clave, int porDefecto) {
+        String valor = propiedades.getProperty(clave);
+        return valor == null || valor.isBlank() ? porDefecto : Integer.parseInt(valor.trim());
+    }
+
     /**
      * Obtiene un valor de configuración como boolean
      * @param clave La clave de configuración
@@ -83,6 +94,17 @@ public class GestorConfiguracion {
         return Boolean.parseBoolean(propiedades.getProperty(clave));
     }
 
+    /**
+     * Obtiene un valor de configuración como boolean, con valor por defecto
+     * @param clave La clave de configuración
+     * @param porDefecto Valor a usar si la clave no está definida
+     * @return El valor de configuración como booleano
+     */
+    public static boolean obtenerBoolean(String clave, boolean porDefecto) {
+        String valor = propiedades.getProperty(clave);
+        return valor == null || valor.isBlank() ? porDefecto : Boolean.parseBoolean(valor.trim());
+    }
+
     /**
      * Obtiene la API key validando que esté configurada
      * @return La API key
@@ -0,0 +1,156 @@
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latencias al estilo HDR: cubeta logarítmica-lineal con 16
+ * sub-cubetas por potencia de dos, así que cualquier percentil se informa
+ * con un error relativo de a lo sumo 1/16 (6,25 %) en todo el rango, de
+ * 1 ns a 2^40 ns (~18 minutos; lo que exceda cae en la última cubeta).
+ *
+ * Registrar un valor es un incremento de LongAdder en su cubeta, sin
+ * bloqueos ni asignaciones: los hilos que registran a la vez se reparten
+ * entre las celdas del LongAdder en lugar de competir por un mismo contador.
+ * Las lecturas ({@link #instantanea()}) suman las cubetas y no detienen a
+ * los que registran, por lo que son aproximadas mientras hay actividad.
+ */
+public final class HistogramaLatencia {
+    private static final int BITS_SUBCUBETA = 4;
+    private static final int SUBCUBETAS = 1 << BITS_SUBCUBETA;
+    private static final int MAX_EXPONENTE = 40;
+    private static final int CUBETAS = (MAX_EXPONENTE - BITS_SUBCUBETA + 2) * SUBCUBETAS;
+
+    private final String nombre;
+    private final LongAdder[] cubetas = new LongAdder[CUBETAS];
+    private final LongAdder cantidad = new LongAdder();
+    private final LongAdder suma = new LongAdder();
+    private final LongAccumulator maximo = new LongAccumulator(Math::max, 0);
+
+    /**
+     * @param nombre Nombre de la métrica (p. ej. conversion.latencia)
+     */
+    public HistogramaLatencia(String nombre) {
+        this.nombre = nombre;
+        for (int i = 0; i < CUBETAS; i++) {
+            cubetas[i] = new LongAdder();
+        }
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    /**
+     * Registra una duración
+     * @param nanos Duración en nanosegundos (los negativos cuentan como 0)
+     */
+    public void registrar(long nanos) {
+        long valor = Math.max(0, nanos);
+        cubetas[indice(valor)].increment();
+        cantidad.increment();
+        suma.add(valor);
+        maximo.accumulate(valor);
+    }
+
+    /**
+     * Vacía el histograma (los registros concurrentes pueden conservarse en parte)
+     */
+    public void reiniciar() {
+        for (LongAdder cubeta : cubetas) {
+            cubeta.reset();
+        }
+        cantidad.reset();
+        suma.reset();
+        maximo.reset();
+    }
+
+    /**
+     * Copia de los contadores para calcular percentiles
+     */
+    public Instantanea instantanea() {
+        long[] conteos = new long[CUBETAS];
+        for (int i = 0; i < CUBETAS; i++) {
+            conteos[i] = cubetas[i].sum();
+        }
+        return new Instantanea(conteos, cantidad.sum(), suma.sum(), maximo.get());
+    }
+
+    /**
+     * Cubeta de un valor: los 16 primeros valores van cada uno a la suya; a
+     * partir de ahí, 16 cubetas por potencia de dos
+     */
+    static int indice(long valor) {
+        if (valor < SUBCUBETAS) {
+            return (int) valor;
+        }
+        int exponente = 63 - Long.numberOfLeadingZeros(valor);
+        if (exponente > MAX_EXPONENTE) {
+            return CUBETAS - 1;
+        }
+        int subcubeta = (int) (valor >>> (exponente - BITS_SUBCUBETA)) & (SUBCUBETAS - 1);
+        return (exponente - BITS_SUBCUBETA + 1) * SUBCUBETAS + subcubeta;
+    }
+
+    /**
+     * Valor representativo de una cubeta (su punto medio)
+     */
+    static long valorDeCubeta(int indice) {
+        if (indice < SUBCUBETAS) {
+            return indice;
+        }
+        int exponente = indice / SUBCUBETAS + BITS_SUBCUBETA - 1;
+        long inferior = (long) (SUBCUBETAS + indice % SUBCUBETAS) << (exponente - BITS_SUBCUBETA);
+        long ancho = 1L << (exponente - BITS_SUBCUBETA);
+        return inferior + ancho / 2;
+    }
+
+    /**
+     * Contenido de un histograma en un momento dado
+     */
+    public static final class Instantanea {
+        private final long[] conteos;
+        private final long cantidad;
+        private final long suma;
+        private final long maximo;
+
+        Instantanea(long[] conteos, long cantidad, long suma, long maximo) {
+            this.conteos = conteos;
+            this.cantidad = cantidad;
+            this.suma = suma;
+            this.maximo = maximo;
+        }
+
+        public long getCantidad() { return cantidad; }
+        public long getMaximo() { return maximo; }
+
+        /**
+         * Media en nanosegundos (0 si no hay registros)
+         */
+        public double getMedia() {
+            return cantidad == 0 ? 0 : (double) suma / cantidad;
+        }
+
+        /**
+         * Percentil aproximado
+         * @param percentil Entre 0 y 100 (p. ej. 99.9)
+         * @return Valor en nanosegundos (0 si no hay registros)
+         */
+        public long percentil(double percentil) {
+            long total = 0;
+            for (long conteo : conteos) {
+                total += conteo;
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long objetivo = Math.max(1, (long) Math.ceil(total * percentil / 100.0));
+            long acumulado = 0;
+            for (int i = 0; i < conteos.length; i++) {
+                acumulado += conteos[i];
+                if (acumulado >= objetivo) {
+                    return Math.min(valorDeCubeta(i), maximo);
+                }
+            }
+            return maximo;
+        }
+    }
+}
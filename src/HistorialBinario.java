@@ -0,0 +1,413 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.UUID;
+
+/**
+ * Historial en formato binario de ancho fijo, leído con memory-mapping.
+ * Abrir el archivo es mapearlo (no hay parseo) y cada registro se lee
+ * directamente del buffer mapeado por su posición.
+ *
+ * Formato (little-endian):
+ * <pre>
+ * Encabezado (32 bytes)
+ *   0  int   magia 'HCNV'
+ *   4  short versión (1)
+ *   6  short tamaño de registro (48)
+ *   8  int   indicadores (bit 0: marcas de tiempo en orden no decreciente)
+ *   12 int   reservado
+ *   16 long  cantidad de registros
+ *   24 long  reservado
+ * Registro (48 bytes)
+ *   0  long  marca de tiempo (ms, hora local codificada como UTC)
+ *   8  short moneda origen (código de 3 letras empaquetado)
+ *   10 short moneda destino
+ *   12 int   reservado
+ *   16 double monto origen
+ *   24 double monto destino
+ *   32 long  id (bits altos del UUID)
+ *   40 long  id (bits bajos del UUID)
+ * </pre>
+ * Las codificaciones son las de {@link AlmacenColumnar}: la marca de tiempo
+ * se trunca a milisegundos y la tasa se deriva de los montos.
+ */
+public final class HistorialBinario {
+    private static final int MAGIA = 0x564E4348; // "HCNV" en little-endian
+    private static final short VERSION = 1;
+    private static final int TAMAÑO_ENCABEZADO = 32;
+    private static final int TAMAÑO_REGISTRO = 48;
+    private static final int ORDENADO = 1;
+
+    // Registros por región mapeada: un MappedByteBuffer no puede superar 2 GB
+    private static final int BITS_REGION = 24;
+    private static final int REGISTROS_POR_REGION = 1 << BITS_REGION;
+    private static final int MASCARA_REGION = REGISTROS_POR_REGION - 1;
+
+    private static final int REGISTROS_POR_ESCRITURA = 1 << 12;
+
+    private final MappedByteBuffer[] regiones;
+    private final int tamaño;
+    private final boolean ordenado;
+
+    private HistorialBinario(MappedByteBuffer[] regiones, int tamaño, boolean ordenado) {
+        this.regiones = regiones;
+        this.tamaño = tamaño;
+        this.ordenado = ordenado;
+    }
+
+    /**
+     * Indica si una ruta de historial usa este formato (extensión .bin)
+     */
+    public static boolean esBinario(String ruta) {
+        return ruta.endsWith(".bin");
+    }
+
+    /**
+     * Mapea un archivo de historial binario en modo lectura
+     * @param ruta Ruta del archivo
+     * @return El historial mapeado
+     * @throws IOException si el archivo no existe o no tiene el formato esperado
+     */
+    public static HistorialBinario abrir(Path ruta) throws IOException {
+        try (FileChannel canal = FileChannel.open(ruta, StandardOpenOption.READ)) {
+            ByteBuffer encabezado = ByteBuffer.allocate(TAMAÑO_ENCABEZADO).order(ByteOrder.LITTLE_ENDIAN);
+            int leidos;
+            do {
+                leidos = canal.read(encabezado, encabezado.position());
+            } while (leidos > 0 && encabezado.hasRemaining());
+            if (encabezado.hasRemaining() || encabezado.getInt(0) != MAGIA) {
+                throw new IOException("No es un historial binario: " + ruta);
+            }
+            if (encabezado.getShort(4) != VERSION || encabezado.getShort(6) != TAMAÑO_REGISTRO) {
+                throw new IOException("Versión de historial binario no soportada: " + encabezado.getShort(4));
+            }
+            long registros = encabezado.getLong(16);
+            if (registros < 0 || registros > Integer.MAX_VALUE
+                    || TAMAÑO_ENCABEZADO + registros * TAMAÑO_REGISTRO > canal.size()) {
+                throw new IOException("Historial binario truncado o dañado: " + ruta);
+            }
+
+            int tamaño = (int) registros;
+            MappedByteBuffer[] regiones = new MappedByteBuffer[(tamaño + MASCARA_REGION) >>> BITS_REGION];
+            for (int r = 0; r < regiones.length; r++) {
+                long inicio = TAMAÑO_ENCABEZADO + (long) r * REGISTROS_POR_REGION * TAMAÑO_REGISTRO;
+                long registrosRegion = Math.min(REGISTROS_POR_REGION, tamaño - (long) r * REGISTROS_POR_REGION);
+                regiones[r] = canal.map(FileChannel.MapMode.READ_ONLY, inicio, registrosRegion * TAMAÑO_REGISTRO);
+                regiones[r].order(ByteOrder.LITTLE_ENDIAN);
+            }
+            return new HistorialBinario(regiones, tamaño, (encabezado.getInt(8) & ORDENADO) != 0);
+        }
+    }
+
+    /**
+     * Cantidad de registros
+     */
+    public int tamaño() {
+        return tamaño;
+    }
+
+    /**
+     * Indica si las marcas de tiempo están en orden no decreciente (requisito de las búsquedas por rango)
+     */
+    public boolean estaOrdenado() {
+        return ordenado;
+    }
+
+    // Acceso por campo directamente sobre el buffer mapeado
+    public long getEpochMilis(int indice) { return region(indice).getLong(desplazamiento(indice)); }
+    public String getMonedaOrigen(int indice) { return AlmacenColumnar.codigo(region(indice).getShort(desplazamiento(indice) + 8)); }
+    public String getMonedaDestino(int indice) { return AlmacenColumnar.codigo(region(indice).getShort(desplazamiento(indice) + 10)); }
+    public double getMontoOrigen(int indice) { return region(indice).getDouble(desplazamiento(indice) + 16); }
+    public double getMontoDestino(int indice) { return region(indice).getDouble(desplazamiento(indice) + 24); }
+
+    /**
+     * Reconstruye la conversión de un registro
+     * @param indice Posición (0 = la más antigua)
+     * @return Una Conversion nueva con los datos del registro
+     */
+    public Conversion getConversion(int indice) {
+        ByteBuffer region = region(indice);
+        int base = desplazamiento(indice);
+        return new Conversion(
+            new UUID(region.getLong(base + 32), region.getLong(base + 40)).toString(),
+            AlmacenColumnar.desdeEpochMilis(region.getLong(base)),
+            AlmacenColumnar.codigo(region.getShort(base + 8)),
+            AlmacenColumnar.codigo(region.getShort(base + 10)),
+            region.getDouble(base + 16),
+            region.getDouble(base + 24)
+        );
+    }
+
+    /**
+     * Reconstruye solo los registros de un rango, leyéndolos del buffer mapeado
+     * @param desde Posición del primero (0 = el más antiguo)
+     * @param cantidad Cantidad máxima de registros
+     * @return Lista nueva con los registros (menos si el archivo termina antes)
+     */
+    public List<Conversion> leer(int desde, int cantidad) {
+        int inicio = Math.max(0, Math.min(desde, tamaño));
+        int fin = (int) Math.min(tamaño, (long) inicio + Math.max(0, cantidad));
+        List<Conversion> registros = new ArrayList<>(fin - inicio);
+        for (int i = inicio; i < fin; i++) {
+            registros.add(getConversion(i));
+        }
+        return registros;
+    }
+
+    /**
+     * Vista de lista sobre los registros; cada get() reconstruye la Conversion
+     */
+    public List<Conversion> comoLista() {
+        return new Vista(0, tamaño);
+    }
+
+    /**
+     * Primer registro con marca de tiempo mayor o igual a la dada (búsqueda binaria sobre el buffer)
+     * @param epochMilis Marca de tiempo en milisegundos
+     * @return El índice, o tamaño() si no hay ninguno
+     * @throws IllegalStateException si el archivo no está ordenado por marca de tiempo
+     */
+    public int buscarDesde(long epochMilis) {
+        if (!ordenado) {
+            throw new IllegalStateException("El historial binario no está ordenado por marca de tiempo");
+        }
+        int bajo = 0;
+        int alto = tamaño;
+        while (bajo < alto) {
+            int medio = (bajo + alto) >>> 1;
+            if (getEpochMilis(medio) < epochMilis) {
+                bajo = medio + 1;
+            } else {
+                alto = medio;
+            }
+        }
+        return bajo;
+    }
+
+    /**
+     * Conversiones con marca de tiempo en [desde, hasta)
+     * @param desde Inicio del rango (inclusive)
+     * @param hasta Fin del rango (exclusive)
+     * @return Vista sobre los registros del rango, sin copiarlos
+     */
+    public List<Conversion> rango(LocalDateTime desde, LocalDateTime hasta) {
+        int inicio = buscarDesde(AlmacenColumnar.aEpochMilis(desde));
+        int fin = Math.max(inicio, buscarDesde(AlmacenColumnar.aEpochMilis(hasta)));
+        return new Vista(inicio, fin);
+    }
+
+    /**
+     * Escribe un historial binario de forma atómica (archivo temporal + reemplazo)
+     * @param destino Ruta del archivo a escribir
+     * @param conversiones Conversiones a escribir, en orden
+     * @throws IOException si no se pudo escribir el archivo
+     */
+    public static void escribir(Path destino, Iterable<Conversion> conversiones) throws IOException {
+        escribir(destino, 0, conversiones);
+    }
+
+    /**
+     * Escribe un historial binario de forma atómica conservando los primeros
+     * registros del archivo actual, que se copian byte a byte sin decodificarlos
+     * @param destino Ruta del archivo a escribir (y del que se toma el prefijo)
+     * @param prefijoEnDisco Cantidad de registros iniciales del archivo actual a conservar
+     * @param conversiones Conversiones a escribir a continuación del prefijo
+     * @throws IOException si no se pudo escribir el archivo
+     * @throws IllegalArgumentException si alguna moneda no es un código de 3 letras A-Z
+     */
+    public static void escribir(Path destino, int prefijoEnDisco, Iterable<Conversion> conversiones) throws IOException {
+        escribir(destino, 0, prefijoEnDisco, conversiones);
+    }
+
+    /**
+     * Escribe un historial binario de forma atómica conservando un rango de
+     * registros del archivo actual (los anteriores se descartan, por ejemplo
+     * porque ya se archivaron)
+     * @param destino Ruta del archivo a escribir (y del que se toma el rango)
+     * @param desde Primer registro del archivo actual a conservar
+     * @param hasta Registro siguiente al último a conservar
+     * @param conversiones Conversiones a escribir a continuación del rango
+     * @throws IOException si no se pudo escribir el archivo
+     * @throws IllegalArgumentException si alguna moneda no es un código de 3 letras A-Z
+     */
+    public static void escribir(Path destino, int desde, int hasta, Iterable<Conversion> conversiones)
+            throws IOException {
+        destino = destino.toAbsolutePath();
+        Files.createDirectories(destino.getParent());
+        Path temporal = destino.resolveSibling(destino.getFileName() + ".tmp");
+
+        long registros = 0;
+        boolean ordenado = true;
+        long ultimaMarca = Long.MIN_VALUE;
+
+        try (FileChannel salida = FileChannel.open(temporal, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            salida.position(TAMAÑO_ENCABEZADO);
+
+            if (hasta > desde && Files.exists(destino)) {
+                HistorialBinario anterior = abrir(destino);
+                int copiar = Math.min(hasta, anterior.tamaño()) - desde;
+                if (copiar > 0) {
+                    try (FileChannel entrada = FileChannel.open(destino, StandardOpenOption.READ)) {
+                        transferirCompleto(entrada, TAMAÑO_ENCABEZADO + (long) desde * TAMAÑO_REGISTRO,
+                            (long) copiar * TAMAÑO_REGISTRO, salida);
+                    }
+                    registros = copiar;
+                    ordenado = anterior.estaOrdenado();
+                    ultimaMarca = anterior.getEpochMilis(desde + copiar - 1);
+                }
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocateDirect(REGISTROS_POR_ESCRITURA * TAMAÑO_REGISTRO)
+                .order(ByteOrder.LITTLE_ENDIAN);
+            for (Conversion conversion : conversiones) {
+                if (!buffer.hasRemaining()) {
+                    escribirCompleto(salida, buffer);
+                }
+                long marca = AlmacenColumnar.aEpochMilis(conversion.getTimestamp());
+                ordenado &= marca >= ultimaMarca;
+                ultimaMarca = marca;
+                UUID id = AlmacenColumnar.idComoUUID(conversion.getId());
+                buffer.putLong(marca)
+                    .putShort(AlmacenColumnar.clave(conversion.getMonedaOrigen()))
+                    .putShort(AlmacenColumnar.clave(conversion.getMonedaDestino()))
+                    .putInt(0)
+                    .putDouble(conversion.getMontoOrigen())
+                    .putDouble(conversion.getMontoDestino())
+                    .putLong(id.getMostSignificantBits())
+                    .putLong(id.getLeastSignificantBits());
+                registros++;
+            }
+            escribirCompleto(salida, buffer);
+
+            ByteBuffer encabezado = ByteBuffer.allocate(TAMAÑO_ENCABEZADO).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(MAGIA)
+                .putShort(VERSION)
+                .putShort((short) TAMAÑO_REGISTRO)
+                .putInt(ordenado ? ORDENADO : 0)
+                .putInt(0)
+                .putLong(registros)
+                .putLong(0);
+            salida.position(0);
+            escribirCompleto(salida, encabezado);
+            salida.force(true);
+        }
+
+        try {
+            Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Convierte un historial.json al formato binario (en streaming)
+     * @param rutaJson Archivo JSON de origen
+     * @param rutaBinario Archivo binario de destino
+     * @return Cantidad de registros convertidos
+     */
+    public static int desdeJSON(String rutaJson, String rutaBinario) throws IOException {
+        try (LectorHistorialJSON lector = new LectorHistorialJSON(Paths.get(rutaJson))) {
+            escribir(Paths.get(rutaBinario), () -> lector);
+        }
+        return abrir(Paths.get(rutaBinario)).tamaño();
+    }
+
+    /**
+     * Convierte un historial binario a JSON
+     * @param rutaBinario Archivo binario de origen
+     * @param rutaJson Archivo JSON de destino
+     * @return Cantidad de registros convertidos
+     */
+    public static int aJSON(String rutaBinario, String rutaJson) throws IOException {
+        List<Conversion> conversiones = abrir(Paths.get(rutaBinario)).comoLista();
+        GestorArchivos.escribirHistorialJSON(conversiones, rutaJson);
+        return conversiones.size();
+    }
+
+    /**
+     * Herramienta de conversión entre formatos:
+     * java HistorialBinario a-binario historial.json historial.bin
+     * java HistorialBinario a-json historial.bin historial.json
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3 || !(args[0].equals("a-binario") || args[0].equals("a-json"))) {
+            System.err.println("Uso: HistorialBinario a-binario|a-json <origen> <destino>");
+            System.exit(2);
+        }
+        long inicio = System.nanoTime();
+        int registros = args[0].equals("a-binario") ? desdeJSON(args[1], args[2]) : aJSON(args[1], args[2]);
+        System.out.printf("✅ %d conversiones escritas en %s (%.1f ms)%n",
+            registros, args[2], (System.nanoTime() - inicio) / 1e6);
+    }
+
+    private ByteBuffer region(int indice) {
+        if (indice < 0 || indice >= tamaño) {
+            throw new IndexOutOfBoundsException("Índice " + indice + " fuera de rango (tamaño " + tamaño + ")");
+        }
+        return regiones[indice >>> BITS_REGION];
+    }
+
+    private static int desplazamiento(int indice) {
+        return (indice & MASCARA_REGION) * TAMAÑO_REGISTRO;
+    }
+
+    private static void escribirCompleto(FileChannel salida, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            salida.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static void transferirCompleto(FileChannel entrada, long posicion, long bytes, FileChannel salida)
+            throws IOException {
+        while (bytes > 0) {
+            long transferidos = entrada.transferTo(posicion, bytes, salida);
+            if (transferidos <= 0) {
+                throw new IOException("Historial binario truncado al copiar registros anteriores");
+            }
+            posicion += transferidos;
+            bytes -= transferidos;
+        }
+    }
+
+    /**
+     * Vista de un rango de registros
+     */
+    private final class Vista extends AbstractList<Conversion> implements RandomAccess {
+        private final int inicio;
+        private final int fin;
+
+        Vista(int inicio, int fin) {
+            this.inicio = inicio;
+            this.fin = fin;
+        }
+
+        @Override
+        public Conversion get(int indice) {
+            if (indice < 0 || indice >= fin - inicio) {
+                throw new IndexOutOfBoundsException("Índice " + indice + " fuera de rango (tamaño " + size() + ")");
+            }
+            return getConversion(inicio + indice);
+        }
+
+        @Override
+        public int size() {
+            return fin - inicio;
+        }
+    }
+}
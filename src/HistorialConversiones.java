@@ -1,25 +1,333 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Gestiona el historial de conversiones de moneda.
- * Utiliza persistencia en JSON para mantener el historial entre sesiones.
+ * Utiliza persistencia en JSON para mantener el historial entre sesiones:
+ * una instantánea (historial.json) más un diario de solo-anexado donde se
+ * registra cada conversión nueva (ver {@link DiarioHistorial}).
+ *
+ * Es seguro compartirlo entre hilos: en memoria las conversiones se guardan
+ * en un almacén sin bloqueos ({@link AlmacenHistorial}) y las lecturas trabajan
+ * sobre instantáneas. Solo la escritura del diario se serializa; sin guardado
+ * automático los anexados comparten un bloqueo de lectura que solo
+ * {@link #limpiar()} toma en exclusiva, al reemplazar el almacén.
+ *
+ * Con historial.load.max.records > 0 solo se mantienen en memoria las
+ * conversiones más recientes; las anteriores se leen de historial.json por
+ * páginas cuando se necesitan (ver {@link #obtenerPagina(int, int)}).
+ *
+ * Con historial.store.columnar=true las conversiones en memoria se guardan
+ * en un {@link AlmacenColumnar} (unos 44 bytes por conversión en lugar de
+ * más de 200), a cambio de reconstruir cada Conversion al leerla.
+ *
+ * Con historial.index.enabled=true (por defecto) se mantiene un
+ * {@link IndiceHistorial} de todo el historial, incluida la parte que solo
+ * está en disco, para consultar por par y rango de fechas
+ * ({@link #consultar}, {@link #resumir}) sin recorrerlo entero.
+ *
+ * Con historial.rollups.enabled=true (por defecto) se mantienen además los
+ * {@link AgregadosHistorial} por par, hora y día, que se guardan junto al
+ * historial en cada compactación y al cerrar; los reportes de volumen
+ * ({@link #obtenerAgregados}) no leen las conversiones. Con guardado
+ * automático reflejan exactamente lo persistido; sin él, lo que había al
+ * llamar a {@link #guardar()}.
+ *
+ * Con historial.retention.max.records o historial.retention.max.age.days
+ * ({@link RetencionHistorial}) el historial vivo queda acotado: al compactar
+ * (con guardado automático) y al cargar, las conversiones más antiguas que
+ * exceden la retención se pasan a segmentos mensuales comprimidos
+ * ({@link ArchivoHistorial}) y se quitan de historial.json, así la memoria y
+ * el tiempo de carga no dependen de la antigüedad del historial. Lo
+ * archivado se consulta con {@link #consultarArchivo}, se exporta con el
+ * resto y sigue sumado en los agregados; el índice cubre solo el historial vivo.
+ *
+ * Con historial.write.behind.enabled=true (y guardado automático) el diario
+ * se escribe de forma diferida ({@link EscritorDiferido}): la conversión se
+ * agrega en memoria y se encola, y un único hilo la escribe junto con otras
+ * en un solo lote. Ese hilo es el único que toca el diario (también compacta,
+ * guarda y limpia), y las compactaciones solo incluyen lo que ya está en el
+ * diario. {@link #cerrar()} escribe lo encolado; si la aplicación no lo
+ * llama, lo hace un shutdown hook.
  */
 public class HistorialConversiones {
-    private List<Conversion> conversiones;
-    private final String rutaArchivo;
+    private volatile AlmacenHistorial conversiones;
+    // Ordena almacén, diario y compactación para que la instantánea compactada
+    // contenga exactamente lo que el diario tenía antes de vaciarse
+    private final Object bloqueoPersistencia = new Object();
+    // Sin guardado automático los anexados no toman bloqueoPersistencia: comparten
+    // este bloqueo (de lectura) para que limpiar() no reemplace el almacén mientras anexan
+    private final ReadWriteLock reemplazoAlmacen = new ReentrantReadWriteLock();
     private final boolean autoGuardar;
+    private final DiarioHistorial diario;
+    private final int maxEnMemoria;
+    private final boolean columnar;
+    // null = consultas indexadas deshabilitadas; se reemplaza al archivar (cambian las posiciones)
+    private volatile IndiceHistorial indice;
+    // null = agregados por período deshabilitados
+    private final AgregadosHistorial agregados;
+    private final Path rutaAgregados;
+    private final RetencionHistorial retencion;
+    private final ArchivoHistorial archivo;
+    // Cambia cada vez que las posiciones del historial vivo se corren (archivado, limpieza)
+    private volatile int generacion;
+    // null = el diario se escribe en el hilo que convierte
+    private final EscritorDiferido escritor;
+    private final Thread cierreAlTerminar;
+    // Conversiones más antiguas que solo están en historial.json (las primeras del archivo)
+    private volatile int enDisco;
+
+    /**
+     * Opciones del historial; los valores por defecto son los del historial
+     * con guardado manual, todo en memoria, índice y agregados habilitados,
+     * sin retención y escribiendo el diario en el hilo que convierte
+     */
+    public static final class Opciones {
+        private boolean autoGuardar;
+        private int maxEnMemoria;
+        private boolean columnar;
+        private boolean indexado = true;
+        private boolean conAgregados = true;
+        private RetencionHistorial retencion = RetencionHistorial.SIN_LIMITE;
+        private EscritorDiferido.Opciones escrituraDiferida;
+
+        /**
+         * Lee historial.* de GestorConfiguracion
+         * @return Las opciones configuradas
+         */
+        public static Opciones desdeConfiguracion() {
+            return new Opciones()
+                .autoGuardar(GestorConfiguracion.obtenerBoolean("historial.auto.save"))
+                .maxEnMemoria(GestorConfiguracion.obtenerInt("historial.load.max.records", 0))
+                .columnar(GestorConfiguracion.obtenerBoolean("historial.store.columnar", false))
+                .indexado(GestorConfiguracion.obtenerBoolean("historial.index.enabled", true))
+                .conAgregados(GestorConfiguracion.obtenerBoolean("historial.rollups.enabled", true))
+                .retencion(RetencionHistorial.desdeConfiguracion())
+                .escrituraDiferida(EscritorDiferido.Opciones.desdeConfiguracion());
+        }
+
+        /** @param autoGuardar Si se registra cada conversión en el diario al agregarla */
+        public Opciones autoGuardar(boolean autoGuardar) {
+            this.autoGuardar = autoGuardar;
+            return this;
+        }
+
+        /** @param maxEnMemoria Conversiones más recientes a mantener en memoria (0 = todas) */
+        public Opciones maxEnMemoria(int maxEnMemoria) {
+            this.maxEnMemoria = maxEnMemoria;
+            return this;
+        }
+
+        /** @param columnar Si se usa el almacén columnar compacto en lugar de objetos Conversion */
+        public Opciones columnar(boolean columnar) {
+            this.columnar = columnar;
+            return this;
+        }
+
+        /** @param indexado Si se mantiene el índice por par y fecha para las consultas */
+        public Opciones indexado(boolean indexado) {
+            this.indexado = indexado;
+            return this;
+        }
+
+        /** @param conAgregados Si se mantienen los agregados por par, hora y día */
+        public Opciones conAgregados(boolean conAgregados) {
+            this.conAgregados = conAgregados;
+            return this;
+        }
+
+        /** @param retencion Límites del historial vivo; lo que los excede se archiva */
+        public Opciones retencion(RetencionHistorial retencion) {
+            this.retencion = retencion;
+            return this;
+        }
+
+        /**
+         * @param escrituraDiferida Opciones de la escritura diferida, o null para escribir el
+         *                          diario en el hilo que convierte (sin guardado automático no se usa)
+         */
+        public Opciones escrituraDiferida(EscritorDiferido.Opciones escrituraDiferida) {
+            this.escrituraDiferida = escrituraDiferida;
+            return this;
+        }
+    }
 
     /**
      * Constructor que carga el historial desde archivo
      */
     public HistorialConversiones() {
-        this.rutaArchivo = GestorConfiguracion.obtener("historial.file.path");
-        this.autoGuardar = GestorConfiguracion.obtenerBoolean("historial.auto.save");
-        this.conversiones = GestorArchivos.cargarHistorialJSON(rutaArchivo);
+        this(DiarioHistorial.desdeConfiguracion(GestorConfiguracion.obtener("historial.file.path")),
+            Opciones.desdeConfiguracion());
+    }
+
+    /**
+     * Constructor con configuración explícita (no lee config.properties)
+     * @param rutaArchivo Ruta del archivo JSON del historial
+     * @param autoGuardar Si se guarda el archivo tras cada conversión
+     */
+    public HistorialConversiones(String rutaArchivo, boolean autoGuardar) {
+        this(new DiarioHistorial(rutaArchivo), new Opciones().autoGuardar(autoGuardar));
+    }
+
+    /**
+     * Constructor con un diario ya configurado y opciones explícitas (no lee config.properties)
+     * @param diario Diario de solo-anexado (determina la ruta del historial y del archivo)
+     * @param opciones Opciones del historial; se copian, cambiarlas después no tiene efecto
+     */
+    public HistorialConversiones(DiarioHistorial diario, Opciones opciones) {
+        this.autoGuardar = opciones.autoGuardar;
+        this.diario = diario;
+        this.maxEnMemoria = opciones.maxEnMemoria;
+        this.columnar = opciones.columnar;
+
+        CargaHistorial carga = diario.cargar(opciones.maxEnMemoria);
+        this.enDisco = carga.getEnDisco();
+        this.conversiones = nuevoAlmacen(carga.getEnMemoria());
+        this.indice = opciones.indexado ? new IndiceHistorial() : null;
+        this.rutaAgregados = DiarioHistorial.rutaJuntoA(diario.getRutaInstantanea(), ".agregados.dat");
+        this.archivo = new ArchivoHistorial(DiarioHistorial.rutaJuntoA(diario.getRutaInstantanea(), ".archivo"));
+        this.agregados = opciones.conAgregados ? cargarAgregados(carga.getTotal()) : null;
+        if (opciones.indexado || opciones.conAgregados) {
+            procesarCargado(indice, agregados == null ? Long.MAX_VALUE : agregados.getCubiertas());
+        }
+        this.retencion = opciones.retencion;
+        if (opciones.retencion.estaActiva()) {
+            synchronized (bloqueoPersistencia) {
+                if (archivarSegunRetencion()) {
+                    guardarAgregados();
+                }
+            }
+        }
+        if (opciones.autoGuardar && opciones.escrituraDiferida != null) {
+            this.escritor = new EscritorDiferido(opciones.escrituraDiferida, new DestinoDiario());
+            Metricas.registrarMedidor("historial.escritura.en.cola", escritor::getPendientes);
+            this.cierreAlTerminar = new Thread(this::cerrar, "cerrar-historial");
+            Runtime.getRuntime().addShutdownHook(cierreAlTerminar);
+        } else {
+            this.escritor = null;
+            this.cierreAlTerminar = null;
+        }
         
-        if (conversiones.size() > 0) {
-            System.out.println("📂 Historial cargado: " + conversiones.size() + " conversiones");
+        if (carga.getTotal() > 0) {
+            System.out.println("📂 Historial cargado: " + carga);
+        }
+    }
+
+    /**
+     * Lee los agregados guardados si corresponden al historial cargado: la
+     * última conversión que cubren tiene que estar en la misma posición. Si
+     * no (la instantánea se reescribió o se reemplazó después de guardarlos,
+     * conversiones que no llegaron al diario, archivo dañado) se recalculan
+     * desde el archivo de retención; las del historial vivo se suman después,
+     * en {@link #procesarCargado}.
+     * @param total Conversiones del historial cargado
+     */
+    private AgregadosHistorial cargarAgregados(int total) {
+        if (Files.exists(rutaAgregados)) {
+            try {
+                AgregadosHistorial guardados = AgregadosHistorial.leer(rutaAgregados);
+                long cubiertas = guardados.getCubiertas();
+                String ultima = guardados.getUltimaCubierta();
+                if (cubiertas == 0 ? ultima == null
+                        : cubiertas <= total && ultima != null && ultima.equals(idEnPosicion((int) cubiertas - 1))) {
+                    return guardados;
+                }
+                System.err.println("⚠️  Los agregados guardados no corresponden al historial; se recalculan");
+            } catch (IOException | UncheckedIOException e) {
+                System.err.println("⚠️  No se pudieron leer los agregados (" + e.getMessage() + "); se recalculan");
+            }
+        }
+        return agregadosDelArchivo();
+    }
+
+    /**
+     * Agregados de las conversiones del archivo de retención, contadas como
+     * archivadas (si el archivo no se puede leer, quedan fuera de los totales)
+     */
+    private AgregadosHistorial agregadosDelArchivo() {
+        AgregadosHistorial recalculados = new AgregadosHistorial();
+        long archivadas = 0;
+        try (ArchivoHistorial.LectorArchivo lector = archivo.recorrer(null, null)) {
+            while (lector.hasNext()) {
+                recalculados.agregar(lector.next());
+                archivadas++;
+            }
+        } catch (UncheckedIOException e) {
+            System.err.println("⚠️  No se pudo leer el archivo del historial para los agregados: " + e.getMessage());
+            recalculados = new AgregadosHistorial();
+            archivadas = 0;
+        }
+        recalculados.registrarArchivadas(archivadas);
+        return recalculados;
+    }
+
+    /**
+     * Id de la conversión en una posición del historial vivo, de memoria o de disco
+     * @return El id, o null si la posición no existe
+     * @throws UncheckedIOException si hay que leerla de disco y no se puede
+     */
+    private String idEnPosicion(int posicion) {
+        if (posicion >= enDisco) {
+            List<Conversion> enMemoria = conversiones.instantanea();
+            return posicion - enDisco < enMemoria.size() ? enMemoria.get(posicion - enDisco).getId() : null;
+        }
+        List<Conversion> pagina = GestorArchivos.leerPaginaHistorial(diario.getRutaInstantanea(), posicion, 1,
+            diario.getSerializador());
+        return pagina.isEmpty() ? null : pagina.get(0).getId();
+    }
+
+    /**
+     * Indexa el historial vivo y suma a los agregados las conversiones que
+     * no cubrían: primero las de memoria y luego, en una pasada en streaming,
+     * las que solo están en disco (si hace falta leerlas)
+     * @param indice Índice a completar, o null
+     * @param cubiertas Conversiones iniciales que ya están en los agregados (Long.MAX_VALUE = todas)
+     */
+    private void procesarCargado(IndiceHistorial indice, long cubiertas) {
+        List<Conversion> enMemoria = conversiones.instantanea();
+        for (int i = 0; i < enMemoria.size(); i++) {
+            procesarCargada(indice, enMemoria.get(i), enDisco + i, cubiertas);
+        }
+        if (enDisco == 0 || (indice == null && cubiertas >= enDisco)) {
+            return;
+        }
+        try {
+            Iterator<Conversion> lector = GestorArchivos.recorrerHistorial(diario.getRutaInstantanea(), diario.getSerializador());
+            try {
+                for (int posicion = 0; posicion < enDisco && lector.hasNext(); posicion++) {
+                    procesarCargada(indice, lector.next(), posicion, cubiertas);
+                }
+            } finally {
+                if (lector instanceof Closeable) {
+                    ((Closeable) lector).close();
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("⚠️  No se pudo indexar la parte del historial en disco: " + e.getMessage());
+        }
+    }
+
+    private void procesarCargada(IndiceHistorial indice, Conversion conversion, int posicion, long cubiertas) {
+        if (indice != null) {
+            indice.agregar(conversion, posicion);
+        }
+        if (posicion >= cubiertas) {
+            agregados.agregar(conversion);
         }
     }
 
@@ -29,33 +337,517 @@ public class HistorialConversiones {
     public void agregarConversion(String monedaOrigen, String monedaDestino, 
                                  double montoOrigen, double montoDestino) {
         Conversion conversion = new Conversion(monedaOrigen, monedaDestino, montoOrigen, montoDestino);
-        conversiones.add(conversion);
-        
-        if (autoGuardar) {
-            guardar();
+        if (!autoGuardar) {
+            // Sin guardado automático solo limpiar() reemplaza el almacén (y pone enDisco en 0)
+            Lock anexado = reemplazoAlmacen.readLock();
+            anexado.lock();
+            try {
+                indexar(conversion, enDisco + conversiones.agregar(conversion));
+            } finally {
+                anexado.unlock();
+            }
+            return;
         }
+
+        // La latencia de escritura incluye la espera por el bloqueo
+        long inicio = Metricas.inicio();
+        if (escritor != null && !escritor.estaCerrado()) {
+            // Se espera lugar en la cola antes de tomar el bloqueo: el hilo escritor lo necesita para compactar
+            escritor.reservar(1);
+            synchronized (bloqueoPersistencia) {
+                indexar(conversion, enDisco + conversiones.agregar(conversion));
+                escritor.encolar(conversion);
+            }
+            Metricas.registrarDesde(Metricas.LATENCIA_ESCRITURA_HISTORIAL, inicio);
+            return;
+        }
+        synchronized (bloqueoPersistencia) {
+            indexar(conversion, enDisco + conversiones.agregar(conversion));
+            if (diario.registrar(conversion)) {
+                compactar();
+            }
+        }
+        Metricas.registrarDesde(Metricas.LATENCIA_ESCRITURA_HISTORIAL, inicio);
     }
 
     /**
-     * Guarda el historial en archivo JSON
+     * Agrega un lote de conversiones al historial en una sola operación
+     * (un único guardado en lugar de uno por conversión)
+     */
+    public void agregarConversiones(String[] monedasOrigen, String[] monedasDestino,
+                                    double[] montosOrigen, double[] montosDestino) {
+        LocalDateTime ahora = LocalDateTime.now();
+        List<Conversion> lote = new ArrayList<>(montosOrigen.length);
+        for (int i = 0; i < montosOrigen.length; i++) {
+            lote.add(new Conversion(monedasOrigen[i], monedasDestino[i], montosOrigen[i], montosDestino[i], ahora));
+        }
+        if (!autoGuardar) {
+            Lock anexado = reemplazoAlmacen.readLock();
+            anexado.lock();
+            try {
+                indexar(lote, enDisco + conversiones.agregarTodas(lote));
+            } finally {
+                anexado.unlock();
+            }
+            return;
+        }
+
+        long inicio = Metricas.inicio();
+        if (escritor != null && !escritor.estaCerrado()) {
+            int permisos = escritor.reservar(lote.size());
+            synchronized (bloqueoPersistencia) {
+                indexar(lote, enDisco + conversiones.agregarTodas(lote));
+                escritor.encolar(lote, permisos);
+            }
+            Metricas.registrarDesde(Metricas.LATENCIA_ESCRITURA_HISTORIAL, inicio);
+            return;
+        }
+        synchronized (bloqueoPersistencia) {
+            indexar(lote, enDisco + conversiones.agregarTodas(lote));
+            if (diario.registrar(lote)) {
+                compactar();
+            }
+        }
+        Metricas.registrarDesde(Metricas.LATENCIA_ESCRITURA_HISTORIAL, inicio);
+    }
+
+    private void indexar(Conversion conversion, int posicion) {
+        IndiceHistorial indice = this.indice;
+        if (indice != null) {
+            indice.agregar(conversion, posicion);
+        }
+        if (agregados != null) {
+            agregados.agregar(conversion);
+        }
+    }
+
+    private void indexar(List<Conversion> lote, int primera) {
+        IndiceHistorial indice = this.indice;
+        if (indice != null) {
+            for (int i = 0; i < lote.size(); i++) {
+                indice.agregar(lote.get(i), primera + i);
+            }
+        }
+        if (agregados != null) {
+            for (Conversion conversion : lote) {
+                agregados.agregar(conversion);
+            }
+        }
+    }
+
+    /**
+     * Guarda el historial completo en archivo JSON y vacía el diario
      */
     public void guardar() {
-        GestorArchivos.guardarHistorialJSON(conversiones, rutaArchivo);
+        enHiloEscritor(() -> {
+            synchronized (bloqueoPersistencia) {
+                compactar();
+            }
+        });
+    }
+
+    /**
+     * Ejecuta una operación sobre el diario en el hilo escritor (después de
+     * escribir lo encolado), o en este hilo si no hay escritura diferida
+     */
+    private void enHiloEscritor(Runnable operacion) {
+        if (escritor != null && !escritor.estaCerrado()) {
+            escritor.ejecutar(operacion);
+        } else {
+            operacion.run();
+        }
+    }
+
+    /**
+     * Conversiones al final del almacén que todavía no están en el diario
+     * (encoladas en el escritor diferido). Es exacto con bloqueoPersistencia
+     * tomado desde el hilo escritor, que es el único que las descuenta.
+     */
+    private int sinRegistrar() {
+        return escritor == null ? 0 : escritor.getPendientes();
+    }
+
+    /**
+     * Escribe los lotes del escritor diferido en el diario (desde su hilo)
+     */
+    private final class DestinoDiario implements EscritorDiferido.Destino {
+        @Override
+        public boolean escribir(List<Conversion> lote, boolean forzar) throws IOException {
+            return diario.anexar(lote, forzar);
+        }
+
+        @Override
+        public void compactar() {
+            synchronized (bloqueoPersistencia) {
+                HistorialConversiones.this.compactar();
+            }
+        }
+    }
+
+    private AlmacenHistorial nuevoAlmacen(Collection<Conversion> iniciales) {
+        return columnar ? new AlmacenColumnar(iniciales) : new AlmacenConversiones(iniciales);
+    }
+
+    /**
+     * Compacta el diario (con bloqueoPersistencia tomado). Con carga parcial y
+     * guardado automático, además devuelve a disco las conversiones en
+     * memoria que exceden el máximo: en ese modo todo anexado pasa por el
+     * bloqueo, así que reemplazar el almacén no pierde conversiones. Las que
+     * siguen encoladas en el escritor diferido no entran en la instantánea
+     * (se escribirán en el diario nuevo).
+     */
+    private void compactar() {
+        boolean archivado = autoGuardar && retencion.estaActiva() && archivarSegunRetencion();
+        List<Conversion> enMemoria = conversiones.instantanea();
+        int registradas = enMemoria.size() - sinRegistrar();
+        if (!archivado) {
+            diario.compactar(enDisco, enMemoria.subList(0, registradas));
+        }
+        guardarAgregados();
+
+        int excedente = Math.min(enMemoria.size() - maxEnMemoria, registradas);
+        if (autoGuardar && maxEnMemoria > 0 && excedente > 0) {
+            conversiones = nuevoAlmacen(enMemoria.subList(excedente, enMemoria.size()));
+            enDisco += excedente;
+        }
+    }
+
+    /**
+     * Pasa al archivo las conversiones más antiguas que exceden la retención
+     * y reescribe la instantánea sin ellas. Se llama con bloqueoPersistencia
+     * tomado y sin anexados concurrentes (al cargar o con guardado automático).
+     * Primero se escribe el archivo y después la instantánea: si el proceso se
+     * corta entre ambos, esas conversiones se vuelven a archivar (quedan
+     * repetidas en el archivo), pero nunca se pierden.
+     * @return true si se archivó algo (la instantánea ya quedó compactada)
+     */
+    private boolean archivarSegunRetencion() {
+        List<Conversion> enMemoria = conversiones.instantanea();
+        int pendientes = sinRegistrar();
+        int archivar;
+        try (RecorridoCompleto recorrido = new RecorridoCompleto(diario, enDisco, enMemoria)) {
+            // Solo se archiva lo que ya está en el diario o en la instantánea
+            archivar = retencion.aArchivar(enDisco + enMemoria.size() - pendientes, recorrido, LocalDateTime.now());
+        } catch (UncheckedIOException e) {
+            System.err.println("⚠️  No se pudo aplicar la retención del historial: " + e.getMessage());
+            return false;
+        }
+        if (archivar == 0) {
+            return false;
+        }
+        try (RecorridoCompleto recorrido = new RecorridoCompleto(diario, enDisco, enMemoria)) {
+            archivo.archivar(recorrido, archivar);
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("⚠️  No se pudo archivar el historial: " + e.getMessage());
+            return false;
+        }
+
+        int descartarEnDisco = Math.min(archivar, enDisco);
+        List<Conversion> vivas = enMemoria.subList(archivar - descartarEnDisco, enMemoria.size());
+        if (!diario.compactar(descartarEnDisco, enDisco, vivas.subList(0, vivas.size() - pendientes))) {
+            // Lo archivado sigue en la instantánea: se volverá a archivar
+            return false;
+        }
+        if (vivas.size() < enMemoria.size()) {
+            conversiones = nuevoAlmacen(vivas);
+        }
+        enDisco -= descartarEnDisco;
+        if (agregados != null) {
+            agregados.registrarArchivadas(archivar);
+        }
+        if (indice != null) {
+            IndiceHistorial nuevo = new IndiceHistorial();
+            procesarCargado(nuevo, Long.MAX_VALUE);
+            indice = nuevo;
+        }
+        generacion++;
+        System.out.println("🗄️  " + archivar + " conversiones pasadas al archivo (" + retencion + ")");
+        return true;
+    }
+
+    /**
+     * Fuerza el diario al disco y lo libera (llamar al terminar la aplicación)
+     */
+    public void cerrar() {
+        if (escritor != null) {
+            try {
+                escritor.cerrar();
+            } catch (IllegalStateException e) {
+                System.err.println("❌ " + e.getMessage() + ": "
+                    + (e.getCause() == null ? "" : e.getCause().getMessage()));
+            }
+            if (Thread.currentThread() != cierreAlTerminar) {
+                try {
+                    Runtime.getRuntime().removeShutdownHook(cierreAlTerminar);
+                } catch (IllegalStateException e) {
+                    // La JVM ya se está cerrando
+                }
+            }
+        }
+        synchronized (bloqueoPersistencia) {
+            diario.cerrar();
+            guardarAgregados();
+        }
+    }
+
+    /**
+     * Guarda los agregados junto al historial (con bloqueoPersistencia tomado),
+     * con el id de la última conversión que cubren para reconocerlos al cargar
+     */
+    private void guardarAgregados() {
+        if (agregados == null) {
+            return;
+        }
+        try {
+            long cubiertas = agregados.getCubiertas();
+            agregados.guardar(rutaAgregados, cubiertas == 0 ? null : idEnPosicion((int) cubiertas - 1));
+        } catch (IOException | UncheckedIOException e) {
+            // No se pierde nada: al cargar se recalculan a partir del historial
+            System.err.println("⚠️  No se pudieron guardar los agregados: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Obtiene las conversiones en memoria registradas hasta este momento
+     * (todas, salvo que se use carga parcial)
+     * @return Lista inmutable (instantánea) en orden de inserción
+     */
+    public List<Conversion> obtenerConversiones() {
+        return conversiones.instantanea();
+    }
+
+    /**
+     * Obtiene un rango del historial completo, leyendo de disco la parte que
+     * no está en memoria
+     * @param desde Índice de la primera conversión (0 = la más antigua)
+     * @param cantidad Cantidad máxima de conversiones
+     * @return Las conversiones del rango, en orden
+     */
+    public List<Conversion> obtenerPagina(int desde, int cantidad) {
+        int prefijo;
+        List<Conversion> enMemoria;
+        synchronized (bloqueoPersistencia) {
+            prefijo = enDisco;
+            enMemoria = conversiones.instantanea();
+        }
+
+        List<Conversion> pagina = new ArrayList<>();
+        if (desde < prefijo) {
+            int deDisco = Math.min(cantidad, prefijo - desde);
+            pagina.addAll(GestorArchivos.leerPaginaHistorial(diario.getRutaInstantanea(), desde, deDisco,
+                diario.getSerializador()));
+        }
+        int inicioMemoria = Math.max(0, desde - prefijo);
+        int finMemoria = Math.min(enMemoria.size(), inicioMemoria + cantidad - pagina.size());
+        if (inicioMemoria < finMemoria) {
+            pagina.addAll(enMemoria.subList(inicioMemoria, finMemoria));
+        }
+        return pagina;
+    }
+
+    /**
+     * Consulta las conversiones de un par y un rango de fechas usando el
+     * índice, en orden de fecha y de a páginas. Las que solo están en disco
+     * se leen en una sola pasada.
+     * @param monedaOrigen Moneda de origen, o null para cualquiera
+     * @param monedaDestino Moneda de destino, o null para cualquiera
+     * @param desde Inicio (inclusive), o null para no acotar
+     * @param hasta Fin (exclusive), o null para no acotar
+     * @param saltar Cantidad de resultados a saltear (inicio de la página)
+     * @param cantidad Cantidad máxima de resultados
+     * @return Las conversiones de la página
+     * @throws IllegalStateException si el índice está deshabilitado
+     */
+    public List<Conversion> consultar(String monedaOrigen, String monedaDestino,
+                                      LocalDateTime desde, LocalDateTime hasta, int saltar, int cantidad) {
+        int[] posiciones;
+        int prefijo;
+        List<Conversion> enMemoria;
+        while (true) {
+            int generacionBuscada = generacion;
+            posiciones = indiceHabilitado().buscar(monedaOrigen, monedaDestino, desde, hasta, saltar, cantidad);
+            // La instantánea se toma después: contiene todas las posiciones que devolvió el índice
+            synchronized (bloqueoPersistencia) {
+                prefijo = enDisco;
+                enMemoria = conversiones.instantanea();
+                if (generacion == generacionBuscada) {
+                    break;
+                }
+            }
+            // Se archivó o limpió mientras se buscaba: las posiciones ya no valen
+        }
+
+        Conversion[] pagina = new Conversion[posiciones.length];
+        int[] deDisco = new int[posiciones.length];
+        int cantidadDeDisco = 0;
+        for (int i = 0; i < posiciones.length; i++) {
+            if (posiciones[i] >= prefijo) {
+                pagina[i] = enMemoria.get(posiciones[i] - prefijo);
+            } else {
+                deDisco[cantidadDeDisco++] = posiciones[i];
+            }
+        }
+        if (cantidadDeDisco > 0) {
+            leerDeDisco(Arrays.copyOf(deDisco, cantidadDeDisco), posiciones, pagina);
+        }
+        return Arrays.asList(pagina);
     }
 
     /**
-     * Exporta el historial a formato CSV
+     * Agregados (cantidad, sumas de montos, tasa mínima, máxima, promedio y
+     * ponderada) de las conversiones de un par y un rango de fechas
+     * @param monedaOrigen Moneda de origen, o null para cualquiera
+     * @param monedaDestino Moneda de destino, o null para cualquiera
+     * @param desde Inicio (inclusive), o null para no acotar
+     * @param hasta Fin (exclusive), o null para no acotar
+     * @return El resumen
+     * @throws IllegalStateException si el índice está deshabilitado
+     */
+    public IndiceHistorial.Resumen resumir(String monedaOrigen, String monedaDestino,
+                                           LocalDateTime desde, LocalDateTime hasta) {
+        return indiceHabilitado().resumir(monedaOrigen, monedaDestino, desde, hasta);
+    }
+
+    /**
+     * Cantidad de conversiones, totales de origen y destino y tasa ponderada
+     * (VWAP) por hora o por día, sin leer las conversiones
+     * @param monedaOrigen Moneda de origen, o null para cualquiera
+     * @param monedaDestino Moneda de destino, o null para cualquiera
+     * @param granularidad Hora o día
+     * @param desde Inicio (inclusive; se toma el período que lo contiene), o null para no acotar
+     * @param hasta Fin (exclusive), o null para no acotar
+     * @return Un agregado por período con conversiones, en orden
+     * @throws IllegalStateException si los agregados están deshabilitados
+     */
+    public List<AgregadosHistorial.Periodo> obtenerAgregados(String monedaOrigen, String monedaDestino,
+                                                            AgregadosHistorial.Granularidad granularidad,
+                                                            LocalDateTime desde, LocalDateTime hasta) {
+        if (agregados == null) {
+            throw new IllegalStateException("Los agregados por período están deshabilitados (historial.rollups.enabled)");
+        }
+        return agregados.consultar(monedaOrigen, monedaDestino, granularidad, desde, hasta);
+    }
+
+    /**
+     * Consulta las conversiones archivadas por la retención ({@link ArchivoHistorial}),
+     * recorriendo solo los meses del rango
+     * @param monedaOrigen Moneda de origen, o null para cualquiera
+     * @param monedaDestino Moneda de destino, o null para cualquiera
+     * @param desde Inicio (inclusive), o null para no acotar
+     * @param hasta Fin (exclusive), o null para no acotar
+     * @param saltar Cantidad de resultados a saltear (inicio de la página)
+     * @param cantidad Cantidad máxima de resultados
+     * @return Las conversiones de la página, por mes y en el orden en que se archivaron
+     */
+    public List<Conversion> consultarArchivo(String monedaOrigen, String monedaDestino,
+                                             LocalDateTime desde, LocalDateTime hasta, int saltar, int cantidad) {
+        return archivo.consultar(monedaOrigen, monedaDestino, desde, hasta, saltar, cantidad);
+    }
+
+    private IndiceHistorial indiceHabilitado() {
+        IndiceHistorial indice = this.indice;
+        if (indice == null) {
+            throw new IllegalStateException("Las consultas indexadas están deshabilitadas (historial.index.enabled)");
+        }
+        return indice;
+    }
+
+    /**
+     * Completa la página con las conversiones de disco, recorriendo el archivo una vez
+     * @param buscadas Posiciones a leer (todas anteriores a las que están en memoria)
+     * @param posiciones Posiciones de la página, en su orden
+     * @param pagina Página a completar
+     */
+    private void leerDeDisco(int[] buscadas, int[] posiciones, Conversion[] pagina) {
+        Arrays.sort(buscadas);
+        Map<Integer, Conversion> leidas = new HashMap<>();
+        try {
+            Iterator<Conversion> lector = GestorArchivos.recorrerHistorial(diario.getRutaInstantanea(), diario.getSerializador());
+            try {
+                int siguiente = 0;
+                for (int posicion = 0; siguiente < buscadas.length && lector.hasNext(); posicion++) {
+                    Conversion conversion = lector.next();
+                    if (posicion == buscadas[siguiente]) {
+                        leidas.put(posicion, conversion);
+                        while (siguiente < buscadas.length && buscadas[siguiente] == posicion) {
+                            siguiente++;
+                        }
+                    }
+                }
+            } finally {
+                if (lector instanceof Closeable) {
+                    ((Closeable) lector).close();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        for (int i = 0; i < pagina.length; i++) {
+            if (pagina[i] == null) {
+                pagina[i] = leidas.get(posiciones[i]);
+            }
+        }
+    }
+
+    /**
+     * Exporta el historial a formato CSV (gzip si la ruta termina en .gz)
      */
     public void exportarCSV(String rutaArchivo) {
-        GestorArchivos.exportarCSV(conversiones, rutaArchivo);
+        exportarCSV(rutaArchivo, new ExportadorCSV());
+    }
+
+    /**
+     * Exporta el historial a formato CSV en streaming: primero lo archivado y
+     * luego el historial vivo, incluida la parte que solo está en disco
+     * @param rutaArchivo Ruta del archivo CSV de salida
+     * @param exportador Exportador configurado (filtros por fecha o par, gzip)
+     */
+    public void exportarCSV(String rutaArchivo, ExportadorCSV exportador) {
+        int prefijo;
+        List<Conversion> enMemoria;
+        synchronized (bloqueoPersistencia) {
+            prefijo = enDisco;
+            enMemoria = conversiones.instantanea();
+        }
+        GestorArchivos.exportarCSV(
+            () -> new RecorridoCompleto(archivo.recorrer(null, null), diario, prefijo, enMemoria),
+            rutaArchivo, exportador);
     }
 
     /**
      * Limpia todo el historial
      */
     public void limpiar() {
-        conversiones.clear();
-        guardar();
+        enHiloEscritor(() -> {
+            synchronized (bloqueoPersistencia) {
+                // Las que llegaron después del pedido (aún encoladas) se conservan
+                Lock reemplazo = reemplazoAlmacen.writeLock();
+                reemplazo.lock();
+                try {
+                    List<Conversion> enMemoria = conversiones.instantanea();
+                    List<Conversion> posteriores = enMemoria.subList(enMemoria.size() - sinRegistrar(), enMemoria.size());
+                    conversiones = nuevoAlmacen(posteriores);
+                    enDisco = 0;
+                    if (indice != null) {
+                        indice.limpiar();
+                    }
+                    if (agregados != null) {
+                        agregados.limpiar();
+                    }
+                    indexar(posteriores, 0);
+                    generacion++;
+                } finally {
+                    reemplazo.unlock();
+                }
+                diario.compactar(List.of());
+                guardarAgregados();
+                try {
+                    archivo.limpiar();
+                } catch (IOException e) {
+                    System.err.println("⚠️  No se pudo borrar el archivo del historial: " + e.getMessage());
+                }
+            }
+        });
         System.out.println("🗑️  Historial limpiado");
     }
 
@@ -63,6 +855,7 @@ public class HistorialConversiones {
      * Muestra el historial de conversiones en formato tabular
      */
     public void mostrarHistorial() {
+        List<Conversion> conversiones = this.conversiones.instantanea();
         if (conversiones.isEmpty()) {
             System.out.println("📭 El historial está vacío");
             return;
@@ -84,13 +877,107 @@ public class HistorialConversiones {
             );
         }
         System.out.println("═".repeat(100));
-        System.out.println("Total de conversiones: " + conversiones.size());
+        if (enDisco > 0) {
+            System.out.println("(" + enDisco + " conversiones anteriores solo en disco)");
+        }
+        System.out.println("Total de conversiones: " + getTamaño());
     }
 
     /**
-     * Obtiene el tamaño del historial
+     * Obtiene el tamaño del historial (incluidas las conversiones que solo están en disco)
      */
     public int getTamaño() {
-        return conversiones.size();
+        return enDisco + conversiones.tamaño();
+    }
+
+    /**
+     * Recorre primero las conversiones archivadas (si se pide), luego las que
+     * solo están en disco (en streaming) y luego las que están en memoria
+     */
+    private static final class RecorridoCompleto implements Iterator<Conversion>, Closeable {
+        private final DiarioHistorial diario;
+        private final Iterator<Conversion> enMemoria;
+        private ArchivoHistorial.LectorArchivo archivadas;
+        private int pendientesEnDisco;
+        private Iterator<Conversion> lector;
+
+        RecorridoCompleto(DiarioHistorial diario, int enDisco, List<Conversion> enMemoria) {
+            this(null, diario, enDisco, enMemoria);
+        }
+
+        RecorridoCompleto(ArchivoHistorial.LectorArchivo archivadas, DiarioHistorial diario, int enDisco,
+                          List<Conversion> enMemoria) {
+            this.archivadas = archivadas;
+            this.diario = diario;
+            this.pendientesEnDisco = enDisco;
+            this.enMemoria = enMemoria.iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (archivadas != null) {
+                if (archivadas.hasNext()) {
+                    return true;
+                }
+                archivadas.close();
+                archivadas = null;
+            }
+            if (pendientesEnDisco > 0) {
+                try {
+                    if (lector == null) {
+                        lector = GestorArchivos.recorrerHistorial(diario.getRutaInstantanea(), diario.getSerializador());
+                    }
+                    if (lector.hasNext()) {
+                        return true;
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                pendientesEnDisco = 0;
+            }
+            return enMemoria.hasNext();
+        }
+
+        @Override
+        public Conversion next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (archivadas != null) {
+                return archivadas.next();
+            }
+            if (pendientesEnDisco > 0) {
+                pendientesEnDisco--;
+                Conversion conversion = lector.next();
+                if (pendientesEnDisco == 0 && lector instanceof Closeable) {
+                    try {
+                        ((Closeable) lector).close();
+                    } catch (IOException e) {
+                        // Ya se leyó todo lo necesario del archivo
+                    }
+                }
+                return conversion;
+            }
+            return enMemoria.next();
+        }
+
+        /**
+         * Libera los archivos abiertos si no se recorrió hasta el final
+         */
+        @Override
+        public void close() {
+            if (archivadas != null) {
+                archivadas.close();
+                archivadas = null;
+            }
+            if (lector instanceof Closeable) {
+                try {
+                    ((Closeable) lector).close();
+                } catch (IOException e) {
+                    // Solo se leía
+                }
+            }
+            pendientesEnDisco = 0;
+        }
     }
 }
@@ -0,0 +1,428 @@
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Índice secundario del historial para consultas por par de monedas y rango
+ * de fechas sin recorrer todas las conversiones.
+ *
+ * Por cada par (origen, destino) guarda una serie ordenada por marca de
+ * tiempo con la posición de cada conversión en el historial y sus montos
+ * (28 bytes por conversión). Un rango de fechas se ubica con dos búsquedas
+ * binarias; los agregados (cantidad, sumas, tasa mínima, máxima y promedio)
+ * se calculan con resúmenes precalculados por bloque de
+ * {@value #TAMAÑO_BLOQUE} conversiones consecutivas de la serie, así que solo
+ * se recorren fila a fila los dos bloques de los extremos del rango.
+ *
+ * Se mantiene al agregar cada conversión: en orden de llegada es un anexado;
+ * una conversión con marca anterior a la última de su serie (hilos que
+ * compiten, historial cargado desordenado) se inserta en su lugar y se
+ * recalculan los bloques desde ahí.
+ *
+ * Cada serie tiene su propio bloqueo: los anexados de pares distintos no se
+ * esperan. Una consulta sobre varios pares ve cada serie de forma
+ * consistente, aunque no todas en el mismo instante.
+ *
+ * Las marcas de tiempo se comparan como milisegundos de la hora local
+ * codificada como UTC (igual que {@link AlmacenColumnar}). Las conversiones
+ * con códigos que no son de 3 letras no se indexan.
+ */
+public class IndiceHistorial {
+    private static final int BITS_BLOQUE = 10;
+    static final int TAMAÑO_BLOQUE = 1 << BITS_BLOQUE;
+    private static final int CAPACIDAD_INICIAL = 16;
+
+    /**
+     * Agregados de las conversiones de un rango. Los montos de origen solo se
+     * suman con sentido si el origen está fijo (y los de destino si el destino lo está).
+     */
+    public static final class Resumen {
+        private long cantidad;
+        private double sumaOrigen;
+        private double sumaDestino;
+        private double sumaTasas;
+        private double tasaMinima = Double.POSITIVE_INFINITY;
+        private double tasaMaxima = Double.NEGATIVE_INFINITY;
+
+        public long getCantidad() { return cantidad; }
+        public double getSumaOrigen() { return sumaOrigen; }
+        public double getSumaDestino() { return sumaDestino; }
+
+        /**
+         * Tasa mínima, o NaN si no hay conversiones
+         */
+        public double getTasaMinima() {
+            return cantidad == 0 ? Double.NaN : tasaMinima;
+        }
+
+        /**
+         * Tasa máxima, o NaN si no hay conversiones
+         */
+        public double getTasaMaxima() {
+            return cantidad == 0 ? Double.NaN : tasaMaxima;
+        }
+
+        /**
+         * Promedio simple de las tasas, o NaN si no hay conversiones
+         */
+        public double getTasaPromedio() {
+            return cantidad == 0 ? Double.NaN : sumaTasas / cantidad;
+        }
+
+        /**
+         * Tasa ponderada por monto (total de destino / total de origen), o NaN si no hay conversiones
+         */
+        public double getTasaPonderada() {
+            return cantidad == 0 ? Double.NaN : sumaDestino / sumaOrigen;
+        }
+
+        private void sumar(double origen, double destino) {
+            double tasa = destino / origen;
+            cantidad++;
+            sumaOrigen += origen;
+            sumaDestino += destino;
+            sumaTasas += tasa;
+            tasaMinima = Math.min(tasaMinima, tasa);
+            tasaMaxima = Math.max(tasaMaxima, tasa);
+        }
+
+        private void sumarBloque(Serie serie, int bloque) {
+            cantidad += TAMAÑO_BLOQUE;
+            sumaOrigen += serie.bloqueSumaOrigen[bloque];
+            sumaDestino += serie.bloqueSumaDestino[bloque];
+            sumaTasas += serie.bloqueSumaTasas[bloque];
+            tasaMinima = Math.min(tasaMinima, serie.bloqueTasaMinima[bloque]);
+            tasaMaxima = Math.max(tasaMaxima, serie.bloqueTasaMaxima[bloque]);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                "%d conversiones, origen %.2f, destino %.2f, tasa mín %.6f / máx %.6f / prom %.6f / ponderada %.6f",
+                cantidad, sumaOrigen, sumaDestino, getTasaMinima(), getTasaMaxima(), getTasaPromedio(),
+                getTasaPonderada());
+        }
+    }
+
+    /**
+     * Conversiones de un par, ordenadas por marca de tiempo (columnas paralelas)
+     */
+    private static final class Serie {
+        final int claveOrigen;
+        final int claveDestino;
+        long[] milis = new long[CAPACIDAD_INICIAL];
+        int[] posiciones = new int[CAPACIDAD_INICIAL];
+        double[] montoOrigen = new double[CAPACIDAD_INICIAL];
+        double[] montoDestino = new double[CAPACIDAD_INICIAL];
+        int tamaño;
+        // Resúmenes de los bloques completos
+        double[] bloqueSumaOrigen = new double[1];
+        double[] bloqueSumaDestino = new double[1];
+        double[] bloqueSumaTasas = new double[1];
+        double[] bloqueTasaMinima = new double[1];
+        double[] bloqueTasaMaxima = new double[1];
+
+        Serie(int claveOrigen, int claveDestino) {
+            this.claveOrigen = claveOrigen;
+            this.claveDestino = claveDestino;
+        }
+
+        void agregar(long marca, int posicion, double origen, double destino) {
+            if (tamaño == milis.length) {
+                int capacidad = milis.length * 2;
+                milis = Arrays.copyOf(milis, capacidad);
+                posiciones = Arrays.copyOf(posiciones, capacidad);
+                montoOrigen = Arrays.copyOf(montoOrigen, capacidad);
+                montoDestino = Arrays.copyOf(montoDestino, capacidad);
+            }
+            int i = tamaño;
+            if (i > 0 && milis[i - 1] > marca) {
+                // Después de las de igual marca: el orden de llegada se conserva
+                i = primeraMayor(marca);
+                int mover = tamaño - i;
+                System.arraycopy(milis, i, milis, i + 1, mover);
+                System.arraycopy(posiciones, i, posiciones, i + 1, mover);
+                System.arraycopy(montoOrigen, i, montoOrigen, i + 1, mover);
+                System.arraycopy(montoDestino, i, montoDestino, i + 1, mover);
+            }
+            milis[i] = marca;
+            posiciones[i] = posicion;
+            montoOrigen[i] = origen;
+            montoDestino[i] = destino;
+            tamaño++;
+
+            int completos = tamaño >> BITS_BLOQUE;
+            if (completos > bloqueSumaOrigen.length) {
+                int capacidad = bloqueSumaOrigen.length * 2;
+                bloqueSumaOrigen = Arrays.copyOf(bloqueSumaOrigen, capacidad);
+                bloqueSumaDestino = Arrays.copyOf(bloqueSumaDestino, capacidad);
+                bloqueSumaTasas = Arrays.copyOf(bloqueSumaTasas, capacidad);
+                bloqueTasaMinima = Arrays.copyOf(bloqueTasaMinima, capacidad);
+                bloqueTasaMaxima = Arrays.copyOf(bloqueTasaMaxima, capacidad);
+            }
+            // En orden de llegada solo se resume el bloque que se acaba de completar
+            for (int bloque = i >> BITS_BLOQUE; bloque < completos; bloque++) {
+                resumirBloque(bloque);
+            }
+        }
+
+        private void resumirBloque(int bloque) {
+            Resumen resumen = new Resumen();
+            int inicio = bloque << BITS_BLOQUE;
+            for (int i = inicio; i < inicio + TAMAÑO_BLOQUE; i++) {
+                resumen.sumar(montoOrigen[i], montoDestino[i]);
+            }
+            bloqueSumaOrigen[bloque] = resumen.sumaOrigen;
+            bloqueSumaDestino[bloque] = resumen.sumaDestino;
+            bloqueSumaTasas[bloque] = resumen.sumaTasas;
+            bloqueTasaMinima[bloque] = resumen.tasaMinima;
+            bloqueTasaMaxima[bloque] = resumen.tasaMaxima;
+        }
+
+        /**
+         * Primera posición de la serie con marca mayor o igual
+         */
+        int primeraDesde(long marca) {
+            int bajo = 0;
+            int alto = tamaño;
+            while (bajo < alto) {
+                int medio = (bajo + alto) >>> 1;
+                if (milis[medio] < marca) {
+                    bajo = medio + 1;
+                } else {
+                    alto = medio;
+                }
+            }
+            return bajo;
+        }
+
+        /**
+         * Primera posición de la serie con marca estrictamente mayor
+         */
+        int primeraMayor(long marca) {
+            int bajo = 0;
+            int alto = tamaño;
+            while (bajo < alto) {
+                int medio = (bajo + alto) >>> 1;
+                if (milis[medio] <= marca) {
+                    bajo = medio + 1;
+                } else {
+                    alto = medio;
+                }
+            }
+            return bajo;
+        }
+
+        /**
+         * Suma al resumen las filas [desde, hasta): bloques completos con su
+         * resumen, los extremos fila a fila
+         */
+        void resumir(int desde, int hasta, Resumen resumen) {
+            int bloqueDesde = (desde + TAMAÑO_BLOQUE - 1) >> BITS_BLOQUE;
+            int bloqueHasta = hasta >> BITS_BLOQUE;
+            if (bloqueDesde >= bloqueHasta) {
+                for (int i = desde; i < hasta; i++) {
+                    resumen.sumar(montoOrigen[i], montoDestino[i]);
+                }
+                return;
+            }
+            for (int i = desde; i < bloqueDesde << BITS_BLOQUE; i++) {
+                resumen.sumar(montoOrigen[i], montoDestino[i]);
+            }
+            for (int bloque = bloqueDesde; bloque < bloqueHasta; bloque++) {
+                resumen.sumarBloque(this, bloque);
+            }
+            for (int i = bloqueHasta << BITS_BLOQUE; i < hasta; i++) {
+                resumen.sumar(montoOrigen[i], montoDestino[i]);
+            }
+        }
+    }
+
+    /**
+     * Recorrido de un rango de una serie para la mezcla por fecha de varias series
+     */
+    private static final class Cursor {
+        final long[] milis;
+        final int[] posiciones;
+        int actual;
+        final int fin;
+
+        Cursor(long[] milis, int[] posiciones, int actual, int fin) {
+            this.milis = milis;
+            this.posiciones = posiciones;
+            this.actual = actual;
+            this.fin = fin;
+        }
+    }
+
+    private final ConcurrentHashMap<Integer, Serie> series = new ConcurrentHashMap<>();
+
+    /**
+     * Indexa una conversión
+     * @param conversion Conversión agregada al historial
+     * @param posicion Su posición en el historial completo (0 = la más antigua)
+     */
+    public void agregar(Conversion conversion, int posicion) {
+        agregar(RegistroMonedas.clave(conversion.getMonedaOrigen()),
+            RegistroMonedas.clave(conversion.getMonedaDestino()),
+            aMilis(conversion.getTimestamp()), conversion.getMontoOrigen(), conversion.getMontoDestino(), posicion);
+    }
+
+    /**
+     * Indexa una conversión a partir de sus columnas
+     * @param claveOrigen Clave de {@link RegistroMonedas} de la moneda de origen
+     * @param claveDestino Clave de la moneda de destino
+     * @param epochMilis Marca de tiempo (ver {@link #aMilis(LocalDateTime)})
+     * @param montoOrigen Monto de origen
+     * @param montoDestino Monto de destino
+     * @param posicion Posición en el historial completo
+     */
+    public void agregar(int claveOrigen, int claveDestino, long epochMilis,
+                        double montoOrigen, double montoDestino, int posicion) {
+        if (claveOrigen < 0 || claveDestino < 0) {
+            return;
+        }
+        Serie serie = series.computeIfAbsent(claveOrigen * RegistroMonedas.CLAVES + claveDestino,
+            par -> new Serie(claveOrigen, claveDestino));
+        synchronized (serie) {
+            serie.agregar(epochMilis, posicion, montoOrigen, montoDestino);
+        }
+    }
+
+    /**
+     * Agregados de las conversiones que cumplen los filtros
+     * @param monedaOrigen Moneda de origen, o null para cualquiera
+     * @param monedaDestino Moneda de destino, o null para cualquiera
+     * @param desde Inicio (inclusive), o null para no acotar
+     * @param hasta Fin (exclusive), o null para no acotar
+     * @return Cantidad, sumas y tasas mínima, máxima y promedio
+     */
+    public Resumen resumir(String monedaOrigen, String monedaDestino, LocalDateTime desde, LocalDateTime hasta) {
+        long inicio = desde == null ? Long.MIN_VALUE : aMilis(desde);
+        long fin = hasta == null ? Long.MAX_VALUE : aMilis(hasta);
+        Resumen resumen = new Resumen();
+        for (Serie serie : seriesDe(monedaOrigen, monedaDestino)) {
+            synchronized (serie) {
+                serie.resumir(serie.primeraDesde(inicio), serie.primeraDesde(fin), resumen);
+            }
+        }
+        return resumen;
+    }
+
+    /**
+     * Posiciones en el historial de las conversiones que cumplen los filtros,
+     * ordenadas por marca de tiempo, de a páginas
+     * @param monedaOrigen Moneda de origen, o null para cualquiera
+     * @param monedaDestino Moneda de destino, o null para cualquiera
+     * @param desde Inicio (inclusive), o null para no acotar
+     * @param hasta Fin (exclusive), o null para no acotar
+     * @param saltar Cantidad de resultados a saltear (inicio de la página)
+     * @param cantidad Cantidad máxima de resultados
+     * @return Las posiciones de la página
+     */
+    public int[] buscar(String monedaOrigen, String monedaDestino, LocalDateTime desde, LocalDateTime hasta,
+                        int saltar, int cantidad) {
+        if (saltar < 0 || cantidad < 0) {
+            throw new IllegalArgumentException("saltar y cantidad no pueden ser negativos");
+        }
+        long inicio = desde == null ? Long.MIN_VALUE : aMilis(desde);
+        long fin = hasta == null ? Long.MAX_VALUE : aMilis(hasta);
+        List<Serie> coincidentes = seriesDe(monedaOrigen, monedaDestino);
+        if (coincidentes.size() == 1) {
+            Serie serie = coincidentes.get(0);
+            synchronized (serie) {
+                int primera = serie.primeraDesde(inicio);
+                int ultima = serie.primeraDesde(fin);
+                int desdeFila = (int) Math.min((long) primera + saltar, ultima);
+                return Arrays.copyOfRange(serie.posiciones, desdeFila, (int) Math.min((long) desdeFila + cantidad, ultima));
+            }
+        }
+
+        // Varios pares: mezcla por fecha de los rangos de cada serie. Se copian
+        // solo las primeras saltar + cantidad filas de cada uno
+        PriorityQueue<Cursor> cola = new PriorityQueue<>(Math.max(1, coincidentes.size()),
+            (a, b) -> a.milis[a.actual] != b.milis[b.actual]
+                ? Long.compare(a.milis[a.actual], b.milis[b.actual])
+                : Integer.compare(a.posiciones[a.actual], b.posiciones[b.actual]));
+        long necesarias = (long) saltar + cantidad;
+        for (Serie serie : coincidentes) {
+            synchronized (serie) {
+                int primera = serie.primeraDesde(inicio);
+                int ultima = (int) Math.min(serie.primeraDesde(fin), primera + necesarias);
+                if (primera < ultima) {
+                    cola.add(new Cursor(Arrays.copyOfRange(serie.milis, primera, ultima),
+                        Arrays.copyOfRange(serie.posiciones, primera, ultima), 0, ultima - primera));
+                }
+            }
+        }
+        int[] pagina = new int[cantidad];
+        int llenas = 0;
+        for (long vistas = 0; llenas < cantidad && !cola.isEmpty(); vistas++) {
+            Cursor cursor = cola.poll();
+            if (vistas >= saltar) {
+                pagina[llenas++] = cursor.posiciones[cursor.actual];
+            }
+            if (++cursor.actual < cursor.fin) {
+                cola.add(cursor);
+            }
+        }
+        return llenas == cantidad ? pagina : Arrays.copyOf(pagina, llenas);
+    }
+
+    /**
+     * Cantidad de conversiones indexadas
+     */
+    public long tamaño() {
+        long total = 0;
+        for (Serie serie : series.values()) {
+            synchronized (serie) {
+                total += serie.tamaño;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Descarta todo el índice
+     */
+    public void limpiar() {
+        series.clear();
+    }
+
+    /**
+     * Marca de tiempo de una conversión en milisegundos (hora local codificada como UTC)
+     */
+    public static long aMilis(LocalDateTime marca) {
+        return marca.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    /**
+     * Series de los pares que coinciden con el filtro (null = cualquier moneda)
+     */
+    private List<Serie> seriesDe(String monedaOrigen, String monedaDestino) {
+        int origen = monedaOrigen == null ? -1 : RegistroMonedas.clave(monedaOrigen);
+        int destino = monedaDestino == null ? -1 : RegistroMonedas.clave(monedaDestino);
+        List<Serie> coincidentes = new ArrayList<>();
+        if ((monedaOrigen != null && origen < 0) || (monedaDestino != null && destino < 0)) {
+            return coincidentes;
+        }
+        if (origen >= 0 && destino >= 0) {
+            Serie serie = series.get(origen * RegistroMonedas.CLAVES + destino);
+            if (serie != null) {
+                coincidentes.add(serie);
+            }
+            return coincidentes;
+        }
+        for (Serie serie : series.values()) {
+            if ((origen < 0 || serie.claveOrigen == origen) && (destino < 0 || serie.claveDestino == destino)) {
+                coincidentes.add(serie);
+            }
+        }
+        return coincidentes;
+    }
+}
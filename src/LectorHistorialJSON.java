@@ -0,0 +1,118 @@
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Lector incremental de historial.json.
+ * Recorre el arreglo JSON registro a registro con JsonReader sobre un canal
+ * con buffer, sin cargar el archivo completo en memoria. Se cierra solo al
+ * llegar al final; si se abandona antes hay que cerrarlo explícitamente.
+ */
+public class LectorHistorialJSON implements Iterator<Conversion>, Closeable {
+    private static final int TAMAÑO_BUFFER = 1 << 16;
+
+    private final JsonReader reader;
+    private final SerializadorHistorial serializador;
+    private boolean terminado;
+
+    /**
+     * Abre el archivo y se posiciona en el primer registro
+     * @param ruta Ruta de historial.json
+     * @throws IOException si el archivo no se puede abrir o no contiene un arreglo
+     */
+    public LectorHistorialJSON(Path ruta) throws IOException {
+        this(ruta, SerializadorHistorial.RAPIDO);
+    }
+
+    /**
+     * Abre el archivo con un serializador dado y se posiciona en el primer registro
+     * @param ruta Ruta de historial.json
+     * @param serializador Serializador con el que se leen las conversiones
+     * @throws IOException si el archivo no se puede abrir o no contiene un arreglo
+     */
+    public LectorHistorialJSON(Path ruta, SerializadorHistorial serializador) throws IOException {
+        this.serializador = serializador;
+        FileChannel canal = FileChannel.open(ruta, StandardOpenOption.READ);
+        this.reader = new JsonReader(new BufferedReader(
+            Channels.newReader(canal, StandardCharsets.UTF_8.newDecoder(), TAMAÑO_BUFFER), TAMAÑO_BUFFER));
+        try {
+            JsonToken primero = reader.peek();
+            if (primero == JsonToken.END_DOCUMENT || primero == JsonToken.NULL) {
+                cerrarSilenciosamente();
+            } else {
+                reader.beginArray();
+            }
+        } catch (IOException | IllegalStateException e) {
+            cerrarSilenciosamente();
+            throw new IOException("historial.json no contiene un arreglo de conversiones: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Salta registros sin deserializarlos
+     * @param cantidad Cantidad de registros a saltar
+     * @return Cantidad efectivamente saltada (menor si el archivo termina antes)
+     */
+    public int saltar(int cantidad) throws IOException {
+        int saltados = 0;
+        while (saltados < cantidad && hasNext()) {
+            reader.skipValue();
+            saltados++;
+        }
+        return saltados;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (terminado) {
+            return false;
+        }
+        try {
+            if (reader.hasNext()) {
+                return true;
+            }
+            reader.endArray();
+        } catch (IOException e) {
+            cerrarSilenciosamente();
+            throw new UncheckedIOException(e);
+        }
+        cerrarSilenciosamente();
+        return false;
+    }
+
+    /**
+     * @throws JsonParseException si el registro no es una conversión válida
+     */
+    @Override
+    public Conversion next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return GestorArchivos.leerConversion(reader, serializador);
+    }
+
+    @Override
+    public void close() throws IOException {
+        terminado = true;
+        reader.close();
+    }
+
+    private void cerrarSilenciosamente() {
+        try {
+            close();
+        } catch (IOException e) {
+            // Ya no hay nada que leer; el error de cierre no aporta información
+        }
+    }
+}
@@ -0,0 +1,92 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Matriz densa de tasas cruzadas para las monedas más usadas.
+ * Para cada par (origen, destino) de monedas frecuentes guarda el factor
+ * tasaDestino / tasaOrigen, de modo que la conversión es una sola
+ * multiplicación en lugar de una división más una multiplicación.
+ *
+ * Se construye junto con cada {@link TablaTasas} (ver
+ * {@link TablaTasas#conMatrizCruzada(String[])}), así que se reemplaza de forma
+ * atómica con cada refresco. El factor guardado es exactamente el double
+ * tasaDestino / tasaOrigen que calcularía {@link TablaTasas#factor(int, int)}
+ * sin la matriz, y {@link MotorDinero} redondea ese factor de forma exacta:
+ * el resultado de una conversión es el mismo con o sin matriz, que solo
+ * ahorra una división por conversión.
+ */
+public final class MatrizTasasCruzadas {
+    private final String[] monedas;
+    // Índice en la TablaTasas -> posición en la matriz, o -1 si no es frecuente
+    private final byte[] posicionPorIndice;
+    private final double[] factores;
+
+    private MatrizTasasCruzadas(String[] monedas, byte[] posicionPorIndice, double[] factores) {
+        this.monedas = monedas;
+        this.posicionPorIndice = posicionPorIndice;
+        this.factores = factores;
+    }
+
+    /**
+     * Construye la matriz para las monedas indicadas que existan en la tabla
+     * @param tabla Tabla de tasas de la que se derivan los factores
+     * @param frecuentes Códigos de las monedas frecuentes (como máximo 127)
+     * @return La matriz
+     */
+    static MatrizTasasCruzadas construir(TablaTasas tabla, String[] frecuentes) {
+        int[] indices = new int[frecuentes.length];
+        String[] monedas = new String[frecuentes.length];
+        int n = 0;
+        for (String codigo : frecuentes) {
+            int indice = tabla.indice(codigo.trim());
+            if (indice >= 0 && n < Byte.MAX_VALUE && !contiene(indices, n, indice)) {
+                indices[n] = indice;
+                monedas[n] = tabla.codigo(indice);
+                n++;
+            }
+        }
+
+        byte[] posicionPorIndice = new byte[tabla.tamaño()];
+        Arrays.fill(posicionPorIndice, (byte) -1);
+        for (int i = 0; i < n; i++) {
+            posicionPorIndice[indices[i]] = (byte) i;
+        }
+
+        double[] factores = new double[n * n];
+        for (int o = 0; o < n; o++) {
+            for (int d = 0; d < n; d++) {
+                factores[o * n + d] = tabla.tasa(indices[d]) / tabla.tasa(indices[o]);
+            }
+        }
+        return new MatrizTasasCruzadas(Arrays.copyOf(monedas, n), posicionPorIndice, factores);
+    }
+
+    /**
+     * Factor de conversión precalculado para un par de índices de la tabla
+     * @return El factor, o NaN si el par no está en la matriz
+     */
+    double factor(int origen, int destino) {
+        int o = posicionPorIndice[origen];
+        int d = posicionPorIndice[destino];
+        if ((o | d) < 0) {
+            return Double.NaN;
+        }
+        return factores[o * monedas.length + d];
+    }
+
+    /**
+     * Monedas incluidas en la matriz, en orden
+     */
+    public List<String> getMonedas() {
+        return List.of(monedas);
+    }
+
+    private static boolean contiene(int[] valores, int cantidad, int valor) {
+        for (int i = 0; i < cantidad; i++) {
+            if (valores[i] == valor) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
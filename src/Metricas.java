@@ -0,0 +1,375 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Registro de métricas del conversor: contadores (LongAdder), medidores
+ * (valores calculados al leerlos, p. ej. la tasa de aciertos del caché) e
+ * histogramas de latencia ({@link HistogramaLatencia}).
+ *
+ * Deshabilitadas (el valor por defecto) no cuestan casi nada: cada punto de
+ * medición lee un booleano y no toma el reloj ni toca contadores. Se
+ * habilitan con metrics.enabled y se exponen por JMX (MBean
+ * conversor:type=Metricas, visible en jconsole) y, opcionalmente, con un
+ * volcado de texto periódico a la consola o a un archivo.
+ *
+ * Uso en un punto de medición:
+ * <pre>
+ *   long inicio = Metricas.inicio();
+ *   ...
+ *   Metricas.registrarDesde(Metricas.LATENCIA_CONVERSION, inicio);
+ * </pre>
+ */
+public final class Metricas {
+    // Valor de inicio() con las métricas deshabilitadas
+    private static final long SIN_MEDIR = Long.MIN_VALUE;
+    private static final String NOMBRE_JMX = "conversor:type=Metricas";
+
+    private static volatile boolean habilitadas;
+
+    private static final Map<String, HistogramaLatencia> HISTOGRAMAS = new ConcurrentSkipListMap<>();
+    private static final Map<String, LongAdder> CONTADORES = new ConcurrentHashMap<>();
+    private static final Map<String, DoubleSupplier> MEDIDORES = new ConcurrentHashMap<>();
+
+    public static final HistogramaLatencia LATENCIA_DESCARGA = histograma("api.descarga.latencia");
+    public static final HistogramaLatencia LATENCIA_CONVERSION = histograma("conversion.latencia");
+    public static final HistogramaLatencia LATENCIA_LOTE = histograma("conversion.lote.latencia");
+    public static final HistogramaLatencia LATENCIA_ESCRITURA_HISTORIAL = histograma("historial.escritura.latencia");
+    public static final HistogramaLatencia LATENCIA_HTTP = histograma("http.latencia");
+
+    private static ScheduledExecutorService volcador;
+
+    private Metricas() {
+    }
+
+    /**
+     * Habilita las métricas según config.properties: metrics.enabled,
+     * metrics.jmx.enabled, metrics.dump.interval.seconds y metrics.dump.path
+     */
+    public static void desdeConfiguracion() {
+        if (!GestorConfiguracion.obtenerBoolean("metrics.enabled", false)) {
+            return;
+        }
+        String ruta = GestorConfiguracion.obtener("metrics.dump.path");
+        habilitar(
+            GestorConfiguracion.obtenerBoolean("metrics.jmx.enabled", true),
+            Duration.ofSeconds(GestorConfiguracion.obtenerInt("metrics.dump.interval.seconds", 0)),
+            ruta == null || ruta.isBlank() ? null : Paths.get(ruta.trim())
+        );
+    }
+
+    /**
+     * Habilita la recolección de métricas
+     * @param jmx Si se registra el MBean en el servidor JMX de la plataforma
+     * @param intervaloVolcado Cada cuánto se vuelca el resumen de texto (Duration.ZERO = nunca)
+     * @param destinoVolcado Archivo del volcado (se reemplaza en cada volcado), o null para la consola
+     */
+    public static synchronized void habilitar(boolean jmx, Duration intervaloVolcado, Path destinoVolcado) {
+        habilitadas = true;
+        if (jmx) {
+            registrarMBean();
+        }
+        if (!intervaloVolcado.isZero() && !intervaloVolcado.isNegative() && volcador == null) {
+            volcador = Executors.newSingleThreadScheduledExecutor(tarea -> {
+                Thread hilo = new Thread(tarea, "volcado-metricas");
+                hilo.setDaemon(true);
+                return hilo;
+            });
+            long periodo = intervaloVolcado.toMillis();
+            volcador.scheduleAtFixedRate(() -> volcar(destinoVolcado), periodo, periodo, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Deja de recolectar (los valores ya registrados se conservan) y detiene el volcado
+     */
+    public static synchronized void deshabilitar() {
+        habilitadas = false;
+        if (volcador != null) {
+            volcador.shutdownNow();
+            volcador = null;
+        }
+    }
+
+    public static boolean estanHabilitadas() {
+        return habilitadas;
+    }
+
+    /**
+     * Marca el inicio de una medición
+     * @return El instante actual en ns, o un valor que ignora registrarDesde si están deshabilitadas
+     */
+    public static long inicio() {
+        return habilitadas ? System.nanoTime() : SIN_MEDIR;
+    }
+
+    /**
+     * Registra el tiempo transcurrido desde {@link #inicio()}
+     */
+    public static void registrarDesde(HistogramaLatencia histograma, long inicio) {
+        if (inicio != SIN_MEDIR) {
+            histograma.registrar(System.nanoTime() - inicio);
+        }
+    }
+
+    /**
+     * Incrementa un contador (si están habilitadas)
+     * @param nombre Nombre del contador (se crea la primera vez)
+     */
+    public static void incrementar(String nombre) {
+        if (habilitadas) {
+            contador(nombre).increment();
+        }
+    }
+
+    /**
+     * Incrementa el contador "nombre.codigo" (p. ej. api.reintentos.503); el
+     * nombre solo se arma si las métricas están habilitadas
+     */
+    public static void incrementar(String nombre, int codigo) {
+        if (habilitadas) {
+            contador(nombre + "." + codigo).increment();
+        }
+    }
+
+    /**
+     * Registra (o reemplaza) un medidor: un valor que se calcula al leerlo
+     * @param nombre Nombre del medidor
+     * @param valor Función que calcula el valor actual
+     */
+    public static void registrarMedidor(String nombre, DoubleSupplier valor) {
+        MEDIDORES.put(nombre, valor);
+    }
+
+    /**
+     * Valor actual de un contador (0 si no existe)
+     */
+    public static long getContador(String nombre) {
+        LongAdder contador = CONTADORES.get(nombre);
+        return contador == null ? 0 : contador.sum();
+    }
+
+    /**
+     * Pone en cero todos los contadores e histogramas
+     */
+    public static void reiniciar() {
+        CONTADORES.values().forEach(LongAdder::reset);
+        HISTOGRAMAS.values().forEach(HistogramaLatencia::reiniciar);
+    }
+
+    /**
+     * Resumen legible de todas las métricas
+     * @return Texto de varias líneas, con las métricas en orden alfabético
+     */
+    public static String volcarTexto() {
+        StringBuilder texto = new StringBuilder();
+        texto.append("📈 Métricas (").append(LocalDateTime.now().withNano(0).toString().replace('T', ' ')).append(")\n");
+        for (HistogramaLatencia histograma : HISTOGRAMAS.values()) {
+            HistogramaLatencia.Instantanea datos = histograma.instantanea();
+            texto.append(String.format(Locale.ROOT, "  %-36s n=%d media=%s p50=%s p90=%s p99=%s p99.9=%s max=%s%n",
+                histograma.getNombre(), datos.getCantidad(), duracion((long) datos.getMedia()),
+                duracion(datos.percentil(50)), duracion(datos.percentil(90)), duracion(datos.percentil(99)),
+                duracion(datos.percentil(99.9)), duracion(datos.getMaximo())));
+        }
+        for (Map.Entry<String, LongAdder> contador : new ConcurrentSkipListMap<>(CONTADORES).entrySet()) {
+            texto.append(String.format(Locale.ROOT, "  %-36s %d%n", contador.getKey(), contador.getValue().sum()));
+        }
+        for (Map.Entry<String, DoubleSupplier> medidor : new ConcurrentSkipListMap<>(MEDIDORES).entrySet()) {
+            texto.append(String.format(Locale.ROOT, "  %-36s %.4f%n", medidor.getKey(), medidor.getValue().getAsDouble()));
+        }
+        return texto.toString();
+    }
+
+    private static HistogramaLatencia histograma(String nombre) {
+        HistogramaLatencia histograma = new HistogramaLatencia(nombre);
+        HISTOGRAMAS.put(nombre, histograma);
+        return histograma;
+    }
+
+    private static LongAdder contador(String nombre) {
+        LongAdder contador = CONTADORES.get(nombre);
+        return contador != null ? contador : CONTADORES.computeIfAbsent(nombre, clave -> new LongAdder());
+    }
+
+    /**
+     * Vuelca el resumen a la consola o reemplaza el archivo de forma atómica; un error solo se informa
+     */
+    private static void volcar(Path destino) {
+        String texto = volcarTexto();
+        if (destino == null) {
+            System.out.print(texto);
+            return;
+        }
+        try {
+            Path absoluto = destino.toAbsolutePath();
+            if (absoluto.getParent() != null) {
+                Files.createDirectories(absoluto.getParent());
+            }
+            Path temporal = absoluto.resolveSibling(absoluto.getFileName() + ".tmp");
+            Files.write(temporal, texto.getBytes(StandardCharsets.UTF_8));
+            try {
+                Files.move(temporal, absoluto, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporal, absoluto, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            System.err.println("⚠️  No se pudieron volcar las métricas: " + e.getMessage());
+        }
+    }
+
+    private static String duracion(long nanos) {
+        if (nanos < 10_000) {
+            return nanos + "ns";
+        }
+        if (nanos < 10_000_000) {
+            return String.format(Locale.ROOT, "%.1fµs", nanos / 1e3);
+        }
+        return String.format(Locale.ROOT, "%.1fms", nanos / 1e6);
+    }
+
+    private static void registrarMBean() {
+        try {
+            MBeanServer servidor = ManagementFactory.getPlatformMBeanServer();
+            ObjectName nombre = new ObjectName(NOMBRE_JMX);
+            if (!servidor.isRegistered(nombre)) {
+                servidor.registerMBean(new MBean(), nombre);
+            }
+        } catch (JMException e) {
+            System.err.println("⚠️  No se pudieron publicar las métricas por JMX: " + e.getMessage());
+        }
+    }
+
+    /**
+     * MBean dinámico: un atributo por contador y medidor, y para cada
+     * histograma su cantidad, media y percentiles en microsegundos
+     */
+    private static final class MBean implements DynamicMBean {
+        private static final String[] ESTADISTICAS = {"cantidad", "media.us", "p50.us", "p90.us", "p99.us", "p999.us", "max.us"};
+
+        @Override
+        public Object getAttribute(String atributo) throws AttributeNotFoundException {
+            if ("Resumen".equals(atributo)) {
+                return volcarTexto();
+            }
+            LongAdder contador = CONTADORES.get(atributo);
+            if (contador != null) {
+                return contador.sum();
+            }
+            DoubleSupplier medidor = MEDIDORES.get(atributo);
+            if (medidor != null) {
+                return medidor.getAsDouble();
+            }
+            for (HistogramaLatencia histograma : HISTOGRAMAS.values()) {
+                if (atributo.startsWith(histograma.getNombre() + ".")) {
+                    return estadistica(histograma, atributo.substring(histograma.getNombre().length() + 1));
+                }
+            }
+            throw new AttributeNotFoundException(atributo);
+        }
+
+        private static Object estadistica(HistogramaLatencia histograma, String estadistica)
+                throws AttributeNotFoundException {
+            HistogramaLatencia.Instantanea datos = histograma.instantanea();
+            switch (estadistica) {
+                case "cantidad":
+                    return datos.getCantidad();
+                case "media.us":
+                    return datos.getMedia() / 1e3;
+                case "p50.us":
+                    return datos.percentil(50) / 1e3;
+                case "p90.us":
+                    return datos.percentil(90) / 1e3;
+                case "p99.us":
+                    return datos.percentil(99) / 1e3;
+                case "p999.us":
+                    return datos.percentil(99.9) / 1e3;
+                case "max.us":
+                    return datos.getMaximo() / 1e3;
+                default:
+                    throw new AttributeNotFoundException(histograma.getNombre() + "." + estadistica);
+            }
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] atributos) {
+            AttributeList lista = new AttributeList();
+            for (String atributo : atributos) {
+                try {
+                    lista.add(new Attribute(atributo, getAttribute(atributo)));
+                } catch (AttributeNotFoundException e) {
+                    // Se omite, como indica el contrato de DynamicMBean
+                }
+            }
+            return lista;
+        }
+
+        @Override
+        public void setAttribute(Attribute atributo) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("Las métricas son de solo lectura: " + atributo.getName());
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList atributos) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String operacion, Object[] parametros, String[] firma) {
+            if ("reiniciar".equals(operacion)) {
+                reiniciar();
+                return null;
+            }
+            throw new UnsupportedOperationException(operacion);
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            List<MBeanAttributeInfo> atributos = new ArrayList<>();
+            atributos.add(new MBeanAttributeInfo("Resumen", "java.lang.String", "Resumen de texto", true, false, false));
+            for (String nombre : HISTOGRAMAS.keySet()) {
+                for (String estadistica : ESTADISTICAS) {
+                    String tipo = "cantidad".equals(estadistica) ? "long" : "double";
+                    atributos.add(new MBeanAttributeInfo(nombre + "." + estadistica, tipo, nombre, true, false, false));
+                }
+            }
+            for (String nombre : new ConcurrentSkipListMap<>(CONTADORES).keySet()) {
+                atributos.add(new MBeanAttributeInfo(nombre, "long", "Contador", true, false, false));
+            }
+            for (String nombre : new ConcurrentSkipListMap<>(MEDIDORES).keySet()) {
+                atributos.add(new MBeanAttributeInfo(nombre, "double", "Medidor", true, false, false));
+            }
+            MBeanOperationInfo reiniciar = new MBeanOperationInfo("reiniciar", "Pone en cero contadores e histogramas",
+                null, "void", MBeanOperationInfo.ACTION);
+            return new MBeanInfo(Metricas.class.getName(), "Métricas del conversor de monedas",
+                atributos.toArray(new MBeanAttributeInfo[0]), null, new MBeanOperationInfo[] {reiniciar}, null);
+        }
+    }
+}
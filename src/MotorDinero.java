@@ -0,0 +1,253 @@
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Motor de dinero de punto fijo.
+ * Los montos se representan como long en unidades mínimas de su moneda
+ * (centavos para USD, yenes para JPY, milésimos para KWD, según ISO 4217) y
+ * toda conversión termina en un único redondeo a la unidad mínima de la
+ * moneda destino con el modo configurado.
+ *
+ * El resultado es exactamente el de BigDecimal: monto en unidades mínimas ×
+ * factor (el double tal cual) × 10^(decimales destino - decimales origen),
+ * redondeado con el modo. Se calcula en double sin asignar memoria: lejos
+ * de un límite de redondeo (un empate .5 o un entero, según el modo) basta
+ * el producto en double; a unos pocos ulp del límite el lado se decide con
+ * el error exacto del producto (Math.fma). Solo los montos de más de 2^38
+ * unidades mínimas (unos 2.700 millones con 2 decimales) pasan por BigDecimal.
+ */
+public final class MotorDinero {
+    private static final long[] POTENCIAS_10 = {
+        1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L
+    };
+    private static final int DECIMALES_POR_DEFECTO = 2;
+    // Código empaquetado -> decimales + 1 (0 = no listado, se usa el valor por defecto)
+    private static final byte[] DECIMALES = new byte[RegistroMonedas.CLAVES];
+    // ~4.5 ulp relativos: cubre el error de la ruta en double frente al valor exacto
+    private static final double TOLERANCIA_RELATIVA = 1e-15;
+    // Por encima de 2^52 el double ya no distingue fracciones de unidad
+    private static final double MAX_RAPIDO = 1L << 52;
+    // Hasta 2^38 unidades mínimas los límites se resuelven sin BigDecimal (límite × 10^4 es exacto)
+    private static final double MAX_DESEMPATE = 1L << 38;
+    private static final double MAX_EXACTO = 1L << 53;
+    private static final long SIN_DECIDIR = Long.MIN_VALUE;
+
+    static {
+        registrar(0, "BIF", "CLP", "DJF", "GNF", "ISK", "JPY", "KMF", "KRW", "PYG", "RWF",
+            "UGX", "UYI", "VND", "VUV", "XAF", "XOF", "XPF");
+        registrar(3, "BHD", "IQD", "JOD", "KWD", "LYD", "OMR", "TND");
+        registrar(4, "CLF", "UYW");
+    }
+
+    private final RoundingMode modo;
+
+    /**
+     * @param modo Modo de redondeo a la unidad mínima (UNNECESSARY no está permitido)
+     */
+    public MotorDinero(RoundingMode modo) {
+        if (modo == RoundingMode.UNNECESSARY) {
+            throw new IllegalArgumentException("El modo de redondeo UNNECESSARY no es válido para conversiones");
+        }
+        this.modo = modo;
+    }
+
+    /**
+     * Motor con el modo de conversion.rounding.mode (HALF_UP por defecto)
+     */
+    public static MotorDinero desdeConfiguracion() {
+        String modo = GestorConfiguracion.obtener("conversion.rounding.mode");
+        return new MotorDinero(modo == null || modo.isBlank()
+            ? RoundingMode.HALF_UP
+            : RoundingMode.valueOf(modo.trim().toUpperCase()));
+    }
+
+    public RoundingMode getModo() {
+        return modo;
+    }
+
+    /**
+     * Decimales de la unidad mínima de una moneda (ISO 4217; 2 si no está listada)
+     * @param moneda Código de 3 letras
+     */
+    public static int decimales(String moneda) {
+        return decimalesDeClave(RegistroMonedas.clave(moneda));
+    }
+
+    /**
+     * Igual que {@link #decimales(String)} para un código ya empaquetado
+     * @param clave Clave de {@link RegistroMonedas} (o -1)
+     */
+    public static int decimalesDeClave(int clave) {
+        int registrado = clave < 0 ? 0 : DECIMALES[clave];
+        return registrado == 0 ? DECIMALES_POR_DEFECTO : registrado - 1;
+    }
+
+    /**
+     * Lleva un monto ingresado como double a unidades mínimas. El double se
+     * interpreta por su representación decimal más corta (lo que escribió el
+     * usuario: 100.005 es 100.005, no 100.00499999...)
+     * @param monto Monto en la moneda
+     * @param decimales Decimales de la unidad mínima
+     * @return Monto en unidades mínimas, redondeado con el modo del motor
+     * @throws ArithmeticException si el monto no es finito o no cabe en un long
+     */
+    public long aMinimas(double monto, int decimales) {
+        double escalado = monto * POTENCIAS_10[decimales];
+        long rapido = redondearRapido(escalado);
+        if (rapido != SIN_DECIDIR) {
+            return rapido;
+        }
+        if (Math.abs(escalado) < MAX_DESEMPATE) {
+            // El decimal del límite (p. ej. 100.005) tiene un único double más cercano:
+            // si es el monto, el usuario escribió exactamente el límite
+            double limite = limiteCercano(escalado);
+            double limiteComoMonto = limite / POTENCIAS_10[decimales];
+            return redondearJuntoAlLimite(limite, monto > limiteComoMonto ? 1 : monto < limiteComoMonto ? -1 : 0);
+        }
+        if (Double.isNaN(monto) || Double.isInfinite(monto)) {
+            throw new ArithmeticException("Monto no finito: " + monto);
+        }
+        return BigDecimal.valueOf(monto).movePointRight(decimales).setScale(0, modo).longValueExact();
+    }
+
+    /**
+     * Convierte un monto en unidades mínimas aplicando un factor de conversión
+     * @param minimasOrigen Monto en unidades mínimas de la moneda origen
+     * @param decimalesOrigen Decimales de la moneda origen
+     * @param decimalesDestino Decimales de la moneda destino
+     * @param factor Unidades de destino por unidad de origen (tasaDestino / tasaOrigen)
+     * @return Monto en unidades mínimas de la moneda destino
+     * @throws ArithmeticException si el factor no es finito o el resultado no cabe en un long
+     */
+    public long convertir(long minimasOrigen, int decimalesOrigen, int decimalesDestino, double factor) {
+        int diferencia = decimalesDestino - decimalesOrigen;
+        // valor exacto = x * factor / divisor, con x exacto en double mientras no pase de 2^53
+        double x = diferencia >= 0 ? (double) minimasOrigen * POTENCIAS_10[diferencia] : (double) minimasOrigen;
+        double divisor = diferencia >= 0 ? 1 : POTENCIAS_10[-diferencia];
+        double producto = x * factor;
+        double escalado = producto / divisor;
+        long rapido = redondearRapido(escalado);
+        if (rapido != SIN_DECIDIR) {
+            return rapido;
+        }
+        if (Math.abs(escalado) < MAX_DESEMPATE && Math.abs(x) < MAX_EXACTO) {
+            // Junto a un límite (típico con tasas de pocos decimales: 1350.5 × centavos
+            // cae justo en medio centavo) se decide con el error exacto del producto
+            double limite = limiteCercano(escalado);
+            double error = Math.fma(x, factor, -producto);
+            double distancia = (producto - limite * divisor) + error;
+            return redondearJuntoAlLimite(limite, distancia > 0 ? 1 : distancia < 0 ? -1 : 0);
+        }
+        if (Double.isNaN(factor) || Double.isInfinite(factor)) {
+            throw new ArithmeticException("Factor de conversión no finito: " + factor);
+        }
+        return BigDecimal.valueOf(minimasOrigen)
+            .multiply(new BigDecimal(factor))
+            .movePointRight(diferencia)
+            .setScale(0, modo)
+            .longValueExact();
+    }
+
+    /**
+     * Unidades mínimas -> double más cercano al valor decimal (p. ej. 12345 con 2 decimales -> 123.45)
+     */
+    public static double aDouble(long minimas, int decimales) {
+        return (double) minimas / POTENCIAS_10[decimales];
+    }
+
+    /**
+     * Double (obtenido con {@link #aDouble(long, int)}) -> unidades mínimas, sin pérdida
+     * mientras el monto no supere ~2^50 unidades mínimas
+     */
+    public static long desdeDouble(double monto, int decimales) {
+        return Math.round(monto * POTENCIAS_10[decimales]);
+    }
+
+    /**
+     * Redondea un valor ya escalado a unidades mínimas si está lejos de un
+     * límite de redondeo del modo
+     * @return El resultado, o SIN_DECIDIR si está demasiado cerca del límite
+     */
+    private long redondearRapido(double escalado) {
+        double absoluto = Math.abs(escalado);
+        if (!(absoluto < MAX_RAPIDO)) {
+            return SIN_DECIDIR;
+        }
+        double piso = Math.floor(escalado);
+        double fraccion = escalado - piso;
+        double tolerancia = Math.max(absoluto * TOLERANCIA_RELATIVA, Double.MIN_NORMAL);
+        if (esAlMedio()) {
+            if (Math.abs(fraccion - 0.5) <= tolerancia) {
+                return SIN_DECIDIR;
+            }
+            return (long) (fraccion < 0.5 ? piso : piso + 1);
+        }
+        // Modos dirigidos: el límite es el entero más cercano
+        if (fraccion <= tolerancia || 1 - fraccion <= tolerancia) {
+            return SIN_DECIDIR;
+        }
+        return (long) (redondeaHaciaArriba(escalado) ? piso + 1 : piso);
+    }
+
+    /**
+     * Límite de redondeo más cercano a un valor escalado: n + 0.5 para los
+     * modos HALF_*, el entero n para los dirigidos
+     */
+    private double limiteCercano(double escalado) {
+        return esAlMedio() ? Math.floor(escalado) + 0.5 : Math.rint(escalado);
+    }
+
+    /**
+     * Redondea un valor del que solo se sabe de qué lado de un límite está
+     * @param limite Límite de redondeo (ver {@link #limiteCercano(double)})
+     * @param lado 1 si el valor exacto está por encima del límite, -1 si está por debajo, 0 si es igual
+     */
+    private long redondearJuntoAlLimite(double limite, int lado) {
+        if (esAlMedio()) {
+            long piso = (long) Math.floor(limite);
+            if (lado != 0) {
+                return lado > 0 ? piso + 1 : piso;
+            }
+            switch (modo) {
+                case HALF_UP:
+                    return limite > 0 ? piso + 1 : piso;
+                case HALF_DOWN:
+                    return limite > 0 ? piso : piso + 1;
+                default: // HALF_EVEN
+                    return (piso & 1) == 0 ? piso : piso + 1;
+            }
+        }
+        long entero = (long) limite;
+        if (lado == 0) {
+            return entero;
+        }
+        long piso = lado > 0 ? entero : entero - 1;
+        return redondeaHaciaArriba(limite + 0.5 * lado) ? piso + 1 : piso;
+    }
+
+    private boolean esAlMedio() {
+        return modo == RoundingMode.HALF_UP || modo == RoundingMode.HALF_DOWN || modo == RoundingMode.HALF_EVEN;
+    }
+
+    /**
+     * Para un valor no entero, si el modo dirigido lo lleva al entero superior
+     */
+    private boolean redondeaHaciaArriba(double valor) {
+        switch (modo) {
+            case CEILING:
+                return true;
+            case FLOOR:
+                return false;
+            case UP:
+                return valor > 0;
+            default: // DOWN
+                return valor < 0;
+        }
+    }
+
+    private static void registrar(int decimales, String... monedas) {
+        for (String moneda : monedas) {
+            DECIMALES[RegistroMonedas.clave(moneda)] = (byte) (decimales + 1);
+        }
+    }
+}
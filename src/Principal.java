@@ -1,8 +1,22 @@
+import excepciones.ConversionException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Scanner;
+import java.util.concurrent.CountDownLatch;
 
 public class Principal {
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--servidor")) {
+            iniciarServidor();
+            return;
+        }
+        if (args.length > 0) {
+            System.exit(convertirArchivo(args));
+        }
+
         Scanner scanner = new Scanner(System.in);
+        Metricas.desdeConfiguracion();
         ConversorDeMoneda conversor = new ConversorDeMoneda();
 
         int opcion;
@@ -26,9 +40,95 @@ public class Principal {
 
         } while (true);
 
+        conversor.getHistorial().cerrar();
         scanner.close();
     }
 
+    /**
+     * Modo servidor (--servidor): atiende conversiones por HTTP hasta que se
+     * detiene el proceso (Ctrl+C), en lugar del menú interactivo
+     */
+    private static void iniciarServidor() {
+        Metricas.desdeConfiguracion();
+        ConversorDeMoneda conversor = new ConversorDeMoneda();
+        ServidorConversion servidor;
+        try {
+            servidor = ServidorConversion.desdeConfiguracion(conversor);
+        } catch (IOException e) {
+            System.err.println("❌ No se pudo iniciar el servidor: " + e.getMessage());
+            conversor.getHistorial().cerrar();
+            return;
+        }
+
+        CountDownLatch detenido = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            System.out.println("👋 Deteniendo el servidor...");
+            servidor.close();
+            conversor.getHistorial().cerrar();
+            detenido.countDown();
+        }, "detener-servidor"));
+        servidor.iniciar();
+
+        try {
+            detenido.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Modo por lotes: --input entrada.csv --output salida.csv [--hilos n]
+     * convierte el archivo completo sin menú (ver {@link ConversionMasiva})
+     * @return Código de salida del proceso (0 = éxito)
+     */
+    private static int convertirArchivo(String[] args) {
+        Path entrada = null;
+        Path salida = null;
+        int hilos = 0;
+        for (int i = 0; i < args.length; i++) {
+            boolean conValor = i + 1 < args.length;
+            if (args[i].equals("--input") && conValor) {
+                entrada = Paths.get(args[++i]);
+            } else if (args[i].equals("--output") && conValor) {
+                salida = Paths.get(args[++i]);
+            } else if (args[i].equals("--hilos") && conValor) {
+                try {
+                    hilos = Integer.parseInt(args[++i]);
+                } catch (NumberFormatException e) {
+                    System.err.println("❌ --hilos debe ser un número: " + args[i]);
+                    return 2;
+                }
+            } else {
+                System.err.println("❌ Argumento desconocido: " + args[i]);
+                entrada = null;
+                break;
+            }
+        }
+        if (entrada == null || salida == null) {
+            System.err.println("Uso: java Principal --input entrada.csv --output salida.csv [--hilos n]");
+            System.err.println("     java Principal --servidor");
+            return 2;
+        }
+
+        Metricas.desdeConfiguracion();
+        // Las filas no se registran: no hace falta cargar ni indexar el historial
+        ConsultaTasaDeCambio consulta = new ConsultaTasaDeCambio();
+        consulta.registrarMedidores();
+        ConversorDeMoneda conversor = new ConversorDeMoneda(consulta, MotorDinero.desdeConfiguracion());
+        try {
+            System.out.println("⏳ Convirtiendo " + entrada + " -> " + salida + "...");
+            ConversionMasiva.Resultado resultado = new ConversionMasiva(conversor, hilos).procesar(entrada, salida);
+            System.out.println("✅ " + resultado);
+            return 0;
+        } catch (IOException e) {
+            System.err.println("❌ Error de archivo: " + e.getMessage());
+            return 1;
+        } catch (ConversionException e) {
+            System.err.println(e.getMessage());
+            return 1;
+        }
+    }
+
     /**
      * Muestra el menú principal de opciones
      */
@@ -0,0 +1,119 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Registro de códigos de moneda ISO 4217: cada código de 3 letras A-Z se
+ * empaqueta en un entero 0..17575 (clave = l1·26² + l2·26 + l3), que sirve
+ * de índice directo en las tablas de TablaTasas, MotorDinero y del
+ * historial compacto (AlmacenColumnar, HistorialBinario).
+ *
+ * Validar y empaquetar no asigna memoria ni usa expresiones regulares. Para
+ * cada clave hay un único String canónico ({@link #codigo(int)}): las
+ * conversiones del historial, las tablas de tasas y las filas de la
+ * conversión masiva comparten esas instancias en lugar de guardar una copia
+ * del código por registro.
+ */
+public final class RegistroMonedas {
+    private static final int LETRAS = 26;
+    /** Cantidad de claves posibles (26³) */
+    public static final int CLAVES = LETRAS * LETRAS * LETRAS;
+
+    // Se crean la primera vez que se piden (la mayoría de las 17.576 claves no son monedas).
+    // La lectura es un acceso simple al arreglo (String es inmutable, se puede publicar
+    // sin barreras); solo la creación usa compareAndSet para que haya una única instancia
+    private static final String[] CODIGOS = new String[CLAVES];
+    private static final VarHandle CODIGO = MethodHandles.arrayElementVarHandle(String[].class);
+
+    private RegistroMonedas() {
+    }
+
+    /**
+     * Clave de un código en formato estricto: exactamente 3 letras A-Z
+     * @param codigo Código de moneda (p. ej. USD)
+     * @return Clave 0..17575, o -1 si el código no tiene ese formato (o es null)
+     */
+    public static int clave(CharSequence codigo) {
+        if (codigo == null || codigo.length() != 3) {
+            return -1;
+        }
+        int clave = 0;
+        for (int i = 0; i < 3; i++) {
+            int letra = codigo.charAt(i) - 'A';
+            if (letra < 0 || letra >= LETRAS) {
+                return -1;
+            }
+            clave = clave * LETRAS + letra;
+        }
+        return clave;
+    }
+
+    /**
+     * Clave del código contenido en un tramo de texto, con las reglas de la
+     * entrada del usuario: se ignoran los espacios de los extremos y se
+     * aceptan minúsculas (" usd " equivale a USD). No crea Strings, así que
+     * sirve para validar millones de filas.
+     * @param texto Texto que contiene el código (p. ej. una línea de un CSV)
+     * @param desde Inicio del tramo (inclusive)
+     * @param hasta Fin del tramo (exclusive)
+     * @return Clave 0..17575, o -1 si el tramo no es un código de 3 letras
+     */
+    public static int claveFlexible(CharSequence texto, int desde, int hasta) {
+        while (desde < hasta && Character.isWhitespace(texto.charAt(desde))) {
+            desde++;
+        }
+        while (hasta > desde && Character.isWhitespace(texto.charAt(hasta - 1))) {
+            hasta--;
+        }
+        if (hasta - desde != 3) {
+            return -1;
+        }
+        int clave = 0;
+        for (int i = desde; i < hasta; i++) {
+            // Minúsculas ASCII a mayúsculas; cualquier otro carácter queda fuera de rango
+            int letra = (texto.charAt(i) | 0x20) - 'a';
+            if (letra < 0 || letra >= LETRAS) {
+                return -1;
+            }
+            clave = clave * LETRAS + letra;
+        }
+        return clave;
+    }
+
+    /**
+     * Indica si un texto es un código de moneda: exactamente 3 letras A-Z
+     */
+    public static boolean esValido(CharSequence codigo) {
+        return clave(codigo) >= 0;
+    }
+
+    /**
+     * String canónico de una clave (siempre la misma instancia)
+     * @param clave Clave 0..17575
+     * @return El código de 3 letras
+     */
+    public static String codigo(int clave) {
+        String codigo = CODIGOS[clave];
+        if (codigo == null) {
+            char[] letras = new char[3];
+            int resto = clave;
+            for (int i = 2; i >= 0; i--) {
+                letras[i] = (char) ('A' + resto % LETRAS);
+                resto /= LETRAS;
+            }
+            String nuevo = new String(letras);
+            String existente = (String) CODIGO.compareAndExchange(CODIGOS, clave, (String) null, nuevo);
+            codigo = existente != null ? existente : nuevo;
+        }
+        return codigo;
+    }
+
+    /**
+     * Instancia canónica de un código
+     * @param codigo Código de moneda
+     * @return El String canónico si el código es válido; si no, el mismo valor recibido
+     */
+    public static String internar(String codigo) {
+        int clave = clave(codigo);
+        return clave < 0 ? codigo : codigo(clave);
+    }
+}
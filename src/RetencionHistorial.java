@@ -0,0 +1,79 @@
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+
+/**
+ * Política de retención del historial vivo (historial.json + diario + memoria):
+ * cantidad máxima de conversiones y antigüedad máxima. Las conversiones más
+ * antiguas que la exceden se pasan al {@link ArchivoHistorial}.
+ */
+public final class RetencionHistorial {
+    /** Sin límites: nunca se archiva */
+    public static final RetencionHistorial SIN_LIMITE = new RetencionHistorial(0, Duration.ZERO);
+
+    private final int maxRegistros;
+    private final Duration maxEdad;
+
+    /**
+     * Constructor de la política
+     * @param maxRegistros Conversiones a conservar en el historial vivo (0 = sin límite)
+     * @param maxEdad Antigüedad máxima de las conversiones del historial vivo (cero = sin límite)
+     */
+    public RetencionHistorial(int maxRegistros, Duration maxEdad) {
+        if (maxRegistros < 0 || maxEdad.isNegative()) {
+            throw new IllegalArgumentException("Los límites de retención no pueden ser negativos");
+        }
+        this.maxRegistros = maxRegistros;
+        this.maxEdad = maxEdad;
+    }
+
+    /**
+     * Construye la política leyendo historial.retention.* de GestorConfiguracion
+     * @return La política configurada
+     */
+    public static RetencionHistorial desdeConfiguracion() {
+        return new RetencionHistorial(
+            GestorConfiguracion.obtenerInt("historial.retention.max.records", 0),
+            Duration.ofDays(GestorConfiguracion.obtenerInt("historial.retention.max.age.days", 0))
+        );
+    }
+
+    /**
+     * Indica si hay algún límite
+     */
+    public boolean estaActiva() {
+        return maxRegistros > 0 || !maxEdad.isZero();
+    }
+
+    /**
+     * Cantidad de conversiones iniciales del historial vivo que hay que
+     * archivar: las que exceden el máximo y las vencidas que están al
+     * principio (se recorre solo hasta la primera que no venció)
+     * @param total Conversiones del historial vivo
+     * @param enOrden Conversiones del historial vivo en orden de inserción
+     * @param ahora Momento de referencia para la antigüedad
+     * @return Cantidad a archivar (0 = ninguna)
+     */
+    int aArchivar(int total, Iterator<Conversion> enOrden, LocalDateTime ahora) {
+        int porCantidad = maxRegistros > 0 ? Math.max(0, total - maxRegistros) : 0;
+        int porEdad = 0;
+        if (!maxEdad.isZero()) {
+            LocalDateTime limite = ahora.minus(maxEdad);
+            while (porEdad < total && enOrden.hasNext() && enOrden.next().getTimestamp().isBefore(limite)) {
+                porEdad++;
+            }
+        }
+        return Math.max(porCantidad, porEdad);
+    }
+
+    public int getMaxRegistros() { return maxRegistros; }
+    public Duration getMaxEdad() { return maxEdad; }
+
+    @Override
+    public String toString() {
+        return estaActiva()
+            ? "retención: " + (maxRegistros > 0 ? maxRegistros + " conversiones" : "sin límite de cantidad")
+                + ", " + (maxEdad.isZero() ? "sin límite de antigüedad" : maxEdad.toDays() + " días")
+            : "retención: sin límite";
+    }
+}
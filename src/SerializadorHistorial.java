@@ -0,0 +1,64 @@
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import java.time.LocalDateTime;
+
+/**
+ * Cómo se serializan las conversiones en historial.json y en el diario
+ * (historial.json.serializer). Cada {@link DiarioHistorial} usa el suyo,
+ * elegido al construirlo. El formato de los campos es el mismo: los
+ * archivos escritos con uno se leen con el otro.
+ */
+public enum SerializadorHistorial {
+    /** {@link ConversionAdapter}, sin reflexión; historial.json compacto (sin sangría) */
+    RAPIDO(true),
+    /** Gson por reflexión; historial.json con sangría, como antes de ConversionAdapter */
+    REFLEXIVO(false);
+
+    // historial.json
+    private final Gson gson;
+    // Sin pretty printing: una conversión por línea en el diario (JSON Lines)
+    private final Gson gsonCompacto;
+
+    SerializadorHistorial(boolean rapido) {
+        this.gson = crearGson(rapido, !rapido);
+        this.gsonCompacto = crearGson(rapido, false);
+    }
+
+    /**
+     * Interpreta el valor de configuración (sin distinguir mayúsculas)
+     * @param valor rapido o reflexivo, o null para el valor por defecto (RAPIDO)
+     * @return El serializador correspondiente
+     * @throws IllegalArgumentException si el valor no es ninguno de los dos
+     */
+    public static SerializadorHistorial desde(String valor) {
+        if (valor == null || valor.isBlank()) {
+            return RAPIDO;
+        }
+        for (SerializadorHistorial serializador : values()) {
+            if (serializador.name().equalsIgnoreCase(valor.trim())) {
+                return serializador;
+            }
+        }
+        throw new IllegalArgumentException("Serializador JSON desconocido: " + valor);
+    }
+
+    Gson getGson() {
+        return gson;
+    }
+
+    Gson getGsonCompacto() {
+        return gsonCompacto;
+    }
+
+    private static Gson crearGson(boolean rapido, boolean prettyPrinting) {
+        GsonBuilder builder = new GsonBuilder()
+                .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter());
+        if (rapido) {
+            builder.registerTypeAdapter(Conversion.class, new ConversionAdapter());
+        }
+        if (prettyPrinting) {
+            builder.setPrettyPrinting();
+        }
+        return builder.create();
+    }
+}
@@ -0,0 +1,549 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Serie histórica de tablas de tasas: cada tabla descargada se agrega al
+ * final y se puede recuperar la que estaba vigente en cualquier momento
+ * ({@link #tablaEn(Instant)}) para revalorizar conversiones pasadas.
+ *
+ * Dos archivos en el directorio de la serie:
+ * <pre>
+ * serie-tasas.idx  índice de ancho fijo, mapeado en memoria (little-endian)
+ *   Encabezado (32 bytes): int magia 'STIX', short versión, short tamaño de
+ *   entrada (32), 8 bytes reservados, long cantidad, long reservado
+ *   Entrada (32 bytes): long vigente desde (epoch ms), long posición en
+ *   serie-tasas.bin, int largo comprimido, int índice de su tabla clave,
+ *   long reservado
+ * serie-tasas.bin  bloques comprimidos con Deflater, uno por tabla
+ * </pre>
+ *
+ * Cada tasa se guarda como decimal (valor sin escala + escala, la
+ * representación más corta del double, que se recupera exacta) y, salvo en
+ * las tablas clave (una cada {@value #INTERVALO_CLAVE}), como diferencia
+ * contra la tasa de la misma moneda en la tabla clave de su tramo: las
+ * tasas se mueven poco, así que cada moneda ocupa uno o dos bytes antes de
+ * comprimir. Leer cualquier tabla descomprime a lo sumo dos bloques.
+ *
+ * La búsqueda por fecha es binaria sobre el índice mapeado, sin leer
+ * bloques; las últimas tablas leídas quedan en un caché LRU, así que
+ * consultar momentos cercanos cuesta microsegundos.
+ *
+ * Un solo escritor a la vez ({@link #agregar} es synchronized); las lecturas
+ * son concurrentes y no se bloquean con las escrituras.
+ */
+public final class SerieTasas implements Closeable {
+    private static final int MAGIA = 0x58495453; // "STIX" en little-endian
+    private static final short VERSION = 1;
+    private static final int TAMAÑO_ENCABEZADO = 32;
+    private static final int TAMAÑO_ENTRADA = 32;
+    private static final int POSICION_CANTIDAD = 16;
+    private static final int CAPACIDAD_INICIAL = 1024;
+
+    static final int INTERVALO_CLAVE = 32;
+    private static final int TABLAS_EN_CACHE = 32;
+    private static final int CLAVES_EN_CACHE = 8;
+    // Escala que marca una tasa guardada con sus 8 bytes (no representable como decimal exacto)
+    private static final int ESCALA_CRUDA = 0xFF;
+    private static final int MAX_ESCALA = 22;
+    private static final double[] POTENCIAS_10 = new double[MAX_ESCALA + 1];
+    // Los enteros de hasta 2^53 son exactos como double
+    private static final long LIMITE_EXACTO = 1L << 53;
+
+    static {
+        POTENCIAS_10[0] = 1;
+        for (int i = 1; i <= MAX_ESCALA; i++) {
+            POTENCIAS_10[i] = POTENCIAS_10[i - 1] * 10;
+        }
+    }
+
+    private final Path rutaIndice;
+    private final FileChannel canalIndice;
+    private final FileChannel canalDatos;
+    private volatile MappedByteBuffer indice;
+    private volatile int cantidad;
+    private long finDatos;
+
+    private final Map<Integer, TablaTasas> cache = new LinkedHashMap<Integer, TablaTasas>(TABLAS_EN_CACHE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, TablaTasas> mayor) {
+            return size() > TABLAS_EN_CACHE;
+        }
+    };
+    // Tablas clave con sus valores sin escala ya calculados (los usan todas las tablas de su tramo)
+    private final Map<Integer, TablaClave> claves = new LinkedHashMap<Integer, TablaClave>(CLAVES_EN_CACHE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, TablaClave> mayor) {
+            return size() > CLAVES_EN_CACHE;
+        }
+    };
+
+    /**
+     * Tabla clave decodificada: la tabla y, por índice, su valor sin escala
+     * empaquetado como en {@link #sinEscala(double)}
+     */
+    private static final class TablaClave {
+        final TablaTasas tabla;
+        final long[] sinEscala;
+
+        TablaClave(TablaTasas tabla, long[] sinEscala) {
+            this.tabla = tabla;
+            this.sinEscala = sinEscala;
+        }
+
+        /**
+         * Valor empaquetado de una moneda, o Long.MIN_VALUE si no está o no es decimal
+         */
+        long de(String codigo) {
+            int indice = tabla.indice(codigo);
+            return indice < 0 ? Long.MIN_VALUE : sinEscala[indice];
+        }
+    }
+
+    private SerieTasas(Path rutaIndice, FileChannel canalIndice, FileChannel canalDatos,
+                       MappedByteBuffer indice, int cantidad, long finDatos) {
+        this.rutaIndice = rutaIndice;
+        this.canalIndice = canalIndice;
+        this.canalDatos = canalDatos;
+        this.indice = indice;
+        this.cantidad = cantidad;
+        this.finDatos = finDatos;
+    }
+
+    /**
+     * Abre (o crea) la serie de un directorio. Si el proceso se cortó a mitad
+     * de un agregado, los bytes de datos sin entrada en el índice se descartan.
+     * @param directorio Directorio de la serie
+     * @return La serie abierta
+     * @throws IOException si los archivos no tienen el formato esperado
+     */
+    public static SerieTasas abrir(Path directorio) throws IOException {
+        Files.createDirectories(directorio);
+        Path rutaIndice = directorio.resolve("serie-tasas.idx");
+        FileChannel canalIndice = FileChannel.open(rutaIndice,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileChannel canalDatos = null;
+        try {
+            canalDatos = FileChannel.open(directorio.resolve("serie-tasas.bin"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            boolean nuevo = canalIndice.size() == 0;
+            long capacidad = nuevo ? CAPACIDAD_INICIAL
+                : Math.max(CAPACIDAD_INICIAL, (canalIndice.size() - TAMAÑO_ENCABEZADO) / TAMAÑO_ENTRADA);
+            MappedByteBuffer indice = mapear(canalIndice, capacidad);
+            if (nuevo) {
+                indice.putInt(0, MAGIA);
+                indice.putShort(4, VERSION);
+                indice.putShort(6, (short) TAMAÑO_ENTRADA);
+                indice.putLong(POSICION_CANTIDAD, 0);
+                indice.force();
+            } else if (indice.getInt(0) != MAGIA || indice.getShort(4) != VERSION
+                    || indice.getShort(6) != TAMAÑO_ENTRADA) {
+                throw new IOException("No es un índice de serie de tasas: " + rutaIndice);
+            }
+
+            long registradas = indice.getLong(POSICION_CANTIDAD);
+            if (registradas < 0 || registradas > capacidad) {
+                throw new IOException("Índice de serie de tasas dañado: " + rutaIndice);
+            }
+            int cantidad = (int) registradas;
+            long finDatos = 0;
+            if (cantidad > 0) {
+                int ultima = TAMAÑO_ENCABEZADO + (cantidad - 1) * TAMAÑO_ENTRADA;
+                finDatos = indice.getLong(ultima + 8) + indice.getInt(ultima + 16);
+            }
+            if (canalDatos.size() < finDatos) {
+                throw new IOException("Serie de tasas truncada: faltan datos de " + rutaIndice);
+            }
+            canalDatos.truncate(finDatos);
+            return new SerieTasas(rutaIndice, canalIndice, canalDatos, indice, cantidad, finDatos);
+        } catch (IOException | RuntimeException e) {
+            canalIndice.close();
+            if (canalDatos != null) {
+                canalDatos.close();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Cantidad de tablas registradas
+     */
+    public int tamaño() {
+        return cantidad;
+    }
+
+    /**
+     * Momento desde el que rige una tabla (epoch ms): la actualización
+     * informada por la API o, si no la informó, el momento de la descarga
+     */
+    public long getVigenteDesde(int posicion) {
+        return indice.getLong(TAMAÑO_ENCABEZADO + posicion * TAMAÑO_ENTRADA);
+    }
+
+    /**
+     * Agrega una tabla al final de la serie si es más nueva que la última
+     * (la API actualiza sus tasas una vez por período: las descargas
+     * repetidas de una misma actualización no se duplican)
+     * @param tabla Tabla descargada
+     * @return true si se agregó
+     * @throws IOException si no se pudo escribir
+     */
+    public synchronized boolean agregar(TablaTasas tabla) throws IOException {
+        long desde = vigenteDesde(tabla);
+        int posicion = cantidad;
+        if (posicion > 0 && desde <= getVigenteDesde(posicion - 1)) {
+            return false;
+        }
+
+        int posicionClave = posicion - posicion % INTERVALO_CLAVE;
+        TablaClave clave = posicion == posicionClave ? null : leerClave(posicionClave);
+        byte[] bloque = comprimir(codificar(tabla, clave));
+
+        ByteBuffer datos = ByteBuffer.wrap(bloque);
+        while (datos.hasRemaining()) {
+            canalDatos.write(datos, finDatos + datos.position());
+        }
+        canalDatos.force(false);
+
+        MappedByteBuffer actual = capacidadPara(posicion + 1);
+        int entrada = TAMAÑO_ENCABEZADO + posicion * TAMAÑO_ENTRADA;
+        actual.putLong(entrada, desde);
+        actual.putLong(entrada + 8, finDatos);
+        actual.putInt(entrada + 16, bloque.length);
+        actual.putInt(entrada + 20, posicionClave);
+        actual.putLong(entrada + 24, 0);
+        // La cantidad se escribe después de la entrada: un corte entre ambas deja la entrada ignorada
+        actual.force();
+        actual.putLong(POSICION_CANTIDAD, posicion + 1);
+        actual.force();
+
+        finDatos += bloque.length;
+        synchronized (cache) {
+            cache.put(posicion, tabla);
+        }
+        cantidad = posicion + 1;
+        return true;
+    }
+
+    /**
+     * Tabla vigente en un momento dado
+     * @param momento Instante a consultar
+     * @return La última tabla con vigencia desde antes de ese momento (o
+     *         igual), o null si el momento es anterior a la primera tabla
+     * @throws IOException si no se pudo leer el bloque de la tabla
+     */
+    public TablaTasas tablaEn(Instant momento) throws IOException {
+        int posicion = buscar(momento.toEpochMilli());
+        return posicion < 0 ? null : leerTabla(posicion);
+    }
+
+    /**
+     * Búsqueda binaria en el índice mapeado
+     * @return Posición de la última tabla vigente desde un momento menor o igual, o -1
+     */
+    int buscar(long epochMilis) {
+        // Primero la cantidad: el escritor publica el mapeo nuevo antes de aumentarla
+        int alto = cantidad - 1;
+        MappedByteBuffer actual = indice;
+        int bajo = 0;
+        while (bajo <= alto) {
+            int medio = (bajo + alto) >>> 1;
+            if (actual.getLong(TAMAÑO_ENCABEZADO + medio * TAMAÑO_ENTRADA) <= epochMilis) {
+                bajo = medio + 1;
+            } else {
+                alto = medio - 1;
+            }
+        }
+        return alto;
+    }
+
+    /**
+     * Tabla en una posición de la serie
+     * @param posicion 0 = la más antigua
+     * @throws IOException si no se pudo leer el bloque
+     */
+    public TablaTasas leerTabla(int posicion) throws IOException {
+        if (posicion < 0 || posicion >= cantidad) {
+            throw new IndexOutOfBoundsException("Posición fuera de la serie de tasas: " + posicion);
+        }
+        synchronized (cache) {
+            TablaTasas tabla = cache.get(posicion);
+            if (tabla != null) {
+                return tabla;
+            }
+        }
+        int entrada = TAMAÑO_ENCABEZADO + posicion * TAMAÑO_ENTRADA;
+        int posicionClave = indice.getInt(entrada + 20);
+        TablaTasas tabla = posicionClave == posicion
+            ? leerClave(posicion).tabla
+            : decodificar(leerBloque(posicion), leerClave(posicionClave)).tabla;
+        synchronized (cache) {
+            cache.put(posicion, tabla);
+        }
+        return tabla;
+    }
+
+    private TablaClave leerClave(int posicion) throws IOException {
+        synchronized (claves) {
+            TablaClave clave = claves.get(posicion);
+            if (clave != null) {
+                return clave;
+            }
+        }
+        TablaClave clave = decodificar(leerBloque(posicion), null);
+        synchronized (claves) {
+            claves.put(posicion, clave);
+        }
+        return clave;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            canalDatos.close();
+        } finally {
+            canalIndice.close();
+        }
+    }
+
+    private static long vigenteDesde(TablaTasas tabla) {
+        return tabla.getActualizacionUnix() > 0 ? tabla.getActualizacionUnix() * 1000 : tabla.getObtenidaMillis();
+    }
+
+    private static MappedByteBuffer mapear(FileChannel canal, long capacidad) throws IOException {
+        MappedByteBuffer mapa = canal.map(FileChannel.MapMode.READ_WRITE, 0,
+            TAMAÑO_ENCABEZADO + capacidad * TAMAÑO_ENTRADA);
+        mapa.order(ByteOrder.LITTLE_ENDIAN);
+        return mapa;
+    }
+
+    /**
+     * Índice con lugar para una cantidad de entradas (duplica el mapeo si hace falta)
+     */
+    private MappedByteBuffer capacidadPara(int entradas) throws IOException {
+        MappedByteBuffer actual = indice;
+        if (TAMAÑO_ENCABEZADO + (long) entradas * TAMAÑO_ENTRADA > actual.capacity()) {
+            long capacidad = (actual.capacity() - TAMAÑO_ENCABEZADO) / TAMAÑO_ENTRADA * 2;
+            actual = mapear(canalIndice, capacidad);
+            indice = actual;
+        }
+        return actual;
+    }
+
+    private byte[] leerBloque(int posicionTabla) throws IOException {
+        int entrada = TAMAÑO_ENCABEZADO + posicionTabla * TAMAÑO_ENTRADA;
+        MappedByteBuffer actual = indice;
+        long posicion = actual.getLong(entrada + 8);
+        ByteBuffer bloque = ByteBuffer.allocate(actual.getInt(entrada + 16));
+        while (bloque.hasRemaining()) {
+            if (canalDatos.read(bloque, posicion + bloque.position()) < 0) {
+                throw new EOFException("Bloque de la serie de tasas incompleto en " + rutaIndice);
+            }
+        }
+        return bloque.array();
+    }
+
+    /**
+     * Bloque sin comprimir: actualización, descarga, base, y por cada moneda
+     * su clave, la escala y el valor sin escala (diferencia contra la tabla
+     * clave cuando ésta tiene la moneda con la misma escala)
+     */
+    private static byte[] codificar(TablaTasas tabla, TablaClave clave) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + tabla.tamaño() * 4);
+        DataOutputStream salida = new DataOutputStream(bytes);
+        salida.writeLong(tabla.getActualizacionUnix());
+        salida.writeLong(tabla.getObtenidaMillis());
+        salida.writeUTF(tabla.getMonedaBase() == null ? "" : tabla.getMonedaBase());
+        // Los códigos que no son de 3 letras no se pueden consultar en la tabla: no se guardan
+        int monedas = 0;
+        for (int i = 0; i < tabla.tamaño(); i++) {
+            if (RegistroMonedas.esValido(tabla.codigo(i))) {
+                monedas++;
+            }
+        }
+        salida.writeShort(monedas);
+        for (int i = 0; i < tabla.tamaño(); i++) {
+            int claveMoneda = RegistroMonedas.clave(tabla.codigo(i));
+            if (claveMoneda < 0) {
+                continue;
+            }
+            salida.writeShort(claveMoneda);
+            double tasa = tabla.tasa(i);
+            long sinEscala = sinEscala(tasa);
+            if (sinEscala == Long.MIN_VALUE) {
+                salida.writeByte(ESCALA_CRUDA);
+                salida.writeLong(Double.doubleToRawLongBits(tasa));
+                continue;
+            }
+            int escala = (int) (sinEscala & 0xFF);
+            long valor = sinEscala >> 8;
+            // Una tasa que perdió un cero final (1.2340 -> 1.234) se lleva a la escala de la
+            // tabla clave para que siga guardándose como diferencia
+            long deClave = clave == null ? Long.MIN_VALUE : clave.de(tabla.codigo(i));
+            int escalaClave = deClave == Long.MIN_VALUE ? -1 : (int) (deClave & 0xFF);
+            if (escalaClave > escala && valor < LIMITE_EXACTO / (long) POTENCIAS_10[escalaClave - escala]) {
+                long ampliado = valor * (long) POTENCIAS_10[escalaClave - escala];
+                if (ampliado / POTENCIAS_10[escalaClave] == tasa) {
+                    valor = ampliado;
+                    escala = escalaClave;
+                }
+            }
+            salida.writeByte(escala);
+            escribirVariable(salida, valor - referencia(deClave, escala));
+        }
+        salida.flush();
+        return bytes.toByteArray();
+    }
+
+    private static TablaClave decodificar(byte[] comprimido, TablaClave clave) throws IOException {
+        byte[] bloque = descomprimir(comprimido);
+        try (DataInputStream entrada = new DataInputStream(new ByteArrayInputStream(bloque))) {
+            long actualizacion = entrada.readLong();
+            long obtenida = entrada.readLong();
+            String base = entrada.readUTF();
+            int monedas = entrada.readUnsignedShort();
+            String[] codigos = new String[monedas];
+            double[] tasas = new double[monedas];
+            long[] sinEscala = new long[monedas];
+            for (int i = 0; i < monedas; i++) {
+                codigos[i] = RegistroMonedas.codigo(entrada.readUnsignedShort());
+                int escala = entrada.readUnsignedByte();
+                if (escala == ESCALA_CRUDA) {
+                    tasas[i] = Double.longBitsToDouble(entrada.readLong());
+                    sinEscala[i] = Long.MIN_VALUE;
+                } else if (escala <= MAX_ESCALA) {
+                    long valor = leerVariable(entrada)
+                        + (clave == null ? 0 : referencia(clave.de(codigos[i]), escala));
+                    tasas[i] = valor / POTENCIAS_10[escala];
+                    sinEscala[i] = valor << 8 | escala;
+                } else {
+                    throw new IOException("Escala inválida en la serie de tasas: " + escala);
+                }
+            }
+            return new TablaClave(
+                TablaTasas.crear(base.isEmpty() ? null : base, actualizacion, obtenida, codigos, tasas), sinEscala);
+        }
+    }
+
+    /**
+     * Valor sin escala de la moneda en la tabla clave si tiene la misma escala (si no, 0)
+     * @param deClave Valor empaquetado de la tabla clave (Long.MIN_VALUE = no hay)
+     */
+    private static long referencia(long deClave, int escala) {
+        return deClave != Long.MIN_VALUE && (deClave & 0xFF) == escala ? deClave >> 8 : 0;
+    }
+
+    /**
+     * Representación decimal más corta de una tasa como (valor sin escala &lt;&lt; 8 | escala),
+     * o Long.MIN_VALUE si no se recupera exacta con valor / 10^escala
+     */
+    static long sinEscala(double tasa) {
+        if (!(tasa > 0) || Double.isInfinite(tasa)) {
+            return Long.MIN_VALUE;
+        }
+        BigDecimal decimal = BigDecimal.valueOf(tasa).stripTrailingZeros();
+        if (decimal.scale() < 0) {
+            decimal = decimal.setScale(0);
+        }
+        int escala = decimal.scale();
+        if (escala > MAX_ESCALA || decimal.precision() > 15) {
+            return Long.MIN_VALUE;
+        }
+        long valor = decimal.unscaledValue().longValue();
+        if (valor / POTENCIAS_10[escala] != tasa) {
+            return Long.MIN_VALUE;
+        }
+        return valor << 8 | escala;
+    }
+
+    private static byte[] comprimir(byte[] datos) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(datos);
+            deflater.finish();
+            ByteArrayOutputStream salida = new ByteArrayOutputStream(datos.length / 2 + 64);
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                salida.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return salida.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Descomprime el bloque completo de una vez (leerlo de a un byte desde un
+     * InflaterInputStream hace una llamada nativa por byte)
+     */
+    private static byte[] descomprimir(byte[] comprimido) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(comprimido);
+            byte[] bloque = new byte[Math.max(256, comprimido.length * 4)];
+            int largo = 0;
+            while (!inflater.finished()) {
+                if (largo == bloque.length) {
+                    bloque = Arrays.copyOf(bloque, bloque.length * 2);
+                }
+                int leidos = inflater.inflate(bloque, largo, bloque.length - largo);
+                if (leidos == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new EOFException("Bloque de la serie de tasas incompleto");
+                }
+                largo += leidos;
+            }
+            return largo == bloque.length ? bloque : Arrays.copyOf(bloque, largo);
+        } catch (DataFormatException e) {
+            throw new IOException("Bloque de la serie de tasas dañado: " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Entero con signo en zigzag y 7 bits por byte (las diferencias chicas ocupan un byte)
+     */
+    private static void escribirVariable(DataOutputStream salida, long valor) throws IOException {
+        long zigzag = (valor << 1) ^ (valor >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            salida.writeByte((int) (zigzag & 0x7F) | 0x80);
+            zigzag >>>= 7;
+        }
+        salida.writeByte((int) zigzag);
+    }
+
+    private static long leerVariable(InputStream entrada) throws IOException {
+        long zigzag = 0;
+        for (int desplazamiento = 0; desplazamiento < 64; desplazamiento += 7) {
+            int b = entrada.read();
+            if (b < 0) {
+                throw new EOFException("Bloque de la serie de tasas incompleto");
+            }
+            zigzag |= (long) (b & 0x7F) << desplazamiento;
+            if ((b & 0x80) == 0) {
+                return (zigzag >>> 1) ^ -(zigzag & 1);
+            }
+        }
+        throw new IOException("Entero variable demasiado largo en la serie de tasas");
+    }
+}
@@ -0,0 +1,415 @@
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import excepciones.ApiException;
+import excepciones.ConversionException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Servicio HTTP embebido sobre {@link ConversorDeMoneda} (com.sun.net.httpserver).
+ *
+ * Endpoints (todas las respuestas en JSON):
+ * <pre>
+ * GET  /convertir?de=USD&amp;a=ARS&amp;monto=100    → {"de","a","monto","resultado"}
+ * POST /convertir/lote  [{"de","a","monto"}, ...]   → {"resultados":[...]}
+ * GET  /historial?desde=0&amp;cantidad=50          → {"total","desde","conversiones":[...]}
+ * </pre>
+ * Los errores responden {"error": mensaje}: 400 por parámetros inválidos, 413
+ * si el cuerpo del lote es demasiado grande, 422 si la conversión no es
+ * posible (moneda no soportada) y 503 si no hay tasas.
+ *
+ * Cada petición se atiende en un hilo virtual cuando la JVM los tiene
+ * (Java 21+, se detectan por reflexión porque el código compila para Java 11):
+ * una petición que espera la descarga de tasas no ocupa un hilo de plataforma.
+ * En JVM anteriores, o con server.threads &gt; 0, se usa un pool fijo.
+ */
+public class ServidorConversion implements AutoCloseable {
+    private static final int MAX_LOTE = 10_000;
+    /** Tope del cuerpo de /convertir/lote: holgado para MAX_LOTE elementos con espacios */
+    private static final long MAX_CUERPO_LOTE = 2L * 1024 * 1024;
+    private static final int MAX_PAGINA = 1_000;
+    private static final int CANTIDAD_POR_DEFECTO = 50;
+
+    static {
+        // El servidor del JDK escribe encabezados y cuerpo por separado: con Nagle, el
+        // cuerpo espera el ACK retardado del cliente (~40 ms por respuesta en keep-alive).
+        // Se lee una sola vez, al crear el primer HttpServer de la JVM.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private static final Gson gson = new GsonBuilder()
+            .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
+            .create();
+
+    private final ConversorDeMoneda conversor;
+    private final HttpServer servidor;
+    private final ExecutorService ejecutor;
+    private final boolean hilosVirtuales;
+
+    /**
+     * Crea el servidor según config.properties (server.host, server.port, server.threads, server.backlog)
+     */
+    public static ServidorConversion desdeConfiguracion(ConversorDeMoneda conversor) throws IOException {
+        String host = GestorConfiguracion.obtener("server.host");
+        return new ServidorConversion(conversor,
+            new InetSocketAddress(host == null || host.isEmpty() ? "127.0.0.1" : host,
+                GestorConfiguracion.obtenerInt("server.port", 8080)),
+            GestorConfiguracion.obtenerInt("server.threads", 0),
+            GestorConfiguracion.obtenerInt("server.backlog", 1024));
+    }
+
+    /**
+     * Constructor con configuración explícita (no lee config.properties)
+     * @param conversor Conversor compartido por todas las peticiones
+     * @param direccion Dirección de escucha (puerto 0 = uno libre)
+     * @param hilos Tamaño del pool fijo; 0 = hilos virtuales si la JVM los tiene
+     * @param backlog Conexiones pendientes de aceptar que admite el socket
+     */
+    public ServidorConversion(ConversorDeMoneda conversor, InetSocketAddress direccion, int hilos, int backlog)
+            throws IOException {
+        this.conversor = conversor;
+        ExecutorService virtuales = hilos > 0 ? null : ejecutorHilosVirtuales();
+        this.hilosVirtuales = virtuales != null;
+        this.ejecutor = virtuales != null ? virtuales
+            : Executors.newFixedThreadPool(hilos > 0 ? hilos : 4 * Runtime.getRuntime().availableProcessors(),
+                fabricaDeHilos());
+
+        this.servidor = HttpServer.create(direccion, backlog);
+        this.servidor.createContext("/convertir", this::atenderConversion);
+        this.servidor.createContext("/historial", this::atenderHistorial);
+        this.servidor.setExecutor(ejecutor);
+    }
+
+    public void iniciar() {
+        servidor.start();
+        System.out.println("🌐 Servidor de conversión escuchando en " + getUrlBase()
+            + (hilosVirtuales ? " (hilos virtuales)" : " (pool fijo)"));
+    }
+
+    public String getUrlBase() {
+        InetSocketAddress direccion = servidor.getAddress();
+        return "http://" + direccion.getHostString() + ":" + direccion.getPort();
+    }
+
+    public boolean usaHilosVirtuales() {
+        return hilosVirtuales;
+    }
+
+    /**
+     * Deja de aceptar conexiones, espera hasta un segundo a las peticiones en curso
+     * y apaga el pool
+     */
+    @Override
+    public void close() {
+        servidor.stop(1);
+        ejecutor.shutdown();
+        try {
+            ejecutor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void atenderConversion(HttpExchange intercambio) throws IOException {
+        long inicio = Metricas.inicio();
+        String ruta = intercambio.getRequestURI().getPath();
+        try {
+            if (ruta.equals("/convertir")) {
+                exigirMetodo(intercambio, "GET");
+                Map<String, String> parametros = parametros(intercambio.getRequestURI().getRawQuery());
+                String de = codigoMoneda(parametros.get("de"), "de");
+                String a = codigoMoneda(parametros.get("a"), "a");
+                double monto = monto(parametros.get("monto"));
+                double resultado = conversor.convertir(de, a, monto);
+
+                JsonObject respuesta = new JsonObject();
+                respuesta.addProperty("de", de);
+                respuesta.addProperty("a", a);
+                respuesta.addProperty("monto", monto);
+                respuesta.addProperty("resultado", resultado);
+                responder(intercambio, 200, respuesta);
+            } else if (ruta.equals("/convertir/lote")) {
+                exigirMetodo(intercambio, "POST");
+                responder(intercambio, 200, convertirLote(intercambio));
+            } else {
+                throw new ErrorHttp(404, "Ruta inexistente: " + ruta);
+            }
+        } catch (ErrorHttp e) {
+            responderError(intercambio, e.codigo, e.getMessage());
+        } catch (ConversionException e) {
+            // Sin tasas (API caída y sin caché utilizable) es un problema del servicio, no de la petición
+            responderError(intercambio, e.getCause() instanceof ApiException ? 503 : 422, e.getMessage());
+        } catch (RuntimeException e) {
+            responderError(intercambio, 500, "Error inesperado: " + e.getMessage());
+        } finally {
+            Metricas.registrarDesde(Metricas.LATENCIA_HTTP, inicio);
+        }
+    }
+
+    private JsonObject convertirLote(HttpExchange intercambio) throws IOException, ConversionException {
+        String longitud = intercambio.getRequestHeaders().getFirst("Content-Length");
+        if (longitud != null && longitudDeclarada(longitud) > MAX_CUERPO_LOTE) {
+            throw new ErrorHttp(413, "El cuerpo del lote supera " + MAX_CUERPO_LOTE + " bytes");
+        }
+        JsonArray elementos;
+        // Sin Content-Length (chunked) el tope se controla mientras se lee
+        try (Reader cuerpo = new InputStreamReader(
+                new CuerpoLimitado(intercambio.getRequestBody(), MAX_CUERPO_LOTE), StandardCharsets.UTF_8)) {
+            JsonElement raiz = JsonParser.parseReader(cuerpo);
+            if (!raiz.isJsonArray()) {
+                throw new ErrorHttp(400, "El cuerpo debe ser un arreglo JSON de {\"de\", \"a\", \"monto\"}");
+            }
+            elementos = raiz.getAsJsonArray();
+        } catch (JsonParseException | IllegalStateException e) {
+            throw new ErrorHttp(400, "JSON inválido: " + e.getMessage());
+        }
+        if (elementos.size() == 0 || elementos.size() > MAX_LOTE) {
+            throw new ErrorHttp(400, "El lote debe tener entre 1 y " + MAX_LOTE + " conversiones");
+        }
+
+        int cantidad = elementos.size();
+        String[] origenes = new String[cantidad];
+        String[] destinos = new String[cantidad];
+        double[] montos = new double[cantidad];
+        for (int i = 0; i < cantidad; i++) {
+            if (!elementos.get(i).isJsonObject()) {
+                throw new ErrorHttp(400, "Elemento " + i + " del lote: se esperaba un objeto");
+            }
+            JsonObject elemento = elementos.get(i).getAsJsonObject();
+            origenes[i] = codigoMoneda(texto(elemento, "de"), "de (elemento " + i + ")");
+            destinos[i] = codigoMoneda(texto(elemento, "a"), "a (elemento " + i + ")");
+            montos[i] = monto(texto(elemento, "monto"));
+        }
+
+        JsonArray resultados = new JsonArray(cantidad);
+        for (double resultado : conversor.convertirLote(origenes, destinos, montos)) {
+            resultados.add(resultado);
+        }
+        JsonObject respuesta = new JsonObject();
+        respuesta.add("resultados", resultados);
+        return respuesta;
+    }
+
+    private void atenderHistorial(HttpExchange intercambio) throws IOException {
+        long inicio = Metricas.inicio();
+        try {
+            exigirMetodo(intercambio, "GET");
+            Map<String, String> parametros = parametros(intercambio.getRequestURI().getRawQuery());
+            HistorialConversiones historial = conversor.getHistorial();
+            int total = historial.getTamaño();
+            int desde = entero(parametros.get("desde"), "desde", Math.max(0, total - CANTIDAD_POR_DEFECTO));
+            int cantidad = Math.min(MAX_PAGINA, entero(parametros.get("cantidad"), "cantidad", CANTIDAD_POR_DEFECTO));
+            List<Conversion> pagina = historial.obtenerPagina(desde, cantidad);
+
+            JsonObject respuesta = new JsonObject();
+            respuesta.addProperty("total", total);
+            respuesta.addProperty("desde", desde);
+            respuesta.add("conversiones", gson.toJsonTree(pagina));
+            responder(intercambio, 200, respuesta);
+        } catch (ErrorHttp e) {
+            responderError(intercambio, e.codigo, e.getMessage());
+        } catch (RuntimeException e) {
+            responderError(intercambio, 500, "Error inesperado: " + e.getMessage());
+        } finally {
+            Metricas.registrarDesde(Metricas.LATENCIA_HTTP, inicio);
+        }
+    }
+
+    private static void exigirMetodo(HttpExchange intercambio, String metodo) {
+        if (!intercambio.getRequestMethod().equalsIgnoreCase(metodo)) {
+            intercambio.getResponseHeaders().set("Allow", metodo);
+            throw new ErrorHttp(405, "Método no permitido; use " + metodo);
+        }
+    }
+
+    /**
+     * Código de moneda de tres letras, en mayúsculas (mismas reglas que ValidadorEntrada)
+     */
+    private static String codigoMoneda(String valor, String nombre) {
+        if (valor == null || valor.isEmpty()) {
+            throw new ErrorHttp(400, "Falta el parámetro " + nombre);
+        }
+        int clave = RegistroMonedas.claveFlexible(valor, 0, valor.length());
+        if (clave < 0) {
+            throw new ErrorHttp(400, "Código de moneda inválido en " + nombre + ": " + valor);
+        }
+        return RegistroMonedas.codigo(clave);
+    }
+
+    private static double monto(String valor) {
+        if (valor == null || valor.isEmpty()) {
+            throw new ErrorHttp(400, "Falta el parámetro monto");
+        }
+        double monto;
+        try {
+            monto = Double.parseDouble(valor.trim());
+        } catch (NumberFormatException e) {
+            throw new ErrorHttp(400, "Monto inválido: " + valor);
+        }
+        if (!(monto > 0) || Double.isInfinite(monto)) {
+            throw new ErrorHttp(400, "El monto debe ser mayor que cero: " + valor);
+        }
+        return monto;
+    }
+
+    private static int entero(String valor, String nombre, int porDefecto) {
+        if (valor == null || valor.isEmpty()) {
+            return porDefecto;
+        }
+        try {
+            int numero = Integer.parseInt(valor.trim());
+            if (numero < 0) {
+                throw new ErrorHttp(400, "El parámetro " + nombre + " no puede ser negativo");
+            }
+            return numero;
+        } catch (NumberFormatException e) {
+            throw new ErrorHttp(400, "El parámetro " + nombre + " debe ser un entero: " + valor);
+        }
+    }
+
+    private static long longitudDeclarada(String valor) {
+        try {
+            return Long.parseLong(valor.trim());
+        } catch (NumberFormatException e) {
+            throw new ErrorHttp(400, "Content-Length inválido: " + valor);
+        }
+    }
+
+    private static String texto(JsonObject objeto, String campo) {
+        JsonElement valor = objeto.get(campo);
+        return valor == null || valor.isJsonNull() || !valor.isJsonPrimitive() ? null : valor.getAsString();
+    }
+
+    private static Map<String, String> parametros(String consulta) {
+        Map<String, String> parametros = new HashMap<>();
+        if (consulta == null || consulta.isEmpty()) {
+            return parametros;
+        }
+        for (String par : consulta.split("&")) {
+            int igual = par.indexOf('=');
+            if (igual > 0) {
+                try {
+                    parametros.put(URLDecoder.decode(par.substring(0, igual), StandardCharsets.UTF_8),
+                        URLDecoder.decode(par.substring(igual + 1), StandardCharsets.UTF_8));
+                } catch (IllegalArgumentException e) {
+                    // Secuencia % incompleta o con dígitos no hexadecimales
+                    throw new ErrorHttp(400, "Parámetro mal codificado: " + par);
+                }
+            }
+        }
+        return parametros;
+    }
+
+    private static void responderError(HttpExchange intercambio, int codigo, String mensaje) throws IOException {
+        JsonObject error = new JsonObject();
+        error.addProperty("error", mensaje);
+        responder(intercambio, codigo, error);
+    }
+
+    private static void responder(HttpExchange intercambio, int codigo, JsonObject cuerpo) throws IOException {
+        Metricas.incrementar("http.respuestas", codigo);
+        byte[] bytes = gson.toJson(cuerpo).getBytes(StandardCharsets.UTF_8);
+        intercambio.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        intercambio.sendResponseHeaders(codigo, bytes.length);
+        try (OutputStream salida = intercambio.getResponseBody()) {
+            salida.write(bytes);
+        }
+    }
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor() si la JVM lo tiene (Java 21+), si no null
+     */
+    private static ExecutorService ejecutorHilosVirtuales() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static ThreadFactory fabricaDeHilos() {
+        AtomicInteger contador = new AtomicInteger();
+        return tarea -> {
+            Thread hilo = new Thread(tarea, "servidor-conversion-" + contador.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        };
+    }
+
+    /**
+     * Cuerpo de la petición que corta con 413 al pasar el tope, antes de que
+     * el parser termine de leer (y de armar en memoria) un lote gigante
+     */
+    private static final class CuerpoLimitado extends FilterInputStream {
+        private long restantes;
+
+        CuerpoLimitado(InputStream entrada, long maximo) {
+            super(entrada);
+            this.restantes = maximo;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                consumir(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] destino, int desde, int cantidad) throws IOException {
+            int leidos = super.read(destino, desde, cantidad);
+            if (leidos > 0) {
+                consumir(leidos);
+            }
+            return leidos;
+        }
+
+        private void consumir(int bytes) {
+            restantes -= bytes;
+            if (restantes < 0) {
+                throw new ErrorHttp(413, "El cuerpo del lote supera " + MAX_CUERPO_LOTE + " bytes");
+            }
+        }
+    }
+
+    /**
+     * Error con código de estado HTTP (parámetros inválidos, ruta o método incorrectos)
+     */
+    private static final class ErrorHttp extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final int codigo;
+
+        ErrorHttp(int codigo, String mensaje) {
+            super(mensaje);
+            this.codigo = codigo;
+        }
+    }
+}
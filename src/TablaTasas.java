@@ -0,0 +1,291 @@
+import com.google.gson.stream.JsonReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * Instantánea inmutable de tasas de cambio.
+ * Se construye una sola vez por descarga leyendo el JSON de la API en modo
+ * streaming; cada código de moneda se asigna a un índice entero pequeño y las
+ * tasas se guardan en un double[], de modo que una conversión es solo
+ * indexar arreglos, sin asignar memoria.
+ *
+ * La tabla puede guardarse en disco en un formato binario compacto
+ * ({@link #guardar(Path)} / {@link #leer(Path)}) para arrancar sin esperar a la API.
+ */
+public final class TablaTasas {
+    private static final int MAGIA_ARCHIVO = 0x54415341; // "TASA"
+    private static final short VERSION_ARCHIVO = 1;
+
+    private final String monedaBase;
+    private final long actualizacionUnix;
+    // Momento en que se descargó de la API (epoch ms), para medir su antigüedad
+    private final long obtenidaMillis;
+    private final String[] codigos;
+    private final double[] tasas;
+    // Código empaquetado (0..17575) -> índice + 1; 0 significa "no soportada"
+    private final short[] indicePorCodigo;
+    // Factores precalculados para los pares frecuentes (null = sin matriz)
+    private final MatrizTasasCruzadas matrizCruzada;
+
+    private TablaTasas(String monedaBase, long actualizacionUnix, long obtenidaMillis,
+                       String[] codigos, double[] tasas) {
+        this.monedaBase = monedaBase;
+        this.actualizacionUnix = actualizacionUnix;
+        this.obtenidaMillis = obtenidaMillis;
+        this.codigos = codigos;
+        this.tasas = tasas;
+        this.indicePorCodigo = new short[RegistroMonedas.CLAVES];
+        for (int i = 0; i < codigos.length; i++) {
+            int clave = RegistroMonedas.clave(codigos[i]);
+            if (clave >= 0) {
+                codigos[i] = RegistroMonedas.codigo(clave);
+                indicePorCodigo[clave] = (short) (i + 1);
+            }
+        }
+        this.matrizCruzada = null;
+    }
+
+    /**
+     * Copia que comparte los arreglos de otra tabla y agrega la matriz cruzada
+     */
+    private TablaTasas(TablaTasas base, String[] monedasFrecuentes) {
+        this.monedaBase = base.monedaBase;
+        this.actualizacionUnix = base.actualizacionUnix;
+        this.obtenidaMillis = base.obtenidaMillis;
+        this.codigos = base.codigos;
+        this.tasas = base.tasas;
+        this.indicePorCodigo = base.indicePorCodigo;
+        this.matrizCruzada = MatrizTasasCruzadas.construir(base, monedasFrecuentes);
+    }
+
+    /**
+     * Devuelve una tabla equivalente con la matriz de tasas cruzadas
+     * precalculada para las monedas indicadas: las conversiones entre ellas
+     * pasan a ser una sola multiplicación
+     * @param monedasFrecuentes Códigos de las monedas frecuentes
+     * @return Una tabla nueva (esta no se modifica)
+     */
+    public TablaTasas conMatrizCruzada(String[] monedasFrecuentes) {
+        return new TablaTasas(this, monedasFrecuentes);
+    }
+
+    /**
+     * @return La matriz cruzada, o null si la tabla no tiene una
+     */
+    public MatrizTasasCruzadas getMatrizCruzada() {
+        return matrizCruzada;
+    }
+
+    /**
+     * Construye la tabla a partir de la respuesta JSON de la API
+     * @param json Cuerpo de la respuesta de /latest/{base}
+     * @return La tabla de tasas
+     * @throws IOException si el JSON no es válido o no contiene conversion_rates
+     */
+    public static TablaTasas desdeJson(String json) throws IOException {
+        return desdeJson(new StringReader(json));
+    }
+
+    /**
+     * Construye la tabla leyendo el JSON de la API en modo streaming
+     * @param lector Fuente del JSON
+     * @return La tabla de tasas
+     * @throws IOException si el JSON no es válido o no contiene conversion_rates
+     */
+    public static TablaTasas desdeJson(Reader lector) throws IOException {
+        String base = null;
+        long actualizacion = 0;
+        String[] codigos = null;
+        double[] tasas = null;
+        int cantidad = 0;
+
+        try (JsonReader reader = new JsonReader(lector)) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String campo = reader.nextName();
+                switch (campo) {
+                    case "base_code":
+                        base = reader.nextString();
+                        break;
+                    case "time_last_update_unix":
+                        actualizacion = reader.nextLong();
+                        break;
+                    case "result":
+                        String resultado = reader.nextString();
+                        if (!"success".equals(resultado)) {
+                            throw new IOException("La API respondió con resultado: " + resultado);
+                        }
+                        break;
+                    case "conversion_rates":
+                        codigos = new String[192];
+                        tasas = new double[192];
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            if (cantidad == codigos.length) {
+                                codigos = Arrays.copyOf(codigos, cantidad * 2);
+                                tasas = Arrays.copyOf(tasas, cantidad * 2);
+                            }
+                            codigos[cantidad] = reader.nextName();
+                            tasas[cantidad] = reader.nextDouble();
+                            cantidad++;
+                        }
+                        reader.endObject();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new IOException("JSON de tasas inválido: " + e.getMessage(), e);
+        }
+
+        if (codigos == null) {
+            throw new IOException("La respuesta no contiene conversion_rates");
+        }
+        return new TablaTasas(base, actualizacion, System.currentTimeMillis(),
+            Arrays.copyOf(codigos, cantidad), Arrays.copyOf(tasas, cantidad));
+    }
+
+    /**
+     * Guarda la tabla en disco de forma atómica (archivo temporal + reemplazo)
+     * @param ruta Ruta del archivo
+     * @throws IOException si no se pudo escribir
+     */
+    public void guardar(Path ruta) throws IOException {
+        Path destino = ruta.toAbsolutePath();
+        Files.createDirectories(destino.getParent());
+        Path temporal = destino.resolveSibling(destino.getFileName() + ".tmp");
+
+        try (FileOutputStream archivo = new FileOutputStream(temporal.toFile());
+             DataOutputStream salida = new DataOutputStream(new BufferedOutputStream(archivo))) {
+            salida.writeInt(MAGIA_ARCHIVO);
+            salida.writeShort(VERSION_ARCHIVO);
+            salida.writeLong(obtenidaMillis);
+            salida.writeLong(actualizacionUnix);
+            salida.writeUTF(monedaBase == null ? "" : monedaBase);
+            salida.writeShort(codigos.length);
+            for (int i = 0; i < codigos.length; i++) {
+                salida.writeUTF(codigos[i]);
+                salida.writeDouble(tasas[i]);
+            }
+            salida.flush();
+            archivo.getFD().sync();
+        }
+
+        try {
+            Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Lee una tabla guardada con {@link #guardar(Path)}
+     * @param ruta Ruta del archivo
+     * @return La tabla, con el momento de descarga original
+     * @throws IOException si el archivo no existe o no tiene el formato esperado
+     */
+    public static TablaTasas leer(Path ruta) throws IOException {
+        try (DataInputStream entrada = new DataInputStream(new BufferedInputStream(Files.newInputStream(ruta)))) {
+            if (entrada.readInt() != MAGIA_ARCHIVO || entrada.readShort() != VERSION_ARCHIVO) {
+                throw new IOException("No es un archivo de tasas válido: " + ruta);
+            }
+            long obtenida = entrada.readLong();
+            long actualizacion = entrada.readLong();
+            String base = entrada.readUTF();
+            int cantidad = entrada.readUnsignedShort();
+            String[] codigos = new String[cantidad];
+            double[] tasas = new double[cantidad];
+            for (int i = 0; i < cantidad; i++) {
+                codigos[i] = entrada.readUTF();
+                tasas[i] = entrada.readDouble();
+            }
+            return new TablaTasas(base.isEmpty() ? null : base, actualizacion, obtenida, codigos, tasas);
+        }
+    }
+
+    /**
+     * Reconstruye una tabla guardada en otro formato (p. ej. {@link SerieTasas});
+     * los arreglos pasan a ser de la tabla
+     */
+    static TablaTasas crear(String monedaBase, long actualizacionUnix, long obtenidaMillis,
+                            String[] codigos, double[] tasas) {
+        return new TablaTasas(monedaBase, actualizacionUnix, obtenidaMillis, codigos, tasas);
+    }
+
+    /**
+     * Obtiene el índice de una moneda sin asignar memoria
+     * @param codigo Código ISO de 3 letras mayúsculas
+     * @return El índice en la tabla, o -1 si la moneda no está soportada
+     */
+    public int indice(String codigo) {
+        return indiceDeClave(RegistroMonedas.clave(codigo));
+    }
+
+    /**
+     * Obtiene el índice de una moneda ya empaquetada
+     * @param clave Clave de {@link RegistroMonedas} (o -1)
+     * @return El índice en la tabla, o -1 si la moneda no está soportada
+     */
+    public int indiceDeClave(int clave) {
+        return clave < 0 ? -1 : indicePorCodigo[clave] - 1;
+    }
+
+    /**
+     * Factor de conversión entre dos monedas (unidades de destino por unidad
+     * de origen); para los pares frecuentes sale de la matriz cruzada
+     * @param origen Índice de la moneda origen
+     * @param destino Índice de la moneda destino
+     * @return tasaDestino / tasaOrigen
+     */
+    public double factor(int origen, int destino) {
+        if (matrizCruzada != null) {
+            double factor = matrizCruzada.factor(origen, destino);
+            if (factor == factor) {
+                return factor;
+            }
+        }
+        return tasas[destino] / tasas[origen];
+    }
+
+    /**
+     * Tasa de una moneda respecto de la moneda base
+     * @param indice Índice de la moneda
+     * @return La tasa
+     */
+    public double tasa(int indice) {
+        return tasas[indice];
+    }
+
+    /**
+     * Código de la moneda en un índice dado
+     * @param indice Índice de la moneda
+     * @return El código ISO
+     */
+    public String codigo(int indice) {
+        return codigos[indice];
+    }
+
+    /**
+     * Cantidad de monedas en la tabla
+     */
+    public int tamaño() {
+        return codigos.length;
+    }
+
+    public String getMonedaBase() { return monedaBase; }
+    public long getActualizacionUnix() { return actualizacionUnix; }
+    public long getObtenidaMillis() { return obtenidaMillis; }
+}
@@ -86,10 +86,11 @@ public class ValidadorEntrada {
         
         while (intentos < MAX_INTENTOS) {
             System.out.print(mensaje);
-            String codigo = scanner.nextLine().trim().toUpperCase();
+            String linea = scanner.nextLine();
+            int clave = RegistroMonedas.claveFlexible(linea, 0, linea.length());
             
-            if (codigo.matches("[A-Z]{3}")) {
-                return codigo;
+            if (clave >= 0) {
+                return RegistroMonedas.codigo(clave);
             }
             
             System.out.println("⚠️  Código inválido. Debe ser de 3 letras (ej: USD, ARS, BRL)");
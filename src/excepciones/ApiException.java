@@ -5,6 +5,8 @@ package excepciones;
  * Se lanza cuando hay problemas de conexión, autenticación o respuesta de la API.
  */
 public class ApiException extends ConversorException {
+    private static final long serialVersionUID = 1L;
+
     private final int codigoEstado;
 
     /**
@@ -40,7 +42,7 @@ public class ApiException extends ConversorException {
      * @return true si el error es temporal y se puede reintentar
      */
     public boolean esRecuperable() {
-        // Errores 5xx del servidor son recuperables
-        return codigoEstado >= 500 && codigoEstado < 600;
+        // Errores 5xx del servidor y 429 (demasiadas peticiones) son recuperables
+        return codigoEstado == 429 || (codigoEstado >= 500 && codigoEstado < 600);
     }
 }
@@ -5,6 +5,7 @@ package excepciones;
  * Se lanza cuando hay problemas con las monedas, tasas o cálculos.
  */
 public class ConversionException extends ConversorException {
+    private static final long serialVersionUID = 1L;
     
     /**
      * Constructor con mensaje de error
@@ -5,6 +5,7 @@ package excepciones;
  * Proporciona una jerarquía de excepciones personalizada para mejor manejo de errores.
  */
 public abstract class ConversorException extends Exception {
+    private static final long serialVersionUID = 1L;
     
     /**
      * Constructor con mensaje de error
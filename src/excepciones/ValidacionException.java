@@ -5,6 +5,7 @@ package excepciones;
  * Se lanza cuando los datos ingresados no cumplen con los requisitos.
  */
 public class ValidacionException extends ConversorException {
+    private static final long serialVersionUID = 1L;
     
     /**
      * Constructor con mensaje de error
@@ -0,0 +1,221 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Agregados por hora y por día del historial: totales de cada período
+ * contra un recorrido completo, ida y vuelta por archivo, y al cargar el
+ * historial, reutilización de los agregados guardados si su última
+ * conversión cubierta coincide o recálculo si quedaron viejos.
+ */
+class AgregadosHistorialTest {
+    private static final LocalDateTime INICIO = LocalDateTime.of(2024, 3, 30, 22, 0);
+    private static final String[][] PARES = {{"USD", "ARS"}, {"EUR", "ARS"}, {"USD", "BRL"}};
+
+    @TempDir
+    Path directorio;
+
+    /**
+     * Conversiones de tres pares cada 7 minutos (cruzan horas, días y un fin de mes)
+     */
+    private static List<Conversion> conversiones(int cantidad, String prefijo) {
+        Random aleatorio = new Random(11);
+        List<Conversion> conversiones = new ArrayList<>();
+        for (int i = 0; i < cantidad; i++) {
+            String[] par = PARES[aleatorio.nextInt(PARES.length)];
+            double origen = 1 + aleatorio.nextInt(4000) / 4.0;
+            conversiones.add(new Conversion(prefijo + i, INICIO.plusMinutes(7L * i), par[0], par[1],
+                origen, origen * (900 + aleatorio.nextInt(100) / 4.0)));
+        }
+        return conversiones;
+    }
+
+    /**
+     * Agregados esperados recorriendo todo: inicio del período -> {cantidad, origen, destino}
+     */
+    private static Map<LocalDateTime, double[]> esperados(List<Conversion> conversiones, String origen, String destino,
+                                                         ChronoUnit unidad) {
+        Map<LocalDateTime, double[]> periodos = new TreeMap<>();
+        for (Conversion conversion : conversiones) {
+            if ((origen == null || origen.equals(conversion.getMonedaOrigen()))
+                    && (destino == null || destino.equals(conversion.getMonedaDestino()))) {
+                double[] periodo = periodos.computeIfAbsent(conversion.getTimestamp().truncatedTo(unidad), inicio -> new double[3]);
+                periodo[0]++;
+                periodo[1] += conversion.getMontoOrigen();
+                periodo[2] += conversion.getMontoDestino();
+            }
+        }
+        return periodos;
+    }
+
+    private static void assertMismosPeriodos(Map<LocalDateTime, double[]> esperados,
+                                             List<AgregadosHistorial.Periodo> periodos) {
+        assertEquals(esperados.size(), periodos.size());
+        int i = 0;
+        for (Map.Entry<LocalDateTime, double[]> esperado : esperados.entrySet()) {
+            AgregadosHistorial.Periodo periodo = periodos.get(i++);
+            double[] totales = esperado.getValue();
+            assertEquals(esperado.getKey(), periodo.getInicio());
+            assertEquals((long) totales[0], periodo.getCantidad());
+            assertEquals(totales[1], periodo.getTotalOrigen(), totales[1] * 1e-12);
+            assertEquals(totales[2], periodo.getTotalDestino(), totales[2] * 1e-12);
+            assertEquals(totales[2] / totales[1], periodo.getVwap(), 1e-9);
+        }
+    }
+
+    private static void assertComoRecorrido(List<Conversion> conversiones, AgregadosHistorial agregados) {
+        String[][] filtros = {{"USD", "ARS"}, {"EUR", "ARS"}, {null, "ARS"}, {"USD", null}, {null, null}};
+        for (String[] filtro : filtros) {
+            assertMismosPeriodos(esperados(conversiones, filtro[0], filtro[1], ChronoUnit.HOURS),
+                agregados.consultar(filtro[0], filtro[1], AgregadosHistorial.Granularidad.HORA, null, null));
+            assertMismosPeriodos(esperados(conversiones, filtro[0], filtro[1], ChronoUnit.DAYS),
+                agregados.consultar(filtro[0], filtro[1], AgregadosHistorial.Granularidad.DIA, null, null));
+        }
+    }
+
+    private static AgregadosHistorial agregadosDe(List<Conversion> conversiones) {
+        AgregadosHistorial agregados = new AgregadosHistorial();
+        for (Conversion conversion : conversiones) {
+            agregados.agregar(conversion);
+        }
+        return agregados;
+    }
+
+    private String ruta() {
+        return directorio.resolve("historial.json").toString();
+    }
+
+    private Path rutaAgregados() {
+        return directorio.resolve("historial.agregados.dat");
+    }
+
+    private void registrar(List<Conversion> conversiones) {
+        DiarioHistorial diario = new DiarioHistorial(ruta(), DiarioHistorial.PoliticaSincronizacion.NUNCA, 1000, 10_000);
+        diario.registrar(conversiones);
+        diario.cerrar();
+    }
+
+    private HistorialConversiones abrir() {
+        return new HistorialConversiones(
+            new DiarioHistorial(ruta(), DiarioHistorial.PoliticaSincronizacion.NUNCA, 1000, 10_000),
+            new HistorialConversiones.Opciones().autoGuardar(true));
+    }
+
+    @Test
+    void sumaCadaHoraYCadaDiaComoUnRecorridoCompleto() {
+        List<Conversion> conversiones = conversiones(2000, "c");
+        AgregadosHistorial agregados = agregadosDe(conversiones);
+
+        assertEquals(2000, agregados.getConversiones());
+        assertComoRecorrido(conversiones, agregados);
+
+        // Un rango toma los períodos que contienen desde y hasta - 1
+        List<AgregadosHistorial.Periodo> dias = agregados.consultar("USD", "ARS", AgregadosHistorial.Granularidad.DIA,
+            LocalDateTime.of(2024, 3, 31, 12, 0), LocalDateTime.of(2024, 4, 2, 0, 0));
+        assertEquals(LocalDateTime.of(2024, 3, 31, 0, 0), dias.get(0).getInicio());
+        assertEquals(LocalDateTime.of(2024, 4, 1, 0, 0), dias.get(dias.size() - 1).getInicio());
+        assertEquals(2, dias.size());
+        List<AgregadosHistorial.Periodo> horas = agregados.consultar(null, null, AgregadosHistorial.Granularidad.HORA,
+            INICIO.plusHours(3), INICIO.plusHours(5));
+        assertEquals(List.of(INICIO.plusHours(3), INICIO.plusHours(4)),
+            List.of(horas.get(0).getInicio(), horas.get(1).getInicio()));
+        assertEquals(0, agregados.consultar("GBP", null, AgregadosHistorial.Granularidad.DIA, null, null).size());
+    }
+
+    @Test
+    void guardaYLeeLosMismosAgregados() throws IOException {
+        List<Conversion> conversiones = conversiones(500, "c");
+        AgregadosHistorial agregados = agregadosDe(conversiones);
+        agregados.registrarArchivadas(120);
+
+        agregados.guardar(rutaAgregados(), "c379");
+        AgregadosHistorial leidos = AgregadosHistorial.leer(rutaAgregados());
+
+        assertEquals(500, leidos.getConversiones());
+        assertEquals(120, leidos.getArchivadas());
+        assertEquals(380, leidos.getCubiertas());
+        assertEquals("c379", leidos.getUltimaCubierta());
+        assertComoRecorrido(conversiones, leidos);
+
+        new AgregadosHistorial().guardar(rutaAgregados(), null);
+        assertNull(AgregadosHistorial.leer(rutaAgregados()).getUltimaCubierta());
+        Files.write(rutaAgregados(), "no son agregados".getBytes(StandardCharsets.UTF_8));
+        assertThrows(IOException.class, () -> AgregadosHistorial.leer(rutaAgregados()));
+    }
+
+    @Test
+    void alCargarReutilizaLosAgregadosSiCoincideLaUltimaCubierta() throws IOException {
+        List<Conversion> todas = conversiones(300, "c");
+        registrar(todas);
+        // Agregados de las primeras 200 con montos duplicados: si se reutilizan se notan en los totales
+        List<Conversion> duplicadas = new ArrayList<>();
+        for (Conversion conversion : todas.subList(0, 200)) {
+            duplicadas.add(new Conversion(conversion.getId(), conversion.getTimestamp(), conversion.getMonedaOrigen(),
+                conversion.getMonedaDestino(), 2 * conversion.getMontoOrigen(), 2 * conversion.getMontoDestino()));
+        }
+        agregadosDe(duplicadas).guardar(rutaAgregados(), "c199");
+
+        HistorialConversiones historial = abrir();
+
+        // Se reutilizaron las 200 cubiertas y solo se sumaron las 100 siguientes
+        List<Conversion> esperadas = new ArrayList<>(duplicadas);
+        esperadas.addAll(todas.subList(200, 300));
+        assertMismosPeriodos(esperados(esperadas, null, null, ChronoUnit.DAYS),
+            historial.obtenerAgregados(null, null, AgregadosHistorial.Granularidad.DIA, null, null));
+        assertMismosPeriodos(esperados(esperadas, "USD", "ARS", ChronoUnit.HOURS),
+            historial.obtenerAgregados("USD", "ARS", AgregadosHistorial.Granularidad.HORA, null, null));
+
+        // Al cerrar quedan guardados cubriendo todo el historial
+        historial.cerrar();
+        AgregadosHistorial guardados = AgregadosHistorial.leer(rutaAgregados());
+        assertEquals(300, guardados.getCubiertas());
+        assertEquals("c299", guardados.getUltimaCubierta());
+    }
+
+    @Test
+    void alCargarRecalculaLosAgregadosViejos() throws IOException {
+        List<Conversion> anteriores = conversiones(200, "c");
+        List<Conversion> actuales = conversiones(300, "x");
+        registrar(actuales);
+
+        // Cubren 200, pero la conversión 199 del historial es otra (la instantánea se reemplazó)
+        agregadosDe(anteriores).guardar(rutaAgregados(), "c199");
+        HistorialConversiones historial = abrir();
+        assertComoRecorridoDelHistorial(actuales, historial);
+        historial.cerrar();
+
+        // Cubren más conversiones de las que tiene el historial
+        agregadosDe(conversiones(400, "x")).guardar(rutaAgregados(), "x399");
+        historial = abrir();
+        assertComoRecorridoDelHistorial(actuales, historial);
+        historial.cerrar();
+
+        // Archivo dañado
+        Files.write(rutaAgregados(), new byte[] {0x41, 0x47});
+        historial = abrir();
+        assertComoRecorridoDelHistorial(actuales, historial);
+        historial.cerrar();
+        assertEquals("x299", AgregadosHistorial.leer(rutaAgregados()).getUltimaCubierta());
+    }
+
+    private static void assertComoRecorridoDelHistorial(List<Conversion> conversiones, HistorialConversiones historial) {
+        assertMismosPeriodos(esperados(conversiones, null, null, ChronoUnit.DAYS),
+            historial.obtenerAgregados(null, null, AgregadosHistorial.Granularidad.DIA, null, null));
+        assertMismosPeriodos(esperados(conversiones, "EUR", "ARS", ChronoUnit.HOURS),
+            historial.obtenerAgregados("EUR", "ARS", AgregadosHistorial.Granularidad.HORA, null, null));
+    }
+}
@@ -0,0 +1,246 @@
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * AlmacenConversiones bajo carga: varios hilos anexando (de a una y por
+ * lotes) mientras otros leen instantáneas, las posiciones reservadas que
+ * se escriben tarde o nunca, y el historial sin guardado automático
+ * anexando mientras se limpia.
+ */
+@Timeout(60)
+class AlmacenConversionesConcurrenciaTest {
+    private static final int ESCRITORES = 4;
+    private static final int LECTORES = 2;
+    private static final int POR_ESCRITOR = 40_000;
+    private static final int LOTE = 16;
+    private static final LocalDateTime FECHA = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    @TempDir
+    Path directorio;
+
+    private static Conversion conversion(String id) {
+        return new Conversion(id, FECHA, "USD", "ARS", 1, 970.25);
+    }
+
+    @Test
+    void escrituraYLecturaConcurrentesNoPierdenNiExponenNulos() throws Exception {
+        AlmacenConversiones almacen = new AlmacenConversiones();
+        Queue<Throwable> errores = new ConcurrentLinkedQueue<>();
+        CountDownLatch largada = new CountDownLatch(1);
+        AtomicBoolean escribiendo = new AtomicBoolean(true);
+
+        List<Thread> escritores = new ArrayList<>();
+        for (int e = 0; e < ESCRITORES; e++) {
+            int escritor = e;
+            escritores.add(iniciar(errores, () -> {
+                largada.await();
+                for (int i = 0; i < POR_ESCRITOR; ) {
+                    // Los escritores pares usan también agregarTodas
+                    if (escritor % 2 == 0 && i % (LOTE * 4) == 0 && i + LOTE <= POR_ESCRITOR) {
+                        Conversion[] lote = new Conversion[LOTE];
+                        for (int j = 0; j < LOTE; j++) {
+                            lote[j] = conversion(escritor + "-" + (i + j));
+                        }
+                        almacen.agregarTodas(Arrays.asList(lote));
+                        i += LOTE;
+                    } else {
+                        almacen.agregar(conversion(escritor + "-" + i));
+                        i++;
+                    }
+                }
+            }));
+        }
+
+        List<Thread> lectores = new ArrayList<>();
+        for (int l = 0; l < LECTORES; l++) {
+            lectores.add(iniciar(errores, () -> {
+                largada.await();
+                List<Conversion> anterior = almacen.instantanea();
+                int leidas = 0;
+                do {
+                    List<Conversion> actual = almacen.instantanea();
+                    assertTrue(actual.size() >= anterior.size(),
+                        "instantánea decreciente: " + anterior.size() + " -> " + actual.size());
+                    // Lo ya visto no cambia entre instantáneas
+                    if (!anterior.isEmpty()) {
+                        int muestra = anterior.size() - 1;
+                        assertSame(anterior.get(muestra), actual.get(muestra));
+                    }
+                    for (; leidas < actual.size(); leidas++) {
+                        if (actual.get(leidas) == null) {
+                            throw new AssertionError("posición " + leidas + " null");
+                        }
+                    }
+                    anterior = actual;
+                } while (escribiendo.get() || leidas < almacen.tamaño());
+            }));
+        }
+
+        largada.countDown();
+        for (Thread escritor : escritores) {
+            escritor.join();
+        }
+        escribiendo.set(false);
+        for (Thread lector : lectores) {
+            lector.join();
+        }
+
+        assertTrue(errores.isEmpty(), "errores: " + errores);
+        List<Conversion> todas = almacen.instantanea();
+        assertEquals(ESCRITORES * POR_ESCRITOR, todas.size());
+        Set<String> ids = new HashSet<>();
+        for (Conversion conversion : todas) {
+            ids.add(conversion.getId());
+        }
+        assertEquals(ESCRITORES * POR_ESCRITOR, ids.size(), "anexados perdidos o duplicados");
+        for (int e = 0; e < ESCRITORES; e++) {
+            assertTrue(ids.contains(e + "-0") && ids.contains(e + "-" + (POR_ESCRITOR - 1)));
+        }
+    }
+
+    @Test
+    void unaPosicionReservadaYNuncaEscritaFallaAlLeerseEnLugarDeColgarse() {
+        long espera = TimeUnit.MILLISECONDS.toNanos(50);
+        AlmacenConversiones almacen = new AlmacenConversiones(espera);
+        almacen.agregar(conversion("escrita"));
+        almacen.reservar(1);
+
+        List<Conversion> instantanea = almacen.instantanea();
+        assertEquals(2, instantanea.size());
+        assertEquals("escrita", instantanea.get(0).getId());
+        long inicio = System.nanoTime();
+        IllegalStateException error = assertThrows(IllegalStateException.class, () -> instantanea.get(1));
+        assertTrue(System.nanoTime() - inicio >= espera, "falló antes de la espera máxima");
+        assertTrue(error.getMessage().contains("nunca escrita"), error.getMessage());
+    }
+
+    @Test
+    void unaLecturaEsperaALaEscrituraTardiaDeUnaPosicionReservada() throws Exception {
+        AlmacenConversiones almacen = new AlmacenConversiones(TimeUnit.SECONDS.toNanos(10));
+        long posicion = almacen.reservar(1);
+        Conversion tardia = conversion("tardia");
+        Queue<Throwable> errores = new ConcurrentLinkedQueue<>();
+        Thread escritor = iniciar(errores, () -> {
+            Thread.sleep(50);
+            almacen.escribir(posicion, tardia);
+        });
+
+        assertSame(tardia, almacen.instantanea().get((int) posicion));
+        escritor.join();
+        assertTrue(errores.isEmpty(), "errores: " + errores);
+    }
+
+    @Test
+    void rechazaNulosSinReservarPosiciones() {
+        AlmacenConversiones almacen = new AlmacenConversiones();
+
+        assertThrows(IllegalArgumentException.class, () -> almacen.agregar(null));
+        assertThrows(IllegalArgumentException.class,
+            () -> almacen.agregarTodas(Arrays.asList(conversion("a"), null)));
+
+        assertEquals(0, almacen.tamaño());
+        almacen.agregar(conversion("b"));
+        assertEquals("b", almacen.instantanea().get(0).getId());
+    }
+
+    @Test
+    void limpiarMientrasSeAnexaSinGuardadoAutomaticoNoPierdeConversiones() throws Exception {
+        DiarioHistorial diario = new DiarioHistorial(directorio.resolve("historial.json").toString(),
+            DiarioHistorial.PoliticaSincronizacion.NUNCA, 1000, 10_000);
+        HistorialConversiones historial = new HistorialConversiones(diario, new HistorialConversiones.Opciones());
+        int porEscritor = 20_000;
+        Queue<Throwable> errores = new ConcurrentLinkedQueue<>();
+        CountDownLatch largada = new CountDownLatch(1);
+        AtomicBoolean escribiendo = new AtomicBoolean(true);
+
+        List<Thread> escritores = new ArrayList<>();
+        for (int e = 0; e < ESCRITORES; e++) {
+            int escritor = e;
+            escritores.add(iniciar(errores, () -> {
+                largada.await();
+                for (int i = 1; i <= porEscritor; i++) {
+                    // El monto identifica al escritor y el orden
+                    historial.agregarConversion("USD", "ARS", escritor * 1_000_000 + i, 970.25);
+                }
+            }));
+        }
+        Thread limpiador = iniciar(errores, () -> {
+            largada.await();
+            while (escribiendo.get()) {
+                historial.limpiar();
+                Thread.sleep(1);
+            }
+        });
+
+        largada.countDown();
+        for (Thread escritor : escritores) {
+            escritor.join();
+        }
+        escribiendo.set(false);
+        limpiador.join();
+        assertTrue(errores.isEmpty(), "errores: " + errores);
+
+        // De cada escritor queda un sufijo sin huecos de lo que anexó
+        List<Conversion> quedan = historial.obtenerConversiones();
+        Map<Integer, List<Integer>> porEscritorQuedan = new HashMap<>();
+        for (Conversion conversion : quedan) {
+            int monto = (int) conversion.getMontoOrigen();
+            porEscritorQuedan.computeIfAbsent(monto / 1_000_000, e -> new ArrayList<>()).add(monto % 1_000_000);
+        }
+        for (Map.Entry<Integer, List<Integer>> entrada : porEscritorQuedan.entrySet()) {
+            List<Integer> orden = entrada.getValue();
+            assertEquals(porEscritor, (int) orden.get(orden.size() - 1), "escritor " + entrada.getKey());
+            for (int i = 1; i < orden.size(); i++) {
+                assertEquals(orden.get(i - 1) + 1, (int) orden.get(i), "hueco del escritor " + entrada.getKey());
+            }
+        }
+        // El índice y los agregados cubren exactamente lo que quedó, en posiciones válidas
+        assertEquals(quedan.size(), historial.getTamaño());
+        assertEquals(quedan.size(), historial.resumir(null, null, null, null).getCantidad());
+        List<Conversion> indexadas = historial.consultar(null, null, null, null, 0, Integer.MAX_VALUE);
+        assertEquals(new HashSet<>(quedan), new HashSet<>(indexadas));
+        long agregadas = 0;
+        for (AgregadosHistorial.Periodo periodo : historial.obtenerAgregados(null, null,
+                AgregadosHistorial.Granularidad.DIA, null, null)) {
+            agregadas += periodo.getCantidad();
+        }
+        assertEquals(quedan.size(), agregadas);
+        historial.cerrar();
+    }
+
+    private interface Tarea {
+        void ejecutar() throws Exception;
+    }
+
+    private static Thread iniciar(Queue<Throwable> errores, Tarea tarea) {
+        Thread hilo = new Thread(() -> {
+            try {
+                tarea.ejecutar();
+            } catch (Throwable e) {
+                errores.add(e);
+            }
+        });
+        hilo.start();
+        return hilo;
+    }
+}
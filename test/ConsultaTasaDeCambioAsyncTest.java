@@ -0,0 +1,222 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import excepciones.ApiException;
+import excepciones.ConversionException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Camino asíncrono de ConsultaTasaDeCambio contra un servidor HTTP local que
+ * responde una secuencia de códigos de estado: reintentos con backoff ante
+ * 429 y 5xx, fallo inmediato ante los demás errores, descargas simultáneas
+ * compartidas y propagación de errores hasta ConversorDeMoneda.
+ */
+@Timeout(30)
+class ConsultaTasaDeCambioAsyncTest {
+    private static final String TASAS_USD = "{\"result\":\"success\",\"base_code\":\"USD\","
+        + "\"conversion_rates\":{\"USD\":1,\"ARS\":970.25,\"BRL\":5.1,\"EUR\":0.92,\"PEN\":3.75}}";
+    private static final long ESPERA_INICIAL_MS = 50;
+    private static final int MAX_REINTENTOS = 3;
+
+    @TempDir
+    Path directorio;
+
+    private HttpServer servidor;
+    // Códigos a responder en orden; vacío = 200 con TASAS_USD
+    private final Queue<Integer> estados = new ConcurrentLinkedQueue<>();
+    // Instante (nanoTime) de cada petición recibida
+    private final List<Long> peticiones = new CopyOnWriteArrayList<>();
+    // Si no es null, cada respuesta espera a que se abra
+    private volatile CountDownLatch demora;
+
+    @BeforeEach
+    void iniciarServidor() throws IOException {
+        servidor = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        servidor.createContext("/v6/", this::responder);
+        servidor.setExecutor(Executors.newCachedThreadPool(tarea -> {
+            Thread hilo = new Thread(tarea, "servidor-prueba");
+            hilo.setDaemon(true);
+            return hilo;
+        }));
+        servidor.start();
+    }
+
+    @AfterEach
+    void detenerServidor() {
+        servidor.stop(0);
+    }
+
+    private void responder(HttpExchange intercambio) throws IOException {
+        peticiones.add(System.nanoTime());
+        try {
+            CountDownLatch espera = demora;
+            if (espera != null) {
+                espera.await(10, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Integer estado = estados.poll();
+        int codigo = estado == null ? 200 : estado;
+        byte[] cuerpo = (codigo == 200 ? TASAS_USD : "{\"result\":\"error\"}").getBytes(StandardCharsets.UTF_8);
+        intercambio.getResponseHeaders().set("Content-Type", "application/json");
+        intercambio.sendResponseHeaders(codigo, cuerpo.length);
+        try (OutputStream salida = intercambio.getResponseBody()) {
+            salida.write(cuerpo);
+        }
+    }
+
+    private ConsultaTasaDeCambio consulta(String urlBase) {
+        ConsultaTasaDeCambio consulta = new ConsultaTasaDeCambio("clave-prueba", urlBase,
+            new ConsultaTasaDeCambio.Opciones().maxReintentos(MAX_REINTENTOS).expiracionCache(Duration.ofMinutes(10)));
+        consulta.setEsperaInicialReintento(Duration.ofMillis(ESPERA_INICIAL_MS));
+        return consulta;
+    }
+
+    private ConsultaTasaDeCambio consulta() {
+        return consulta("http://127.0.0.1:" + servidor.getAddress().getPort() + "/v6/");
+    }
+
+    /**
+     * Causa de un futuro fallido, sin los envoltorios de CompletableFuture
+     */
+    private static Throwable falloDe(CompletableFuture<?> futuro) {
+        ExecutionException error = assertThrows(ExecutionException.class, () -> futuro.get(20, TimeUnit.SECONDS));
+        return CacheTasas.causa(error.getCause());
+    }
+
+    @Test
+    void reintentaErroresDelServidorConBackoffExponencial() throws Exception {
+        estados.add(503);
+        estados.add(500);
+
+        TablaTasas tabla = consulta().obtenerTablaTasasAsync().get(20, TimeUnit.SECONDS);
+
+        assertEquals(970.25, tabla.tasa(tabla.indice("ARS")), 1e-9);
+        assertEquals(3, peticiones.size());
+        long primeraEspera = TimeUnit.NANOSECONDS.toMillis(peticiones.get(1) - peticiones.get(0));
+        long segundaEspera = TimeUnit.NANOSECONDS.toMillis(peticiones.get(2) - peticiones.get(1));
+        assertTrue(primeraEspera >= ESPERA_INICIAL_MS, "primera espera " + primeraEspera + " ms");
+        assertTrue(segundaEspera >= 2 * ESPERA_INICIAL_MS, "segunda espera " + segundaEspera + " ms");
+    }
+
+    @Test
+    void reintentaCuandoSeExcedeElLimiteDePeticiones() throws Exception {
+        estados.add(429);
+
+        String json = consulta().obtenerTasaDeCambioAsync().get(20, TimeUnit.SECONDS);
+
+        assertEquals(TASAS_USD, json);
+        assertEquals(2, peticiones.size());
+    }
+
+    @Test
+    void noReintentaErroresNoRecuperables() {
+        estados.add(401);
+
+        Throwable fallo = falloDe(consulta().obtenerTablaTasasAsync());
+
+        ApiException error = assertInstanceOf(ApiException.class, fallo);
+        assertEquals(401, error.getCodigoEstado());
+        assertEquals(1, peticiones.size());
+    }
+
+    @Test
+    void fallaAlAgotarLosReintentos() {
+        for (int i = 0; i < MAX_REINTENTOS; i++) {
+            estados.add(503);
+        }
+
+        Throwable fallo = falloDe(consulta().obtenerTasaDeCambioAsync());
+
+        ApiException error = assertInstanceOf(ApiException.class, fallo);
+        ApiException ultimo = assertInstanceOf(ApiException.class, error.getCause());
+        assertEquals(503, ultimo.getCodigoEstado());
+        assertEquals(MAX_REINTENTOS, peticiones.size());
+    }
+
+    @Test
+    void propagaErroresDeConexion() throws IOException {
+        int puertoCerrado;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            puertoCerrado = socket.getLocalPort();
+        }
+
+        Throwable fallo = falloDe(consulta("http://127.0.0.1:" + puertoCerrado + "/v6/").obtenerTablaTasasAsync());
+
+        ApiException error = assertInstanceOf(ApiException.class, fallo);
+        assertInstanceOf(IOException.class, error.getCause());
+    }
+
+    @Test
+    void lasConsultasSimultaneasCompartenUnaSolaDescarga() throws Exception {
+        demora = new CountDownLatch(1);
+        ConsultaTasaDeCambio consulta = consulta();
+        ConversorDeMoneda conversor = new ConversorDeMoneda(consulta, historialEnMemoria());
+
+        List<CompletableFuture<TablaTasas>> tablas = new ArrayList<>();
+        List<CompletableFuture<Double>> conversiones = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            tablas.add(consulta.obtenerTablaTasasAsync());
+            conversiones.add(conversor.convertirAsync("USD", "ARS", 10));
+        }
+        demora.countDown();
+
+        TablaTasas primera = tablas.get(0).get(20, TimeUnit.SECONDS);
+        for (CompletableFuture<TablaTasas> tabla : tablas) {
+            assertSame(primera, tabla.get(20, TimeUnit.SECONDS));
+        }
+        for (CompletableFuture<Double> conversion : conversiones) {
+            assertEquals(9702.5, conversion.get(20, TimeUnit.SECONDS), 1e-9);
+        }
+        assertEquals(1, peticiones.size());
+    }
+
+    @Test
+    void convertirAsyncPropagaElFalloComoConversionException() throws Exception {
+        estados.add(401);
+        ConversorDeMoneda conversor = new ConversorDeMoneda(consulta(), historialEnMemoria());
+
+        CompletableFuture<Double> resultado = conversor.convertirAsync("USD", "ARS", 10);
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> resultado.get(20, TimeUnit.SECONDS));
+        ConversionException fallo = assertInstanceOf(ConversionException.class, error.getCause());
+        assertInstanceOf(ApiException.class, fallo.getCause());
+        CompletionException envuelto = assertThrows(CompletionException.class, resultado::join);
+        assertSame(fallo, envuelto.getCause());
+        assertEquals(1, peticiones.size());
+    }
+
+    private HistorialConversiones historialEnMemoria() {
+        DiarioHistorial diario = new DiarioHistorial(directorio.resolve("historial.json").toString(),
+            DiarioHistorial.PoliticaSincronizacion.NUNCA, 1000, 10_000);
+        return new HistorialConversiones(diario, new HistorialConversiones.Opciones());
+    }
+}
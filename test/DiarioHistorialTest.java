@@ -0,0 +1,146 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Diario de solo-anexado del historial: reproducción al cargar, reparación
+ * de una última línea interrumpida, líneas dañadas, entradas repetidas tras
+ * una compactación sin terminar e instantánea ilegible.
+ */
+class DiarioHistorialTest {
+    private static final LocalDateTime FECHA = LocalDateTime.of(2024, 3, 1, 12, 0);
+
+    @TempDir
+    Path directorio;
+
+    private String rutaInstantanea() {
+        return directorio.resolve("historial.json").toString();
+    }
+
+    private DiarioHistorial diario() {
+        return new DiarioHistorial(rutaInstantanea(), DiarioHistorial.PoliticaSincronizacion.NUNCA, 1000, 10_000);
+    }
+
+    private static Conversion conversion(String id) {
+        return new Conversion(id, FECHA, "USD", "ARS", 10, 9702.5);
+    }
+
+    private static List<String> ids(List<Conversion> conversiones) {
+        List<String> ids = new ArrayList<>();
+        for (Conversion conversion : conversiones) {
+            ids.add(conversion.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    void reproduceAlCargarLoRegistradoEnElDiario() {
+        DiarioHistorial diario = diario();
+        diario.registrar(conversion("a"));
+        diario.registrar(List.of(conversion("b"), conversion("c")));
+        diario.cerrar();
+
+        DiarioHistorial recargado = diario();
+        List<Conversion> cargadas = recargado.cargar();
+
+        assertEquals(List.of("a", "b", "c"), ids(cargadas));
+        assertEquals(9702.5, cargadas.get(2).getMontoDestino(), 0);
+        assertEquals(FECHA, cargadas.get(2).getTimestamp());
+        assertEquals(3, recargado.getEntradasDiario());
+        assertFalse(Files.exists(directorio.resolve("historial.json")), "no se compactó: no hay instantánea");
+    }
+
+    @Test
+    void recortaUnaUltimaLineaInterrumpida() throws IOException {
+        DiarioHistorial diario = diario();
+        diario.registrar(List.of(conversion("a"), conversion("b")));
+        diario.cerrar();
+        Path rutaDiario = diario.getRutaDiario();
+        long tamañoValido = Files.size(rutaDiario);
+        Files.write(rutaDiario, "{\"id\":\"c\",\"timest".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        DiarioHistorial recargado = diario();
+        assertEquals(List.of("a", "b"), ids(recargado.cargar()));
+        assertEquals(tamañoValido, Files.size(rutaDiario));
+
+        // Lo siguiente se anexa en una línea propia, bien formada
+        recargado.registrar(conversion("d"));
+        recargado.cerrar();
+        assertEquals(List.of("a", "b", "d"), ids(diario().cargar()));
+    }
+
+    @Test
+    void omiteUnaLineaDañadaSinTocarLasDemas() throws IOException {
+        DiarioHistorial diario = diario();
+        diario.registrar(conversion("a"));
+        diario.cerrar();
+        Path rutaDiario = diario.getRutaDiario();
+        Files.write(rutaDiario, "{esto no es json\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        diario = diario();
+        diario.registrar(conversion("b"));
+        diario.cerrar();
+        byte[] contenido = Files.readAllBytes(rutaDiario);
+
+        DiarioHistorial recargado = diario();
+        assertEquals(List.of("a", "b"), ids(recargado.cargar()));
+        assertEquals(new String(contenido, StandardCharsets.UTF_8),
+            new String(Files.readAllBytes(rutaDiario), StandardCharsets.UTF_8));
+        // La línea dañada cuenta para la próxima compactación, que la quita
+        assertEquals(3, recargado.getEntradasDiario());
+    }
+
+    @Test
+    void omiteLoQueYaIncluyeLaInstantaneaSiNoSeVacioElDiario() throws IOException {
+        DiarioHistorial diario = diario();
+        List<Conversion> registradas = List.of(conversion("a"), conversion("b"), conversion("c"));
+        diario.registrar(registradas);
+        Path rutaDiario = diario.getRutaDiario();
+        byte[] antesDeCompactar = Files.readAllBytes(rutaDiario);
+        assertTrue(diario.compactar(0, 0, registradas));
+        diario.cerrar();
+        assertEquals(0, Files.size(rutaDiario));
+
+        // Corte entre reemplazar la instantánea y vaciar el diario, y luego una conversión más
+        Files.write(rutaDiario, antesDeCompactar);
+        DiarioHistorial trasElCorte = diario();
+        assertEquals(List.of("a", "b", "c"), ids(trasElCorte.cargar()));
+        trasElCorte.registrar(conversion("d"));
+        trasElCorte.cerrar();
+
+        assertEquals(List.of("a", "b", "c", "d"), ids(diario().cargar()));
+    }
+
+    @Test
+    void apartaUnaInstantaneaIlegibleEnLugarDeCargarUnHistorialVacio() throws IOException {
+        Path instantanea = directorio.resolve("historial.json");
+        byte[] dañada = "[{\"id\":\"x\",\"timestamp\":".getBytes(StandardCharsets.UTF_8);
+        Files.write(instantanea, dañada);
+        DiarioHistorial diario = diario();
+        diario.registrar(conversion("a"));
+        diario.cerrar();
+
+        List<Conversion> cargadas = diario().cargar();
+
+        assertEquals(List.of("a"), ids(cargadas));
+        assertFalse(Files.exists(instantanea));
+        List<Path> apartadas = new ArrayList<>();
+        try (DirectoryStream<Path> archivos = Files.newDirectoryStream(directorio, "historial.json.corrupto-*")) {
+            archivos.forEach(apartadas::add);
+        }
+        assertEquals(1, apartadas.size());
+        assertEquals(new String(dañada, StandardCharsets.UTF_8),
+            new String(Files.readAllBytes(apartadas.get(0)), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,217 @@
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Escritura diferida del historial contra un destino en memoria: cuándo se
+ * escribe un lote, la espera por lugar en la cola, el orden de las tareas,
+ * el cierre y los lotes que no se pueden escribir.
+ */
+@Timeout(30)
+class EscritorDiferidoTest {
+    private static final LocalDateTime FECHA = LocalDateTime.of(2024, 3, 1, 12, 0);
+    private static final long ESPERA_LARGA_MS = 60_000;
+
+    /**
+     * Guarda los lotes recibidos; puede retener la escritura o fallar las primeras veces
+     */
+    private static final class DestinoPrueba implements EscritorDiferido.Destino {
+        final BlockingQueue<List<Conversion>> lotes = new LinkedBlockingQueue<>();
+        final List<Conversion> escritas = new CopyOnWriteArrayList<>();
+        final AtomicInteger fallosRestantes = new AtomicInteger();
+        final AtomicInteger intentos = new AtomicInteger();
+        volatile CountDownLatch retener;
+        volatile boolean forzado;
+
+        @Override
+        public boolean escribir(List<Conversion> lote, boolean forzar) throws IOException {
+            intentos.incrementAndGet();
+            CountDownLatch espera = retener;
+            if (espera != null) {
+                try {
+                    espera.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (fallosRestantes.getAndDecrement() > 0) {
+                throw new IOException("disco lleno");
+            }
+            forzado = forzar;
+            escritas.addAll(lote);
+            lotes.add(new ArrayList<>(lote));
+            return false;
+        }
+
+        @Override
+        public void compactar() {
+        }
+    }
+
+    private static Conversion conversion(String id) {
+        return new Conversion(id, FECHA, "USD", "ARS", 10, 9702.5);
+    }
+
+    private static void encolar(EscritorDiferido escritor, String... ids) {
+        for (String id : ids) {
+            escritor.reservar(1);
+            escritor.encolar(conversion(id));
+        }
+    }
+
+    private static List<String> ids(List<Conversion> conversiones) {
+        List<String> ids = new ArrayList<>();
+        for (Conversion conversion : conversiones) {
+            ids.add(conversion.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    void escribeElLoteAlJuntarSuTamaño() throws Exception {
+        DestinoPrueba destino = new DestinoPrueba();
+        EscritorDiferido escritor = new EscritorDiferido(
+            new EscritorDiferido.Opciones(100, 3, ESPERA_LARGA_MS, EscritorDiferido.Durabilidad.LOTE), destino);
+
+        encolar(escritor, "a", "b", "c", "d");
+
+        List<Conversion> lote = destino.lotes.poll(10, TimeUnit.SECONDS);
+        assertNotNull(lote, "no se escribió el lote lleno");
+        assertEquals(List.of("a", "b", "c"), ids(lote));
+        assertTrue(destino.forzado, "con durabilidad LOTE cada lote se fuerza al disco");
+        escritor.cerrar();
+        assertEquals(List.of("d"), ids(destino.lotes.poll()));
+    }
+
+    @Test
+    void escribeElLoteAlVencerLaEsperaMaxima() throws Exception {
+        long esperaMaximaMs = 100;
+        DestinoPrueba destino = new DestinoPrueba();
+        EscritorDiferido escritor = new EscritorDiferido(
+            new EscritorDiferido.Opciones(100, 1000, esperaMaximaMs, EscritorDiferido.Durabilidad.NINGUNA), destino);
+
+        long inicio = System.nanoTime();
+        encolar(escritor, "a", "b");
+        List<Conversion> lote = destino.lotes.poll(10, TimeUnit.SECONDS);
+        long transcurridoMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+
+        assertNotNull(lote, "no se escribió el lote vencido");
+        assertEquals(List.of("a", "b"), ids(lote));
+        assertTrue(transcurridoMs >= esperaMaximaMs, "escrito a los " + transcurridoMs + " ms");
+        assertFalse(destino.forzado);
+        escritor.cerrar();
+    }
+
+    @Test
+    void reservarEsperaMientrasLaColaEstaLlena() throws Exception {
+        DestinoPrueba destino = new DestinoPrueba();
+        destino.retener = new CountDownLatch(1);
+        EscritorDiferido escritor = new EscritorDiferido(
+            new EscritorDiferido.Opciones(2, 1, 0, EscritorDiferido.Durabilidad.NINGUNA), destino);
+        // "a" queda retenida en el destino y "b" en la cola: los dos lugares ocupados
+        encolar(escritor, "a", "b");
+
+        CountDownLatch reservado = new CountDownLatch(1);
+        Thread productor = new Thread(() -> {
+            escritor.reservar(1);
+            reservado.countDown();
+            escritor.encolar(conversion("c"));
+        });
+        productor.start();
+
+        assertFalse(reservado.await(200, TimeUnit.MILLISECONDS), "reservó lugar con la cola llena");
+        destino.retener.countDown();
+        assertTrue(reservado.await(10, TimeUnit.SECONDS), "no se liberó lugar al escribir");
+        productor.join();
+        escritor.cerrar();
+        assertEquals(List.of("a", "b", "c"), ids(destino.escritas));
+    }
+
+    @Test
+    void ejecutarCorreDespuesDeEscribirLoYaEncolado() {
+        DestinoPrueba destino = new DestinoPrueba();
+        EscritorDiferido escritor = new EscritorDiferido(
+            new EscritorDiferido.Opciones(100, 1000, ESPERA_LARGA_MS, EscritorDiferido.Durabilidad.NINGUNA), destino);
+        encolar(escritor, "a", "b", "c");
+
+        List<String> vistas = new ArrayList<>();
+        String[] hiloTarea = new String[1];
+        escritor.ejecutar(() -> {
+            vistas.addAll(ids(destino.escritas));
+            hiloTarea[0] = Thread.currentThread().getName();
+        });
+
+        assertEquals(List.of("a", "b", "c"), vistas);
+        assertEquals("historial-escritor", hiloTarea[0]);
+        assertEquals(0, escritor.getPendientes());
+        escritor.cerrar();
+    }
+
+    @Test
+    void cerrarEscribeTodoLoEncolado() {
+        DestinoPrueba destino = new DestinoPrueba();
+        EscritorDiferido escritor = new EscritorDiferido(
+            new EscritorDiferido.Opciones(100, 1000, ESPERA_LARGA_MS, EscritorDiferido.Durabilidad.NINGUNA), destino);
+        encolar(escritor, "a", "b");
+        int permisos = escritor.reservar(3);
+        escritor.encolar(List.of(conversion("c"), conversion("d"), conversion("e")), permisos);
+
+        escritor.cerrar();
+
+        assertTrue(escritor.estaCerrado());
+        assertEquals(List.of("a", "b", "c", "d", "e"), ids(destino.escritas));
+        assertEquals(0, escritor.getPendientes());
+        // Se puede cerrar de nuevo
+        escritor.cerrar();
+    }
+
+    @Test
+    void reintentaUnLoteQueFallaSinPerderlo() {
+        DestinoPrueba destino = new DestinoPrueba();
+        destino.fallosRestantes.set(1);
+        EscritorDiferido escritor = new EscritorDiferido(
+            new EscritorDiferido.Opciones(100, 2, ESPERA_LARGA_MS, EscritorDiferido.Durabilidad.LOTE), destino);
+
+        encolar(escritor, "a", "b");
+        escritor.cerrar();
+
+        assertEquals(List.of("a", "b"), ids(destino.escritas));
+        assertEquals(2, destino.intentos.get());
+        assertEquals(0, escritor.getPerdidas());
+    }
+
+    @Test
+    void unLoteQueNoSePuedeEscribirSeInformaAlCerrar() {
+        DestinoPrueba destino = new DestinoPrueba();
+        destino.fallosRestantes.set(Integer.MAX_VALUE);
+        EscritorDiferido escritor = new EscritorDiferido(
+            new EscritorDiferido.Opciones(2, 2, ESPERA_LARGA_MS, EscritorDiferido.Durabilidad.LOTE), destino);
+
+        encolar(escritor, "a", "b");
+
+        IllegalStateException error = assertThrows(IllegalStateException.class, escritor::cerrar);
+        assertInstanceOf(IOException.class, error.getCause());
+        assertTrue(error.getMessage().startsWith("2 "), error.getMessage());
+        assertEquals(2, escritor.getPerdidas());
+        assertEquals(0, escritor.getPendientes());
+        assertTrue(destino.escritas.isEmpty());
+        // Los lugares del lote perdido se liberaron
+        escritor.reservar(2);
+    }
+}
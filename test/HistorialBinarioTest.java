@@ -0,0 +1,169 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Formato binario mapeado del historial: escritura y lectura de ida y
+ * vuelta, lectura de rangos sin reconstruir el resto, conservación de
+ * registros anteriores al reescribir, y archivos truncados o con otro
+ * encabezado.
+ */
+class HistorialBinarioTest {
+    private static final LocalDateTime INICIO = LocalDateTime.of(2024, 5, 1, 9, 0);
+
+    @TempDir
+    Path directorio;
+
+    private static List<Conversion> conversiones(int cantidad, int primera) {
+        List<Conversion> conversiones = new ArrayList<>();
+        for (int i = primera; i < primera + cantidad; i++) {
+            // Marcas de tiempo con milisegundos: el formato no guarda más precisión
+            conversiones.add(new Conversion(new UUID(i, -i).toString(), INICIO.plusSeconds(i).plusNanos(i % 1000 * 1_000_000L),
+                i % 2 == 0 ? "USD" : "EUR", "ARS", 1 + i * 0.25, (1 + i * 0.25) * 970.25));
+        }
+        return conversiones;
+    }
+
+    private static void assertMismaConversion(Conversion esperada, Conversion leida) {
+        assertEquals(esperada.getId(), leida.getId());
+        assertEquals(esperada.getTimestamp(), leida.getTimestamp());
+        assertEquals(esperada.getMonedaOrigen(), leida.getMonedaOrigen());
+        assertEquals(esperada.getMonedaDestino(), leida.getMonedaDestino());
+        assertEquals(esperada.getMontoOrigen(), leida.getMontoOrigen(), 0);
+        assertEquals(esperada.getMontoDestino(), leida.getMontoDestino(), 0);
+        assertEquals(esperada.getTasaCambio(), leida.getTasaCambio(), 0);
+    }
+
+    private static void assertMismasConversiones(List<Conversion> esperadas, List<Conversion> leidas) {
+        assertEquals(esperadas.size(), leidas.size());
+        for (int i = 0; i < esperadas.size(); i++) {
+            assertMismaConversion(esperadas.get(i), leidas.get(i));
+        }
+    }
+
+    private Path escribir(List<Conversion> conversiones) throws IOException {
+        Path ruta = directorio.resolve("historial.bin");
+        HistorialBinario.escribir(ruta, conversiones);
+        return ruta;
+    }
+
+    @Test
+    void escribeMapeaYLeeCadaRegistro() throws IOException {
+        List<Conversion> escritas = conversiones(100, 0);
+        Path ruta = escribir(escritas);
+
+        assertEquals(32 + 100 * 48, Files.size(ruta));
+        HistorialBinario historial = HistorialBinario.abrir(ruta);
+        assertEquals(100, historial.tamaño());
+        assertTrue(historial.estaOrdenado());
+        assertMismasConversiones(escritas, historial.comoLista());
+        assertEquals("EUR", historial.getMonedaOrigen(7));
+        assertEquals(escritas.get(7).getMontoDestino(), historial.getMontoDestino(7), 0);
+        assertThrows(IndexOutOfBoundsException.class, () -> historial.getConversion(100));
+    }
+
+    @Test
+    void leeSoloElRangoPedido() throws IOException {
+        List<Conversion> escritas = conversiones(50, 0);
+        Path ruta = escribir(escritas);
+        HistorialBinario historial = HistorialBinario.abrir(ruta);
+
+        assertMismasConversiones(escritas.subList(10, 15), historial.leer(10, 5));
+        assertMismasConversiones(escritas.subList(45, 50), historial.leer(45, 100));
+        assertTrue(historial.leer(50, 10).isEmpty());
+        assertMismasConversiones(escritas.subList(20, 30),
+            GestorArchivos.leerPaginaHistorial(ruta.toString(), 20, 10));
+
+        CargaHistorial carga = GestorArchivos.cargarHistorialBinario(ruta.toString(), 8);
+        assertEquals(42, carga.getEnDisco());
+        assertMismasConversiones(escritas.subList(42, 50), carga.getEnMemoria());
+    }
+
+    @Test
+    void buscaPorRangoDeFechasSoloSiEstaOrdenado() throws IOException {
+        List<Conversion> escritas = conversiones(30, 0);
+        HistorialBinario ordenado = HistorialBinario.abrir(escribir(escritas));
+
+        List<Conversion> rango = ordenado.rango(INICIO.plusSeconds(10), INICIO.plusSeconds(20));
+        assertMismasConversiones(escritas.subList(10, 20), rango);
+
+        List<Conversion> desordenadas = new ArrayList<>(escritas);
+        desordenadas.add(conversiones(1, 0).get(0));
+        HistorialBinario desordenado = HistorialBinario.abrir(escribir(desordenadas));
+        assertFalse(desordenado.estaOrdenado());
+        assertThrows(IllegalStateException.class, () -> desordenado.buscarDesde(0));
+    }
+
+    @Test
+    void alReescribirConservaElRangoIndicadoDelArchivoAnterior() throws IOException {
+        List<Conversion> anteriores = conversiones(20, 0);
+        Path ruta = escribir(anteriores);
+        List<Conversion> nuevas = conversiones(5, 20);
+
+        HistorialBinario.escribir(ruta, 5, 20, nuevas);
+
+        List<Conversion> esperadas = new ArrayList<>(anteriores.subList(5, 20));
+        esperadas.addAll(nuevas);
+        HistorialBinario historial = HistorialBinario.abrir(ruta);
+        assertMismasConversiones(esperadas, historial.comoLista());
+        assertTrue(historial.estaOrdenado());
+        assertFalse(Files.exists(directorio.resolve("historial.bin.tmp")));
+    }
+
+    @Test
+    void rechazaUnArchivoTruncado() throws IOException {
+        Path ruta = escribir(conversiones(10, 0));
+        try (FileChannel canal = FileChannel.open(ruta, StandardOpenOption.WRITE)) {
+            canal.truncate(32 + 9 * 48 + 20);
+        }
+
+        IOException error = assertThrows(IOException.class, () -> HistorialBinario.abrir(ruta));
+        assertTrue(error.getMessage().contains("truncado"), error.getMessage());
+        assertThrows(UncheckedIOException.class, () -> GestorArchivos.cargarHistorialBinario(ruta.toString(), 0));
+        assertThrows(UncheckedIOException.class, () -> GestorArchivos.leerPaginaHistorial(ruta.toString(), 0, 1));
+
+        // Ni siquiera el encabezado completo
+        try (FileChannel canal = FileChannel.open(ruta, StandardOpenOption.WRITE)) {
+            canal.truncate(20);
+        }
+        assertThrows(IOException.class, () -> HistorialBinario.abrir(ruta));
+    }
+
+    @Test
+    void rechazaOtraMagiaUOtraVersion() throws IOException {
+        Path ruta = escribir(conversiones(3, 0));
+
+        sobrescribir(ruta, 4, ByteBuffer.allocate(2).order(ByteOrder.LITTLE_ENDIAN).putShort(0, (short) 2));
+        IOException version = assertThrows(IOException.class, () -> HistorialBinario.abrir(ruta));
+        assertTrue(version.getMessage().contains("Versión"), version.getMessage());
+
+        sobrescribir(ruta, 0, ByteBuffer.wrap("JSON".getBytes(StandardCharsets.US_ASCII)));
+        IOException magia = assertThrows(IOException.class, () -> HistorialBinario.abrir(ruta));
+        assertTrue(magia.getMessage().contains("No es un historial binario"), magia.getMessage());
+    }
+
+    private static void sobrescribir(Path ruta, long posicion, ByteBuffer bytes) throws IOException {
+        try (FileChannel canal = FileChannel.open(ruta, StandardOpenOption.WRITE)) {
+            while (bytes.hasRemaining()) {
+                canal.write(bytes, posicion + bytes.position());
+            }
+        }
+    }
+}
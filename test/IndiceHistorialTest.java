@@ -0,0 +1,221 @@
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Índice por par y fecha del historial: búsquedas y resúmenes de montos
+ * contra un recorrido completo (con series de varios bloques y llegadas
+ * desordenadas), y consultas del historial después de que la compactación
+ * pasa conversiones a disco y la retención corre las posiciones.
+ */
+class IndiceHistorialTest {
+    private static final LocalDateTime INICIO = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final String[][] PARES = {{"USD", "ARS"}, {"EUR", "ARS"}, {"USD", "BRL"}};
+
+    @TempDir
+    Path directorio;
+
+    /**
+     * Conversiones de los tres pares con montos y tasas variados, una por
+     * minuto; si se pide, con un desorden de hasta una hora entre vecinas
+     */
+    private static List<Conversion> conversiones(int cantidad, boolean desordenadas) {
+        Random aleatorio = new Random(7);
+        List<Conversion> conversiones = new ArrayList<>();
+        for (int i = 0; i < cantidad; i++) {
+            String[] par = PARES[aleatorio.nextInt(PARES.length)];
+            int minuto = desordenadas ? Math.max(0, i - aleatorio.nextInt(60)) : i;
+            double origen = 1 + aleatorio.nextInt(5000) / 4.0;
+            double tasa = 900 + aleatorio.nextInt(200) / 8.0;
+            conversiones.add(new Conversion("c" + i, INICIO.plusMinutes(minuto), par[0], par[1], origen, origen * tasa));
+        }
+        return conversiones;
+    }
+
+    /**
+     * Posiciones que el índice tiene que devolver: filtradas recorriendo
+     * todo y ordenadas por fecha (a igual fecha, por posición)
+     */
+    private static List<Integer> esperadas(List<Conversion> todas, String origen, String destino,
+                                           LocalDateTime desde, LocalDateTime hasta) {
+        List<Integer> posiciones = new ArrayList<>();
+        for (int i = 0; i < todas.size(); i++) {
+            Conversion conversion = todas.get(i);
+            if ((origen == null || origen.equals(conversion.getMonedaOrigen()))
+                    && (destino == null || destino.equals(conversion.getMonedaDestino()))
+                    && (desde == null || !conversion.getTimestamp().isBefore(desde))
+                    && (hasta == null || conversion.getTimestamp().isBefore(hasta))) {
+                posiciones.add(i);
+            }
+        }
+        posiciones.sort(Comparator.comparing((Integer i) -> todas.get(i).getTimestamp()).thenComparing(i -> i));
+        return posiciones;
+    }
+
+    private static List<Integer> lista(int[] posiciones) {
+        List<Integer> lista = new ArrayList<>();
+        for (int posicion : posiciones) {
+            lista.add(posicion);
+        }
+        return lista;
+    }
+
+    private static List<String> ids(List<Conversion> conversiones) {
+        List<String> ids = new ArrayList<>();
+        for (Conversion conversion : conversiones) {
+            ids.add(conversion.getId());
+        }
+        return ids;
+    }
+
+    private static List<String> idsEn(List<Conversion> todas, List<Integer> posiciones) {
+        List<String> ids = new ArrayList<>();
+        for (int posicion : posiciones) {
+            ids.add(todas.get(posicion).getId());
+        }
+        return ids;
+    }
+
+    private static void assertMismoResumen(List<Conversion> todas, List<Integer> posiciones, IndiceHistorial.Resumen resumen) {
+        double sumaOrigen = 0;
+        double sumaDestino = 0;
+        double minima = Double.POSITIVE_INFINITY;
+        double maxima = Double.NEGATIVE_INFINITY;
+        for (int posicion : posiciones) {
+            Conversion conversion = todas.get(posicion);
+            double tasa = conversion.getMontoDestino() / conversion.getMontoOrigen();
+            sumaOrigen += conversion.getMontoOrigen();
+            sumaDestino += conversion.getMontoDestino();
+            minima = Math.min(minima, tasa);
+            maxima = Math.max(maxima, tasa);
+        }
+        assertEquals(posiciones.size(), resumen.getCantidad());
+        if (posiciones.isEmpty()) {
+            assertTrue(Double.isNaN(resumen.getTasaPonderada()));
+            return;
+        }
+        assertEquals(sumaOrigen, resumen.getSumaOrigen(), sumaOrigen * 1e-12);
+        assertEquals(sumaDestino, resumen.getSumaDestino(), sumaDestino * 1e-12);
+        assertEquals(minima, resumen.getTasaMinima(), 0);
+        assertEquals(maxima, resumen.getTasaMaxima(), 0);
+        assertEquals(sumaDestino / sumaOrigen, resumen.getTasaPonderada(), 1e-9);
+    }
+
+    private static IndiceHistorial indexar(List<Conversion> conversiones) {
+        IndiceHistorial indice = new IndiceHistorial();
+        for (int i = 0; i < conversiones.size(); i++) {
+            indice.agregar(conversiones.get(i), i);
+        }
+        return indice;
+    }
+
+    @Test
+    void buscaYResumePorParYRangoComoUnRecorridoCompleto() {
+        for (boolean desordenadas : new boolean[] {false, true}) {
+            // Varios bloques por serie: los resúmenes mezclan bloques completos y filas sueltas
+            List<Conversion> todas = conversiones(4 * IndiceHistorial.TAMAÑO_BLOQUE, desordenadas);
+            IndiceHistorial indice = indexar(todas);
+            assertEquals(todas.size(), indice.tamaño());
+
+            LocalDateTime[][] rangos = {
+                {null, null},
+                {INICIO.plusMinutes(500), INICIO.plusMinutes(3500)},
+                {INICIO.plusMinutes(1024), INICIO.plusMinutes(1025)},
+                {null, INICIO.plusMinutes(10)},
+                {INICIO.plusMinutes(4000), null},
+                {INICIO.plusYears(1), null},
+            };
+            String[][] filtros = {{"USD", "ARS"}, {"EUR", "ARS"}, {null, "ARS"}, {"USD", null}, {null, null}, {"GBP", "ARS"}};
+            for (LocalDateTime[] rango : rangos) {
+                for (String[] filtro : filtros) {
+                    List<Integer> esperadas = esperadas(todas, filtro[0], filtro[1], rango[0], rango[1]);
+                    String caso = filtro[0] + "->" + filtro[1] + " " + rango[0] + ".." + rango[1];
+
+                    assertMismoResumen(todas, esperadas, indice.resumir(filtro[0], filtro[1], rango[0], rango[1]));
+                    assertEquals(esperadas, lista(indice.buscar(filtro[0], filtro[1], rango[0], rango[1], 0,
+                        todas.size())), caso);
+                    int saltar = esperadas.size() / 3;
+                    assertEquals(esperadas.subList(saltar, Math.min(esperadas.size(), saltar + 50)),
+                        lista(indice.buscar(filtro[0], filtro[1], rango[0], rango[1], saltar, 50)), caso);
+                }
+            }
+        }
+    }
+
+    @Test
+    void consultaLoQuePasoADiscoAlCompactar() {
+        DiarioHistorial diario = new DiarioHistorial(directorio.resolve("historial.json").toString(),
+            DiarioHistorial.PoliticaSincronizacion.NUNCA, 1000, 10_000);
+        List<Conversion> todas = conversiones(300, true);
+        diario.registrar(todas);
+        diario.cerrar();
+
+        // Solo las últimas 40 en memoria: las demás se leen de historial.json al consultar
+        HistorialConversiones historial = new HistorialConversiones(
+            new DiarioHistorial(directorio.resolve("historial.json").toString(),
+                DiarioHistorial.PoliticaSincronizacion.NUNCA, 1000, 10_000),
+            new HistorialConversiones.Opciones().autoGuardar(true).maxEnMemoria(40));
+        historial.guardar();
+        assertEquals(40, historial.obtenerConversiones().size());
+
+        LocalDateTime desde = INICIO.plusMinutes(30);
+        LocalDateTime hasta = INICIO.plusMinutes(280);
+        List<Integer> esperadas = esperadas(todas, "USD", "ARS", desde, hasta);
+        assertEquals(idsEn(todas, esperadas), ids(historial.consultar("USD", "ARS", desde, hasta, 0, 1000)));
+        assertEquals(idsEn(todas, esperadas.subList(5, 15)), ids(historial.consultar("USD", "ARS", desde, hasta, 5, 10)));
+        assertMismoResumen(todas, esperadas, historial.resumir("USD", "ARS", desde, hasta));
+        historial.cerrar();
+    }
+
+    @Test
+    void lasPosicionesSiguenValiendoDespuesDeArchivarPorRetencion() {
+        String ruta = directorio.resolve("historial.json").toString();
+        DiarioHistorial diario = new DiarioHistorial(ruta, DiarioHistorial.PoliticaSincronizacion.NUNCA, 1000, 10_000);
+        List<Conversion> todas = conversiones(200, false);
+        diario.registrar(todas);
+        diario.cerrar();
+
+        // Al cargar se archivan las 80 más antiguas: cada posición se corre 80 lugares
+        HistorialConversiones historial = new HistorialConversiones(
+            new DiarioHistorial(ruta, DiarioHistorial.PoliticaSincronizacion.NUNCA, 1000, 10_000),
+            new HistorialConversiones.Opciones().autoGuardar(true).maxEnMemoria(50)
+                .retencion(new RetencionHistorial(120, Duration.ZERO)));
+        List<Conversion> vivas = new ArrayList<>(todas.subList(80, 200));
+        assertEquals(120, historial.getTamaño());
+        assertConsultasComoRecorrido(vivas, historial);
+
+        // Anexados y otra compactación: se archivan 30 más y el índice se vuelve a armar
+        for (int i = 0; i < 30; i++) {
+            historial.agregarConversion("EUR", "ARS", 2 + i, (2 + i) * 1010.5);
+        }
+        historial.guardar();
+        List<Conversion> enMemoria = historial.obtenerConversiones();
+        vivas.addAll(enMemoria.subList(enMemoria.size() - 30, enMemoria.size()));
+        vivas = new ArrayList<>(vivas.subList(30, vivas.size()));
+        assertEquals(120, historial.getTamaño());
+        assertEquals(ids(vivas), ids(historial.obtenerPagina(0, 200)));
+        assertConsultasComoRecorrido(vivas, historial);
+        historial.cerrar();
+    }
+
+    private static void assertConsultasComoRecorrido(List<Conversion> vivas, HistorialConversiones historial) {
+        for (String[] par : PARES) {
+            List<Integer> esperadas = esperadas(vivas, par[0], par[1], null, null);
+            assertEquals(idsEn(vivas, esperadas), ids(historial.consultar(par[0], par[1], null, null, 0, 1000)));
+            assertMismoResumen(vivas, esperadas, historial.resumir(par[0], par[1], null, null));
+        }
+        LocalDateTime desde = INICIO.plusMinutes(100);
+        List<Integer> esperadas = esperadas(vivas, null, "ARS", desde, null);
+        assertEquals(idsEn(vivas, esperadas), ids(historial.consultar(null, "ARS", desde, null, 0, 1000)));
+        assertMismoResumen(vivas, esperadas, historial.resumir(null, "ARS", desde, null));
+    }
+}
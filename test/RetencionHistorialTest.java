@@ -0,0 +1,211 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Retención del historial y archivo por mes: cuántas conversiones se
+ * archivan, segmentos nuevos por mes y por archivado, lectura solo de los
+ * meses del rango, el recorrido completo (archivo, disco y memoria) al
+ * exportar y limpiar() borrando los segmentos.
+ */
+class RetencionHistorialTest {
+    private static final LocalDateTime INICIO = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    @TempDir
+    Path directorio;
+
+    /**
+     * Conversiones alternando USD->ARS y EUR->ARS cada 6 horas (300 desde INICIO: de enero a marzo)
+     */
+    private static List<Conversion> conversiones(int cantidad, LocalDateTime inicio) {
+        List<Conversion> conversiones = new ArrayList<>();
+        for (int i = 0; i < cantidad; i++) {
+            conversiones.add(new Conversion("c" + i, inicio.plusHours(6L * i), i % 2 == 0 ? "USD" : "EUR", "ARS",
+                10 + i, (10 + i) * 970.25));
+        }
+        return conversiones;
+    }
+
+    private static List<String> ids(Iterable<Conversion> conversiones) {
+        List<String> ids = new ArrayList<>();
+        for (Conversion conversion : conversiones) {
+            ids.add(conversion.getId());
+        }
+        return ids;
+    }
+
+    private static List<String> ids(Iterator<Conversion> conversiones) {
+        List<String> ids = new ArrayList<>();
+        conversiones.forEachRemaining(conversion -> ids.add(conversion.getId()));
+        return ids;
+    }
+
+    private List<String> archivos(Path carpeta) throws IOException {
+        List<String> nombres = new ArrayList<>();
+        if (!Files.isDirectory(carpeta)) {
+            return nombres;
+        }
+        try (DirectoryStream<Path> archivos = Files.newDirectoryStream(carpeta)) {
+            archivos.forEach(archivo -> nombres.add(archivo.getFileName().toString()));
+        }
+        nombres.sort(null);
+        return nombres;
+    }
+
+    @Test
+    void archivaLoQueExcedeLaCantidadOLaAntiguedad() {
+        LocalDateTime ahora = LocalDateTime.of(2024, 6, 1, 12, 0);
+        List<Conversion> conversiones = conversiones(100, LocalDateTime.of(2024, 5, 1, 0, 0));
+
+        assertFalse(RetencionHistorial.SIN_LIMITE.estaActiva());
+        assertEquals(0, RetencionHistorial.SIN_LIMITE.aArchivar(100, conversiones.iterator(), ahora));
+        assertEquals(40, new RetencionHistorial(60, Duration.ZERO).aArchivar(100, conversiones.iterator(), ahora));
+        assertEquals(0, new RetencionHistorial(200, Duration.ZERO).aArchivar(100, conversiones.iterator(), ahora));
+        // Vencidas las de antes del 22 de mayo a las 12: las primeras 86 (cada 6 horas desde el 1)
+        RetencionHistorial porEdad = new RetencionHistorial(0, Duration.ofDays(10));
+        assertEquals(86, porEdad.aArchivar(100, conversiones.iterator(), ahora));
+        // Manda el límite que archiva más
+        assertEquals(90, new RetencionHistorial(10, Duration.ofDays(10)).aArchivar(100, conversiones.iterator(), ahora));
+        assertEquals(86, new RetencionHistorial(50, Duration.ofDays(10)).aArchivar(100, conversiones.iterator(), ahora));
+        assertThrows(IllegalArgumentException.class, () -> new RetencionHistorial(-1, Duration.ZERO));
+        assertThrows(IllegalArgumentException.class, () -> new RetencionHistorial(0, Duration.ofDays(-1)));
+    }
+
+    @Test
+    void escribeUnSegmentoNuevoPorMesYPorArchivado() throws IOException {
+        ArchivoHistorial archivo = new ArchivoHistorial(directorio.resolve("historial.archivo"));
+        List<Conversion> conversiones = conversiones(300, INICIO);
+
+        assertEquals(200, archivo.archivar(conversiones.iterator(), 200));
+        Iterator<Conversion> resto = conversiones.subList(200, 300).iterator();
+        assertEquals(100, archivo.archivar(resto, 500));
+
+        // 200 primeras: del 1/1 al 19/2; 100 siguientes: del 20/2 al 15/3
+        assertEquals(List.of(YearMonth.of(2024, 1), YearMonth.of(2024, 2), YearMonth.of(2024, 3)), archivo.getSegmentos());
+        assertEquals(List.of("conversiones-2024-01.000001.jsonl.gz", "conversiones-2024-02.000001.jsonl.gz",
+            "conversiones-2024-02.000002.jsonl.gz", "conversiones-2024-03.000001.jsonl.gz"),
+            archivos(archivo.getDirectorio()));
+
+        try (ArchivoHistorial.LectorArchivo lector = archivo.recorrer(null, null)) {
+            assertEquals(ids(conversiones), ids(lector));
+        }
+        LocalDateTime desde = LocalDateTime.of(2024, 2, 10, 0, 0);
+        LocalDateTime hasta = LocalDateTime.of(2024, 3, 5, 0, 0);
+        List<Conversion> enRango = new ArrayList<>();
+        for (Conversion conversion : conversiones) {
+            if (!conversion.getTimestamp().isBefore(desde) && conversion.getTimestamp().isBefore(hasta)) {
+                enRango.add(conversion);
+            }
+        }
+        try (ArchivoHistorial.LectorArchivo lector = archivo.recorrer(desde, hasta)) {
+            assertEquals(ids(enRango), ids(lector));
+        }
+        List<String> enRangoUsd = new ArrayList<>();
+        for (Conversion conversion : enRango) {
+            if (conversion.getMonedaOrigen().equals("USD")) {
+                enRangoUsd.add(conversion.getId());
+            }
+        }
+        assertEquals(enRangoUsd.subList(3, 8), ids(archivo.consultar("USD", "ARS", desde, hasta, 3, 5)));
+    }
+
+    @Test
+    void soloAbreLosSegmentosDeLosMesesDelRango() throws IOException {
+        ArchivoHistorial archivo = new ArchivoHistorial(directorio.resolve("historial.archivo"));
+        List<Conversion> conversiones = conversiones(300, INICIO);
+        archivo.archivar(conversiones.iterator(), 300);
+        // Enero ilegible: abrirlo fallaría
+        Files.write(archivo.getDirectorio().resolve("conversiones-2024-01.000001.jsonl.gz"),
+            "no es gzip".getBytes(StandardCharsets.UTF_8));
+
+        List<Conversion> deMarzo = new ArrayList<>();
+        try (ArchivoHistorial.LectorArchivo lector = archivo.recorrer(LocalDateTime.of(2024, 3, 1, 0, 0), null)) {
+            lector.forEachRemaining(deMarzo::add);
+        }
+
+        assertEquals(ids(conversiones.subList(240, 300)), ids(deMarzo));
+    }
+
+    @Test
+    void unArchivadoQueFallaNoDejaSegmentos() throws IOException {
+        ArchivoHistorial archivo = new ArchivoHistorial(directorio.resolve("historial.archivo"));
+        Iterator<Conversion> conversiones = conversiones(300, INICIO).iterator();
+        Iterator<Conversion> fallaALaMitad = new Iterator<Conversion>() {
+            private int leidas;
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public Conversion next() {
+                if (++leidas > 150) {
+                    throw new IllegalStateException("lectura interrumpida");
+                }
+                return conversiones.next();
+            }
+        };
+
+        assertThrows(IllegalStateException.class, () -> archivo.archivar(fallaALaMitad, 300));
+
+        assertEquals(List.of(), archivos(archivo.getDirectorio()));
+        assertTrue(archivo.getSegmentos().isEmpty());
+    }
+
+    @Test
+    void exportaArchivoDiscoYMemoriaEnOrdenYLimpiarBorraLosSegmentos() throws IOException {
+        String ruta = directorio.resolve("historial.json").toString();
+        DiarioHistorial diario = new DiarioHistorial(ruta, DiarioHistorial.PoliticaSincronizacion.NUNCA, 1000, 10_000);
+        List<Conversion> conversiones = conversiones(300, INICIO);
+        diario.registrar(conversiones);
+        diario.cerrar();
+
+        // Al cargar: 150 al archivo (enero y parte de febrero), 110 solo en historial.json y 40 en memoria
+        HistorialConversiones historial = new HistorialConversiones(
+            new DiarioHistorial(ruta, DiarioHistorial.PoliticaSincronizacion.NUNCA, 1000, 10_000),
+            new HistorialConversiones.Opciones().autoGuardar(true).maxEnMemoria(40)
+                .retencion(new RetencionHistorial(150, Duration.ZERO)));
+        historial.guardar();
+        assertEquals(150, historial.getTamaño());
+        assertEquals(40, historial.obtenerConversiones().size());
+        Path archivoDir = directorio.resolve("historial.archivo");
+        assertEquals(List.of(YearMonth.of(2024, 1), YearMonth.of(2024, 2)),
+            new ArchivoHistorial(archivoDir).getSegmentos());
+        assertEquals(ids(conversiones.subList(150, 210)), ids(historial.obtenerPagina(0, 60)));
+        assertEquals(ids(conversiones.subList(0, 5)), ids(historial.consultarArchivo(null, null, null, null, 0, 5)));
+
+        Path csv = directorio.resolve("historial.csv");
+        historial.exportarCSV(csv.toString());
+        List<String> exportadas = new ArrayList<>();
+        List<String> lineas = Files.readAllLines(csv, StandardCharsets.UTF_8);
+        for (String linea : lineas.subList(1, lineas.size())) {
+            exportadas.add(linea.substring(0, linea.indexOf(',')));
+        }
+        assertEquals(ids(conversiones), exportadas);
+
+        historial.limpiar();
+        assertEquals(0, historial.getTamaño());
+        assertTrue(new ArchivoHistorial(archivoDir).getSegmentos().isEmpty());
+        assertEquals(List.of(), archivos(archivoDir));
+        assertTrue(historial.consultarArchivo(null, null, null, null, 0, 5).isEmpty());
+        historial.exportarCSV(csv.toString());
+        assertEquals(1, Files.readAllLines(csv, StandardCharsets.UTF_8).size());
+        historial.cerrar();
+    }
+}
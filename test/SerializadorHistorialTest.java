@@ -0,0 +1,183 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Serialización del historial: ConversionAdapter (RAPIDO) escribe el mismo
+ * JSON que Gson por reflexión (REFLEXIVO), cada uno lee lo que escribe el
+ * otro, y los historial.json con sangría escritos antes de ConversionAdapter
+ * se siguen leyendo por todos los caminos de lectura.
+ */
+class SerializadorHistorialTest {
+    // historial.json tal como lo escribía GestorArchivos antes de ConversionAdapter
+    // (Gson por reflexión con pretty printing)
+    private static final String HISTORIAL_ANTERIOR = "[\n"
+        + "  {\n"
+        + "    \"id\": \"9b2f4c1e-6d3a-4e8b-9f10-2a7c5e8d1b01\",\n"
+        + "    \"timestamp\": \"2023-11-05T08:30:00\",\n"
+        + "    \"monedaOrigen\": \"USD\",\n"
+        + "    \"monedaDestino\": \"ARS\",\n"
+        + "    \"montoOrigen\": 100.0,\n"
+        + "    \"montoDestino\": 35025.5,\n"
+        + "    \"tasaCambio\": 350.255\n"
+        + "  },\n"
+        + "  {\n"
+        + "    \"id\": \"9b2f4c1e-6d3a-4e8b-9f10-2a7c5e8d1b02\",\n"
+        + "    \"timestamp\": \"2023-11-05T08:31:12.345\",\n"
+        + "    \"monedaOrigen\": \"EUR\",\n"
+        + "    \"monedaDestino\": \"BRL\",\n"
+        + "    \"montoOrigen\": 12.5,\n"
+        + "    \"montoDestino\": 66.875,\n"
+        + "    \"tasaCambio\": 5.35\n"
+        + "  },\n"
+        + "  {\n"
+        + "    \"id\": \"9b2f4c1e-6d3a-4e8b-9f10-2a7c5e8d1b03\",\n"
+        + "    \"timestamp\": \"2023-11-06T23:59:59.000000001\",\n"
+        + "    \"monedaOrigen\": \"PEN\",\n"
+        + "    \"monedaDestino\": \"USD\",\n"
+        + "    \"montoOrigen\": 1.0E7,\n"
+        + "    \"montoDestino\": 2666666.67,\n"
+        + "    \"tasaCambio\": 0.266666667\n"
+        + "  }\n"
+        + "]";
+
+    @TempDir
+    Path directorio;
+
+    private static List<Conversion> muestras() {
+        List<Conversion> muestras = new ArrayList<>();
+        muestras.add(new Conversion("a", LocalDateTime.of(2024, 1, 1, 0, 0), "USD", "ARS", 10, 9702.5));
+        muestras.add(new Conversion("b", LocalDateTime.of(2024, 2, 29, 23, 59, 59, 123_000_000),
+            "EUR", "JPY", 0.01, 1.62, 162.0000001));
+        muestras.add(new Conversion("c", LocalDateTime.of(1999, 12, 31, 12, 0, 0, 1), "GBP", "USD",
+            1e15, 1.27e15, 1.27));
+        muestras.add(new Conversion("d", LocalDateTime.of(2024, 6, 1, 10, 15, 30, 500), "CLP", "PEN",
+            123456.78, 501.23, Double.MIN_VALUE));
+        // Campos nulos: se omiten al escribir y quedan nulos al leer
+        muestras.add(new Conversion(null, null, "USD", null, 1, 2, 2));
+        return muestras;
+    }
+
+    private static void assertMismaConversion(Conversion esperada, Conversion leida) {
+        assertEquals(esperada.getId(), leida.getId());
+        assertEquals(esperada.getTimestamp(), leida.getTimestamp());
+        assertEquals(esperada.getMonedaOrigen(), leida.getMonedaOrigen());
+        assertEquals(esperada.getMonedaDestino(), leida.getMonedaDestino());
+        assertEquals(Double.doubleToLongBits(esperada.getMontoOrigen()), Double.doubleToLongBits(leida.getMontoOrigen()));
+        assertEquals(Double.doubleToLongBits(esperada.getMontoDestino()), Double.doubleToLongBits(leida.getMontoDestino()));
+        assertEquals(Double.doubleToLongBits(esperada.getTasaCambio()), Double.doubleToLongBits(leida.getTasaCambio()));
+    }
+
+    private static void assertMismasConversiones(List<Conversion> esperadas, List<Conversion> leidas) {
+        assertEquals(esperadas.size(), leidas.size());
+        for (int i = 0; i < esperadas.size(); i++) {
+            assertMismaConversion(esperadas.get(i), leidas.get(i));
+        }
+    }
+
+    @Test
+    void rapidoEscribeLoMismoQueLaReflexion() {
+        for (Conversion conversion : muestras()) {
+            String rapido = GestorArchivos.aLineaJSON(conversion, SerializadorHistorial.RAPIDO);
+            String reflexivo = GestorArchivos.aLineaJSON(conversion, SerializadorHistorial.REFLEXIVO);
+            assertEquals(reflexivo, rapido);
+            assertFalse(rapido.contains("\n"), "una línea del diario no lleva saltos: " + rapido);
+        }
+    }
+
+    @Test
+    void cadaSerializadorLeeLoQueEscribeElOtro() {
+        for (Conversion conversion : muestras()) {
+            for (SerializadorHistorial escritor : SerializadorHistorial.values()) {
+                String linea = GestorArchivos.aLineaJSON(conversion, escritor);
+                for (SerializadorHistorial lector : SerializadorHistorial.values()) {
+                    assertMismaConversion(conversion, GestorArchivos.desdeLineaJSON(linea, lector));
+                }
+            }
+        }
+    }
+
+    @Test
+    void instantaneaDeIdaYVueltaConAmbosSerializadores() throws IOException {
+        List<Conversion> muestras = muestras();
+        for (SerializadorHistorial escritor : SerializadorHistorial.values()) {
+            String ruta = directorio.resolve("historial-" + escritor + ".json").toString();
+            GestorArchivos.escribirHistorialJSON(ruta, 0, 0, muestras, escritor);
+            for (SerializadorHistorial lector : SerializadorHistorial.values()) {
+                assertMismasConversiones(muestras, GestorArchivos.cargarHistorialJSON(ruta, 0, lector).getEnMemoria());
+                assertMismasConversiones(muestras.subList(1, 3),
+                    GestorArchivos.leerPaginaHistorialJSON(ruta, 1, 2, lector));
+            }
+        }
+    }
+
+    @Test
+    void laReflexionSigueEscribiendoElFormatoConSangriaAnterior() throws IOException {
+        Path ruta = directorio.resolve("historial.json");
+        Files.write(ruta, HISTORIAL_ANTERIOR.getBytes(StandardCharsets.UTF_8));
+        List<Conversion> leidas = GestorArchivos.cargarHistorialJSON(ruta.toString(), 0, SerializadorHistorial.REFLEXIVO)
+            .getEnMemoria();
+
+        GestorArchivos.escribirHistorialJSON(ruta.toString(), 0, 0, leidas, SerializadorHistorial.REFLEXIVO);
+
+        assertEquals(HISTORIAL_ANTERIOR, new String(Files.readAllBytes(ruta), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void leeUnHistorialConSangriaEscritoAntesDelCambio() throws IOException {
+        Path ruta = directorio.resolve("historial.json");
+        Files.write(ruta, HISTORIAL_ANTERIOR.getBytes(StandardCharsets.UTF_8));
+        List<Conversion> esperadas = List.of(
+            new Conversion("9b2f4c1e-6d3a-4e8b-9f10-2a7c5e8d1b01", LocalDateTime.of(2023, 11, 5, 8, 30),
+                "USD", "ARS", 100, 35025.5, 350.255),
+            new Conversion("9b2f4c1e-6d3a-4e8b-9f10-2a7c5e8d1b02", LocalDateTime.of(2023, 11, 5, 8, 31, 12, 345_000_000),
+                "EUR", "BRL", 12.5, 66.875, 5.35),
+            new Conversion("9b2f4c1e-6d3a-4e8b-9f10-2a7c5e8d1b03", LocalDateTime.of(2023, 11, 6, 23, 59, 59, 1),
+                "PEN", "USD", 1e7, 2666666.67, 0.266666667));
+
+        for (SerializadorHistorial serializador : SerializadorHistorial.values()) {
+            assertMismasConversiones(esperadas,
+                GestorArchivos.cargarHistorialJSON(ruta.toString(), 0, serializador).getEnMemoria());
+            assertMismasConversiones(esperadas.subList(2, 3),
+                GestorArchivos.leerPaginaHistorialJSON(ruta.toString(), 2, 5, serializador));
+            List<Conversion> recorridas = new ArrayList<>();
+            try (LectorHistorialJSON lector = new LectorHistorialJSON(ruta, serializador)) {
+                lector.forEachRemaining(recorridas::add);
+            }
+            assertMismasConversiones(esperadas, recorridas);
+        }
+    }
+
+    @Test
+    void elHistorialUsaElSerializadorDeSuDiario() throws IOException {
+        Path ruta = directorio.resolve("historial.json");
+        Files.write(ruta, HISTORIAL_ANTERIOR.getBytes(StandardCharsets.UTF_8));
+        DiarioHistorial diario = new DiarioHistorial(ruta.toString(), DiarioHistorial.PoliticaSincronizacion.NUNCA,
+            1000, 10_000, SerializadorHistorial.REFLEXIVO);
+        // Una sola conversión en memoria: el resto se lee de historial.json por página
+        HistorialConversiones historial = new HistorialConversiones(diario,
+            new HistorialConversiones.Opciones().autoGuardar(true).maxEnMemoria(1));
+
+        assertEquals(3, historial.getTamaño());
+        List<Conversion> pagina = historial.obtenerPagina(0, 3);
+        assertEquals("9b2f4c1e-6d3a-4e8b-9f10-2a7c5e8d1b01", pagina.get(0).getId());
+        assertEquals("9b2f4c1e-6d3a-4e8b-9f10-2a7c5e8d1b03", pagina.get(2).getId());
+        assertEquals(1, historial.consultar("EUR", "BRL", null, null, 0, 10).size());
+
+        historial.agregarConversion("USD", "ARS", 1, 970.25);
+        historial.guardar();
+        historial.cerrar();
+        String escrito = new String(Files.readAllBytes(ruta), StandardCharsets.UTF_8);
+        assertTrue(escrito.startsWith("[\n  {\n    \"id\": \"9b2f4c1e"), "REFLEXIVO escribe con sangría: " + escrito);
+    }
+}